@@ -15,14 +15,30 @@
  */
 package uk.ac.cam.cl.dtg.isaac.api;
 
+import com.opencsv.CSVWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.segue.api.AbstractSegueFacade;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static uk.ac.cam.cl.dtg.segue.api.Constants.NEVER_CACHE_WITHOUT_ETAG_CHECK;
+
 /**
  * Class that all IsaacFacades can inherit from.
  */
 public class AbstractIsaacFacade extends AbstractSegueFacade {
+    private static final Logger log = LoggerFactory.getLogger(AbstractIsaacFacade.class);
 
     /**
      * AbstractIsaacFacade.
@@ -35,4 +51,63 @@ public class AbstractIsaacFacade extends AbstractSegueFacade {
     public AbstractIsaacFacade(final AbstractConfigLoader properties, final ILogManager logManager) {
         super(properties, logManager);
     }
+
+    /**
+     * Build a response which writes a CSV file straight to the client as its rows are produced, rather than building
+     * the whole file in memory before responding.
+     *
+     * Any permission checks should be made before calling this, since once the rows are being written it is too late
+     * to return an error response.
+     *
+     * @param preamble
+     *            - text to write before the CSV rows, e.g. a title and the byte order marker for Excel.
+     * @param footer
+     *            - text to write after the CSV rows.
+     * @param fileName
+     *            - the name the file should be downloaded as.
+     * @param rowWriter
+     *            - to produce the rows of the CSV file.
+     * @return a response which streams the CSV file.
+     */
+    protected Response streamCSVResponse(final String preamble, final String footer, final String fileName,
+                                         final CSVRowWriter rowWriter) {
+        StreamingOutput csvOutput = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.write(preamble);
+            CSVWriter csvWriter = new CSVWriter(writer);
+            try {
+                rowWriter.writeRows(csvWriter);
+            } catch (SegueDatabaseException | ContentManagerException e) {
+                log.error(String.format("Error while writing the rows of CSV file (%s)", fileName), e);
+                throw new IOException(e);
+            }
+            csvWriter.flush();
+            writer.write(footer);
+            writer.flush();
+        };
+
+        return Response.ok(csvOutput)
+                .header("Content-Disposition", "attachment; filename=" + fileName)
+                .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+    }
+
+    /**
+     * Produces the rows of a CSV file for {@link #streamCSVResponse(String, String, String, CSVRowWriter)}.
+     */
+    @FunctionalInterface
+    protected interface CSVRowWriter {
+        /**
+         * Write the rows of the CSV file.
+         *
+         * @param csvWriter
+         *            - to write each row to, as soon as it has been produced.
+         * @throws IOException
+         *             - if the rows cannot be written.
+         * @throws SegueDatabaseException
+         *             - if the data for the rows cannot be loaded.
+         * @throws ContentManagerException
+         *             - if the content for the rows cannot be loaded.
+         */
+        void writeRows(CSVWriter csvWriter) throws IOException, SegueDatabaseException, ContentManagerException;
+    }
 }
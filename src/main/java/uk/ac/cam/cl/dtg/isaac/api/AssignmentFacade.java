@@ -19,7 +19,6 @@ import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
-import com.opencsv.CSVWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.apache.commons.lang3.time.DateUtils;
@@ -31,7 +30,6 @@ import uk.ac.cam.cl.dtg.isaac.api.managers.AssignmentManager;
 import uk.ac.cam.cl.dtg.isaac.api.managers.DuplicateAssignmentException;
 import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
 import uk.ac.cam.cl.dtg.isaac.api.services.AssignmentService;
-import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
@@ -68,8 +66,6 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 
-import java.io.IOException;
-import java.io.StringWriter;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.time.Clock;
@@ -104,6 +100,7 @@ import static uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager.extractPageIdF
 @Tag(name = "/assignments")
 public class AssignmentFacade extends AbstractIsaacFacade {
     private static final Logger log = LoggerFactory.getLogger(AssignmentFacade.class);
+    private static final int CSV_EXPORT_USER_BATCH_SIZE = 250;
 
     private final AssignmentManager assignmentManager;
     private final UserAccountManager userManager;
@@ -490,38 +487,14 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             List<RegisteredUserDTO> groupMembers = this.groupManager.getUsersInGroup(group);
 
             List<String> questionPageIds = Lists.newArrayList();
-            for (GameboardItem questionPage : gameboard.getContents()) {
-                questionPageIds.add(questionPage.getId());
-            }
-            Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttempts;
-            questionAttempts = this.questionManager.getMatchingLightweightQuestionAttempts(groupMembers, questionPageIds);
-
-            Map<RegisteredUserDTO, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
-                    questionAttemptsForAllUsersOfInterest = new HashMap<>();
-            for (RegisteredUserDTO user : groupMembers) {
-                questionAttemptsForAllUsersOfInterest.put(user, questionAttempts.get(user.getId()));
-            }
-
             List<String> questionIds = Lists.newArrayList();
-            List<String[]> rows = Lists.newArrayList();
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
-            StringBuilder headerBuilder = new StringBuilder();
-            if (null != formatMode && formatMode.toLowerCase().equals("excel")) {
-                headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
-            }
-            headerBuilder.append(String.format("Assignment (%s) Results: Downloaded on %s \nGenerated by: %s %s \n\n",
-                    assignmentId, timestampFormat.format(Date.from(Instant.now(clock))), currentlyLoggedInUser.getGivenName(),
-                    currentlyLoggedInUser.getFamilyName()));
-
             List<String> headerRow = Lists.newArrayList(Arrays.asList("", ""));
             if (includeUserIDs) {
                 headerRow.add("");
             }
 
-            DecimalFormat percentageFormat = new DecimalFormat("###");
-
             for (GameboardItem questionPage : gameboard.getContents()) {
+                questionPageIds.add(questionPage.getId());
                 int index = 0;
 
                 for (Question question : gameManager.getAllMarkableDOQuestionPartsDFSOrder(questionPage.getId())) {
@@ -538,108 +511,98 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                 }
             }
             headerRow.add("% Correct");
-            rows.add(headerRow.toArray(new String[0]));
 
-            List<String> totalsRow = Lists.newArrayList();
-            if (includeUserIDs) {
-                totalsRow.add("");
+            StringBuilder headerBuilder = new StringBuilder();
+            if (null != formatMode && formatMode.toLowerCase().equals("excel")) {
+                headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
             }
-            Collections.addAll(totalsRow, ",Correct %".split(","));
-
-            Map<RegisteredUserDTO, Map<String, Integer>> userQuestionDataMap = new HashMap<>();
-
-            // FIXME vvv This is duplicated code vvv
-            // This is properly horrible, can someone rewrite this whole thing?
-            questionAttemptsForAllUsersOfInterest.forEach((user, attempts) -> {
-                Map<String, List<LightweightQuestionValidationResponse>> attemptsByQuestionId = new HashMap<>();
-                for (String pageId : attempts.keySet()) {
-                    Map<String, List<LightweightQuestionValidationResponse>> a = attempts.get(pageId);
-                    for (String questionId : a.keySet()) {
-                        List<LightweightQuestionValidationResponse> l = a.get(questionId);
-                        attemptsByQuestionId.put(questionId, l);
+            headerBuilder.append(String.format("Assignment (%s) Results: Downloaded on %s \nGenerated by: %s %s \n\n",
+                    assignmentId, timestampFormat.format(Date.from(Instant.now(clock))), currentlyLoggedInUser.getGivenName(),
+                    currentlyLoggedInUser.getFamilyName()));
+
+            this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.DOWNLOAD_ASSIGNMENT_PROGRESS_CSV,
+                    ImmutableMap.of("assignmentId", assignmentId));
+
+            return streamCSVResponse(headerBuilder.toString(), "", "assignment_progress.csv", csvWriter -> {
+                // The column totals come before the users' rows, so keep just the outcome of each question part for
+                // every user until the totals are known.
+                Map<Long, Map<String, Integer>> userQuestionDataMap =
+                        this.getQuestionPartResults(groupMembers, questionPageIds);
+
+                List<UserSummaryDTO> userSummaries = Lists.newArrayList();
+                int[] columnTotals = new int[questionIds.size()];
+                for (RegisteredUserDTO user : groupMembers) {
+                    UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
+                            userManager.convertToUserSummaryObject(user));
+                    userSummaries.add(userSummary);
+
+                    // can the user access the data?
+                    if (userSummary.isAuthorisedFullAccess()) {
+                        Map<String, Integer> userResults = userQuestionDataMap.get(user.getId());
+                        for (int i = 0; i < questionIds.size(); i++) {
+                            Integer resultForQuestion = userResults.get(questionIds.get(i));
+                            if (resultForQuestion != null && resultForQuestion == 1) {
+                                columnTotals[i] += 1;
+                            }
+                        }
                     }
                 }
-                Map<String, Integer> userAttemptsSummary = attemptsByQuestionId.entrySet().stream().collect(
-                        Collectors.toMap(
-                                Entry::getKey,
-                                e -> e.getValue().stream().map(LightweightQuestionValidationResponse::isCorrect)
-                                        .reduce(false, (a, b) -> a || b)
-                        )
-                ).entrySet().stream().collect(Collectors.toMap(
-                        Entry::getKey,
-                        e -> e.getValue() ? 1 : 0
-                ));
-                userQuestionDataMap.put(user, userAttemptsSummary);
-            });
-            // FIXME ^^^ This is duplicated code ^^^
-            userQuestionDataMap.forEach((user, outcome) ->
-                    questionIds.forEach(questionId -> outcome.putIfAbsent(questionId, null)));
-
-            List<String[]> resultRows = Lists.newArrayList();
-            int[] columnTotals = new int[questionIds.size()];
-            for (RegisteredUserDTO user : groupMembers) {
-                ArrayList<String> resultRow = Lists.newArrayList();
-                UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
-                        userManager.convertToUserSummaryObject(user));
 
-                resultRow.add(userSummary.getFamilyName());
-                resultRow.add(userSummary.getGivenName());
+                DecimalFormat percentageFormat = new DecimalFormat("###");
+                csvWriter.writeNext(headerRow.toArray(new String[0]));
+
+                List<String> totalsRow = Lists.newArrayList();
                 if (includeUserIDs) {
-                    resultRow.add(userSummary.getId().toString());
+                    totalsRow.add("");
                 }
-                // can the user access the data?
-                if (userSummary.isAuthorisedFullAccess()) {
-                    int totalCorrect = 0;
-                    int columnNumber = 0;
-                    for (String questionId : questionIds) {
-                        Integer resultForQuestion = userQuestionDataMap.get(user).get(questionId);
-
-                        if (null == resultForQuestion) {
-                            resultRow.add("");
-                        } else {
-                            resultRow.add(String.format("%d", resultForQuestion));
-                        }
-
-                        if (resultForQuestion != null && resultForQuestion == 1) {
-                            totalCorrect++;
-                            columnTotals[columnNumber] += 1;
-                        }
-                        columnNumber++;
+                Collections.addAll(totalsRow, ",Correct %".split(","));
+                // ignore name columns
+                for (int columnTotal : columnTotals) {
+                    double percentageCorrect = ((double) columnTotal / groupMembers.size()) * 100F;
+                    totalsRow.add(percentageFormat.format(percentageCorrect));
+                }
+                csvWriter.writeNext(totalsRow.toArray(new String[0]));
+
+                String userInfoHeader = includeUserIDs ? "Last Name,First Name,User ID" : "Last Name,First Name";
+                csvWriter.writeNext(userInfoHeader.split(","));
+
+                for (int userIndex = 0; userIndex < groupMembers.size(); userIndex++) {
+                    UserSummaryDTO userSummary = userSummaries.get(userIndex);
+                    ArrayList<String> resultRow = Lists.newArrayList();
+                    resultRow.add(userSummary.getFamilyName());
+                    resultRow.add(userSummary.getGivenName());
+                    if (includeUserIDs) {
+                        resultRow.add(userSummary.getId().toString());
                     }
+                    // can the user access the data?
+                    if (userSummary.isAuthorisedFullAccess()) {
+                        Map<String, Integer> userResults = userQuestionDataMap.get(groupMembers.get(userIndex).getId());
+                        int totalCorrect = 0;
+                        for (String questionId : questionIds) {
+                            Integer resultForQuestion = userResults.get(questionId);
+
+                            if (null == resultForQuestion) {
+                                resultRow.add("");
+                            } else {
+                                resultRow.add(String.format("%d", resultForQuestion));
+                            }
+
+                            if (resultForQuestion != null && resultForQuestion == 1) {
+                                totalCorrect++;
+                            }
+                        }
 
-                    double percentageCorrect = ((double) totalCorrect / questionIds.size()) * 100F;
-                    resultRow.add(percentageFormat.format(percentageCorrect));
+                        double percentageCorrect = ((double) totalCorrect / questionIds.size()) * 100F;
+                        resultRow.add(percentageFormat.format(percentageCorrect));
 
-                } else {
-                    for (@SuppressWarnings("unused") String questionId : questionIds) {
-                        resultRow.add(NOT_SHARING);
+                    } else {
+                        for (@SuppressWarnings("unused") String questionId : questionIds) {
+                            resultRow.add(NOT_SHARING);
+                        }
                     }
+                    csvWriter.writeNext(resultRow.toArray(new String[0]));
                 }
-                Collections.addAll(resultRows, resultRow.toArray(new String[0]));
-            }
-
-            this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.DOWNLOAD_ASSIGNMENT_PROGRESS_CSV,
-                    ImmutableMap.of("assignmentId", assignmentId));
-
-            // ignore name columns
-
-            for (int i = 0; i < questionIds.size(); i++) {
-                double percentageCorrect = ((double) columnTotals[i] / groupMembers.size()) * 100F;
-                totalsRow.add(percentageFormat.format(percentageCorrect));
-            }
-
-            rows.add(totalsRow.toArray(new String[0]));
-            String userInfoHeader = includeUserIDs ? "Last Name,First Name,User ID" : "Last Name,First Name";
-            rows.add(userInfoHeader.split(","));
-            rows.addAll(resultRows);
-            csvWriter.writeAll(rows);
-            csvWriter.close();
-
-            headerBuilder.append(stringWriter.toString());
-            // get game manager completion information for this assignment.
-            return Response.ok(headerBuilder.toString())
-                    .header("Content-Disposition", "attachment; filename=assignment_progress.csv")
-                    .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+            });
 
         } catch (NoUserLoggedInException e) {
             return SegueErrorResponse.getNotLoggedInResponse();
@@ -648,8 +611,6 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown database error.").toResponse();
         } catch (ContentManagerException e) {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown content database error.").toResponse();
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
@@ -699,10 +660,6 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             List<RegisteredUserDTO> groupMembers;
             groupMembers = this.groupManager.getUsersInGroup(group);
 
-            // String: question part id
-            // Integer: question part result
-            Map<RegisteredUserDTO, Map<GameboardDTO, Map<String, Integer>>> grandTable = new HashMap<>();
-            // Retrieve each user's progress data and cram everything into a Grand Table for later consumption
             List<String> gameboardsIds = assignments.stream().map(AssignmentDTO::getGameboardId).collect(Collectors.toList());
             List<GameboardDTO> gameboards = gameManager.getGameboards(gameboardsIds);
 
@@ -714,55 +671,8 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                 // Create an assignment -> gameboard mapping to avoid repeatedly querying the DB later on. All the efficiency!
                 assignmentGameboards.put(assignment, gameboard);
             }
-            List<GameboardItem> gameboardItems = gameboards.stream().map(GameboardDTO::getContents).flatMap(Collection::stream).collect(Collectors.toList());
-            List<String> questionPageIds = gameboardItems.stream().map(GameboardItem::getId).collect(Collectors.toList());
-            Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttempts;
-            try {
-                questionAttempts = this.questionManager.getMatchingLightweightQuestionAttempts(groupMembers, questionPageIds);
-            } catch (IllegalArgumentException e) {
-                questionAttempts = new HashMap<>();
-            }
-            Map<RegisteredUserDTO, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttemptsForAllUsersOfInterest = new HashMap<>();
-            for (RegisteredUserDTO user : groupMembers) {
-                questionAttemptsForAllUsersOfInterest.put(user, questionAttempts.get(user.getId()));
-            }
-
-            for (GameboardDTO gameboard : gameboards) {
-                Map<RegisteredUserDTO, Map<String, Integer>> userQuestionDataMap = new HashMap<>();
-
-                // FIXME vvv This is duplicated code vvv
-                // This is properly horrible, can someone rewrite this whole thing?
-                questionAttemptsForAllUsersOfInterest.forEach((user, attempts) -> {
-                    Map<String, List<LightweightQuestionValidationResponse>> attemptsByQuestionId = new HashMap<>();
-                    for (String pageId : attempts.keySet()) {
-                        Map<String, List<LightweightQuestionValidationResponse>> a = attempts.get(pageId);
-                        for (String questionId : a.keySet()) {
-                            List<LightweightQuestionValidationResponse> l = a.get(questionId);
-                            attemptsByQuestionId.put(questionId, l);
-                        }
-                    }
-                    Map<String, Integer> userAttemptsSummary = attemptsByQuestionId.entrySet().stream().collect(
-                            Collectors.toMap(
-                                    Entry::getKey,
-                                    e -> e.getValue().stream().map(LightweightQuestionValidationResponse::isCorrect)
-                                            .reduce(false, (a, b) -> a || b)
-                            )
-                    ).entrySet().stream().collect(Collectors.toMap(
-                            Entry::getKey,
-                            e -> e.getValue() ? 1 : 0
-                    ));
-                    userQuestionDataMap.put(user, userAttemptsSummary);
-                });
-                // FIXME ^^^ This is duplicated code ^^^
-                for (RegisteredUserDTO student : userQuestionDataMap.keySet()) {
-                    Map<GameboardDTO, Map<String, Integer>> entry = grandTable.get(student);
-                    if (null == entry) {
-                        entry = Maps.newHashMap();
-                    }
-                    entry.put(gameboard, userQuestionDataMap.get(student));
-                    grandTable.put(student, entry);
-                }
-            }
+            List<String> questionPageIds = gameboards.stream().map(GameboardDTO::getContents).flatMap(Collection::stream)
+                    .map(GameboardItem::getId).collect(Collectors.toList());
 
             // Add a header row with due dates
             ArrayList<String> dueDateRow = Lists.newArrayList();
@@ -831,108 +741,107 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                 }
             }
 
-            // Moving on to actual rows...
-            ArrayList<String[]> rows = Lists.newArrayList();
-            rows.add(dueDateRow.toArray(new String[0]));
-            rows.add(headerRow.toArray(new String[0]));
-
-            for (RegisteredUserDTO groupMember : groupMembers) {
-                // FIXME Some room for improvement here, as we can retrieve all the users with a single query.
-                // FIXME Not urgent, as the dominating query is the one that retrieves question attempts above.
-                UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
-                        userManager.convertToUserSummaryObject(groupMember));
-
-                ArrayList<String> row = Lists.newArrayList();
-                Map<GameboardDTO, Map<String, Integer>> userAssignments = grandTable.get(groupMember);
-                List<Float> assignmentPercentages = Lists.newArrayList();
-                List<Integer> marks = Lists.newArrayList();
-                int totalQPartsCorrect = 0;
-                int totalQPartsCount = 0;
-                for (AssignmentDTO assignment : assignments) {
-                    GameboardDTO gameboard = assignmentGameboards.get(assignment);
-                    int assignmentQPartsCorrect = 0;
-                    int assignmentQPartsCount = 0;
-                    List<String> questionIds = gameboardQuestionIds.get(gameboard);
-                    List<GameboardItem> questions = gameboard.getContents();
-                    Map<String, Integer> gameboardPartials = Maps.newHashMap();
-                    for (GameboardItem question : questions) {
-                        gameboardPartials.put(question.getId(), 0);
-                    }
-                    HashMap<String, Integer> questionParts = new HashMap<>(gameboardPartials);
-                    for (String s : questionIds) {
-                        Integer mark = userAssignments.get(gameboard).get(s);
-                        String questionPageId = extractPageIdFromQuestionId(s);
-                        questionParts.put(questionPageId, questionParts.get(questionPageId) + 1);
-                        marks.add(mark);
-                        if (null != mark) {
-                            gameboardPartials.put(questionPageId, gameboardPartials.get(questionPageId) + mark);
-                        }
-                    }
-                    for (Entry<String, Integer> entry : gameboardPartials.entrySet()) {
-                        assignmentQPartsCorrect += entry.getValue();
-                        assignmentQPartsCount += questionParts.get(entry.getKey());
-                    }
-                    totalQPartsCorrect += assignmentQPartsCorrect;
-                    totalQPartsCount += assignmentQPartsCount;
-                    assignmentPercentages.add((100f * assignmentQPartsCorrect) / assignmentQPartsCount);
-                }
-                float overallTotal = (100f * totalQPartsCorrect) / totalQPartsCount;
-
-                // The next three lines could be a little better if I were not this sleepy...
-                row.add(userSummary.getFamilyName());
-                row.add(userSummary.getGivenName());
-                if (includeUserIDs) {
-                    row.add(userSummary.getId().toString());
-                }
-
-                if (userSummary.isAuthorisedFullAccess()) {
-                    row.add(String.format("%.0f", overallTotal));
-                    for (Float assignmentPercentage : assignmentPercentages) {
-                        row.add(String.format("%.0f", assignmentPercentage));
-                    }
-                    row.add("");
-                    for (Integer mark : marks) {
-                        if (null != mark) {
-                            row.add(String.format("%d", mark));
-                        } else {
-                            row.add("");
-                        }
-                    }
-
-                } else {
-                    row.add(NOT_SHARING);
-                    for (@SuppressWarnings("unused") Float assignmentPercentage : assignmentPercentages) {
-                        row.add(NOT_SHARING);
-                    }
-                    row.add("");
-                    for (@SuppressWarnings("unused") Integer mark : marks) {
-                        row.add(NOT_SHARING);
-                    }
-                }
-                rows.add(row.toArray(new String[0]));
-            }
-
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
-            csvWriter.writeAll(rows);
-            csvWriter.close();
-
             StringBuilder headerBuilder = new StringBuilder();
             if (null != formatMode && formatMode.toLowerCase().equals("excel")) {
                 headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
             }
             headerBuilder.append(String.format("Assignments for '%s' (%s)\nDownloaded on %s\nGenerated by: %s %s\n\n",
-                        group.getGroupName(), group.getId(), timestampFormat.format(Date.from(Instant.now(clock))),
-                            currentlyLoggedInUser.getGivenName(), currentlyLoggedInUser.getFamilyName()))
-                    .append(stringWriter.toString())
-                    .append("\n\nN.B.\n\"The percentages are for question parts completed, not question pages.\"\n");
+                    group.getGroupName(), group.getId(), timestampFormat.format(Date.from(Instant.now(clock))),
+                    currentlyLoggedInUser.getGivenName(), currentlyLoggedInUser.getFamilyName()));
+            String footer = "\n\nN.B.\n\"The percentages are for question parts completed, not question pages.\"\n";
 
             this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.DOWNLOAD_GROUP_PROGRESS_CSV,
                     ImmutableMap.of("groupId", groupId));
 
-            return Response.ok(headerBuilder.toString())
-                    .header("Content-Disposition", "attachment; filename=group_progress.csv")
-                    .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+            return streamCSVResponse(headerBuilder.toString(), footer, "group_progress.csv", csvWriter -> {
+                csvWriter.writeNext(dueDateRow.toArray(new String[0]));
+                csvWriter.writeNext(headerRow.toArray(new String[0]));
+
+                // Moving on to actual rows, a batch of users at a time so that the results held in memory don't grow
+                // with the size of the group:
+                for (int batchStart = 0; batchStart < groupMembers.size(); batchStart += CSV_EXPORT_USER_BATCH_SIZE) {
+                    List<RegisteredUserDTO> batchMembers = groupMembers.subList(batchStart,
+                            Math.min(batchStart + CSV_EXPORT_USER_BATCH_SIZE, groupMembers.size()));
+                    Map<Long, Map<String, Integer>> userQuestionDataMap =
+                            this.getQuestionPartResults(batchMembers, questionPageIds);
+
+                    for (RegisteredUserDTO groupMember : batchMembers) {
+                        // FIXME Some room for improvement here, as we can retrieve all the users with a single query.
+                        UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
+                                userManager.convertToUserSummaryObject(groupMember));
+
+                        ArrayList<String> row = Lists.newArrayList();
+                        Map<String, Integer> userResults = userQuestionDataMap.get(groupMember.getId());
+                        List<Float> assignmentPercentages = Lists.newArrayList();
+                        List<Integer> marks = Lists.newArrayList();
+                        int totalQPartsCorrect = 0;
+                        int totalQPartsCount = 0;
+                        for (AssignmentDTO assignment : assignments) {
+                            GameboardDTO gameboard = assignmentGameboards.get(assignment);
+                            int assignmentQPartsCorrect = 0;
+                            int assignmentQPartsCount = 0;
+                            List<String> questionIds = gameboardQuestionIds.get(gameboard);
+                            List<GameboardItem> questions = gameboard.getContents();
+                            Map<String, Integer> gameboardPartials = Maps.newHashMap();
+                            for (GameboardItem question : questions) {
+                                gameboardPartials.put(question.getId(), 0);
+                            }
+                            HashMap<String, Integer> questionParts = new HashMap<>(gameboardPartials);
+                            for (String s : questionIds) {
+                                Integer mark = userResults.get(s);
+                                String questionPageId = extractPageIdFromQuestionId(s);
+                                questionParts.put(questionPageId, questionParts.get(questionPageId) + 1);
+                                marks.add(mark);
+                                if (null != mark) {
+                                    gameboardPartials.put(questionPageId, gameboardPartials.get(questionPageId) + mark);
+                                }
+                            }
+                            for (Entry<String, Integer> entry : gameboardPartials.entrySet()) {
+                                assignmentQPartsCorrect += entry.getValue();
+                                assignmentQPartsCount += questionParts.get(entry.getKey());
+                            }
+                            totalQPartsCorrect += assignmentQPartsCorrect;
+                            totalQPartsCount += assignmentQPartsCount;
+                            assignmentPercentages.add((100f * assignmentQPartsCorrect) / assignmentQPartsCount);
+                        }
+                        float overallTotal = (100f * totalQPartsCorrect) / totalQPartsCount;
+
+                        // The next three lines could be a little better if I were not this sleepy...
+                        row.add(userSummary.getFamilyName());
+                        row.add(userSummary.getGivenName());
+                        if (includeUserIDs) {
+                            row.add(userSummary.getId().toString());
+                        }
+
+                        if (userSummary.isAuthorisedFullAccess()) {
+                            row.add(String.format("%.0f", overallTotal));
+                            for (Float assignmentPercentage : assignmentPercentages) {
+                                row.add(String.format("%.0f", assignmentPercentage));
+                            }
+                            row.add("");
+                            for (Integer mark : marks) {
+                                if (null != mark) {
+                                    row.add(String.format("%d", mark));
+                                } else {
+                                    row.add("");
+                                }
+                            }
+
+                        } else {
+                            row.add(NOT_SHARING);
+                            for (@SuppressWarnings("unused") Float assignmentPercentage : assignmentPercentages) {
+                                row.add(NOT_SHARING);
+                            }
+                            row.add("");
+                            for (@SuppressWarnings("unused") Integer mark : marks) {
+                                row.add(NOT_SHARING);
+                            }
+                        }
+                        csvWriter.writeNext(row.toArray(new String[0]));
+                    }
+                    csvWriter.flush();
+                }
+            });
 
         } catch (NoUserLoggedInException e) {
             return SegueErrorResponse.getNotLoggedInResponse();
@@ -941,11 +850,34 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown database error.").toResponse();
         } catch (ContentManagerException e) {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown content database error.").toResponse();
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
+    /**
+     * Find whether each of the users has answered each question part on some question pages correctly, from a summary
+     * of their attempts streamed from the database rather than the attempts themselves.
+     *
+     * @param users
+     *            - the users of interest.
+     * @param questionPageIds
+     *            - the question pages of interest.
+     * @return map of user id to question part id to 1 if answered correctly, or 0 if only answered incorrectly.
+     *         Question parts which have not been attempted are left out.
+     * @throws SegueDatabaseException
+     *             - if there is a problem reading the attempts.
+     */
+    private Map<Long, Map<String, Integer>> getQuestionPartResults(final List<RegisteredUserDTO> users,
+                                                                   final List<String> questionPageIds)
+            throws SegueDatabaseException {
+        Map<Long, Map<String, Integer>> results = new HashMap<>();
+        for (RegisteredUserDTO user : users) {
+            results.put(user.getId(), new HashMap<>());
+        }
+        this.questionManager.streamQuestionPartOutcomes(users, questionPageIds, (userId, questionId, correct) ->
+                results.computeIfAbsent(userId, k -> new HashMap<>()).put(questionId, correct ? 1 : 0));
+        return results;
+    }
+
     /**
      * Allows a user to assign a gameboard to one or more groups of users. We assume that each partial AssignmentDTO object has
      * the same gameboardId, notes and dueDate to make validation easier, but this could be changed in theory, given a more
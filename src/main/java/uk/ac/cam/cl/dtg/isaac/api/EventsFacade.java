@@ -258,10 +258,7 @@ public class EventsFacade extends AbstractIsaacFacade {
                         ContentService.generateDefaultFieldToMatch(fieldsToMatch), newStartIndex, newLimit,
                         sortInstructions, filterInstructions);
 
-                // augment (maybe slow for large numbers of bookings)
-                for (ContentDTO c : findByFieldNames.getResults()) {
-                    this.augmentEventWithBookingInformation(request, c);
-                }
+                this.augmentEventsWithBookingInformation(request, findByFieldNames.getResults());
             }
 
             return Response.ok(findByFieldNames).build();
@@ -1628,6 +1625,47 @@ public class EventsFacade extends AbstractIsaacFacade {
         return augmentEventWithBookingInformation(request, event);
     }
 
+    /**
+     * Augment a list of events with booking information before we send them out.
+     *
+     * This looks up the current user and the bookings on all the events at once, rather than once per event.
+     *
+     * @param request        - for user look up
+     * @param possibleEvents - ContentDTOs that should hopefully be IsaacEventPageDTOs.
+     * @throws SegueDatabaseException
+     */
+    private void augmentEventsWithBookingInformation(final HttpServletRequest request,
+                                                     final List<ContentDTO> possibleEvents)
+            throws SegueDatabaseException {
+        List<IsaacEventPageDTO> events = new ArrayList<>();
+        for (ContentDTO possibleEvent : possibleEvents) {
+            if (possibleEvent instanceof IsaacEventPageDTO) {
+                events.add((IsaacEventPageDTO) possibleEvent);
+            } else {
+                throw new ClassCastException("The object provided was not an event.");
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        List<String> eventIds = events.stream().map(IsaacEventPageDTO::getId).collect(Collectors.toList());
+        Map<String, BookingStatus> userBookingStatuses;
+        try {
+            RegisteredUserDTO user = userManager.getCurrentRegisteredUser(request);
+            userBookingStatuses = this.bookingManager.getBookingStatuses(eventIds, user.getId());
+        } catch (NoUserLoggedInException e) {
+            // no action as we don't require the user to be logged in.
+            userBookingStatuses = Collections.emptyMap();
+        }
+
+        Map<String, Long> placesAvailable = this.bookingManager.getPlacesAvailable(events);
+        for (IsaacEventPageDTO event : events) {
+            event.setUserBookingStatus(userBookingStatuses.get(event.getId()));
+            event.setPlacesAvailable(placesAvailable.get(event.getId()));
+        }
+    }
+
     /**
      * Augment a single event with booking information before we send it out.
      *
@@ -41,7 +41,6 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserLoggedInException;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
-import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dto.SegueErrorResponse;
 import uk.ac.cam.cl.dtg.isaac.dto.users.AbstractSegueUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
@@ -308,8 +307,8 @@ public class GameboardsFacade extends AbstractIsaacFacade {
             AbstractSegueUserDTO currentUser = this.userManager.getCurrentUser(httpServletRequest);
             GameboardDTO gameboard = this.gameManager.getGameboard(gameboardId);
 
-            Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts =
-                    this.questionManager.getQuestionAttemptsByUser(currentUser);
+            Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                    userQuestionAttempts = this.questionManager.getLightweightQuestionAttemptsByUser(currentUser);
 
             List<GameboardItem> conceptQuestionsProgress = Lists.newArrayList();
             if (upperQuestionId.isEmpty()) {
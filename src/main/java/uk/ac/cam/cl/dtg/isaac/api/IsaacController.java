@@ -27,7 +27,6 @@ import uk.ac.cam.cl.dtg.isaac.api.services.ContentSummarizerService;
 import uk.ac.cam.cl.dtg.isaac.dos.IUserStreaksManager;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.isaac.dto.SegueErrorResponse;
-import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentSummaryDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.AbstractSegueUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
@@ -186,7 +185,7 @@ public class IsaacController extends AbstractIsaacFacade {
                 return new SegueErrorResponse(Status.BAD_REQUEST, "Invalid document types.").toResponse();
             }
 
-            ResultsWrapper<ContentDTO> searchResults = this.contentManager.siteWideSearch(
+            ResultsWrapper<ContentSummaryDTO> searchResults = this.contentManager.siteWideSearch(
                     searchString,
                     new HashSet<>(documentTypes),
                     startIndex,
@@ -203,7 +202,7 @@ public class IsaacController extends AbstractIsaacFacade {
                     IsaacServerLogType.GLOBAL_SITE_SEARCH, logMap);
 
             ResultsWrapper<ContentSummaryDTO> results =
-                    this.contentSummarizerService.extractContentSummaryFromResultsWrapper(searchResults);
+                    this.contentSummarizerService.populateContentSummaryUrls(searchResults);
             return Response.ok(results).tag(etag)
                     .cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_HOUR, true))
                     .build();
@@ -441,18 +441,34 @@ public class PagesFacade extends AbstractIsaacFacade {
              iterationLimit > 0 && (limit < 0 || combinedResults.size() < limit);
              iterationLimit--) {
             try {
-                ResultsWrapper<ContentDTO> c;
-                c = contentManager.questionSearch(
-                        validatedSearchString,
-                        fieldsToMatch,
-                        fasttrack,
-                        nextSearchStartIndex,
-                        limit,
-                        showNoFilterContent,
-                        showSupersededContent
-                );
+                ResultsWrapper<ContentSummaryDTO> c;
+                if (null != filterByStatuses) {
+                    // Working out question statuses needs the question part IDs, so needs whole questions:
+                    ResultsWrapper<ContentDTO> questions = contentManager.questionSearch(
+                            validatedSearchString,
+                            fieldsToMatch,
+                            fasttrack,
+                            nextSearchStartIndex,
+                            limit,
+                            showNoFilterContent,
+                            showSupersededContent
+                    );
+                    c = new ResultsWrapper<>(extractContentSummaryFromList(questions.getResults()),
+                            questions.getTotalResults());
+                } else {
+                    c = contentManager.questionSummarySearch(
+                            validatedSearchString,
+                            fieldsToMatch,
+                            fasttrack,
+                            nextSearchStartIndex,
+                            limit,
+                            showNoFilterContent,
+                            showSupersededContent
+                    );
+                    populateContentSummaryUrls(c.getResults());
+                }
 
-                summarizedResults = extractContentSummaryFromList(c.getResults());
+                summarizedResults = c.getResults();
 
                 if (summarizedResults.isEmpty()) {
                     break;
@@ -1012,6 +1028,18 @@ public class PagesFacade extends AbstractIsaacFacade {
         return listOfContentInfo;
     }
 
+    /**
+     * Add URLs to content summaries which were built directly from search results.
+     *
+     * @param summaries
+     *            - the content summaries to modify.
+     */
+    private void populateContentSummaryUrls(final List<ContentSummaryDTO> summaries) {
+        for (ContentSummaryDTO summary : summaries) {
+            summary.setUrl(uriManager.generateApiUrl(summary));
+        }
+    }
+
     /**
      * Helper method to query segue for a list of content objects.
      * 
@@ -1035,17 +1063,12 @@ public class PagesFacade extends AbstractIsaacFacade {
                 final Integer startIndex,
                 final Integer limit)
             throws ContentManagerException {
-        ResultsWrapper<ContentDTO> c;
-
-        c = api.findMatchingContent(
+        ResultsWrapper<ContentSummaryDTO> summarizedContent = this.contentManager.findSummariesByFieldNames(
                 ContentService.generateDefaultFieldToMatch(fieldsToMatch, booleanOperatorOverrideMap),
-                startIndex,
-                limit
+                null != startIndex ? startIndex : 0,
+                null != limit ? limit : DEFAULT_RESULTS_LIMIT
         );
-
-        ResultsWrapper<ContentSummaryDTO> summarizedContent = new ResultsWrapper<>(
-                this.extractContentSummaryFromList(c.getResults()),
-                c.getTotalResults());
+        populateContentSummaryUrls(summarizedContent.getResults());
 
         return Response.ok(summarizedContent);
     }
@@ -15,11 +15,9 @@
  */
 package uk.ac.cam.cl.dtg.isaac.api;
 
-import com.google.api.client.util.Lists;
 import com.google.common.collect.ImmutableMap;
 import com.google.errorprone.annotations.DoNotCall;
 import com.google.inject.Inject;
-import com.opencsv.CSVWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.apache.commons.lang3.time.DateUtils;
@@ -85,8 +83,6 @@ import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
-import java.io.IOException;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -1207,9 +1203,6 @@ public class QuizFacade extends AbstractIsaacFacade {
             IsaacQuizDTO quiz = quizManager.findQuiz(assignment.getQuizId());
             List<RegisteredUserDTO> groupMembers = this.groupManager.getUsersInGroup(group);
 
-            List<String[]> rows = Lists.newArrayList();
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
             StringBuilder headerBuilder = new StringBuilder();
             if (null != formatMode && formatMode.equalsIgnoreCase("excel")) {
                 headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
@@ -1232,53 +1225,46 @@ public class QuizFacade extends AbstractIsaacFacade {
             headerBuilder.append(String.join(",", questionTitles));
             headerBuilder.append("\n");
 
-            List<QuizUserFeedbackDTO> userFeedback = getUserFeedback(user, assignment, quiz, groupMembers);
-            for (QuizUserFeedbackDTO f : userFeedback) {
-                QuizFeedbackDTO feedback = f.getFeedback();
-                List<String> row = new ArrayList<>(Arrays.asList(f.getUser().getFamilyName(), f.getUser().getGivenName()));
-                if (null == feedback) {
-                    row.add("This user has revoked their data sharing authorization.");
-                } else {
-                    row.add(feedback.isComplete() ? "yes" : "no");
-                    QuizFeedbackDTO.Mark summaryMark = new QuizFeedbackDTO.Mark();
-                    List<String> detailedMark = new ArrayList<>();
-                    for (String questionId : questionIds) {
-                        if (feedback.getQuestionMarks() != null) {
-                            QuizFeedbackDTO.Mark questionMark = feedback.getQuestionMarks().get(questionId);
-                            if (questionMark.notAttempted == 1) {
-                                detailedMark.add("Not Attempted");
-                                summaryMark.notAttempted += 1;
-                            } else if (questionMark.incorrect == 1) {
-                                detailedMark.add("Incorrect");
-                                summaryMark.incorrect += 1;
-                            } else if (questionMark.correct == 1) {
-                                detailedMark.add("Correct");
-                                summaryMark.correct += 1;
+            return streamCSVResponse(headerBuilder.toString(), "", "test_results.csv", csvWriter -> {
+                List<QuizUserFeedbackDTO> userFeedback = getUserFeedback(user, assignment, quiz, groupMembers);
+                for (QuizUserFeedbackDTO f : userFeedback) {
+                    QuizFeedbackDTO feedback = f.getFeedback();
+                    List<String> row = new ArrayList<>(Arrays.asList(f.getUser().getFamilyName(), f.getUser().getGivenName()));
+                    if (null == feedback) {
+                        row.add("This user has revoked their data sharing authorization.");
+                    } else {
+                        row.add(feedback.isComplete() ? "yes" : "no");
+                        QuizFeedbackDTO.Mark summaryMark = new QuizFeedbackDTO.Mark();
+                        List<String> detailedMark = new ArrayList<>();
+                        for (String questionId : questionIds) {
+                            if (feedback.getQuestionMarks() != null) {
+                                QuizFeedbackDTO.Mark questionMark = feedback.getQuestionMarks().get(questionId);
+                                if (questionMark.notAttempted == 1) {
+                                    detailedMark.add("Not Attempted");
+                                    summaryMark.notAttempted += 1;
+                                } else if (questionMark.incorrect == 1) {
+                                    detailedMark.add("Incorrect");
+                                    summaryMark.incorrect += 1;
+                                } else if (questionMark.correct == 1) {
+                                    detailedMark.add("Correct");
+                                    summaryMark.correct += 1;
+                                } else {
+                                    row.add("ERROR"); // This should not happen at this level
+                                }
                             } else {
-                                row.add("ERROR"); // This should not happen at this level
+                                // The front-end shows this as "Not completed" so I'm leaving this empty
+                                // because we already have a "Completed" column
+                                row.add("");
                             }
-                        } else {
-                            // The front-end shows this as "Not completed" so I'm leaving this empty
-                            // because we already have a "Completed" column
-                            row.add("");
                         }
+                        row.add(String.format("%d", summaryMark.correct));
+                        row.add(String.format("%d", summaryMark.incorrect));
+                        row.add(String.format("%d", summaryMark.notAttempted));
+                        row.addAll(detailedMark);
                     }
-                    row.add(String.format("%d", summaryMark.correct));
-                    row.add(String.format("%d", summaryMark.incorrect));
-                    row.add(String.format("%d", summaryMark.notAttempted));
-                    row.addAll(detailedMark);
+                    csvWriter.writeNext(row.toArray(new String[0]));
                 }
-                rows.add(row.toArray(new String[0]));
-            }
-
-            csvWriter.writeAll(rows);
-            csvWriter.close();
-
-            headerBuilder.append(stringWriter);
-            // get game manager completion information for this assignment.
-            return Response.ok(headerBuilder.toString())
-                    .header("Content-Disposition", "attachment; filename=test_results.csv")
-                    .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+            });
         } catch (NoUserLoggedInException e) {
             return SegueErrorResponse.getNotLoggedInResponse();
         } catch (AssignmentCancelledException e) {
@@ -1290,8 +1276,6 @@ public class QuizFacade extends AbstractIsaacFacade {
         } catch (ContentManagerException e) {
             log.error("Content error whilst viewing test assignment", e);
             return SegueErrorResponse.getResourceNotFoundResponse("This test has become unavailable.");
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
@@ -1324,9 +1308,6 @@ public class QuizFacade extends AbstractIsaacFacade {
 
             List<QuizAssignmentDTO> quizAssignments = this.quizAssignmentManager.getAssignmentsForGroups(Collections.singletonList(group));
 
-            List<List<String>> rows = new ArrayList<>();
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
             StringBuilder headerBuilder = new StringBuilder();
             if (null != formatMode && formatMode.equalsIgnoreCase("excel")) {
                 headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
@@ -1337,108 +1318,110 @@ public class QuizFacade extends AbstractIsaacFacade {
 
             List<String> quizTitles = new ArrayList<>();
             List<String> questionTitles = new ArrayList<>();
+            List<IsaacQuizDTO> quizzes = new ArrayList<>();
 
             for (QuizAssignmentDTO assignment : quizAssignments) {
                 String quizId = assignment.getQuizId();
                 IsaacQuizDTO quiz = this.quizManager.findQuiz(quizId);
+                quizzes.add(quiz);
                 quizTitles.add(String.format("\"%s\"", quiz.getTitle()));
                 questionTitles.addAll(getQuizQuestionTitles(quiz));
             }
 
-            for (RegisteredUserDTO groupMember : groupMembers) {
-                UserSummaryDTO groupMemberSummary = this.userManager.convertToUserSummaryObject(groupMember);
-                List<String> row = new ArrayList<>(Arrays.asList(groupMember.getGivenName(), groupMember.getFamilyName()));
-                List<String> quizTotals = new ArrayList<>();
-                List<String> questionResults = new ArrayList<>();
-
-                for (QuizAssignmentDTO quizAssignment : quizAssignments) {
-                    String quizId = quizAssignment.getQuizId();
-                    IsaacQuizDTO quiz = this.quizManager.findQuiz(quizId);
-                    List<String> questionIds = getQuizQuestionIds(quiz);
-                    Optional<QuizUserFeedbackDTO> userFeedback = getUserFeedback(user, quizAssignment, quiz, groupMembers).stream()
-                            .filter(f -> f.getUser().getId().equals(groupMember.getId())).findFirst();
-                    if (!userFeedback.isPresent()) {
-                        // This looks like it should work but I can't test it as I don't know how to retrieve a
-                        // non-present user feedback. If everything is set up correctly with retrieving user
-                        // feedback, this branch should never happen -- so maybe we might as well forcibly unwrap
-                        // and deal with the exception because something has gone very wrong somewhere anyway.
-                        quizTotals.add(""); // We should probably write something here to make debugging easier...
-                        long questionCount = quiz.getChildren().stream()
-                                .filter(c -> c instanceof IsaacQuizSectionDTO)
-                                .map(s -> ((IsaacQuizSectionDTO) s).getChildren().stream().filter(t -> t instanceof IsaacQuestionBaseDTO).count())
-                                .reduce(0L, Long::sum);
-                        for (long i = 0L; i < questionCount; ++i) {
-                            questionResults.add("-");
-                        }
-                    } else {
-                        QuizFeedbackDTO feedback = userFeedback.get().getFeedback();
-                        if (feedback != null) {
-                            QuizFeedbackDTO.Mark overallMark = feedback.getOverallMark();
-                            if (overallMark != null) {
-                                // Add an apostrophe to the beginning of the score, so that the fraction isn't
-                                // interpreted as a date in excel
-                                quizTotals.add(String.format("'%d/%d", overallMark.correct, overallMark.correct + overallMark.incorrect + overallMark.notAttempted));
-                            } else {
-                                quizTotals.add("");
+            headerBuilder.append(String.join(",", quizTitles)).append(",");
+            headerBuilder.append(String.join(",", questionTitles));
+            headerBuilder.append("\n");
+
+            return streamCSVResponse(headerBuilder.toString(), "", "group_test_results.csv", csvWriter -> {
+                // Mark each test once for the whole group, rather than once for every member of the group:
+                List<Map<Long, QuizUserFeedbackDTO>> feedbackByAssignment = new ArrayList<>();
+                for (int i = 0; i < quizAssignments.size(); i++) {
+                    Map<Long, QuizUserFeedbackDTO> feedbackByUser = new HashMap<>();
+                    for (QuizUserFeedbackDTO f : getUserFeedback(user, quizAssignments.get(i), quizzes.get(i), groupMembers)) {
+                        feedbackByUser.putIfAbsent(f.getUser().getId(), f);
+                    }
+                    feedbackByAssignment.add(feedbackByUser);
+                }
+
+                for (RegisteredUserDTO groupMember : groupMembers) {
+                    List<String> row = new ArrayList<>(Arrays.asList(groupMember.getGivenName(), groupMember.getFamilyName()));
+                    List<String> quizTotals = new ArrayList<>();
+                    List<String> questionResults = new ArrayList<>();
+
+                    for (int assignmentIndex = 0; assignmentIndex < quizAssignments.size(); assignmentIndex++) {
+                        IsaacQuizDTO quiz = quizzes.get(assignmentIndex);
+                        List<String> questionIds = getQuizQuestionIds(quiz);
+                        Optional<QuizUserFeedbackDTO> userFeedback =
+                                Optional.ofNullable(feedbackByAssignment.get(assignmentIndex).get(groupMember.getId()));
+                        if (!userFeedback.isPresent()) {
+                            // This looks like it should work but I can't test it as I don't know how to retrieve a
+                            // non-present user feedback. If everything is set up correctly with retrieving user
+                            // feedback, this branch should never happen -- so maybe we might as well forcibly unwrap
+                            // and deal with the exception because something has gone very wrong somewhere anyway.
+                            quizTotals.add(""); // We should probably write something here to make debugging easier...
+                            long questionCount = quiz.getChildren().stream()
+                                    .filter(c -> c instanceof IsaacQuizSectionDTO)
+                                    .map(s -> ((IsaacQuizSectionDTO) s).getChildren().stream().filter(t -> t instanceof IsaacQuestionBaseDTO).count())
+                                    .reduce(0L, Long::sum);
+                            for (long i = 0L; i < questionCount; ++i) {
+                                questionResults.add("-");
                             }
                         } else {
-                            // The user has revoked access to their data
-                            quizTotals.add("REVOKED");
-                        }
-                        if (feedback != null) {
-                            Map<String, QuizFeedbackDTO.Mark> questionMarksByQuestionId = userFeedback.get().getFeedback().getQuestionMarks();
-                            if (questionMarksByQuestionId == null) {
-                                long questionCount = quiz.getChildren().stream()
-                                        .filter(c -> c instanceof IsaacQuizSectionDTO)
-                                        .map(s -> ((IsaacQuizSectionDTO) s).getChildren().stream().filter(t -> t instanceof IsaacQuestionBaseDTO).count())
-                                        .reduce(0L, Long::sum);
-                                for (long i = 0L; i < questionCount; ++i) {
-                                    questionResults.add(""); // We should probably write something here to make debugging easier...
+                            QuizFeedbackDTO feedback = userFeedback.get().getFeedback();
+                            if (feedback != null) {
+                                QuizFeedbackDTO.Mark overallMark = feedback.getOverallMark();
+                                if (overallMark != null) {
+                                    // Add an apostrophe to the beginning of the score, so that the fraction isn't
+                                    // interpreted as a date in excel
+                                    quizTotals.add(String.format("'%d/%d", overallMark.correct, overallMark.correct + overallMark.incorrect + overallMark.notAttempted));
+                                } else {
+                                    quizTotals.add("");
                                 }
                             } else {
-                                for (String id : questionIds) {
-                                    QuizFeedbackDTO.Mark m = questionMarksByQuestionId.get(id);
-                                    if (m == null) {
+                                // The user has revoked access to their data
+                                quizTotals.add("REVOKED");
+                            }
+                            if (feedback != null) {
+                                Map<String, QuizFeedbackDTO.Mark> questionMarksByQuestionId = userFeedback.get().getFeedback().getQuestionMarks();
+                                if (questionMarksByQuestionId == null) {
+                                    long questionCount = quiz.getChildren().stream()
+                                            .filter(c -> c instanceof IsaacQuizSectionDTO)
+                                            .map(s -> ((IsaacQuizSectionDTO) s).getChildren().stream().filter(t -> t instanceof IsaacQuestionBaseDTO).count())
+                                            .reduce(0L, Long::sum);
+                                    for (long i = 0L; i < questionCount; ++i) {
                                         questionResults.add(""); // We should probably write something here to make debugging easier...
-                                        continue;
                                     }
-                                    if (m.notAttempted == 1) {
-                                        questionResults.add("Not Attempted");
-                                    } else if (m.incorrect == 1) {
-                                        questionResults.add("Incorrect");
-                                    } else if (m.correct == 1) {
-                                        questionResults.add("Correct");
-                                    } else {
-                                        questionResults.add(""); // We should probably write something here to make debugging easier...
+                                } else {
+                                    for (String id : questionIds) {
+                                        QuizFeedbackDTO.Mark m = questionMarksByQuestionId.get(id);
+                                        if (m == null) {
+                                            questionResults.add(""); // We should probably write something here to make debugging easier...
+                                            continue;
+                                        }
+                                        if (m.notAttempted == 1) {
+                                            questionResults.add("Not Attempted");
+                                        } else if (m.incorrect == 1) {
+                                            questionResults.add("Incorrect");
+                                        } else if (m.correct == 1) {
+                                            questionResults.add("Correct");
+                                        } else {
+                                            questionResults.add(""); // We should probably write something here to make debugging easier...
+                                        }
                                     }
                                 }
-                            }
-                        } else {
-                            for (String id : questionIds) {
-                                questionResults.add("REVOKED");
+                            } else {
+                                for (String id : questionIds) {
+                                    questionResults.add("REVOKED");
+                                }
                             }
                         }
                     }
-                }
-                row.addAll(quizTotals);
-                row.addAll(questionResults);
+                    row.addAll(quizTotals);
+                    row.addAll(questionResults);
 
-                rows.add(row);
-            }
-
-            headerBuilder.append(String.join(",", quizTitles)).append(",");
-            headerBuilder.append(String.join(",", questionTitles));
-            headerBuilder.append("\n");
-
-            for (List<String> row : rows) {
-                csvWriter.writeNext(row.toArray(new String[0]));
-            }
-            csvWriter.close();
-
-            headerBuilder.append(stringWriter);
-            return Response.ok(headerBuilder.toString())
-                    .header("Content-Disposition", "attachment; filename=group_test_results.csv")
-                    .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+                    csvWriter.writeNext(row.toArray(new String[0]));
+                }
+            });
 
         } catch (NoUserLoggedInException e) {
             return SegueErrorResponse.getNotLoggedInResponse();
@@ -1451,8 +1434,6 @@ public class QuizFacade extends AbstractIsaacFacade {
         } catch (ContentManagerException e) {
             log.error("Content error whilst retrieving a quiz", e);
             return SegueErrorResponse.getResourceNotFoundResponse("This quiz has become unavailable.");
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
@@ -64,6 +64,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -879,19 +880,80 @@ public class EventBookingManager {
      */
     private Long getPlacesAvailable(final IsaacEventPageDTO event, final boolean countOnlyConfirmed)
             throws SegueDatabaseException {
-        boolean isStudentEvent = event.getTags().contains("student");
-        Integer numberOfPlaces = event.getNumberOfPlaces();
-        if (null == numberOfPlaces) {
+        if (null == event.getNumberOfPlaces()) {
             return null;
         }
 
-        // include deleted users' bookings events only if the event is in the past so it doesn't mess with ability for new users to book on future events.
-        boolean includeDeletedUsersInCounts = false;
-        if (event.getDate() != null && event.getDate().before(new Date())) {
-            includeDeletedUsersInCounts = true;
+        Map<BookingStatus, Map<Role, Long>> eventBookingStatusCounts = this.bookingPersistenceManager
+                .getEventBookingStatusCounts(event.getId(), includeDeletedUsersInCounts(event));
+
+        return calculatePlacesAvailable(event, countOnlyConfirmed, eventBookingStatusCounts);
+    }
+
+    /**
+     * Get the places available on each of a list of events, for displaying in event listings.
+     *
+     * This looks up the bookings on all the events at once, and the counts may be a few seconds out of date; use
+     * getPlacesAvailable(IsaacEventPageDTO) to check capacity before booking.
+     *
+     * @param events - the events we care about
+     * @return Map of event id to the number of places available on it, or to null if there is no limit.
+     * @throws SegueDatabaseException - if we cannot contact the database.
+     */
+    public Map<String, Long> getPlacesAvailable(final List<IsaacEventPageDTO> events)
+            throws SegueDatabaseException {
+        List<String> limitedEventIds = new ArrayList<>();
+        Set<String> eventIdsIncludingDeletedUsers = new HashSet<>();
+        for (IsaacEventPageDTO event : events) {
+            if (null != event.getNumberOfPlaces()) {
+                limitedEventIds.add(event.getId());
+                if (includeDeletedUsersInCounts(event)) {
+                    eventIdsIncludingDeletedUsers.add(event.getId());
+                }
+            }
         }
 
-        Map<BookingStatus, Map<Role, Long>> eventBookingStatusCounts = this.bookingPersistenceManager.getEventBookingStatusCounts(event.getId(), includeDeletedUsersInCounts);
+        Map<String, Map<BookingStatus, Map<Role, Long>>> eventBookingStatusCounts = limitedEventIds.isEmpty()
+                ? Collections.emptyMap()
+                : this.bookingPersistenceManager.getEventBookingStatusCounts(limitedEventIds,
+                        eventIdsIncludingDeletedUsers);
+
+        Map<String, Long> placesAvailable = new HashMap<>();
+        for (IsaacEventPageDTO event : events) {
+            if (null == event.getNumberOfPlaces()) {
+                placesAvailable.put(event.getId(), null);
+            } else {
+                placesAvailable.put(event.getId(), calculatePlacesAvailable(event,
+                        EventStatus.WAITING_LIST_ONLY.equals(event.getEventStatus()),
+                        eventBookingStatusCounts.getOrDefault(event.getId(), Collections.emptyMap())));
+            }
+        }
+        return placesAvailable;
+    }
+
+    /**
+     * Include deleted users' bookings only if the event is in the past, so they don't mess with the ability for new
+     * users to book on future events.
+     *
+     * @param event - the event we care about
+     * @return whether to include deleted users' bookings when counting places on the event.
+     */
+    private static boolean includeDeletedUsersInCounts(final IsaacEventPageDTO event) {
+        return event.getDate() != null && event.getDate().before(new Date());
+    }
+
+    /**
+     * Work out the places available on an event from its booking counts.
+     *
+     * @param event                    - the event we care about, which must have a limited number of places.
+     * @param countOnlyConfirmed       - if true only count confirmed bookings (i.e. ignore waiting list ones.
+     * @param eventBookingStatusCounts - the event's bookings, by status and role.
+     * @return the number of places available, or 0 if the event is overbooked.
+     */
+    private static Long calculatePlacesAvailable(final IsaacEventPageDTO event, final boolean countOnlyConfirmed,
+                                                 final Map<BookingStatus, Map<Role, Long>> eventBookingStatusCounts) {
+        boolean isStudentEvent = event.getTags().contains("student");
+        Integer numberOfPlaces = event.getNumberOfPlaces();
 
         long totalBooked = 0L;
         Long studentCount = 0L;
@@ -1006,6 +1068,19 @@ public class EventBookingManager {
         }
     }
 
+    /**
+     * Return the user's booking status on each of a list of events.
+     *
+     * @param eventIds - of interest
+     * @param userId - of interest.
+     * @return Map of event id to booking status, with no entry for events the user has not booked.
+     * @throws SegueDatabaseException - if an error occurs.
+     */
+    public Map<String, BookingStatus> getBookingStatuses(final List<String> eventIds, final Long userId)
+            throws SegueDatabaseException {
+        return this.bookingPersistenceManager.getBookingStatuses(userId, eventIds);
+    }
+
     /**
      * Cancel a booking.
      * <p>
@@ -5,7 +5,7 @@ import com.google.api.client.util.Maps;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.GameboardItem;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
@@ -92,8 +92,9 @@ public class FastTrackManger {
      */
     public final List<GameboardItem> getConceptProgress(
             final GameboardDTO gameboard, final List<FASTTRACK_LEVEL> levelFilters,
-            final String conceptTitle, final Map<String, Map<String,
-            List<QuestionValidationResponse>>> userQuestionAttempts
+            final String conceptTitle,
+            final Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                    userQuestionAttempts
     ) throws ContentManagerException {
         List<ContentDTO> fastTrackAssociatedQuestions =
                 this.getFastTrackConceptQuestions(gameboard.getId(), levelFilters, conceptTitle);
@@ -65,6 +65,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -164,8 +165,8 @@ public class GameManager {
             boardOwnerId = null;
         }
 
-        Map<String, Map<String, List<QuestionValidationResponse>>> usersQuestionAttempts = questionManager
-                .getQuestionAttemptsByUser(boardOwner);
+        Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                usersQuestionAttempts = questionManager.getLightweightQuestionAttemptsByUser(boardOwner);
 
         GameFilter gameFilter = new GameFilter(
                 subjects, fields, topics, levels, concepts, questionCategories, stages, difficulties, examBoards);
@@ -645,25 +646,64 @@ public class GameManager {
         Objects.requireNonNull(users);
         Objects.requireNonNull(gameboard);
 
-        List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>> result = Lists.newArrayList();
+        return this.gatherGameProgressData(users, Collections.singletonList(gameboard)).get(gameboard.getId());
+    }
 
-        List<String> questionPageIds =
-                gameboard.getContents().stream().map(GameboardItem::getId).collect(Collectors.toList());
+    /**
+     * Returns game states for a number of users for several gameboards at once.
+     *
+     * The question attempts for every question page on every gameboard are loaded in a single query, and each question
+     * page is only looked up once no matter how many of the gameboards or users it is relevant to.
+     *
+     * @param users
+     *            - of interest
+     * @param gameboards
+     *            - gameboards containing questions.
+     * @return map of gameboard id to the list of users and their gameboard item results, in the order given.
+     * @throws SegueDatabaseException
+     *             - if there is a problem with the database
+     * @throws ContentManagerException
+     *             - if we can't look up the question page details.
+     */
+    public Map<String, List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>>> gatherGameProgressData(
+            final List<RegisteredUserDTO> users, final Collection<GameboardDTO> gameboards)
+            throws SegueDatabaseException, ContentManagerException {
+        Objects.requireNonNull(users);
+        Objects.requireNonNull(gameboards);
+
+        List<String> questionPageIds = gameboards.stream().flatMap(gameboard -> gameboard.getContents().stream())
+                .map(GameboardItem::getId).distinct().collect(Collectors.toList());
 
         Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
                 questionAttemptsForAllUsersOfInterest =
                 questionManager.getMatchingLightweightQuestionAttempts(users, questionPageIds);
 
-        for (RegisteredUserDTO user : users) {
-            List<GameboardItem> userGameItems = Lists.newArrayList();
+        Map<String, IsaacQuestionPage> questionPages = Maps.newHashMap();
+        Map<String, Collection<Question>> questionPageParts = Maps.newHashMap();
+        for (String questionPageId : questionPageIds) {
+            IsaacQuestionPage questionPage = (IsaacQuestionPage) this.contentManager.getContentDOById(questionPageId);
+            questionPages.put(questionPageId, questionPage);
+            questionPageParts.put(questionPageId, getAllMarkableDOQuestionPartsDFSOrder(questionPage));
+        }
+
+        Map<String, List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>>> result = new LinkedHashMap<>();
+        for (GameboardDTO gameboard : gameboards) {
+            List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>> gameboardResult = Lists.newArrayList();
 
-            for (GameboardItem observerGameItem : gameboard.getContents()) {
-                GameboardItem userGameItem = new GameboardItem(observerGameItem);
-                this.augmentGameItemWithAttemptInformation(userGameItem,
-                        questionAttemptsForAllUsersOfInterest.get(user.getId()));
-                userGameItems.add(userGameItem);
+            for (RegisteredUserDTO user : users) {
+                Map<String, Map<String, List<LightweightQuestionValidationResponse>>> attemptsForUser =
+                        questionAttemptsForAllUsersOfInterest.getOrDefault(user.getId(), Collections.emptyMap());
+                List<GameboardItem> userGameItems = Lists.newArrayList();
+
+                for (GameboardItem observerGameItem : gameboard.getContents()) {
+                    GameboardItem userGameItem = new GameboardItem(observerGameItem);
+                    this.augmentGameItemWithAttemptInformation(userGameItem, questionPages.get(userGameItem.getId()),
+                            questionPageParts.get(userGameItem.getId()), attemptsForUser);
+                    userGameItems.add(userGameItem);
+                }
+                gameboardResult.add(new ImmutablePair<>(user, userGameItems));
             }
-            result.add(new ImmutablePair<>(user, userGameItems));
+            result.put(gameboard.getId(), gameboardResult);
         }
 
         return result;
@@ -843,7 +883,8 @@ public class GameManager {
      */
     public List<GameboardItem> getGameboardItemProgress(
             @NotNull final List<ContentDTO> questions,
-            final Map<String, ? extends Map<String, ? extends List<QuestionValidationResponse>>> userQuestionAttempts,
+            final Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                    userQuestionAttempts,
             @Nullable final GameFilter gameFilter) {
 
         return questions.stream()
@@ -991,7 +1032,8 @@ public class GameManager {
      */
     @Deprecated
     private List<GameboardItem> getSelectedGameboardQuestions(final GameFilter gameFilter,
-            final Map<String, Map<String, List<QuestionValidationResponse>>> usersQuestionAttempts)
+            final Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                    usersQuestionAttempts)
             throws ContentManagerException {
 
         Long seed = new Random().nextLong();
@@ -1131,6 +1173,36 @@ public class GameManager {
                     questionAttemptsFromUser)
             throws ContentManagerException, ResourceNotFoundException {
         Objects.requireNonNull(gameItem, "gameItem cannot be null");
+
+        IsaacQuestionPage questionPage = (IsaacQuestionPage) this.contentManager.getContentDOById(gameItem.getId());
+        // get all question parts in the question page: depends on each question
+        // having an id that starts with the question page id.
+        Collection<Question> listOfQuestionParts = getAllMarkableDOQuestionPartsDFSOrder(questionPage);
+        this.augmentGameItemWithAttemptInformation(gameItem, questionPage, listOfQuestionParts,
+                questionAttemptsFromUser);
+    }
+
+    /**
+     * AugmentGameItemWithAttemptInformation, for a question page which has already been looked up.
+     *
+     * @param gameItem
+     *             - the gameboard item.
+     * @param questionPage
+     *             - the question page the gameboard item refers to, or null if it could not be found.
+     * @param listOfQuestionParts
+     *             - the markable question parts of the question page, in DFS order.
+     * @param questionAttemptsFromUser
+     *             - the user that may or may not have attempted questions in the gameboard.
+     * @throws ResourceNotFoundException
+     *             - if we cannot find the question specified.
+     */
+    private void augmentGameItemWithAttemptInformation(
+            final GameboardItem gameItem, final IsaacQuestionPage questionPage,
+            final Collection<Question> listOfQuestionParts,
+            final Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                    questionAttemptsFromUser)
+            throws ResourceNotFoundException {
+        Objects.requireNonNull(gameItem, "gameItem cannot be null");
         Objects.requireNonNull(questionAttemptsFromUser, "questionAttemptsFromUser cannot be null");
 
         List<QuestionPartState> questionPartStates = Lists.newArrayList();
@@ -1139,10 +1211,6 @@ public class GameManager {
         int questionPartsNotAttempted = 0;
         String questionPageId = gameItem.getId();
 
-        IsaacQuestionPage questionPage = (IsaacQuestionPage) this.contentManager.getContentDOById(questionPageId);
-        // get all question parts in the question page: depends on each question
-        // having an id that starts with the question page id.
-        Collection<Question> listOfQuestionParts = getAllMarkableDOQuestionPartsDFSOrder(questionPage);
         Map<String, ? extends List<? extends LightweightQuestionValidationResponse>> questionAttempts =
                 questionAttemptsFromUser.get(questionPageId);
         if (questionAttempts != null) {
@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.isaac.api.managers;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.PROXY_PATH;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.QUIZ_TYPE;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -24,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import uk.ac.cam.cl.dtg.isaac.dto.IsaacQuizDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.content.ContentSummaryDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ImageDTO;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
@@ -36,6 +38,8 @@ import com.google.inject.Inject;
  */
 public class URIManager {
     private static final Logger log = LoggerFactory.getLogger(URIManager.class);
+    private static final String IMAGE_TYPE = "image";
+    private static final String FIGURE_TYPE = "figure";
     private final String proxyPath;
 
     /**
@@ -58,25 +62,54 @@ public class URIManager {
      *         information required.
      */
     public String generateApiUrl(final ContentDTO content) {
-        String resourceUrl = null;
+        String base;
+        if (content instanceof IsaacQuizDTO) {
+            base = "quiz";
+        } else if (content instanceof ImageDTO) {
+            base = "images";
+        } else {
+            base = getPageApiBase(content.getType());
+        }
+        return generateApiUrl(base, content.getId());
+    }
+
+    /**
+     * Generate a URI that will enable us to find the object a content summary describes again.
+     *
+     * @param summary
+     *            the summary of the content object of interest
+     * @return null if we are unable to generate the URL or a string that represents the url combined with any proxypath
+     *         information required.
+     */
+    public String generateApiUrl(final ContentSummaryDTO summary) {
+        // A summary has no content class to go on, so the type must be used instead:
+        String base;
+        if (QUIZ_TYPE.equals(summary.getType())) {
+            base = "quiz";
+        } else if (IMAGE_TYPE.equals(summary.getType()) || FIGURE_TYPE.equals(summary.getType())) {
+            base = "images";
+        } else {
+            base = getPageApiBase(summary.getType());
+        }
+        return generateApiUrl(base, summary.getId());
+    }
+
+    private static String getPageApiBase(final String type) {
+        if (type.toLowerCase().contains("question")) {
+            return "pages/questions";
+        } else if (type.toLowerCase().contains("concept")) {
+            return "pages/concepts";
+        } else {
+            return "pages";
+        }
+    }
+
+    private String generateApiUrl(final String base, final String id) {
         try {
-            String base;
-            if (content instanceof IsaacQuizDTO) {
-                base = "quiz";
-            } else if (content instanceof ImageDTO) {
-                base = "images";
-            } else if (content.getType().toLowerCase().contains("question")) {
-                base = "pages/questions";
-            } else if (content.getType().toLowerCase().contains("concept")) {
-                base = "pages/concepts";
-            } else {
-                base = "pages";
-            }
-            resourceUrl = proxyPath + "/api/" + base + "/" + URLEncoder.encode(content.getId(), "UTF-8");
+            return proxyPath + "/api/" + base + "/" + URLEncoder.encode(id, "UTF-8");
         } catch (UnsupportedEncodingException e) {
-            log.error("Url generation for resource id " + content.getId() + " failed. ", e);
+            log.error("Url generation for resource id " + id + " failed. ", e);
+            return null;
         }
-
-        return resourceUrl;
     }
-}
\ No newline at end of file
+}
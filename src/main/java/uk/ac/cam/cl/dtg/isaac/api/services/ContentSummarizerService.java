@@ -88,6 +88,20 @@ public class ContentSummarizerService {
         return contentSummaryResults;
     }
 
+    /**
+     * Add URLs to content summaries which were built directly from search results, rather than from ContentDTOs.
+     *
+     * @param summaries
+     *            - the content summaries, which are modified in place.
+     * @return the same content summaries.
+     */
+    public ResultsWrapper<ContentSummaryDTO> populateContentSummaryUrls(final ResultsWrapper<ContentSummaryDTO> summaries) {
+        for (ContentSummaryDTO summary : summaries.getResults()) {
+            summary.setUrl(uriManager.generateApiUrl(summary));
+        }
+        return summaries;
+    }
+
     /**
      * Helper method to simplify a ResultsWrapper of ContentDTO objects directly to ContentSummaryDTOs
      *
@@ -2,6 +2,8 @@ package uk.ac.cam.cl.dtg.isaac.dao;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Lists;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,8 +27,12 @@ import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * EventBookingPersistenceManager.
@@ -34,11 +40,14 @@ import java.util.Map;
  */
 public class EventBookingPersistenceManager {
     private static final Logger log = LoggerFactory.getLogger(EventBookingPersistenceManager.class);
+    private static final int BOOKING_STATUS_COUNTS_CACHE_SECONDS = 10;
 
     private final PostgresSqlDb database;
     private final EventBookings dao;
     private final UserAccountManager userManager;
     private final GitContentManager contentManager;
+    // Booking counts for event listings, keyed by event id and whether deleted users were counted:
+    private final Cache<String, Map<BookingStatus, Map<Role, Long>>> bookingStatusCountsCache;
 
     /**
      * EventBookingPersistenceManager.
@@ -59,6 +68,8 @@ public class EventBookingPersistenceManager {
         this.userManager = userManager;
         this.contentManager = contentManager;
         this.dao = new PgEventBookings(database, objectMapper);
+        this.bookingStatusCountsCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(BOOKING_STATUS_COUNTS_CACHE_SECONDS, TimeUnit.SECONDS).maximumSize(1000).build();
     }
 
     /**
@@ -124,6 +135,7 @@ public class EventBookingPersistenceManager {
     public DetailedEventBookingDTO updateBookingStatus(final ITransaction transaction, final String eventId, final Long userId, final Long reservingUserId,
                                                        final BookingStatus bookingStatus, final Map<String, String> additionalEventInformation) throws SegueDatabaseException {
         dao.updateStatus(transaction, eventId, userId, reservingUserId, bookingStatus, additionalEventInformation);
+        this.invalidateCachedBookingStatusCounts(eventId);
         return this.getBookingByEventIdAndUserId(eventId, userId);
     }
 
@@ -167,6 +179,60 @@ public class EventBookingPersistenceManager {
         return dao.getEventBookingStatusCounts(eventId, includeDeletedUsersInCounts);
     }
 
+    /**
+     * Get the booking counts for many events at once, for displaying availability in event listings.
+     *
+     * The counts may be up to a few seconds out of date if they were changed by another server, so they must not be
+     * used to decide whether a booking can be made; use getEventBookingStatusCounts(String, boolean) for that.
+     *
+     * @param eventIds - the events of interest.
+     * @param eventIdsIncludingDeletedUsers - the events for which deleted users should be included in the counts.
+     * @return Map of event id to booking status, role to count, with an entry for every event requested.
+     * @throws SegueDatabaseException - if something is wrong with the database
+     */
+    public Map<String, Map<BookingStatus, Map<Role, Long>>> getEventBookingStatusCounts(
+            final List<String> eventIds, final Set<String> eventIdsIncludingDeletedUsers)
+            throws SegueDatabaseException {
+        Map<String, Map<BookingStatus, Map<Role, Long>>> counts = new HashMap<>();
+        List<String> uncachedEventIds = Lists.newArrayList();
+        for (String eventId : eventIds) {
+            Map<BookingStatus, Map<Role, Long>> cachedCounts = bookingStatusCountsCache.getIfPresent(
+                    bookingStatusCountsCacheKey(eventId, eventIdsIncludingDeletedUsers.contains(eventId)));
+            if (null != cachedCounts) {
+                counts.put(eventId, cachedCounts);
+            } else {
+                uncachedEventIds.add(eventId);
+            }
+        }
+
+        if (!uncachedEventIds.isEmpty()) {
+            Map<String, Map<BookingStatus, Map<Role, Long>>> uncachedCounts =
+                    dao.getEventBookingStatusCounts(uncachedEventIds, eventIdsIncludingDeletedUsers);
+            for (String eventId : uncachedEventIds) {
+                Map<BookingStatus, Map<Role, Long>> eventCounts =
+                        uncachedCounts.getOrDefault(eventId, Collections.emptyMap());
+                bookingStatusCountsCache.put(
+                        bookingStatusCountsCacheKey(eventId, eventIdsIncludingDeletedUsers.contains(eventId)),
+                        eventCounts);
+                counts.put(eventId, eventCounts);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Get a user's booking status on each of a list of events.
+     *
+     * @param userId - user of interest.
+     * @param eventIds - the events of interest.
+     * @return Map of event id to booking status, with no entry for events the user has no booking for.
+     * @throws SegueDatabaseException - if something is wrong with the database
+     */
+    public Map<String, BookingStatus> getBookingStatuses(final Long userId, final List<String> eventIds)
+            throws SegueDatabaseException {
+        return dao.findBookingStatusesByUserAndEvents(userId, eventIds);
+    }
+
     /**
      * Get event bookings by an event id.
      * TODO - if an event disappears (either by being unpublished or being deleted, then this method will not pull back the event.
@@ -229,7 +295,10 @@ public class EventBookingPersistenceManager {
      */
     public EventBookingDTO createBooking(final ITransaction transaction, final String eventId, final Long userId, final Long reservingId, final BookingStatus status,
                                          final Map<String, String> additionalInformation) throws SegueDatabaseException {
-        return this.convertToDTO(dao.add(transaction, eventId, userId, reservingId, status, additionalInformation));
+        EventBookingDTO booking = this.convertToDTO(
+                dao.add(transaction, eventId, userId, reservingId, status, additionalInformation));
+        this.invalidateCachedBookingStatusCounts(eventId);
+        return booking;
     }
 
     /**
@@ -243,7 +312,10 @@ public class EventBookingPersistenceManager {
      */
     public EventBookingDTO createBooking(final ITransaction transaction, final String eventId, final Long userId, final BookingStatus status,
                                          final Map<String, String> additionalInformation) throws SegueDatabaseException {
-        return this.convertToDTO(dao.add(transaction, eventId, userId, status, additionalInformation));
+        EventBookingDTO booking = this.convertToDTO(
+                dao.add(transaction, eventId, userId, status, additionalInformation));
+        this.invalidateCachedBookingStatusCounts(eventId);
+        return booking;
     }
 
     /**
@@ -280,6 +352,7 @@ public class EventBookingPersistenceManager {
      */
     public void deleteBooking(final ITransaction transaction, final String eventId, final Long userId) throws SegueDatabaseException {
         dao.delete(transaction, eventId, userId);
+        this.invalidateCachedBookingStatusCounts(eventId);
     }
 
     /**
@@ -410,4 +483,18 @@ public class EventBookingPersistenceManager {
 
         return result;
     }
+
+    /**
+     * Forget the cached booking counts for an event after its bookings change on this server.
+     *
+     * @param eventId - the event whose bookings changed.
+     */
+    private void invalidateCachedBookingStatusCounts(final String eventId) {
+        bookingStatusCountsCache.invalidate(bookingStatusCountsCacheKey(eventId, true));
+        bookingStatusCountsCache.invalidate(bookingStatusCountsCacheKey(eventId, false));
+    }
+
+    private static String bookingStatusCountsCacheKey(final String eventId, final boolean includeDeletedUsers) {
+        return eventId + (includeDeletedUsers ? "@withDeleted" : "");
+    }
 }
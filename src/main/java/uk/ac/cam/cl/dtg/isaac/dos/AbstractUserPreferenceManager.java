@@ -18,6 +18,7 @@ package uk.ac.cam.cl.dtg.isaac.dos;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  *  Abstract class for managing general user preferences.
@@ -47,6 +48,18 @@ public abstract class AbstractUserPreferenceManager {
     public abstract List<UserPreference> getUserPreferences(final String preferenceType, final long userId)
             throws SegueDatabaseException;
 
+    /**
+     * Get a specific preference for many users at once.
+     * @param preferenceType - the type of preferences interested in
+     * @param preferenceName - the name of the specific preference
+     * @param userIds - the IDs of the users interested in
+     * @return a map from user ID to UserPreference object, with no entry for users without the preference
+     * @throws SegueDatabaseException - if a database error occurs
+     */
+    public abstract Map<Long, UserPreference> getUserPreferences(final String preferenceType,
+                                                                 final String preferenceName, final List<Long> userIds)
+            throws SegueDatabaseException;
+
     /**
      * Get all preferences for a specific user.
      * @param userId - the ID of the user interested in
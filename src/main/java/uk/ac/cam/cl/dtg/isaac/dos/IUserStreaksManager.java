@@ -45,6 +45,19 @@ public interface IUserStreaksManager {
      */
     int getLongestWeeklyStreak(RegisteredUserDTO user);
 
+    /**
+     * This method will update the stored streak record of a registered user after a correct question attempt.
+     *
+     * Only the first correct attempt at each question part counts towards a streak; the record is left unchanged
+     * for any later correct attempts.
+     *
+     * @param user
+     *            - the registered user
+     * @param questionId
+     *            - the id of the question part answered correctly
+     */
+    void recordCorrectQuestionAttempt(RegisteredUserDTO user, String questionId);
+
     /**
      * This method will notify a registered user that their streak has changed.
      *
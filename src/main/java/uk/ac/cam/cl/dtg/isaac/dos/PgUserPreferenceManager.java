@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.isaac.dos;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -28,6 +29,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  *  A Postgres specific User Preference Manager.
@@ -104,6 +106,39 @@ public class PgUserPreferenceManager extends AbstractUserPreferenceManager {
         }
     }
 
+    @Override
+    public Map<Long, UserPreference> getUserPreferences(String preferenceType, String preferenceName,
+                                                        List<Long> userIds) throws SegueDatabaseException {
+        Validate.notBlank(preferenceType);
+        Validate.notBlank(preferenceName);
+
+        Map<Long, UserPreference> userPreferences = Maps.newHashMap();
+        if (userIds.isEmpty()) {
+            return userPreferences;
+        }
+
+        String query = "SELECT * FROM user_preferences"
+                + " WHERE preference_type=? AND preference_name=? AND user_id = ANY(?);";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setString(1, preferenceType);
+            pst.setString(2, preferenceName);
+            pst.setArray(3, conn.createArrayOf("bigint", userIds.toArray()));
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    UserPreference pref = userPreferenceFromResultSet(results);
+                    userPreferences.put(pref.getUserId(), pref);
+                }
+
+                return userPreferences;
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     @Override
     public List<UserPreference> getAllUserPreferences(long userId) throws SegueDatabaseException {
 
@@ -7,7 +7,7 @@ import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.ac.cam.cl.dtg.segue.api.userAlerts.UserAlertsWebSocket;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.IUserAlertBus;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 
@@ -25,6 +25,7 @@ public class PgUserStreakManager implements IUserStreaksManager {
     private static final Logger log = LoggerFactory.getLogger(PgUserStreakManager.class);
 
     private final PostgresSqlDb database;
+    private final IUserAlertBus alertBus;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -32,108 +33,51 @@ public class PgUserStreakManager implements IUserStreaksManager {
      *
      * @param database
      *            client for postgres.
+     * @param alertBus
+     *            to deliver streak changes to the user's open websockets.
      */
     @Inject
-    public PgUserStreakManager(final PostgresSqlDb database) {
+    public PgUserStreakManager(final PostgresSqlDb database, final IUserAlertBus alertBus) {
         this.database = database;
+        this.alertBus = alertBus;
     }
 
 
     @Override
     public Map<String, Object> getCurrentStreakRecord(final RegisteredUserDTO user) {
-
-        Map<String, Object> streakRecord = Maps.newHashMap();
-        streakRecord.put("currentActivity", 0);
-        streakRecord.put("currentStreak", 0);
-
-        String query = "SELECT * FROM user_streaks_current_progress(?) LEFT JOIN user_streaks(?)" +
-                " ON user_streaks_current_progress.currentdate - user_streaks.enddate <= 1" +
-                " AND user_streaks.startdate <= user_streaks_current_progress.currentdate";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
-        ) {
-            pst.setLong(1, user.getId());
-            pst.setLong(2, user.getId());
-
-            try (ResultSet results = pst.executeQuery()) {
-                if (results.next()) {
-                    streakRecord.put("currentActivity", results.getInt("currentprogress"));
-                    streakRecord.put("currentStreak", results.getInt("streaklength"));
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return streakRecord;
+        StreakRecord record = this.getStreakRecord(user);
+        return this.toCurrentStreakMap(record.currentProgress, record.currentStreak);
     }
 
     @Override
     public int getLongestStreak(final RegisteredUserDTO user) {
-
-        String query = "SELECT * FROM user_streaks(?) ORDER BY streaklength DESC LIMIT 1";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
-        ) {
-            pst.setLong(1, user.getId());
-
-            try (ResultSet results = pst.executeQuery()) {
-                if (results.next()) {
-                    return results.getInt("streaklength");
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-
-        return 0;
+        return this.getStreakRecord(user).longestStreak;
     }
 
     @Override
     public Map<String, Object> getCurrentWeeklyStreakRecord(final RegisteredUserDTO user) {
-
-        Map<String, Object> streakRecord = Maps.newHashMap();
-        streakRecord.put("currentActivity", 0);
-        streakRecord.put("currentStreak", 0);
-
-        String query = "SELECT * FROM user_streaks_weekly_current_progress(?) LEFT JOIN user_streaks_weekly(?)" +
-                " ON user_streaks_weekly_current_progress.currentweek - user_streaks_weekly.enddate <= 7" +
-                " AND user_streaks_weekly.startdate <= user_streaks_weekly_current_progress.currentweek";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
-        ) {
-            pst.setLong(1, user.getId());
-            pst.setLong(2, user.getId());
-
-            try (ResultSet results = pst.executeQuery()) {
-                if (results.next()) {
-                    streakRecord.put("currentActivity", results.getInt("currentprogress"));
-                    streakRecord.put("currentStreak", results.getInt("streaklength"));
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return streakRecord;
+        StreakRecord record = this.getStreakRecord(user);
+        return this.toCurrentStreakMap(record.currentWeeklyProgress, record.currentWeeklyStreak);
     }
 
     @Override
     public int getLongestWeeklyStreak(final RegisteredUserDTO user) {
+        return this.getStreakRecord(user).longestWeeklyStreak;
+    }
 
-        String query = "SELECT * FROM user_streaks_weekly(?) ORDER BY streaklength DESC LIMIT 1";
+    @Override
+    public void recordCorrectQuestionAttempt(final RegisteredUserDTO user, final String questionId) {
+        String query = "SELECT user_streak_record_correct_attempt(?, ?)";
         try (Connection conn = database.getDatabaseConnection();
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setLong(1, user.getId());
+            pst.setString(2, questionId);
 
-            try (ResultSet results = pst.executeQuery()) {
-                if (results.next()) {
-                    return results.getInt("streaklength");
-                }
-            }
+            pst.executeQuery().close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error(String.format("Unable to update streak record for user %s", user.getId()), e);
         }
-        return 0;
     }
 
     @Override
@@ -142,15 +86,80 @@ public class PgUserStreakManager implements IUserStreaksManager {
         // It is better than in the already bloated facade method, however!
         long userId = user.getId();
         try {
+            StreakRecord record = this.getStreakRecord(user);
             IUserAlert alert = new PgUserAlert(null, userId,
-                    objectMapper.writeValueAsString(ImmutableMap.of("dailyStreakRecord", this.getCurrentStreakRecord(user), "weeklyStreakRecord", this.getCurrentWeeklyStreakRecord(user))),
+                    objectMapper.writeValueAsString(ImmutableMap.of(
+                            "dailyStreakRecord", this.toCurrentStreakMap(record.currentProgress, record.currentStreak),
+                            "weeklyStreakRecord", this.toCurrentStreakMap(record.currentWeeklyProgress,
+                                    record.currentWeeklyStreak))),
                     "progress", new Timestamp(System.currentTimeMillis()), null, null, null);
 
-            UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+            alertBus.publish(userId, alert);
         } catch (JsonProcessingException e) {
             log.error(String.format("Unable to serialize user streak change JSON for user %s: %s",
                     user.getId(), e.getMessage()));
         }
     }
 
+    /**
+     * Read the stored streak record for a user, which is built from their question attempts if it does not yet exist.
+     *
+     * @param user
+     *            - the registered user
+     * @return the streak record, or an empty record if it could not be read.
+     */
+    private StreakRecord getStreakRecord(final RegisteredUserDTO user) {
+        String query = "SELECT * FROM user_streak_record(?)";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, user.getId());
+
+            try (ResultSet results = pst.executeQuery()) {
+                if (results.next()) {
+                    return new StreakRecord(results.getInt("currentprogress"), results.getInt("currentstreak"),
+                            results.getInt("longeststreak"), results.getInt("currentweeklyprogress"),
+                            results.getInt("currentweeklystreak"), results.getInt("longestweeklystreak"));
+                }
+            }
+        } catch (SQLException e) {
+            log.error(String.format("Unable to read streak record for user %s", user.getId()), e);
+        }
+        return new StreakRecord(0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param currentActivity - progress towards the current day or week's target.
+     * @param currentStreak - the length of the current streak.
+     * @return the map expected by the frontend for a daily or weekly streak record.
+     */
+    private Map<String, Object> toCurrentStreakMap(final int currentActivity, final int currentStreak) {
+        Map<String, Object> streakRecord = Maps.newHashMap();
+        streakRecord.put("currentActivity", currentActivity);
+        streakRecord.put("currentStreak", currentStreak);
+        return streakRecord;
+    }
+
+    /**
+     * A user's daily and weekly streak state, as of today.
+     */
+    private static final class StreakRecord {
+        private final int currentProgress;
+        private final int currentStreak;
+        private final int longestStreak;
+        private final int currentWeeklyProgress;
+        private final int currentWeeklyStreak;
+        private final int longestWeeklyStreak;
+
+        private StreakRecord(final int currentProgress, final int currentStreak, final int longestStreak,
+                             final int currentWeeklyProgress, final int currentWeeklyStreak,
+                             final int longestWeeklyStreak) {
+            this.currentProgress = currentProgress;
+            this.currentStreak = currentStreak;
+            this.longestStreak = longestStreak;
+            this.currentWeeklyProgress = currentWeeklyProgress;
+            this.currentWeeklyStreak = currentWeeklyStreak;
+            this.longestWeeklyStreak = longestWeeklyStreak;
+        }
+    }
 }
@@ -20,7 +20,9 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 
 import jakarta.annotation.Nullable;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Representation of a collection of event bookings.
@@ -129,6 +131,29 @@ public interface EventBookings {
      */
     Map<BookingStatus, Map<Role, Long>> getEventBookingStatusCounts(String eventId, boolean includeDeletedUsersInCounts) throws SegueDatabaseException;
 
+    /**
+     * For many events at once, provide a count of the current bookings and their statuses.
+     *
+     * @param eventIds - the event ids we care about
+     * @param eventIdsIncludingDeletedUsers - the events for which deleted users should be included in the numbers.
+     * @return Map of event id to booking status to role to number of bookings; events without bookings are omitted.
+     * @throws SegueDatabaseException - if there is a problem accessing the db
+     */
+    Map<String, Map<BookingStatus, Map<Role, Long>>> getEventBookingStatusCounts(List<String> eventIds,
+                                                                                 Set<String> eventIdsIncludingDeletedUsers)
+            throws SegueDatabaseException;
+
+    /**
+     * Find the status of a user's bookings on many events at once.
+     *
+     * @param userId - the user of interest.
+     * @param eventIds - the events of interest.
+     * @return Map of event id to booking status, with no entry for events the user has no booking on.
+     * @throws SegueDatabaseException - if there is a problem accessing the db
+     */
+    Map<String, BookingStatus> findBookingStatusesByUserAndEvents(Long userId, List<String> eventIds)
+            throws SegueDatabaseException;
+
     /**
      * Find all bookings for a given event with a given status.
      *
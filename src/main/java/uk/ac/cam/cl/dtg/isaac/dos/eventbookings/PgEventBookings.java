@@ -40,6 +40,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.zip.CRC32;
 
 /**
@@ -487,6 +488,73 @@ public class PgEventBookings implements EventBookings {
         }
     }
 
+    @Override
+    public Map<String, Map<BookingStatus, Map<Role, Long>>> getEventBookingStatusCounts(
+            final List<String> eventIds, final Set<String> eventIdsIncludingDeletedUsers) throws SegueDatabaseException {
+        Map<String, Map<BookingStatus, Map<Role, Long>>> returnResult = Maps.newHashMap();
+        if (eventIds.isEmpty()) {
+            return returnResult;
+        }
+
+        // As above, this joins the users table mainly to allow (per event) inclusion of deleted users in the counts.
+        String query = "SELECT event_bookings.event_id, event_bookings.status, users.role, COUNT(event_bookings.id)"
+                + " FROM event_bookings INNER JOIN users ON event_bookings.user_id = users.id"
+                + " WHERE event_bookings.event_id = ANY(?)"
+                + " AND (users.deleted = 'f' OR event_bookings.event_id = ANY(?))"
+                + " GROUP BY event_bookings.event_id, event_bookings.status, users.role;";
+
+        try (Connection conn = ds.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setArray(1, conn.createArrayOf("text", eventIds.toArray()));
+            pst.setArray(2, conn.createArrayOf("text", eventIdsIncludingDeletedUsers.toArray()));
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    String eventId = results.getString("event_id");
+                    BookingStatus bookingStatus = BookingStatus.valueOf(results.getString("status"));
+                    Role role = Role.valueOf(results.getString("role"));
+                    Long count = results.getLong("count");
+
+                    returnResult.computeIfAbsent(eventId, k -> Maps.newHashMap())
+                            .computeIfAbsent(bookingStatus, k -> Maps.newHashMap())
+                            .put(role, count);
+                }
+                return returnResult;
+            }
+        } catch (SQLException e) {
+            log.error("DB error ", e);
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
+    @Override
+    public Map<String, BookingStatus> findBookingStatusesByUserAndEvents(final Long userId, final List<String> eventIds)
+            throws SegueDatabaseException {
+        Map<String, BookingStatus> returnResult = Maps.newHashMap();
+        if (eventIds.isEmpty()) {
+            return returnResult;
+        }
+
+        String query = "SELECT event_id, status FROM event_bookings WHERE user_id = ? AND event_id = ANY(?)";
+        try (Connection conn = ds.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
+            pst.setArray(2, conn.createArrayOf("text", eventIds.toArray()));
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    returnResult.put(results.getString("event_id"), BookingStatus.valueOf(results.getString("status")));
+                }
+                return returnResult;
+            }
+        } catch (SQLException e) {
+            log.error("DB error ", e);
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     /**
      * Find all bookings for a given event with a given status.
      * <p>
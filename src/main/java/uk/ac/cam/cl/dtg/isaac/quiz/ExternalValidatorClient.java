@@ -0,0 +1,166 @@
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.ac.cam.cl.dtg.util.OutboundHttpClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Client for the external checkers used to mark symbolic questions.
+ *
+ * Requests are sent through the shared OutboundHttpClient, so that connections to the checkers are kept alive between
+ * calls and the number of requests in flight to any one checker is limited. Requests may be sent asynchronously, so
+ * that all the choices of a question can be checked at once.
+ */
+public class ExternalValidatorClient {
+    public static final int DEFAULT_REQUEST_TIMEOUT_MILLISECONDS = OutboundHttpClient.DEFAULT_REQUEST_TIMEOUT_MILLISECONDS;
+
+    private static final String DESTINATION = "external_validator";
+    private static final TypeReference<HashMap<String, Object>> JSON_OBJECT_TYPE = new TypeReference<>() {};
+
+    private final OutboundHttpClient httpClient;
+    private final ObjectMapper mapper;
+    private final Duration requestTimeout;
+
+    /**
+     * Create a client for the external validators.
+     *
+     * @param httpClient - the shared client to send requests through.
+     * @param requestTimeoutMilliseconds - how long to wait for a checker to respond to a request.
+     */
+    public ExternalValidatorClient(final OutboundHttpClient httpClient, final int requestTimeoutMilliseconds) {
+        this.httpClient = httpClient;
+        this.mapper = new ObjectMapper();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMilliseconds);
+    }
+
+    /**
+     * Create a client for the external validators with its own underlying HTTP client.
+     *
+     * @param connectTimeoutMilliseconds - how long to wait when opening a connection to a checker.
+     * @param requestTimeoutMilliseconds - how long to wait for a checker to respond to a request.
+     * @param maxConcurrentRequestsPerEndpoint - the maximum number of requests in flight to any one checker.
+     */
+    public ExternalValidatorClient(final int connectTimeoutMilliseconds, final int requestTimeoutMilliseconds,
+                                   final int maxConcurrentRequestsPerEndpoint) {
+        this(new OutboundHttpClient(connectTimeoutMilliseconds, requestTimeoutMilliseconds,
+                maxConcurrentRequestsPerEndpoint), requestTimeoutMilliseconds);
+    }
+
+    /**
+     * Make a JSON HTTP POST request to an external validator, and provide the response JSON as a HashMap.
+     *
+     * @param externalValidatorUrl - the URL of an external validator to POST to.
+     * @param requestBody - the JSON request body as a Map
+     * @return the response JSON, as a HashMap
+     * @throws IOException - on failure to communicate with the external validator
+     */
+    public HashMap<String, Object> post(final String externalValidatorUrl, final Map<String, String> requestBody)
+            throws IOException {
+        return awaitResponse(postAsync(externalValidatorUrl, requestBody));
+    }
+
+    /**
+     * Start a JSON HTTP POST request to an external validator, without waiting for the response.
+     *
+     * If the maximum number of requests are already in flight to this validator, this waits only briefly for one to
+     * finish before failing.
+     *
+     * @param externalValidatorUrl - the URL of an external validator to POST to.
+     * @param requestBody - the JSON request body as a Map
+     * @return a future for the response JSON, as a HashMap; cancelling it abandons the request.
+     * @throws IOException - on failure to start the request
+     */
+    public CompletableFuture<HashMap<String, Object>> postAsync(final String externalValidatorUrl,
+                                                                final Map<String, String> requestBody)
+            throws IOException {
+        // The checkers only speak HTTP/1.1, so don't waste a round trip attempting to upgrade every connection:
+        HttpRequest httpRequest = httpClient.newRequest(URI.create(externalValidatorUrl))
+                .version(HttpClient.Version.HTTP_1_1)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(requestBody)))
+                .build();
+
+        CompletableFuture<HttpResponse<String>> pendingRequest = httpClient.sendAsync(DESTINATION, httpRequest);
+        CompletableFuture<HashMap<String, Object>> pendingResponse = pendingRequest.thenApply(response -> {
+            try {
+                return mapper.readValue(response.body(), JSON_OBJECT_TYPE);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        // Cancelling a dependent future does not cancel the one it depends on, so pass cancellation on to the request:
+        pendingResponse.whenComplete((response, error) -> {
+            if (pendingResponse.isCancelled()) {
+                pendingRequest.cancel(true);
+            }
+        });
+        return pendingResponse;
+    }
+
+    /**
+     * Start a JSON HTTP POST request to an external validator once an earlier request has finished.
+     *
+     * This lets a caller whose own requests hold all the permits it can get for a validator send further requests as
+     * those permits are released, rather than being rejected.
+     *
+     * @param previousRequest - the request to wait for; whether it succeeds makes no difference.
+     * @param externalValidatorUrl - the URL of an external validator to POST to.
+     * @param requestBody - the JSON request body as a Map
+     * @return a future for the response JSON, as a HashMap; cancelling it abandons the request.
+     */
+    public CompletableFuture<HashMap<String, Object>> postAsyncAfter(final CompletableFuture<?> previousRequest,
+                                                                     final String externalValidatorUrl,
+                                                                     final Map<String, String> requestBody) {
+        CompletableFuture<HashMap<String, Object>> pendingResponse = new CompletableFuture<>();
+        // Start the request on another thread, since the earlier request only releases its permit after this runs:
+        previousRequest.whenCompleteAsync((ignoredResponse, ignoredError) -> {
+            if (pendingResponse.isDone()) {
+                // Cancelled before it started.
+                return;
+            }
+            try {
+                CompletableFuture<HashMap<String, Object>> startedResponse =
+                        postAsync(externalValidatorUrl, requestBody);
+                startedResponse.whenComplete((response, error) -> {
+                    if (null != error) {
+                        pendingResponse.completeExceptionally(error);
+                    } else {
+                        pendingResponse.complete(response);
+                    }
+                });
+                pendingResponse.whenComplete((response, error) -> {
+                    if (pendingResponse.isCancelled()) {
+                        startedResponse.cancel(true);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                pendingResponse.completeExceptionally(e);
+            }
+        });
+        return pendingResponse;
+    }
+
+    /**
+     * Wait for the response to a request started with postAsync.
+     *
+     * @param pendingResponse - the future returned by postAsync.
+     * @return the response JSON, as a HashMap
+     * @throws IOException - on failure to communicate with the external validator
+     */
+    public static HashMap<String, Object> awaitResponse(final CompletableFuture<HashMap<String, Object>> pendingResponse)
+            throws IOException {
+        return OutboundHttpClient.await(pendingResponse);
+    }
+}
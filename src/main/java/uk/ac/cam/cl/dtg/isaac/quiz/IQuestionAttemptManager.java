@@ -34,6 +34,19 @@ public interface IQuestionAttemptManager {
     void registerQuestionAttempt(final Long userId, final String questionPageId, final String fullQuestionId,
             final QuestionValidationResponse questionAttempt) throws SegueDatabaseException;
 
+    /**
+     * Record several question attempts by a user at once, in a single transaction.
+     *
+     * @param userId
+     *            - the id of the user who made the attempts.
+     * @param questionAttempts
+     *            - map of question page id --> full question id --> list of attempts to record.
+     * @throws SegueDatabaseException
+     *             - if there is an error during the database operation.
+     */
+    void registerQuestionAttempts(Long userId, Map<String, Map<String, List<QuestionValidationResponse>>> questionAttempts)
+            throws SegueDatabaseException;
+
     /**
      * Get a users question attempts.
      * 
@@ -46,6 +59,21 @@ public interface IQuestionAttemptManager {
     Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId)
             throws SegueDatabaseException;
 
+    /**
+     * Get a users question attempts, without the stored answers.
+     *
+     * This is much cheaper than {@link #getQuestionAttempts(Long)} for users with many attempts, and should be
+     * preferred whenever only the correctness and date of the attempts are needed.
+     *
+     * @param userId
+     *            - the id of the user to search for.
+     * @return the lightweight questionAttempts map or an empty map if the user has not yet registered any attempts.
+     * @throws SegueDatabaseException
+     *             - If there is a database error.
+     */
+    Map<String, Map<String, List<LightweightQuestionValidationResponse>>> getLightweightQuestionAttempts(Long userId)
+            throws SegueDatabaseException;
+
     /**
      * Get a users question attempts on a specific question page.
      *
@@ -76,6 +104,42 @@ public interface IQuestionAttemptManager {
     Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
         getMatchingLightweightQuestionAttempts(List<Long> userIds, List<String> questionPage)
             throws SegueDatabaseException;
+
+    /**
+     * Stream whether each of a group of users has answered each question part on some question pages correctly,
+     * without loading all of their attempts into memory at once.
+     *
+     * The handler is called once for every question part a user has attempted; unattempted parts are not reported.
+     *
+     * @param userIds
+     *            - list of user ids to look up results for.
+     * @param questionPageIds
+     *            - list of question page ids (prefixes to question ids) that we should look up.
+     * @param handler
+     *            - to receive each outcome as it is read from the database.
+     * @throws SegueDatabaseException
+     *             - if a database error occurrs
+     */
+    void streamQuestionPartOutcomes(List<Long> userIds, List<String> questionPageIds,
+                                    QuestionPartOutcomeHandler handler) throws SegueDatabaseException;
+
+    /**
+     * Receives the outcomes streamed by {@link #streamQuestionPartOutcomes(List, List, QuestionPartOutcomeHandler)}.
+     */
+    @FunctionalInterface
+    interface QuestionPartOutcomeHandler {
+        /**
+         * Handle the outcome of a user's attempts at a single question part.
+         *
+         * @param userId
+         *            - the user who attempted the question part.
+         * @param questionId
+         *            - the id of the question part.
+         * @param correct
+         *            - whether any of the user's attempts were correct.
+         */
+        void handle(Long userId, String questionId, boolean correct);
+    }
     
     /**
      * @param userId
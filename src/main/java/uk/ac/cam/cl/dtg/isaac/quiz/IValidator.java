@@ -17,9 +17,6 @@ package uk.ac.cam.cl.dtg.isaac.quiz;
 
 
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
@@ -27,14 +24,10 @@ import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 
 import java.io.IOException;
-import java.io.StringWriter;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface that allows the quiz engine to validate questions and answers.
@@ -46,6 +39,11 @@ import java.util.Map;
  *
  */
 public interface IValidator {
+
+    /**
+     * The most requests one validation may have in flight to an external validator at once.
+     */
+    int MAX_EXTERNAL_VALIDATOR_REQUESTS_PER_VALIDATION = 4;
     
     /**
      * validateQuestionResponse This method is specifically for single field questions.
@@ -65,6 +63,18 @@ public interface IValidator {
     QuestionValidationResponse validateQuestionResponse(Question question, Choice answer)
             throws ValidatorUnavailableException;
 
+    /**
+     * Whether this validator always marks the same answer to the same version of a question in the same way.
+     *
+     * Only the responses of deterministic validators may be cached and reused for later identical answers. Validators
+     * must opt in to this, and must not if their marking depends on anything other than the question and answer.
+     *
+     * @return true if the validation response may be cached.
+     */
+    default boolean isDeterministic() {
+        return false;
+    }
+
     /**
      * Create a new list of Choice objects, sorted into correct-first order for checking.
      *
@@ -86,6 +96,18 @@ public interface IValidator {
     }
 
 
+    /**
+     * Get the client used to communicate with external validators.
+     *
+     * Validators which call external checkers must be given the shared, configured client and return it here.
+     *
+     * @return the external validator client.
+     */
+    default ExternalValidatorClient getExternalValidatorClient() {
+        throw new UnsupportedOperationException(String.format("%s does not call an external validator.",
+                this.getClass().getSimpleName()));
+    }
+
     /**
      * Make a JSON HTTP POST request to an external validator, and provide the response JSON as a HashMap.
      *
@@ -96,33 +118,83 @@ public interface IValidator {
      */
     default HashMap<String, Object> getResponseFromExternalValidator(final String externalValidatorUrl,
                                                                      final Map<String, String> requestBody) throws IOException {
-        // This is ridiculous. All we want to do is pass some JSON to a REST endpoint and get some JSON back.
-        ObjectMapper mapper = new ObjectMapper();
-        StringWriter sw = new StringWriter();
-        JsonGenerator g = new JsonFactory().createGenerator(sw);
-        mapper.writeValue(g, requestBody);
-        g.close();
-        String requestString = sw.toString();
+        return getExternalValidatorClient().post(externalValidatorUrl, requestBody);
+    }
 
+    /**
+     * Start JSON HTTP POST requests to an external validator for several choices at once.
+     *
+     * The requests are sent in the order given, with at most MAX_EXTERNAL_VALIDATOR_REQUESTS_PER_VALIDATION in flight
+     * at once; the rest are sent as earlier ones finish, so that one validation does not monopolise the validator.
+     * The responses can then be examined in order using awaitResponseFromExternalValidator, and any which are not
+     * needed must be abandoned with cancelResponsesFromExternalValidator.
+     *
+     * @param externalValidatorUrl - the URL of an external validator to POST to.
+     * @param requestBodies - each choice to check, with the JSON request body for it as a Map, in order of precedence.
+     * @return a future for the response JSON for each choice, in the same order as the choices.
+     * @throws IOException - on failure to start the requests
+     */
+    default List<CompletableFuture<HashMap<String, Object>>> getResponsesFromExternalValidator(
+            final String externalValidatorUrl, final List<Map.Entry<Choice, Map<String, String>>> requestBodies)
+            throws IOException {
+        List<CompletableFuture<HashMap<String, Object>>> pendingResponses = Lists.newArrayList();
+        int maxRequestsInFlight = MAX_EXTERNAL_VALIDATOR_REQUESTS_PER_VALIDATION;
         try {
-            HttpClient httpClient = HttpClient.newHttpClient();
-
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(externalValidatorUrl))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(requestString))
-                    .build();
-            HttpResponse<String> httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-
-            @SuppressWarnings("unchecked")  // JSON _will_ be String -> Object.
-            HashMap<String, Object> response = mapper.readValue(httpResponse.body(), HashMap.class);
+            for (Map.Entry<Choice, Map<String, String>> request : requestBodies) {
+                CompletableFuture<HashMap<String, Object>> pendingResponse = null;
+                if (pendingResponses.size() < maxRequestsInFlight) {
+                    try {
+                        pendingResponse = getExternalValidatorClient().postAsync(externalValidatorUrl,
+                                request.getValue());
+                    } catch (IOException e) {
+                        if (pendingResponses.isEmpty()) {
+                            throw e;
+                        }
+                        // Our own requests hold permits for the validator, so send the rest as they finish:
+                        maxRequestsInFlight = pendingResponses.size();
+                    }
+                }
+                if (null == pendingResponse) {
+                    pendingResponse = getExternalValidatorClient().postAsyncAfter(
+                            pendingResponses.get(pendingResponses.size() - maxRequestsInFlight), externalValidatorUrl,
+                            request.getValue());
+                }
+                pendingResponses.add(pendingResponse);
+            }
+        } catch (IOException | RuntimeException e) {
+            cancelResponsesFromExternalValidator(pendingResponses);
+            throw e;
+        }
+        return pendingResponses;
+    }
 
-            return response;
-        } catch (InterruptedException e) {
-            throw new IOException(e);
+    /**
+     * Abandon any requests started with getResponsesFromExternalValidator which have not yet finished.
+     *
+     * The last requests are cancelled first, so that cancelling an earlier request does not start a later one waiting
+     * for it.
+     *
+     * @param pendingResponses - the futures for the responses.
+     */
+    default void cancelResponsesFromExternalValidator(
+            final List<CompletableFuture<HashMap<String, Object>>> pendingResponses) {
+        for (int i = pendingResponses.size() - 1; i >= 0; i--) {
+            pendingResponses.get(i).cancel(true);
         }
     }
 
+    /**
+     * Wait for the response to a request started with getResponsesFromExternalValidator.
+     *
+     * @param pendingResponse - the future for the response.
+     * @return the response JSON, as a HashMap
+     * @throws IOException - on failure to communicate with the external validator
+     */
+    default HashMap<String, Object> awaitResponseFromExternalValidator(
+            final CompletableFuture<HashMap<String, Object>> pendingResponse) throws IOException {
+        return ExternalValidatorClient.awaitResponse(pendingResponse);
+    }
+
     /**
      *  Check if a feedback content object contains no meaningful feedback.
      *
@@ -46,6 +46,17 @@ public class IsaacNumericValidator implements IValidator {
     protected static final String DEFAULT_NO_UNIT_VALIDATION_RESPONSE = "You did not choose any units. To give an answer with no units, select \"None\".";
     private static final String INVALID_NEGATIVE_STANDARD_FORM = ".*?10-([0-9]+).*?";
 
+    /**
+     * Numeric marking, including the significant figure and unit feedback, depends only on the question's choices and
+     * the value and units of the answer; this validator keeps no state between calls and consults nothing else.
+     *
+     * @return true, so that responses may be cached.
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     @Override
     public final QuestionValidationResponse validateQuestionResponse(
             final Question question, final Choice answer) {
@@ -54,11 +54,19 @@ public class IsaacOldSymbolicChemistryValidator implements IValidator {
     private final String hostname;
     private final String port;
     private final String externalValidatorUrl;
+    private final ExternalValidatorClient externalValidatorClient;
 
-    public IsaacOldSymbolicChemistryValidator(final String hostname, final String port) {
+    public IsaacOldSymbolicChemistryValidator(final String hostname, final String port,
+                                              final ExternalValidatorClient externalValidatorClient) {
         this.hostname = hostname;
         this.port = port;
         this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check";
+        this.externalValidatorClient = externalValidatorClient;
+    }
+
+    @Override
+    public ExternalValidatorClient getExternalValidatorClient() {
+        return externalValidatorClient;
     }
 
     @Override
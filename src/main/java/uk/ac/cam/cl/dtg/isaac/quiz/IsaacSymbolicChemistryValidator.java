@@ -26,12 +26,15 @@ import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 
@@ -67,9 +70,23 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
             "We are unable to interpret your answer; it may not be chemically valid or be in a format we don't recognise."
     );
 
-    public IsaacSymbolicChemistryValidator(final String hostname, final String port) {
+    private final ExternalValidatorClient externalValidatorClient;
+
+    public IsaacSymbolicChemistryValidator(final String hostname, final String port,
+                                           final ExternalValidatorClient externalValidatorClient) {
         this.nuclearValidatorUrl =  "http://" + hostname + ":" + port + "/nuclear/check";
         this.chemistryValidatorUrl = "http://" + hostname + ":" + port + "/chemistry/check";
+        this.externalValidatorClient = externalValidatorClient;
+    }
+
+    @Override
+    public ExternalValidatorClient getExternalValidatorClient() {
+        return externalValidatorClient;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
     }
 
     @Override
@@ -176,155 +193,169 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
             // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
             List<Choice> orderedChoices = getOrderedChoices(chemistryQuestion.getChoices());
 
-            // For all the choices on this question...
+            // Send their answer to the chemistry checker against the choices, a few at a time and in order, so that we
+            // need not wait for each check in turn. The responses are still examined in order below.
+            List<Map.Entry<Choice, Map<String, String>>> requests = new ArrayList<>();
             for (Choice c : orderedChoices) {
-
-                // ... that are of the ChemicalFormula type, ...
-                if (!(c instanceof ChemicalFormula)) {
-                    // Don't need to log this - it will have been logged above.
+                // Only ChemicalFormula choices with an mhchem expression can be checked; others were logged above.
+                if (!(c instanceof ChemicalFormula) || null == ((ChemicalFormula) c).getMhchemExpression()
+                        || ((ChemicalFormula) c).getMhchemExpression().isEmpty()) {
                     continue;
                 }
+                HashMap<String, String> req = Maps.newHashMap();
+                req.put("target", ((ChemicalFormula) c).getMhchemExpression());
+                req.put("test", submittedFormula.getMhchemExpression());
+                req.put("description", chemistryQuestion.getId());
+                req.put("allowPermutations", String.valueOf(chemistryQuestion.getAllowPermutations()));
+                req.put("allowScalingCoefficients", String.valueOf(chemistryQuestion.getAllowScalingCoefficients()));
+                req.put("questionID", question.getId());
+                requests.add(new AbstractMap.SimpleImmutableEntry<>(c, req));
+            }
 
-                ChemicalFormula formulaChoice = (ChemicalFormula) c;
-
-                // ... and that have a mhchem expression ...
-                if (null == formulaChoice.getMhchemExpression() || formulaChoice.getMhchemExpression().isEmpty()) {
-                    // Don't need to log this - it will have been logged above.
-                    continue;
+            List<CompletableFuture<HashMap<String, Object>>> pendingResponses;
+            try {
+                if (chemistryQuestion.isNuclear()) {
+                    pendingResponses = getResponsesFromExternalValidator(nuclearValidatorUrl, requests);
+                } else {
+                    pendingResponses = getResponsesFromExternalValidator(chemistryValidatorUrl, requests);
                 }
+            } catch (IOException e) {
+                log.error(
+                        "Failed to check formula with chemistry checker. Is the server running? Not trying again."
+                );
+                throw new ValidatorUnavailableException("We are having problems marking Chemistry Questions."
+                        + " Please try again later!");
+            }
 
-                // ... test their answer against this choice with the symbolic checker.
+            try {
+                // For all the choices which were sent to the chemistry checker...
+                for (int i = 0; i < requests.size(); i++) {
+                    Choice c = requests.get(i).getKey();
+                    ChemicalFormula formulaChoice = (ChemicalFormula) c;
 
-                IsaacSymbolicChemistryValidator.MatchType matchType;
-                HashMap<String, Object> response;
+                    // ... test their answer against this choice with the symbolic checker.
 
-                try {
+                    IsaacSymbolicChemistryValidator.MatchType matchType;
+                    HashMap<String, Object> response;
 
-                    // Pass some JSON to a REST endpoint and get some JSON back.
-                    HashMap<String, String> req = Maps.newHashMap();
-                    req.put("target", formulaChoice.getMhchemExpression());
-                    req.put("test", submittedFormula.getMhchemExpression());
-                    req.put("description", chemistryQuestion.getId());
-                    req.put("allowPermutations", String.valueOf(chemistryQuestion.getAllowPermutations()));
-                    req.put("allowScalingCoefficients", String.valueOf(chemistryQuestion.getAllowScalingCoefficients()));
-                    req.put("questionID", question.getId());
+                    try {
 
-                    if (chemistryQuestion.isNuclear()) {
-                        response = getResponseFromExternalValidator(nuclearValidatorUrl, req);
-                    } else {
-                        response = getResponseFromExternalValidator(chemistryValidatorUrl, req);
-                    }
-                    // If successfully parsed the submitted answer is the same type
-                    isNuclear = chemistryQuestion.isNuclear();
+                        response = awaitResponseFromExternalValidator(pendingResponses.get(i));
+                        // If successfully parsed the submitted answer is the same type
+                        isNuclear = chemistryQuestion.isNuclear();
 
-                    if (response.get("containsError").equals(true)) {
-                        if (response.containsKey("error")) {
+                        if (response.get("containsError").equals(true)) {
+                            if (response.containsKey("error")) {
 
-                            // If it doesn't contain a code, it wasn't a fatal error in the checker; probably only a
-                            // problem with the submitted answer.
-                            log.warn("Problem checking formula \"" + submittedFormula.getMhchemExpression()
-                                    + "\" with symbolic chemistry checker: " + response.get("error"));
-                        }
+                                // If it doesn't contain a code, it wasn't a fatal error in the checker; probably only a
+                                // problem with the submitted answer.
+                                log.warn("Problem checking formula \"" + submittedFormula.getMhchemExpression()
+                                        + "\" with symbolic chemistry checker: " + response.get("error"));
+                            }
 
-                        closestMatch = formulaChoice;
-                        closestResponse = response;
-                        containsError = true;
-                        break;
-                    }
+                            closestMatch = formulaChoice;
+                            closestResponse = response;
+                            containsError = true;
+                            break;
+                        }
 
-                    if (c.isCorrect()) {
+                        if (c.isCorrect()) {
 
-                        // Check if type mismatch occurred, when choice is correct answer.
-                        allTypeMismatch = allTypeMismatch && response.get("typeMismatch").equals(true);
+                            // Check if type mismatch occurred, when choice is correct answer.
+                            allTypeMismatch = allTypeMismatch && response.get("typeMismatch").equals(true);
 
-                        String expectedType = (String) response.get("expectedType");
-                        allExpression = allExpression && expectedType.contains("expr");
-                        allEquation = allEquation && expectedType.contains("statement");
-                        allTerm = allTerm && expectedType.contains("term");
-                    }
+                            String expectedType = (String) response.get("expectedType");
+                            allExpression = allExpression && expectedType.contains("expr");
+                            allEquation = allEquation && expectedType.contains("statement");
+                            allTerm = allTerm && expectedType.contains("term");
+                        }
 
-                    // Identify the type of student answer.
-                    if (!typeKnownFlag) {
-                        receivedType = (String) response.get("receivedType");
-                        isEquation = receivedType.contains("statement");
-                        typeKnownFlag = true;
-                    }
+                        // Identify the type of student answer.
+                        if (!typeKnownFlag) {
+                            receivedType = (String) response.get("receivedType");
+                            isEquation = receivedType.contains("statement");
+                            typeKnownFlag = true;
+                        }
 
-                    // Check if equation is balanced, given that choice is of type equation.
-                    if (!balancedKnownFlag && isEquation && response.get("typeMismatch").equals(false)) {
+                        // Check if equation is balanced, given that choice is of type equation.
+                        if (!balancedKnownFlag && isEquation && response.get("typeMismatch").equals(false)) {
 
-                        // Check if equation (physical/chemical) is balanced.
-                        isBalanced = response.get("isBalanced").equals(true);
-                        if (!isNuclear) {
-                            isChargeBalanced = response.get("isChargeBalanced").equals(true);
+                            // Check if equation (physical/chemical) is balanced.
+                            isBalanced = response.get("isBalanced").equals(true);
+                            if (!isNuclear) {
+                                isChargeBalanced = response.get("isChargeBalanced").equals(true);
+                            }
+                            balancedKnownFlag = true;
                         }
-                        balancedKnownFlag = true;
-                    }
 
-                    // Check if equation is valid, given that choice is of type nuclear.
-                    if (!validityKnownFlag && chemistryQuestion.isNuclear()
-                            && response.get("typeMismatch").equals(false)) {
-                        isValid = response.get("validAtomicNumber").equals(true);
-                        validityKnownFlag = true;
-                    }
+                        // Check if equation is valid, given that choice is of type nuclear.
+                        if (!validityKnownFlag && chemistryQuestion.isNuclear()
+                                && response.get("typeMismatch").equals(false)) {
+                            isValid = response.get("validAtomicNumber").equals(true);
+                            validityKnownFlag = true;
+                        }
 
 
-                    if (response.get("isEqual").equals(true)) {
-                        // Input is semantically equivalent to correct answer.
-                        matchType = MatchType.EXACT;
-                    } else {
-                        if (response.get("typeMismatch").equals(true)) {
-                            matchType = MatchType.WEAK0;
-                        } else if (response.get("sameElements").equals(false)) {
-                            matchType = MatchType.WEAK1;
-                        } else if (response.get("sameCoefficient").equals(false)) {
-                            matchType = MatchType.WEAK2;
-                        } else if (!isNuclear && response.get("sameCharge").equals(false)) {
-                            matchType = MatchType.WEAK3;
-                        } else if (!isNuclear && response.get("sameState").equals(false)) {
-                            matchType = MatchType.WEAK4;
-                        } else if (!isNuclear && response.get("sameArrow").equals(false)) {
-                            matchType = MatchType.WEAK5;
-                        } else if (!isNuclear && response.get("sameBrackets").equals(false)) {
-                            matchType = MatchType.WEAK6;
+                        if (response.get("isEqual").equals(true)) {
+                            // Input is semantically equivalent to correct answer.
+                            matchType = MatchType.EXACT;
                         } else {
-                            matchType = MatchType.WEAK7;
+                            if (response.get("typeMismatch").equals(true)) {
+                                matchType = MatchType.WEAK0;
+                            } else if (response.get("sameElements").equals(false)) {
+                                matchType = MatchType.WEAK1;
+                            } else if (response.get("sameCoefficient").equals(false)) {
+                                matchType = MatchType.WEAK2;
+                            } else if (!isNuclear && response.get("sameCharge").equals(false)) {
+                                matchType = MatchType.WEAK3;
+                            } else if (!isNuclear && response.get("sameState").equals(false)) {
+                                matchType = MatchType.WEAK4;
+                            } else if (!isNuclear && response.get("sameArrow").equals(false)) {
+                                matchType = MatchType.WEAK5;
+                            } else if (!isNuclear && response.get("sameBrackets").equals(false)) {
+                                matchType = MatchType.WEAK6;
+                            } else {
+                                matchType = MatchType.WEAK7;
+                            }
                         }
+
+                    } catch (IOException e) {
+                        log.error(
+                                "Failed to check formula with chemistry checker. Is the server running? Not trying again."
+                        );
+                        throw new ValidatorUnavailableException("We are having problems marking Chemistry Questions."
+                                + " Please try again later!");
                     }
 
-                } catch (IOException e) {
-                    log.error(
-                            "Failed to check formula with chemistry checker. Is the server running? Not trying again."
-                    );
-                    throw new ValidatorUnavailableException("We are having problems marking Chemistry Questions."
-                            + " Please try again later!");
-                }
+                    if (matchType == IsaacSymbolicChemistryValidator.MatchType.EXACT) {
 
-                if (matchType == IsaacSymbolicChemistryValidator.MatchType.EXACT) {
+                        // Found an exact match with one of the choices!
 
-                    // Found an exact match with one of the choices!
+                        closestMatch = formulaChoice;
+                        closestMatchType = IsaacSymbolicChemistryValidator.MatchType.EXACT;
+                        break;
 
-                    closestMatch = formulaChoice;
-                    closestMatchType = IsaacSymbolicChemistryValidator.MatchType.EXACT;
-                    break;
+                    } else if (matchType.compareTo(closestMatchType) > 0) {
 
-                } else if (matchType.compareTo(closestMatchType) > 0) {
+                        // Found a better partial match than current match.
 
-                    // Found a better partial match than current match.
+                        if (formulaChoice.isCorrect() || closestMatch == null) {
 
-                    if (formulaChoice.isCorrect() || closestMatch == null) {
+                            // We have no current closest match, or this choice is actually correct.
+                            // Have no other choice than accepting this as closest match right now.
 
-                        // We have no current closest match, or this choice is actually correct.
-                        // Have no other choice than accepting this as closest match right now.
+                            closestMatch = formulaChoice;
+                            closestResponse = response;
+                            closestMatchType = matchType;
+                        }
 
-                        closestMatch = formulaChoice;
-                        closestResponse = response;
-                        closestMatchType = matchType;
+                        // Otherwise, input partially matches a wrong choice, or closestMatch is assigned already.
+                        // The best thing to do here is to do nothing.
                     }
-
-                    // Otherwise, input partially matches a wrong choice, or closestMatch is assigned already.
-                    // The best thing to do here is to do nothing.
                 }
+            } finally {
+                // Any checks we didn't need the result of can be abandoned:
+                cancelResponsesFromExternalValidator(pendingResponses);
             }
 
             // End of second choice matching
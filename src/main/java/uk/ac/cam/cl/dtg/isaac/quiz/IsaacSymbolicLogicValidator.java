@@ -27,12 +27,16 @@ import uk.ac.cam.cl.dtg.isaac.dos.content.LogicFormula;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 
@@ -52,11 +56,24 @@ public class IsaacSymbolicLogicValidator implements IValidator {
     private final String hostname;
     private final String port;
     private final String externalValidatorUrl;
+    private final ExternalValidatorClient externalValidatorClient;
 
-    public IsaacSymbolicLogicValidator(final String hostname, final String port) {
+    public IsaacSymbolicLogicValidator(final String hostname, final String port,
+                                       final ExternalValidatorClient externalValidatorClient) {
         this.hostname = hostname;
         this.port = port;
         this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check/logic";
+        this.externalValidatorClient = externalValidatorClient;
+    }
+
+    @Override
+    public ExternalValidatorClient getExternalValidatorClient() {
+        return externalValidatorClient;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
     }
 
     @Override
@@ -150,88 +167,100 @@ public class IsaacSymbolicLogicValidator implements IValidator {
             // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
             List<Choice> orderedChoices = getOrderedChoices(symbolicLogicQuestion.getChoices());
 
-            // For all the choices on this question...
+            // Send their answer to the symbolic checker against the choices, a few at a time and in order, so that we
+            // need not wait for each check in turn. The responses are still examined in order below.
+            // We don't do any sanitisation of user input here, we'll leave that to the python.
+            List<Map.Entry<Choice, Map<String, String>>> requests = new ArrayList<>();
             for (Choice c : orderedChoices) {
-
-                // ... that are of the LogicFormula type, ...
-                if (!(c instanceof LogicFormula)) {
-                    // Don't need to log this - it will have been logged above.
+                // Only LogicFormula choices with a python expression can be checked; others were logged above.
+                if (!(c instanceof LogicFormula) || null == ((LogicFormula) c).getPythonExpression()
+                        || ((LogicFormula) c).getPythonExpression().isEmpty()) {
                     continue;
                 }
-
-                LogicFormula logicFormulaChoice = (LogicFormula) c;
-
-                // ... and that have a python expression ...
-                if (null == logicFormulaChoice.getPythonExpression() || logicFormulaChoice.getPythonExpression().isEmpty()) {
-                    // Don't need to log this - it will have been logged above.
-                    continue;
+                HashMap<String, String> req = Maps.newHashMap();
+                req.put("target", ((LogicFormula) c).getPythonExpression());
+                req.put("test", submittedLogicFormula.getPythonExpression());
+                req.put("description", symbolicLogicQuestion.getId());
+                if (symbolicLogicQuestion.getAvailableSymbols() != null) {
+                    req.put("symbols", String.join(",", symbolicLogicQuestion.getAvailableSymbols()));
                 }
+                requests.add(new AbstractMap.SimpleImmutableEntry<>(c, req));
+            }
 
-                // ... test their answer against this choice with the symbolic checker.
-
-                // We don't do any sanitisation of user input here, we'll leave that to the python.
-
-                MatchType matchType = MatchType.NONE;
-
-                try {
-                    HashMap<String, String> req = Maps.newHashMap();
-                    req.put("target", logicFormulaChoice.getPythonExpression());
-                    req.put("test", submittedLogicFormula.getPythonExpression());
-                    req.put("description", symbolicLogicQuestion.getId());
-                    if (symbolicLogicQuestion.getAvailableSymbols() != null) {
-                        req.put("symbols", String.join(",", symbolicLogicQuestion.getAvailableSymbols()));
-                    }
+            List<CompletableFuture<HashMap<String, Object>>> pendingResponses;
+            try {
+                pendingResponses = getResponsesFromExternalValidator(externalValidatorUrl, requests);
+            } catch (IOException e) {
+                log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
+                throw new ValidatorUnavailableException("We are having problems marking Logic Questions."
+                        + " Please try again later!");
+            }
 
-                    HashMap<String, Object> response = getResponseFromExternalValidator(externalValidatorUrl, req);
-
-                    if (response.containsKey("error")) {
-                        if (response.containsKey("code")) {
-                            log.error("Failed to check logic formula \"" + submittedLogicFormula.getPythonExpression()
-                                    + "\" against \"" + logicFormulaChoice.getPythonExpression() + "\": " + response.get("error"));
-                        } else if (response.containsKey("syntax_error")) {
-                            // There's a syntax error in the "test" expression, no use checking it further:
-                            closestMatch = null;
-                            feedback = new Content("Your answer does not seem to be valid boolean logic.<br>"
-                                        + "Check for things like mismatched brackets or misplaced symbols.");
-                            feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
-                            responseCorrect = false;
-                            break;
+            try {
+                // For all the choices which were sent to the symbolic checker...
+                for (int i = 0; i < requests.size(); i++) {
+                    LogicFormula logicFormulaChoice = (LogicFormula) requests.get(i).getKey();
+
+                    // ... check the symbolic checker's verdict on their answer against this choice.
+
+                    MatchType matchType = MatchType.NONE;
+
+                    try {
+                        HashMap<String, Object> response =
+                                awaitResponseFromExternalValidator(pendingResponses.get(i));
+
+                        if (response.containsKey("error")) {
+                            if (response.containsKey("code")) {
+                                log.error("Failed to check logic formula \"" + submittedLogicFormula.getPythonExpression()
+                                        + "\" against \"" + logicFormulaChoice.getPythonExpression() + "\": " + response.get("error"));
+                            } else if (response.containsKey("syntax_error")) {
+                                // There's a syntax error in the "test" expression, no use checking it further:
+                                closestMatch = null;
+                                feedback = new Content("Your answer does not seem to be valid boolean logic.<br>"
+                                            + "Check for things like mismatched brackets or misplaced symbols.");
+                                feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
+                                responseCorrect = false;
+                                break;
+                            } else {
+                                log.warn("Problem checking logic formula \"" + submittedLogicFormula.getPythonExpression()
+                                        + "\" for (" + symbolicLogicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
+                            }
                         } else {
-                            log.warn("Problem checking logic formula \"" + submittedLogicFormula.getPythonExpression()
-                                    + "\" for (" + symbolicLogicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
+                            if (response.get("equal").equals("true")) {
+                                matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
+                            }
                         }
-                    } else {
-                        if (response.get("equal").equals("true")) {
-                            matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
-                        }
-                    }
 
-                } catch (IOException e) {
-                    log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
-                    throw new ValidatorUnavailableException("We are having problems marking Logic Questions."
-                            + " Please try again later!");
-                }
+                    } catch (IOException e) {
+                        log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
+                        throw new ValidatorUnavailableException("We are having problems marking Logic Questions."
+                                + " Please try again later!");
+                    }
 
-                if (matchType == MatchType.EXACT) {
-                    closestMatch = logicFormulaChoice;
-                    closestMatchType = MatchType.EXACT;
-                    break;
-                } else if (matchType == MatchType.SYMBOLIC && !logicFormulaChoice.getRequiresExactMatch()) {
-                    closestMatch = logicFormulaChoice;
-                    closestMatchType = MatchType.SYMBOLIC;
-                } else if (matchType.compareTo(closestMatchType) > 0) {
-                    if (logicFormulaChoice.getRequiresExactMatch() && logicFormulaChoice.isCorrect()) {
+                    if (matchType == MatchType.EXACT) {
                         closestMatch = logicFormulaChoice;
-                        closestMatchType = matchType;
-                    } else {
-                        if (closestMatch == null || !closestMatch.getRequiresExactMatch()) {
+                        closestMatchType = MatchType.EXACT;
+                        break;
+                    } else if (matchType == MatchType.SYMBOLIC && !logicFormulaChoice.getRequiresExactMatch()) {
+                        closestMatch = logicFormulaChoice;
+                        closestMatchType = MatchType.SYMBOLIC;
+                    } else if (matchType.compareTo(closestMatchType) > 0) {
+                        if (logicFormulaChoice.getRequiresExactMatch() && logicFormulaChoice.isCorrect()) {
                             closestMatch = logicFormulaChoice;
                             closestMatchType = matchType;
                         } else {
-                            // This is not as good a match as the one we already have.
+                            if (closestMatch == null || !closestMatch.getRequiresExactMatch()) {
+                                closestMatch = logicFormulaChoice;
+                                closestMatchType = matchType;
+                            } else {
+                                // This is not as good a match as the one we already have.
+                            }
                         }
                     }
                 }
+            } finally {
+                // Any checks we didn't need the result of can be abandoned:
+                cancelResponsesFromExternalValidator(pendingResponses);
             }
 
             if (null != closestMatch) {
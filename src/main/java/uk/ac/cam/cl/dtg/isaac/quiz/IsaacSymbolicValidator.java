@@ -27,12 +27,16 @@ import uk.ac.cam.cl.dtg.isaac.dos.content.Formula;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 
@@ -53,11 +57,24 @@ public class IsaacSymbolicValidator implements IValidator {
     private final String hostname;
     private final String port;
     private final String externalValidatorUrl;
+    private final ExternalValidatorClient externalValidatorClient;
 
-    public IsaacSymbolicValidator(final String hostname, final String port) {
+    public IsaacSymbolicValidator(final String hostname, final String port,
+                                  final ExternalValidatorClient externalValidatorClient) {
         this.hostname = hostname;
         this.port = port;
         this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check";
+        this.externalValidatorClient = externalValidatorClient;
+    }
+
+    @Override
+    public ExternalValidatorClient getExternalValidatorClient() {
+        return externalValidatorClient;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
     }
 
     @Override
@@ -151,85 +168,97 @@ public class IsaacSymbolicValidator implements IValidator {
             // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
             List<Choice> orderedChoices = getOrderedChoices(symbolicQuestion.getChoices());
 
-            // For all the choices on this question...
+            // Send their answer to the symbolic checker against the choices, a few at a time and in order, so that we
+            // need not wait for each check in turn. The responses are still examined in order below.
+            // We don't do any sanitisation of user input here, we'll leave that to the python.
+            List<Map.Entry<Choice, Map<String, String>>> requests = new ArrayList<>();
             for (Choice c : orderedChoices) {
-
-                // ... that are of the Formula type, ...
-                if (!(c instanceof Formula)) {
-                    // Don't need to log this - it will have been logged above.
+                // Only Formula choices with a python expression can be checked; others were logged above.
+                if (!(c instanceof Formula) || null == ((Formula) c).getPythonExpression()
+                        || ((Formula) c).getPythonExpression().isEmpty()) {
                     continue;
                 }
-
-                Formula formulaChoice = (Formula) c;
-
-                // ... and that have a python expression ...
-                if (null == formulaChoice.getPythonExpression() || formulaChoice.getPythonExpression().isEmpty()) {
-                    // Don't need to log this - it will have been logged above.
-                    continue;
+                HashMap<String, String> req = Maps.newHashMap();
+                req.put("target", ((Formula) c).getPythonExpression());
+                req.put("test", submittedFormula.getPythonExpression());
+                req.put("description", symbolicQuestion.getId());
+                if (symbolicQuestion.getAvailableSymbols() != null) {
+                    req.put("symbols", String.join(",", symbolicQuestion.getAvailableSymbols()));
                 }
+                requests.add(new AbstractMap.SimpleImmutableEntry<>(c, req));
+            }
 
-                // ... test their answer against this choice with the symbolic checker.
-
-                // We don't do any sanitisation of user input here, we'll leave that to the python.
-
-                MatchType matchType = MatchType.NONE;
-
-                try {
-                    HashMap<String, String> req = Maps.newHashMap();
-                    req.put("target", formulaChoice.getPythonExpression());
-                    req.put("test", submittedFormula.getPythonExpression());
-                    req.put("description", symbolicQuestion.getId());
-                    if (symbolicQuestion.getAvailableSymbols() != null) {
-                        req.put("symbols", String.join(",", symbolicQuestion.getAvailableSymbols()));
-                    }
+            List<CompletableFuture<HashMap<String, Object>>> pendingResponses;
+            try {
+                pendingResponses = getResponsesFromExternalValidator(externalValidatorUrl, requests);
+            } catch (IOException e) {
+                log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
+                throw new ValidatorUnavailableException("We are having problems marking Symbolic Questions."
+                        + " Please try again later!");
+            }
 
-                    HashMap<String, Object> response = getResponseFromExternalValidator(externalValidatorUrl, req);
-
-                    if (response.containsKey("error")) {
-                        if (response.containsKey("code")) {
-                            log.error("Failed to check formula \"" + submittedFormula.getPythonExpression()
-                                    + "\" against \"" + formulaChoice.getPythonExpression() + "\": " + response.get("error"));
-                        } else if (response.containsKey("syntax_error")) {
-                            // There's a syntax error in the "test" expression, no use checking it further:
-                            closestMatch = null;
-                            feedback = new Content("Your answer does not seem to be valid maths.<br>"
-                                        + "Check for things like mismatched brackets or misplaced symbols.");
-                            feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
-                            responseCorrect = false;
-                            break;
+            try {
+                // For all the choices which were sent to the symbolic checker...
+                for (int i = 0; i < requests.size(); i++) {
+                    Formula formulaChoice = (Formula) requests.get(i).getKey();
+
+                    // ... check the symbolic checker's verdict on their answer against this choice.
+
+                    MatchType matchType = MatchType.NONE;
+
+                    try {
+                        HashMap<String, Object> response =
+                                awaitResponseFromExternalValidator(pendingResponses.get(i));
+
+                        if (response.containsKey("error")) {
+                            if (response.containsKey("code")) {
+                                log.error("Failed to check formula \"" + submittedFormula.getPythonExpression()
+                                        + "\" against \"" + formulaChoice.getPythonExpression() + "\": " + response.get("error"));
+                            } else if (response.containsKey("syntax_error")) {
+                                // There's a syntax error in the "test" expression, no use checking it further:
+                                closestMatch = null;
+                                feedback = new Content("Your answer does not seem to be valid maths.<br>"
+                                            + "Check for things like mismatched brackets or misplaced symbols.");
+                                feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
+                                responseCorrect = false;
+                                break;
+                            } else {
+                                log.warn("Problem checking formula \"" + submittedFormula.getPythonExpression()
+                                        + "\" for (" + symbolicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
+                            }
                         } else {
-                            log.warn("Problem checking formula \"" + submittedFormula.getPythonExpression()
-                                    + "\" for (" + symbolicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
-                        }
-                    } else {
-                        if (response.get("equal").equals("true")) {
-                            matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
+                            if (response.get("equal").equals("true")) {
+                                matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
+                            }
                         }
-                    }
 
-                } catch (IOException e) {
-                    log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
-                    throw new ValidatorUnavailableException("We are having problems marking Symbolic Questions."
-                            + " Please try again later!");
-                }
+                    } catch (IOException e) {
+                        log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
+                        throw new ValidatorUnavailableException("We are having problems marking Symbolic Questions."
+                                + " Please try again later!");
+                    }
 
-                if (matchType == MatchType.EXACT) {
-                    closestMatch = formulaChoice;
-                    closestMatchType = MatchType.EXACT;
-                    break;
-                } else if (matchType.compareTo(closestMatchType) > 0) {
-                    if (formulaChoice.getRequiresExactMatch() && formulaChoice.isCorrect()) {
+                    if (matchType == MatchType.EXACT) {
                         closestMatch = formulaChoice;
-                        closestMatchType = matchType;
-                    } else {
-                        if (closestMatch == null || !closestMatch.getRequiresExactMatch()) {
+                        closestMatchType = MatchType.EXACT;
+                        break;
+                    } else if (matchType.compareTo(closestMatchType) > 0) {
+                        if (formulaChoice.getRequiresExactMatch() && formulaChoice.isCorrect()) {
                             closestMatch = formulaChoice;
                             closestMatchType = matchType;
                         } else {
-                            // This is not as good a match as the one we already have.
+                            if (closestMatch == null || !closestMatch.getRequiresExactMatch()) {
+                                closestMatch = formulaChoice;
+                                closestMatchType = matchType;
+                            } else {
+                                // This is not as good a match as the one we already have.
+                            }
                         }
                     }
                 }
+            } finally {
+                // Any checks we didn't need the result of can be abandoned:
+                cancelResponsesFromExternalValidator(pendingResponses);
             }
 
             if (null != closestMatch) {
@@ -26,7 +26,6 @@ import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
-import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseLockTimoutException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 
@@ -36,7 +35,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -46,6 +44,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -59,9 +61,14 @@ import static uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager.extractPageIdF
 public class PgQuestionAttempts implements IQuestionAttemptManager {
     private static final Logger log = LoggerFactory.getLogger(PgQuestionAttempts.class);
     private static final int MAX_PAGE_IDS_TO_MATCH = 300;
+    private static final int OUTCOME_STREAM_FETCH_SIZE = 1000;
+    private static final int MAX_ATTEMPTS_PER_BATCH = 500;
+    private static final int MAX_CONCURRENT_ATTEMPT_WRITERS = 4;
             
     private final PostgresSqlDb database;
     private final ObjectMapper objectMapper;
+    private final BlockingQueue<PendingQuestionAttempt> pendingQuestionAttempts = new LinkedBlockingQueue<>();
+    private final Semaphore questionAttemptWriters = new Semaphore(MAX_CONCURRENT_ATTEMPT_WRITERS, true);
 
     /**
      * @param ds
@@ -80,60 +87,34 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
             final String fullQuestionId, final QuestionValidationResponse questionAttempt)
             throws SegueDatabaseException {
 
-        // Anonymous question attempts are stored in a JSONB object, need to atomically read-and-update this object:
-        try (Connection conn = database.getDatabaseConnection()) {
-            conn.setAutoCommit(false);  // Start a transaction to hold a lock open during.
-            // Set a timeout for the lock of 2 seconds:
-            try (Statement st = conn.createStatement()) {
-                st.execute("SET LOCAL lock_timeout = '1s';");
-            }
-            // Try to obtain the per-anon-user lock:
-            try (PreparedStatement pst = conn.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
-                pst.setLong(1, userId.hashCode());
-                pst.executeQuery();
-            } catch (SQLException e) {
-                throw new SegueDatabaseLockTimoutException("Waited too long to record question attempt!");
-            }
-
-            Map<String, Map<String, List<QuestionValidationResponse>>> userAttempts = this.getAnonymousQuestionAttempts(userId);
-
-            if (null == userAttempts) {
-                userAttempts = new HashMap<>();
-            }
-
-            userAttempts.computeIfAbsent(questionPageId, k -> new HashMap<>());
-
-            userAttempts.get(questionPageId).computeIfAbsent(fullQuestionId, k -> new ArrayList<>());
-
-            userAttempts.get(questionPageId).get(fullQuestionId).add(questionAttempt);
-
-            String query = "UPDATE temporary_user_store SET temporary_app_data = " +
-                    "jsonb_set(temporary_app_data, ?::text[], ?::text::jsonb) WHERE id = ?;";
-            try (PreparedStatement pst = conn.prepareStatement(query)) {
-                pst.setString(1, "{questionAttempts}");
-                pst.setString(2, objectMapper.writeValueAsString(userAttempts));
-                pst.setString(3, userId);
+        // Anonymous attempts are only ever appended, so no lock or read of earlier attempts is needed:
+        String query = "INSERT INTO anonymous_question_attempts(anonymous_user_id, page_id, question_id,"
+                + " question_attempt, \"timestamp\") VALUES (?, ?, ?, ?::text::jsonb, ?);";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setString(1, userId);
+            pst.setString(2, questionPageId);
+            pst.setString(3, fullQuestionId);
+            pst.setString(4, objectMapper.writeValueAsString(questionAttempt));
+            pst.setTimestamp(5, new java.sql.Timestamp(questionAttempt.getDateAttempted().getTime()));
 
-                if (pst.executeUpdate() == 0) {
-                    throw new SegueDatabaseException("Unable to save question attempt.");
-                }
-                conn.commit();
-            } catch (SQLException e) {
-                throw new SegueDatabaseException("Postgres exception", e);
-            } catch (JsonProcessingException e) {
-                throw new SegueDatabaseException("Unable to process json exception", e);
+            if (pst.executeUpdate() == 0) {
+                throw new SegueDatabaseException("Unable to save question attempt.");
             }
-            // The JDBC driver should automatically reset conn.autoCommit to true.
-            // If an error occurs, here we are not so concerned about committing/rolling back the transaction; so long
-            // as the connection is closed, the lock is released.
-            // (Some datasources may implicitly commit uncommitted changes on close if rollback is not called!)
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
+        } catch (JsonProcessingException e) {
+            throw new SegueDatabaseException("Unable to process json exception", e);
         }
     }
 
     /**
      * getAnonymousQuestionAttempts.
+     *
+     * Attempts are stored as rows in the anonymous_question_attempts table, but sessions created before that table
+     * existed may also have older attempts stored in the temporary_user_store JSONB object; these come first.
+     *
      * @param anonymousId
      *            to lookup
      * @return the question pageId --> full questionId --> list of responses. (or null if no data)
@@ -141,40 +122,38 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     @Override
     public Map<String, Map<String, List<QuestionValidationResponse>>> getAnonymousQuestionAttempts(
             final String anonymousId) throws SegueDatabaseException {
-        String query = "SELECT temporary_app_data->'questionAttempts' AS question_attempts from temporary_user_store where id = ?;";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-        ) {
-            pst.setString(1, anonymousId);
-
-            try (ResultSet resultSet = pst.executeQuery()) {
-                // are there any results
-                if (!resultSet.isBeforeFirst()) {
-                    return Maps.newHashMap();
-                }
-                resultSet.next();
-
-                // We need to try and generate QuestionValidationResponses in the correct object structure - Apologies for the hideousness
-                Map<String, Map<String, List<Object>>> questionAttemptsFromDB
-                        = objectMapper.readValue(resultSet.getString("question_attempts"), Map.class);
-                Map<String, Map<String, List<QuestionValidationResponse>>> result = Maps.newHashMap();
+        String legacyQuery = "SELECT temporary_app_data->'questionAttempts' AS question_attempts"
+                + " FROM temporary_user_store WHERE id = ?;";
+        String query = "SELECT page_id, question_id, question_attempt FROM anonymous_question_attempts"
+                + " WHERE anonymous_user_id = ? ORDER BY id ASC;";
+        try (Connection conn = database.getDatabaseConnection()) {
+            Map<String, Map<String, List<QuestionValidationResponse>>> result;
 
-                for (Map.Entry<String, Map<String, List<Object>>> questionAttemptsForPage : questionAttemptsFromDB.entrySet()) {
+            try (PreparedStatement pst = conn.prepareStatement(legacyQuery)) {
+                pst.setString(1, anonymousId);
 
-                    Map<String, List<QuestionValidationResponse>> questionAttemptsForQuestion = Maps.newHashMap();
-                    for (Map.Entry<String, List<Object>> submap : questionAttemptsForPage.getValue().entrySet()) {
-                        List<QuestionValidationResponse> listOfuestionValidationResponses = Lists.newArrayList();
-                        questionAttemptsForQuestion.put(submap.getKey(), listOfuestionValidationResponses);
+                try (ResultSet resultSet = pst.executeQuery()) {
+                    // are there any results
+                    if (!resultSet.next()) {
+                        return Maps.newHashMap();
+                    }
+                    result = legacyQuestionAttemptsToMap(resultSet.getString("question_attempts"));
+                }
+            }
 
-                        for (Object o : submap.getValue()) {
-                            listOfuestionValidationResponses
-                                    .add(objectMapper.convertValue(o, QuestionValidationResponse.class));
-                        }
+            try (PreparedStatement pst = conn.prepareStatement(query)) {
+                pst.setString(1, anonymousId);
+
+                try (ResultSet resultSet = pst.executeQuery()) {
+                    while (resultSet.next()) {
+                        result.computeIfAbsent(resultSet.getString("page_id"), k -> Maps.newHashMap())
+                                .computeIfAbsent(resultSet.getString("question_id"), k -> Lists.newArrayList())
+                                .add(objectMapper.readValue(resultSet.getString("question_attempt"),
+                                        QuestionValidationResponse.class));
                     }
-                    result.put(questionAttemptsForPage.getKey(), questionAttemptsForQuestion);
                 }
-                return result;
             }
+            return result;
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
         } catch (IOException e) {
@@ -182,42 +161,157 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
     }
 
+    /**
+     * Record a question attempt, writing it in a batch with any other attempts being recorded at the same time.
+     *
+     * Attempts are queued, and up to MAX_CONCURRENT_ATTEMPT_WRITERS request threads at a time each insert whatever is
+     * queued as one batch. Under light load each attempt is written on its own straight away; when many answers arrive
+     * at once, e.g. around homework deadlines, those which arrive whilst every writer is busy are written together in
+     * the next batch, and one slow insert holds up only its own batch. Each caller still waits until its own attempt is
+     * saved, so errors are reported to the user as before and the attempt can be read back as soon as this returns.
+     */
     @Override
     public void registerQuestionAttempt(final Long userId, final String questionPageId, final String fullQuestionId,
             final QuestionValidationResponse questionAttempt) throws SegueDatabaseException {
+        PendingQuestionAttempt pendingAttempt;
+        try {
+            pendingAttempt = new PendingQuestionAttempt(userId, questionPageId, fullQuestionId, questionAttempt);
+        } catch (JsonProcessingException e) {
+            throw new SegueDatabaseException("Unable to process json exception", e);
+        }
+        pendingQuestionAttempts.add(pendingAttempt);
+
+        while (!pendingAttempt.written.isDone()) {
+            List<PendingQuestionAttempt> batch = new ArrayList<>();
+            questionAttemptWriters.acquireUninterruptibly();
+            try {
+                // Another writer may have taken this attempt whilst we waited to become a writer:
+                if (!pendingAttempt.written.isDone()) {
+                    pendingQuestionAttempts.drainTo(batch, MAX_ATTEMPTS_PER_BATCH);
+                    this.writePendingQuestionAttempts(batch);
+                }
+            } finally {
+                questionAttemptWriters.release();
+            }
+            if (batch.isEmpty()) {
+                // Our attempt is in a batch another writer is part way through:
+                pendingAttempt.written.join();
+            }
+        }
+        if (null != pendingAttempt.failure) {
+            throw pendingAttempt.failure;
+        }
+    }
 
-        String query = "INSERT INTO question_attempts(user_id, page_id, question_id, question_attempt, correct, \"timestamp\")"
-                + " VALUES (?, ?, ?, ?::text::jsonb, ?, ?);";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-        ) {
-            pst.setLong(1, userId);
-            pst.setString(2, questionPageId);
-            pst.setString(3, fullQuestionId);
-            pst.setString(4, objectMapper.writeValueAsString(questionAttempt));
+    @Override
+    public void registerQuestionAttempts(final Long userId,
+                                         final Map<String, Map<String, List<QuestionValidationResponse>>> questionAttempts)
+            throws SegueDatabaseException {
+        List<PendingQuestionAttempt> attemptsToWrite = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Map<String, List<QuestionValidationResponse>>> attemptsForPage
+                    : questionAttempts.entrySet()) {
+                for (Map.Entry<String, List<QuestionValidationResponse>> attemptsForQuestion
+                        : attemptsForPage.getValue().entrySet()) {
+                    for (QuestionValidationResponse questionAttempt : attemptsForQuestion.getValue()) {
+                        attemptsToWrite.add(new PendingQuestionAttempt(userId, attemptsForPage.getKey(),
+                                attemptsForQuestion.getKey(), questionAttempt));
+                    }
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new SegueDatabaseException("Unable to process json exception", e);
+        }
+        this.insertQuestionAttempts(attemptsToWrite);
+    }
 
-            if (questionAttempt.isCorrect() != null) {
-                pst.setBoolean(5, questionAttempt.isCorrect());
+    /**
+     * Write a batch of queued question attempts, recording the outcome on each one.
+     *
+     * If the batch cannot be written, the attempts are written one at a time so that a single bad attempt does not
+     * cause every other user's attempt in the batch to fail.
+     *
+     * @param batch - the queued attempts to write.
+     */
+    private void writePendingQuestionAttempts(final List<PendingQuestionAttempt> batch) {
+        try {
+            this.insertQuestionAttempts(batch);
+        } catch (RuntimeException e) {
+            // Other callers are waiting on these attempts, so they must always be told the outcome:
+            SegueDatabaseException failure = new SegueDatabaseException("Unable to save question attempt.", e);
+            batch.forEach(pendingAttempt -> pendingAttempt.failure = failure);
+        } catch (SegueDatabaseException e) {
+            if (batch.size() == 1) {
+                batch.get(0).failure = e;
             } else {
-                pst.setNull(5, java.sql.Types.NULL);
+                log.warn(String.format("Unable to save batch of %s question attempts, saving them individually.",
+                        batch.size()), e);
+                for (PendingQuestionAttempt pendingAttempt : batch) {
+                    try {
+                        this.insertQuestionAttempts(Collections.singletonList(pendingAttempt));
+                    } catch (SegueDatabaseException attemptException) {
+                        pendingAttempt.failure = attemptException;
+                    }
+                }
             }
-            pst.setTimestamp(6, new java.sql.Timestamp(questionAttempt.getDateAttempted().getTime()));
+        }
+        batch.forEach(pendingAttempt -> pendingAttempt.written.complete(null));
+    }
 
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save question attempt.");
+    /**
+     * Insert question attempts; several attempts are written as JDBC batches in a single transaction.
+     *
+     * @param attempts - the attempts to write.
+     * @throws SegueDatabaseException - if the attempts could not be saved.
+     */
+    private void insertQuestionAttempts(final List<PendingQuestionAttempt> attempts) throws SegueDatabaseException {
+        if (attempts.isEmpty()) {
+            return;
+        }
+
+        String query = "INSERT INTO question_attempts(user_id, page_id, question_id, question_attempt, correct, \"timestamp\")"
+                + " VALUES (?, ?, ?, ?::text::jsonb, ?, ?);";
+        try (Connection conn = database.getDatabaseConnection()) {
+            if (attempts.size() == 1) {
+                try (PreparedStatement pst = conn.prepareStatement(query)) {
+                    setQuestionAttemptParameters(pst, attempts.get(0));
+                    if (pst.executeUpdate() == 0) {
+                        throw new SegueDatabaseException("Unable to save question attempt.");
+                    }
+                }
+                return;
             }
 
+            conn.setAutoCommit(false);
+            try (PreparedStatement pst = conn.prepareStatement(query)) {
+                int batchedAttempts = 0;
+                for (PendingQuestionAttempt attempt : attempts) {
+                    setQuestionAttemptParameters(pst, attempt);
+                    pst.addBatch();
+                    batchedAttempts++;
+                    if (batchedAttempts % MAX_ATTEMPTS_PER_BATCH == 0) {
+                        pst.executeBatch();
+                    }
+                }
+                if (batchedAttempts % MAX_ATTEMPTS_PER_BATCH != 0) {
+                    pst.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
-        } catch (JsonProcessingException e) {
-            throw new SegueDatabaseException("Unable to process json exception", e);
         }
     }
 
     @Override
     public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId)
             throws SegueDatabaseException {
-        String query = "SELECT * FROM question_attempts WHERE user_id = ? ORDER BY \"timestamp\" ASC";
+        String query = "SELECT question_attempt FROM question_attempts WHERE user_id = ? ORDER BY \"timestamp\" ASC";
         try (Connection conn = database.getDatabaseConnection();
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
@@ -236,7 +330,8 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     @Override
     public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId, final String questionPageId)
             throws SegueDatabaseException {
-        String query = "SELECT * FROM question_attempts WHERE user_id = ? AND page_id = ? ORDER BY \"timestamp\" ASC";
+        String query = "SELECT question_attempt FROM question_attempts WHERE user_id = ? AND page_id = ?"
+                + " ORDER BY \"timestamp\" ASC";
         try (Connection conn = database.getDatabaseConnection();
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
@@ -253,6 +348,37 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
     }
 
+    @Override
+    public Map<String, Map<String, List<LightweightQuestionValidationResponse>>> getLightweightQuestionAttempts(
+            final Long userId) throws SegueDatabaseException {
+        String query = "SELECT question_id, correct, timestamp FROM question_attempts WHERE user_id = ?"
+                + " ORDER BY \"timestamp\" ASC";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
+
+            try (ResultSet results = pst.executeQuery()) {
+                // Since we go to the effort of sorting the attempts in Postgres, use LinkedHashMap which is ordered:
+                Map<String, Map<String, List<LightweightQuestionValidationResponse>>> mapOfQuestionAttemptsByPage
+                        = Maps.newLinkedHashMap();
+                while (results.next()) {
+                    LightweightQuestionValidationResponse partialQuestionAttempt
+                            = resultsToLightweightValidationResponse(results);
+                    String questionId = partialQuestionAttempt.getQuestionId();
+
+                    mapOfQuestionAttemptsByPage
+                            .computeIfAbsent(extractPageIdFromQuestionId(questionId), k -> Maps.newLinkedHashMap())
+                            .computeIfAbsent(questionId, k -> Lists.newArrayList())
+                            .add(partialQuestionAttempt);
+                }
+                return mapOfQuestionAttemptsByPage;
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     public Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> getLightweightQuestionAttemptsByUsers(final List<Long> userIds)
             throws SegueDatabaseException {
 
@@ -326,6 +452,47 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
     }
 
+    @Override
+    public void streamQuestionPartOutcomes(final List<Long> userIds, final List<String> questionPageIds,
+                                           final QuestionPartOutcomeHandler handler)
+            throws SegueDatabaseException {
+
+        if (questionPageIds.isEmpty() || userIds.isEmpty()) {
+            return;
+        }
+
+        String query = "SELECT user_id, question_id, bool_or(correct) AS correct FROM question_attempts"
+                + " WHERE user_id = ANY(?) AND page_id = ANY(?)"
+                + " GROUP BY user_id, question_id";
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            // The driver only fetches rows in batches through a cursor, rather than all at once, inside a transaction:
+            conn.setAutoCommit(false);
+            try (PreparedStatement pst = conn.prepareStatement(query)) {
+                Array userIdArray = conn.createArrayOf("INTEGER", userIds.toArray());
+                Array pageIdArray = conn.createArrayOf("TEXT", questionPageIds.stream().distinct().toArray());
+                pst.setArray(1, userIdArray);
+                pst.setArray(2, pageIdArray);
+                pst.setFetchSize(OUTCOME_STREAM_FETCH_SIZE);
+
+                try (ResultSet results = pst.executeQuery()) {
+                    while (results.next()) {
+                        handler.handle(results.getLong("user_id"), results.getString("question_id"),
+                                results.getBoolean("correct"));
+                    }
+                } finally {
+                    userIdArray.free();
+                    pageIdArray.free();
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     /**
     * Merges any question data stored in the session (this will only happen for anonymous users).
     *
@@ -349,16 +516,10 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
             return;
         }
 
-        int count = 0;
-        for (String questionPageId : anonymouslyAnsweredQuestions.keySet()) {
-            for (String questionId : anonymouslyAnsweredQuestions.get(questionPageId).keySet()) {
-                for (QuestionValidationResponse questionResponse : anonymouslyAnsweredQuestions.get(questionPageId)
-                        .get(questionId)) {
-                    this.registerQuestionAttempt(registeredUserId, questionPageId, questionId, questionResponse);
-                    count++;
-                }
-            }
-        }
+        this.registerQuestionAttempts(registeredUserId, anonymouslyAnsweredQuestions);
+
+        long count = anonymouslyAnsweredQuestions.values().stream().flatMap(attempts -> attempts.values().stream())
+                .mapToLong(List::size).sum();
 
         log.info(String.format("Merged anonymously answered questions (%s) with known user account (%s)", count,
                 registeredUserId));
@@ -430,6 +591,63 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
     }
 
+    /**
+     * Convert the JSON question attempts stored in an anonymous user's temporary_user_store entry into a map.
+     *
+     * @param questionAttemptsJson - the questionAttempts JSON object, which may be null.
+     * @return the question pageId --> full questionId --> list of responses.
+     * @throws IOException - if the JSON is invalid.
+     */
+    private Map<String, Map<String, List<QuestionValidationResponse>>> legacyQuestionAttemptsToMap(
+            final String questionAttemptsJson) throws IOException {
+        Map<String, Map<String, List<QuestionValidationResponse>>> result = Maps.newHashMap();
+        if (null == questionAttemptsJson) {
+            return result;
+        }
+
+        // We need to try and generate QuestionValidationResponses in the correct object structure - Apologies for the hideousness
+        Map<String, Map<String, List<Object>>> questionAttemptsFromDB
+                = objectMapper.readValue(questionAttemptsJson, Map.class);
+
+        for (Map.Entry<String, Map<String, List<Object>>> questionAttemptsForPage : questionAttemptsFromDB.entrySet()) {
+
+            Map<String, List<QuestionValidationResponse>> questionAttemptsForQuestion = Maps.newHashMap();
+            for (Map.Entry<String, List<Object>> submap : questionAttemptsForPage.getValue().entrySet()) {
+                List<QuestionValidationResponse> listOfuestionValidationResponses = Lists.newArrayList();
+                questionAttemptsForQuestion.put(submap.getKey(), listOfuestionValidationResponses);
+
+                for (Object o : submap.getValue()) {
+                    listOfuestionValidationResponses
+                            .add(objectMapper.convertValue(o, QuestionValidationResponse.class));
+                }
+            }
+            result.put(questionAttemptsForPage.getKey(), questionAttemptsForQuestion);
+        }
+        return result;
+    }
+
+    /**
+     * Set the parameters of a question_attempts INSERT statement for a single attempt.
+     *
+     * @param pst - the prepared INSERT statement.
+     * @param attempt - the attempt to record.
+     * @throws SQLException - on database error.
+     */
+    private static void setQuestionAttemptParameters(final PreparedStatement pst, final PendingQuestionAttempt attempt)
+            throws SQLException {
+        pst.setLong(1, attempt.userId);
+        pst.setString(2, attempt.questionPageId);
+        pst.setString(3, attempt.fullQuestionId);
+        pst.setString(4, attempt.questionAttemptJson);
+
+        if (attempt.correct != null) {
+            pst.setBoolean(5, attempt.correct);
+        } else {
+            pst.setNull(5, java.sql.Types.NULL);
+        }
+        pst.setTimestamp(6, new java.sql.Timestamp(attempt.dateAttempted.getTime()));
+    }
+
     private LightweightQuestionValidationResponse resultsToLightweightValidationResponse(final ResultSet results) throws SQLException {
         LightweightQuestionValidationResponse partialQuestionAttempt = new QuestionValidationResponse();
 
@@ -501,4 +719,31 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
         return mapOfQuestionAttemptsByPage;
     }
+
+    /**
+     * A question attempt waiting to be written, serialised up front so that it can be written by any thread.
+     *
+     * The outcome fields are only accessed whilst holding the write lock.
+     */
+    private final class PendingQuestionAttempt {
+        private final Long userId;
+        private final String questionPageId;
+        private final String fullQuestionId;
+        private final String questionAttemptJson;
+        private final Boolean correct;
+        private final Date dateAttempted;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+        private SegueDatabaseException failure;
+
+        private PendingQuestionAttempt(final Long userId, final String questionPageId, final String fullQuestionId,
+                                       final QuestionValidationResponse questionAttempt)
+                throws JsonProcessingException {
+            this.userId = userId;
+            this.questionPageId = questionPageId;
+            this.fullQuestionId = fullQuestionId;
+            this.questionAttemptJson = objectMapper.writeValueAsString(questionAttempt);
+            this.correct = questionAttempt.isCorrect();
+            this.dateAttempted = questionAttempt.getDateAttempted();
+        }
+    }
 }
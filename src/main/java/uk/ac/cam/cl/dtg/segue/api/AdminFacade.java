@@ -64,6 +64,7 @@ import uk.ac.cam.cl.dtg.segue.etl.GithubPushEventPayload;
 import uk.ac.cam.cl.dtg.segue.scheduler.SegueJobService;
 import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+import uk.ac.cam.cl.dtg.util.OutboundHttpClient;
 import uk.ac.cam.cl.dtg.util.RequestIPExtractor;
 import uk.ac.cam.cl.dtg.util.locations.LocationServerException;
 import uk.ac.cam.cl.dtg.util.locations.PostCodeRadius;
@@ -87,12 +88,12 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -117,6 +118,9 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 public class AdminFacade extends AbstractSegueFacade {
     private static final Logger log = LoggerFactory.getLogger(AdminFacade.class);
 
+    // Changing the live version makes the ETL index the new version before it replies, which can take many minutes:
+    public static final int DEFAULT_ETL_REQUEST_TIMEOUT_MILLISECONDS = 30 * 60 * 1000;
+
     private final UserAccountManager userManager;
     private final GitContentManager contentManager;
     private final String contentIndex;
@@ -132,6 +136,8 @@ public class AdminFacade extends AbstractSegueFacade {
     private final IExternalAccountManager externalAccountManager;
     private final IMisuseMonitor misuseMonitor;
     private final SegueJobService segueJobService;
+    private final OutboundHttpClient httpClient;
+    private final Duration etlRequestTimeout;
 
     /**
      * Create an instance of the administrators facade.
@@ -154,6 +160,10 @@ public class AdminFacade extends AbstractSegueFacade {
      *            - for using the event booking system
      * @param misuseMonitor
      *            - misuse monitor.
+     * @param httpClient
+     *            - for requests to the content indexer.
+     * @param etlRequestTimeoutMilliseconds
+     *            - how long to wait for the content indexer to finish indexing a new version.
      */
     @Inject
     public AdminFacade(final AbstractConfigLoader properties, final UserAccountManager userManager,
@@ -161,7 +171,9 @@ public class AdminFacade extends AbstractSegueFacade {
                        final StatisticsManager statsManager, final LocationManager locationManager,
                        final SchoolListReader schoolReader, final AbstractUserPreferenceManager userPreferenceManager,
                        final EventBookingManager eventBookingManager, final SegueJobService segueJobService,
-                       final IExternalAccountManager externalAccountManager, final IMisuseMonitor misuseMonitor) {
+                       final IExternalAccountManager externalAccountManager, final IMisuseMonitor misuseMonitor,
+                       final OutboundHttpClient httpClient,
+                       @Named(ETL_REQUEST_TIMEOUT_MILLISECONDS) final int etlRequestTimeoutMilliseconds) {
         super(properties, logManager);
         this.userManager = userManager;
         this.contentManager = contentManager;
@@ -174,6 +186,8 @@ public class AdminFacade extends AbstractSegueFacade {
         this.externalAccountManager = externalAccountManager;
         this.misuseMonitor = misuseMonitor;
         this.segueJobService = segueJobService;
+        this.httpClient = httpClient;
+        this.etlRequestTimeout = Duration.ofMillis(etlRequestTimeoutMilliseconds);
     }
 
     /**
@@ -1161,16 +1175,15 @@ public class AdminFacade extends AbstractSegueFacade {
 
                 String oldLiveVersion = contentManager.getCurrentContentSHA();
 
-                HttpClient httpClient = HttpClient.newHttpClient();
                 URI url = URI.create(String.format("http://%s:%s/isaac-api/api/etl/set_version_alias/%s/%s",
                         getProperties().getProperty("ETL_HOSTNAME"), getProperties().getProperty("ETL_PORT"),
                         this.contentIndex, version));
 
-                HttpRequest httpRequest = HttpRequest.newBuilder()
-                        .uri(url)
+                HttpRequest httpRequest = httpClient.newRequest(url)
+                        .timeout(etlRequestTimeout)
                         .POST(HttpRequest.BodyPublishers.noBody())
                         .build();
-                HttpResponse<String> httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> httpResponse = httpClient.send("etl", httpRequest);
 
                 if (httpResponse.statusCode() == 200) {
                     log.info(currentUser.getEmail() + " changed live version from " + oldLiveVersion + " to " + version + ".");
@@ -1239,16 +1252,15 @@ public class AdminFacade extends AbstractSegueFacade {
             if (payload.getRef().equals("refs/heads/master")) {
                 String newVersion = payload.getAfter();
 
-                HttpClient httpClient = HttpClient.newHttpClient();
                 URI url = URI.create(String.format("http://%s:%s/isaac-api/api/etl/new_version_alert/%s",
                         getProperties().getProperty("ETL_HOSTNAME"), getProperties().getProperty("ETL_PORT"),
                         newVersion));
 
-                HttpRequest httpRequest = HttpRequest.newBuilder()
-                        .uri(url)
+                HttpRequest httpRequest = httpClient.newRequest(url)
+                        .timeout(etlRequestTimeout)
                         .POST(HttpRequest.BodyPublishers.noBody())
                         .build();
-                HttpResponse<String> httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> httpResponse = httpClient.send("etl", httpRequest);
 
                 if (httpResponse.statusCode() == 200) {
                     return Response.ok().build();
@@ -1258,7 +1270,7 @@ public class AdminFacade extends AbstractSegueFacade {
                     return r.toResponse();
                 }
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, e.getMessage()).toResponse();
         }
         return Response.ok().build();
@@ -173,6 +173,16 @@ public final class Constants {
      */
     public static final String SESSION_EXPIRY_SECONDS_REMEMBERED = "SESSION_EXPIRY_SECONDS_REMEMBERED";
 
+    /**
+     * Constant representing the property name for how long a validated session user may be cached, in seconds.
+     */
+    public static final String SESSION_USER_CACHE_SECONDS = "SESSION_USER_CACHE_SECONDS";
+
+    /**
+     * Constant representing the property name for the maximum number of session users to cache.
+     */
+    public static final String SESSION_USER_CACHE_MAX_ENTRIES = "SESSION_USER_CACHE_MAX_ENTRIES";
+
     /**
      * Constant representing the key for the SESSION USER ID - used in HMAC calculations.
      */
@@ -331,6 +341,19 @@ public final class Constants {
     public static final String POSTGRES_DB_URL = "POSTGRES_DB_URL";
     public static final String POSTGRES_DB_USER = "POSTGRES_DB_USER";
     public static final String POSTGRES_DB_PASSWORD = "POSTGRES_DB_PASSWORD";
+    public static final String POSTGRES_POOL_MAX_TOTAL_CONNECTIONS = "POSTGRES_POOL_MAX_TOTAL_CONNECTIONS";
+    public static final String POSTGRES_POOL_MIN_IDLE_CONNECTIONS = "POSTGRES_POOL_MIN_IDLE_CONNECTIONS";
+    public static final String POSTGRES_POOL_MAX_WAIT_MILLISECONDS = "POSTGRES_POOL_MAX_WAIT_MILLISECONDS";
+    public static final String POSTGRES_POOL_IDLE_VALIDATION_INTERVAL_SECONDS = "POSTGRES_POOL_IDLE_VALIDATION_INTERVAL_SECONDS";
+    public static final String POSTGRES_POOL_MIN_EVICTABLE_IDLE_SECONDS = "POSTGRES_POOL_MIN_EVICTABLE_IDLE_SECONDS";
+    public static final String POSTGRES_POOL_LEAK_THRESHOLD_SECONDS = "POSTGRES_POOL_LEAK_THRESHOLD_SECONDS";
+    public static final String POSTGRES_POOL_LEAK_TRACING = "POSTGRES_POOL_LEAK_TRACING";
+
+    public static final String EMAIL_OUTBOX_ENABLED = "EMAIL_OUTBOX_ENABLED";
+    public static final String EMAIL_OUTBOX_WORKER_THREADS = "EMAIL_OUTBOX_WORKER_THREADS";
+    public static final String EMAIL_OUTBOX_BATCH_SIZE = "EMAIL_OUTBOX_BATCH_SIZE";
+    public static final String EMAIL_OUTBOX_MAX_MESSAGES_PER_SECOND = "EMAIL_OUTBOX_MAX_MESSAGES_PER_SECOND";
+    public static final String EMAIL_OUTBOX_MAX_ATTEMPTS = "EMAIL_OUTBOX_MAX_ATTEMPTS";
 
     public enum TimeInterval {
         TWO_YEARS(2, 0, 0, 0, 0, 0),
@@ -351,8 +374,15 @@ public final class Constants {
 
     // Logging component
     public static final String LOGGING_ENABLED = "LOGGING_ENABLED";
+    public static final String LOG_EVENT_BUFFER_SIZE = "LOG_EVENT_BUFFER_SIZE";
+    public static final String LOG_EVENT_FLUSH_INTERVAL_MILLISECONDS = "LOG_EVENT_FLUSH_INTERVAL_MILLISECONDS";
+    public static final String LOG_EVENT_BLOCK_WHEN_BUFFER_FULL = "LOG_EVENT_BLOCK_WHEN_BUFFER_FULL";
     public static final Integer MAX_LOG_REQUEST_BODY_SIZE_IN_BYTES = 1000000;
 
+    // Misuse monitor
+    public static final String MISUSE_MONITOR_SHARED = "MISUSE_MONITOR_SHARED";
+    public static final String MISUSE_MONITOR_SYNCHRONISATION_INTERVAL_MILLISECONDS = "MISUSE_MONITOR_SYNCHRONISATION_INTERVAL_MILLISECONDS";
+
     public interface LogType {
         /**
          * Get the string value of the log Enum.
@@ -550,6 +580,8 @@ public final class Constants {
 
     // cache settings
     public static final String MAX_CONTENT_CACHE_TIME = "MAX_CONTENT_CACHE_TIME";
+    public static final String CONTENT_OBJECT_CACHE_MAX_SIZE_MB = "CONTENT_OBJECT_CACHE_MAX_SIZE_MB";
+    public static final String CONTENT_IN_MEMORY_STORE_ENABLED = "CONTENT_IN_MEMORY_STORE_ENABLED";
     
     public static final int NUMBER_SECONDS_IN_MINUTE = 60;
     public static final int NUMBER_SECONDS_IN_FIVE_MINUTES = NUMBER_SECONDS_IN_MINUTE * 5;
@@ -595,6 +627,12 @@ public final class Constants {
     public static final String CHEMISTRY_CHECKER_PORT = "CHEMISTRY_CHECKER_PORT";
     public static final String CHEMISTRY_CHECKER_OLD_HOST = "CHEMISTRY_CHECKER_OLD_HOST";
     public static final String CHEMISTRY_CHECKER_OLD_PORT = "CHEMISTRY_CHECKER_OLD_PORT";
+    public static final String EXTERNAL_VALIDATOR_REQUEST_TIMEOUT_MILLISECONDS = "EXTERNAL_VALIDATOR_REQUEST_TIMEOUT_MILLISECONDS";
+    public static final String OUTBOUND_HTTP_CONNECT_TIMEOUT_MILLISECONDS = "OUTBOUND_HTTP_CONNECT_TIMEOUT_MILLISECONDS";
+    public static final String OUTBOUND_HTTP_REQUEST_TIMEOUT_MILLISECONDS = "OUTBOUND_HTTP_REQUEST_TIMEOUT_MILLISECONDS";
+    public static final String OUTBOUND_HTTP_MAX_CONCURRENT_REQUESTS_PER_HOST = "OUTBOUND_HTTP_MAX_CONCURRENT_REQUESTS_PER_HOST";
+    public static final String ETL_REQUEST_TIMEOUT_MILLISECONDS = "ETL_REQUEST_TIMEOUT_MILLISECONDS";
+    public static final String VALIDATION_RESULT_CACHE_MAX_ENTRIES = "VALIDATION_RESULT_CACHE_MAX_ENTRIES";
 
     public static final String QUESTION_MISUSE_THRESHOLD_OVERRIDE = "QUESTION_MISUSE_THRESHOLD_OVERRIDE";
 
@@ -46,6 +46,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserLoggedInException;
 import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicationMessage;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
 import uk.ac.cam.cl.dtg.segue.comm.EmailType;
+import uk.ac.cam.cl.dtg.segue.comm.MassEmailJob;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
@@ -377,6 +378,41 @@ public class EmailFacade extends AbstractSegueFacade {
     }
 
 
+    /**
+     * Get the progress of a mass email started by one of the send email endpoints.
+     *
+     * @param request - so that we can allow only the sender, or an admin, to see the progress.
+     * @param jobId   - the id of the job returned when the email was sent.
+     * @return the job's progress.
+     */
+    @GET
+    @Path("/email/sendjobs/{jobid}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Get the progress of sending a mass email.")
+    public final Response getMassEmailJob(@Context final HttpServletRequest request,
+                                          @PathParam("jobid") final String jobId) {
+        try {
+            RegisteredUserDTO currentUser = this.userManager.getCurrentRegisteredUser(request);
+            if (!isUserAnAdminOrEventManager(userManager, currentUser)) {
+                return SegueErrorResponse.getIncorrectRoleResponse();
+            }
+
+            MassEmailJob job = emailManager.getMassEmailJob(jobId);
+            if (null == job || !(currentUser.getId().equals(job.getSenderId())
+                    || isUserAnAdmin(userManager, currentUser))) {
+                return SegueErrorResponse.getResourceNotFoundResponse("No email job found with this ID!");
+            }
+            return Response.ok(job).build();
+        } catch (NoUserLoggedInException e) {
+            return SegueErrorResponse.getNotLoggedInResponse();
+        } catch (SegueDatabaseException e) {
+            SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
+                    "Unable to read the progress of this email job.", e);
+            log.error(error.getErrorMessage(), e);
+            return error.toResponse();
+        }
+    }
+
     /**
      * SendEmails
      *
@@ -436,7 +472,8 @@ public class EmailFacade extends AbstractSegueFacade {
                 return error.toResponse();
             }
 
-            emailManager.sendCustomEmail(sender, contentId, allSelectedUsers, emailType);
+            MassEmailJob job = emailManager.sendCustomEmail(sender, contentId, allSelectedUsers, emailType);
+            return Response.ok(job).build();
         } catch (SegueDatabaseException e) {
             SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
                     "There was an error processing your request.");
@@ -525,7 +562,9 @@ public class EmailFacade extends AbstractSegueFacade {
                 return error.toResponse();
             }
 
-            emailManager.sendCustomEmail(sender, contentId, new ArrayList<>(allSelectedUsers), emailType);
+            MassEmailJob job = emailManager.sendCustomEmail(sender, contentId, new ArrayList<>(allSelectedUsers),
+                    emailType);
+            return Response.ok(job).build();
         } catch (SegueDatabaseException e) {
             SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
                     "There was an error processing your request.");
@@ -627,7 +666,9 @@ public class EmailFacade extends AbstractSegueFacade {
                 return error.toResponse();
             }
 
-            emailManager.sendCustomContentEmail(sender, emailTemplate, new ArrayList<>(allSelectedUsers), emailType);
+            MassEmailJob job = emailManager.sendCustomContentEmail(sender, emailTemplate,
+                    new ArrayList<>(allSelectedUsers), emailType);
+            return Response.ok(job).build();
         } catch (SegueDatabaseException e) {
             SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
                     "There was an error processing your request.");
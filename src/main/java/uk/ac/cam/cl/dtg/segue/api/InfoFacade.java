@@ -28,6 +28,7 @@ import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.scheduler.SegueJobService;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+import uk.ac.cam.cl.dtg.util.OutboundHttpClient;
 
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
@@ -39,7 +40,6 @@ import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.Collection;
@@ -60,6 +60,7 @@ public class InfoFacade extends AbstractSegueFacade {
 
     private final GitContentManager contentManager;
     private final SegueJobService segueJobService;
+    private final OutboundHttpClient httpClient;
 
     /**
      * @param properties
@@ -68,14 +69,17 @@ public class InfoFacade extends AbstractSegueFacade {
      *            - So that metadata about content can be accessed.
      * @param logManager
      *            - for logging events using the logging api.
+     * @param httpClient
+     *            - for checking the status of other services.
      */
     @Inject
     public InfoFacade(final AbstractConfigLoader properties, final GitContentManager contentManager,
                       final SegueJobService segueJobService,
-                      final ILogManager logManager) {
+                      final ILogManager logManager, final OutboundHttpClient httpClient) {
         super(properties, logManager);
         this.contentManager = contentManager;
         this.segueJobService = segueJobService;
+        this.httpClient = httpClient;
     }
 
     /**
@@ -164,7 +168,8 @@ public class InfoFacade extends AbstractSegueFacade {
     @Operation(summary = "Check whether the symbolic question checker is running.")
     public Response pingEqualityChecker() {
 
-        return pingUrlForStatus("http://" + this.getProperties().getProperty(Constants.EQUALITY_CHECKER_HOST)
+        return pingUrlForStatus("equality_checker",
+                "http://" + this.getProperties().getProperty(Constants.EQUALITY_CHECKER_HOST)
                 + ":" + this.getProperties().getProperty(Constants.EQUALITY_CHECKER_PORT) +  "/");
     }
 
@@ -179,7 +184,8 @@ public class InfoFacade extends AbstractSegueFacade {
     @Operation(summary = "Check whether the chemistry question checker is running.")
     public Response pingChemistryChecker() {
 
-        return pingUrlForStatus("http://" + this.getProperties().getProperty(Constants.CHEMISTRY_CHECKER_HOST)
+        return pingUrlForStatus("chemistry_checker",
+                "http://" + this.getProperties().getProperty(Constants.CHEMISTRY_CHECKER_HOST)
                 + ":" + this.getProperties().getProperty(Constants.CHEMISTRY_CHECKER_PORT) +  "/");
     }
 
@@ -194,7 +200,7 @@ public class InfoFacade extends AbstractSegueFacade {
     @Operation(summary = "Check whether the content indexer is running.")
     public Response pingETLServer() {
 
-        return pingUrlForStatus("http://" + getProperties().getProperty("ETL_HOSTNAME") + ":"
+        return pingUrlForStatus("etl", "http://" + getProperties().getProperty("ETL_HOSTNAME") + ":"
                 + getProperties().getProperty("ETL_PORT") + "/isaac-api/api/etl/ping");
     }
 
@@ -209,7 +215,7 @@ public class InfoFacade extends AbstractSegueFacade {
     @Operation(summary = "Check whether elasticsearch is running.")
     public Response pingElasticSearch() {
 
-        return pingUrlForStatus("http://" + getProperties().getProperty("SEARCH_CLUSTER_ADDRESS") + ":"
+        return pingUrlForStatus("elasticsearch", "http://" + getProperties().getProperty("SEARCH_CLUSTER_ADDRESS") + ":"
                     + getProperties().getProperty("SEARCH_CLUSTER_INFO_PORT") + "/_cat/health");
     }
 
@@ -233,22 +239,20 @@ public class InfoFacade extends AbstractSegueFacade {
     /**
      *  Test a HTTP URL for a 200 status code.
      *
+     * @param destination - the name of the service being tested, for metrics.
      * @param url - the url to test.
      * @return a Response containing "success" and true/false for the status.
      */
-    private Response pingUrlForStatus(final String url) {
+    private Response pingUrlForStatus(final String destination, final String url) {
 
         HttpResponse<String> httpResponse = null;
         try {
-            HttpClient httpClient = java.net.http.HttpClient.newHttpClient();
-
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
+            HttpRequest httpRequest = httpClient.newRequest(URI.create(url))
                     .GET().build();
 
-            httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            httpResponse = httpClient.send(destination, httpRequest);
 
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             log.warn(String.format("Error when pinging for status: %s", e));
         }
 
@@ -468,6 +468,13 @@ public class QuestionFacade extends AbstractSegueFacade {
 
             // Update the user in case their streak has changed:
             if (currentUser instanceof RegisteredUserDTO) {
+                if (response.getEntity() instanceof QuestionValidationResponseDTO) {
+                    QuestionValidationResponseDTO validationResponse = (QuestionValidationResponseDTO) response.getEntity();
+                    if (Boolean.TRUE.equals(validationResponse.isCorrect())) {
+                        this.userStreaksManager.recordCorrectQuestionAttempt((RegisteredUserDTO) currentUser,
+                                validationResponse.getQuestionId());
+                    }
+                }
                 this.userStreaksManager.notifyUserOfStreakChange((RegisteredUserDTO) currentUser);
             }
 
@@ -675,16 +675,35 @@ public class GroupManager {
             throws SegueDatabaseException, ContentManagerException {
 
         List<UserGameboardProgressSummaryDTO> groupProgressSummary = new ArrayList<>();
-        Map<RegisteredUserDTO, List<GameboardProgressSummaryDTO>> userProgressMap = new HashMap<>();
+        Map<Long, List<GameboardProgressSummaryDTO>> userProgressMap = new HashMap<>();
         for (RegisteredUserDTO user : groupMembers) {
-            userProgressMap.put(user, new ArrayList<>());
+            userProgressMap.put(user.getId(), new ArrayList<>());
         }
 
+        // Load every gameboard, and then every relevant question attempt by the group, up front rather than per
+        // assignment:
+        List<String> gameboardIds = assignments.stream().map(AssignmentDTO::getGameboardId).distinct()
+                .collect(Collectors.toList());
+        Map<String, GameboardDTO> gameboards = new HashMap<>();
+        if (!gameboardIds.isEmpty()) {
+            for (GameboardDTO gameboard : gameManager.getGameboards(gameboardIds)) {
+                gameboards.put(gameboard.getId(), gameboard);
+            }
+        }
+        Map<String, List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>>> progressByGameboard =
+                gameManager.gatherGameProgressData(groupMembers, gameboards.values());
+
         for (AssignmentDTO assignment : assignments) {
             // Not sure why I have to do this but AssignmentDTO::getGameboard returns null
-            GameboardDTO gameboard = gameManager.getGameboard(assignment.getGameboardId());
+            GameboardDTO gameboard = gameboards.get(assignment.getGameboardId());
+            if (null == gameboard) {
+                log.warn(String.format("Unable to find gameboard (%s) for assignment (%s) when summarising progress.",
+                        assignment.getGameboardId(), assignment.getId()));
+                continue;
+            }
 
-            List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>> userProgressData = gameManager.gatherGameProgressData(groupMembers, gameboard);
+            List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>> userProgressData =
+                    progressByGameboard.get(gameboard.getId());
 
             for (ImmutablePair<RegisteredUserDTO, List<GameboardItem>> userProgress : userProgressData) {
                 RegisteredUserDTO user = userProgress.getKey();
@@ -723,16 +742,16 @@ public class GroupManager {
                 summary.setPassMark(passMark);
                 summary.setQuestionPagesPerfect(questionPagesPerfect);
                 summary.setQuestionPagesTotal(progress.size());
-                userProgressMap.get(user).add(summary);
+                userProgressMap.get(user.getId()).add(summary);
             }
         }
 
-        userProgressMap.forEach((user, progress) -> {
+        for (RegisteredUserDTO user : groupMembers) {
             UserGameboardProgressSummaryDTO summary = new UserGameboardProgressSummaryDTO();
             summary.setUser(userManager.convertToUserSummaryObject(user));
-            summary.setProgress(progress);
+            summary.setProgress(userProgressMap.get(user.getId()));
             groupProgressSummary.add(summary);
-        });
+        }
 
         return groupProgressSummary;
     }
@@ -16,10 +16,17 @@
 package uk.ac.cam.cl.dtg.segue.api.managers;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
-import com.google.inject.Inject;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Injector;
 import io.prometheus.client.Histogram;
 import ma.glasnost.orika.MapperFacade;
@@ -51,6 +58,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.users.AbstractSegueUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.AnonymousUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.isaac.quiz.IQuestionAttemptManager;
+import uk.ac.cam.cl.dtg.isaac.quiz.IQuestionAttemptManager.QuestionPartOutcomeHandler;
 import uk.ac.cam.cl.dtg.isaac.quiz.ISpecifier;
 import uk.ac.cam.cl.dtg.isaac.quiz.IValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.SpecifiesWith;
@@ -62,6 +70,7 @@ import uk.ac.cam.cl.dtg.segue.api.ErrorResponseWrapper;
 import uk.ac.cam.cl.dtg.segue.configuration.SegueGuiceConfigurationModule;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.core.Response;
@@ -74,7 +83,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.VALIDATOR_CACHE_REQUESTS;
 import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.VALIDATOR_LATENCY_HISTOGRAM;
 
 /**
@@ -87,19 +101,46 @@ import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.VALIDATOR_LATENCY
 public class QuestionManager {
     private static final Logger log = LoggerFactory.getLogger(QuestionManager.class);
 
+    private static final String UNKNOWN_CONTENT_SHA = "unknown";
+
+    public static final int DEFAULT_VALIDATION_RESULT_CACHE_MAX_ENTRIES = 0;
+
     private final ContentMapper mapper;
     private final IQuestionAttemptManager questionAttemptPersistenceManager;
+    private final GitContentManager contentManager;
+
+    private final Cache<ValidationCacheKey, QuestionValidationResponse> validationResultCache;
+    private final ObjectWriter canonicalAnswerWriter;
+
     /**
      * Create a default Question manager object.
      * 
      * @param mapper
      *            - an auto mapper to allow us to convert to and from QuestionValidationResponseDOs and DTOs.
      * @param questionPersistenceManager - for question attempt persistence.
+     * @param contentManager - to find the current content version, for caching validation results.
+     * @param maxValidationCacheEntries - the most validation results to cache, or zero not to cache any.
      */
-    @Inject
-    public QuestionManager(final ContentMapper mapper, final IQuestionAttemptManager questionPersistenceManager) {
+    public QuestionManager(final ContentMapper mapper, final IQuestionAttemptManager questionPersistenceManager,
+                           final GitContentManager contentManager, final int maxValidationCacheEntries) {
         this.mapper = mapper;
         this.questionAttemptPersistenceManager = questionPersistenceManager;
+        this.contentManager = contentManager;
+
+        if (maxValidationCacheEntries > 0) {
+            log.info(String.format("Caching up to %d question validation results.", maxValidationCacheEntries));
+            this.validationResultCache = CacheBuilder.newBuilder().recordStats().maximumSize(maxValidationCacheEntries)
+                    .expireAfterAccess(1, TimeUnit.DAYS).build();
+            CACHE_METRICS_COLLECTOR.addCache("question_manager_validation_cache", validationResultCache);
+            // Answers that differ only in the order of their properties should share a cache entry:
+            ObjectMapper canonicalAnswerMapper = mapper.generateNewPreconfiguredContentMapper();
+            canonicalAnswerMapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+            this.canonicalAnswerWriter = canonicalAnswerMapper.writer()
+                    .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        } else {
+            this.validationResultCache = null;
+            this.canonicalAnswerWriter = null;
+        }
     }
 
     /**
@@ -121,22 +162,139 @@ public class QuestionManager {
                     .build();
         }
 
+        return this.validateAnswer(validator, question, submittedAnswer);
+    }
+
+    /**
+     * Validate client answer to recorded answer, using a particular validator.
+     *
+     * @param validator - the validator for the question.
+     * @param question - the question to which the answer must be validated against.
+     * @param submittedAnswer - from the client as a DTO for comparison.
+     * @return A response containing a QuestionValidationResponse object.
+     */
+    Response validateAnswer(final IValidator validator, final Question question, final ChoiceDTO submittedAnswer) {
         Choice answerFromUser = mapper.getAutoMapper().map(submittedAnswer, Choice.class);
-        QuestionValidationResponse validateQuestionResponse;
-        Histogram.Timer validatorTimer =
-                VALIDATOR_LATENCY_HISTOGRAM.labels(validator.getClass().getSimpleName()).startTimer();
+        QuestionValidationResponseDTO validateQuestionResponse;
         try {
-            validateQuestionResponse = validator.validateQuestionResponse(question, answerFromUser);
+            ValidationCacheKey cacheKey = this.getValidationCacheKey(validator, question, answerFromUser);
+            if (null == cacheKey) {
+                validateQuestionResponse = mapper.getAutoMapper().map(
+                        this.validateWithTiming(validator, question, answerFromUser),
+                        QuestionValidationResponseDTO.class);
+            } else {
+                validateQuestionResponse = this.getCachedValidationResponse(cacheKey, validator, question,
+                        answerFromUser, submittedAnswer);
+            }
         } catch (ValidatorUnavailableException e) {
             return SegueErrorResponse.getServiceUnavailableResponse(e.getClass().getSimpleName() + ": "
                     + e.getMessage());
+        }
+
+        return Response.ok(validateQuestionResponse).build();
+
+    }
+
+    /**
+     * Validate an answer, recording how long the validator took.
+     *
+     * @param validator - the validator for the question.
+     * @param question - the question being answered.
+     * @param answerFromUser - the answer to validate.
+     * @return the validation response.
+     * @throws ValidatorUnavailableException - if the validator cannot mark the answer at the moment.
+     */
+    private QuestionValidationResponse validateWithTiming(final IValidator validator, final Question question,
+                                                          final Choice answerFromUser)
+            throws ValidatorUnavailableException {
+        Histogram.Timer validatorTimer =
+                VALIDATOR_LATENCY_HISTOGRAM.labels(validator.getClass().getSimpleName()).startTimer();
+        try {
+            return validator.validateQuestionResponse(question, answerFromUser);
         } finally {
             validatorTimer.observeDuration();
         }
+    }
 
-        return Response.ok(
-                mapper.getAutoMapper().map(validateQuestionResponse, QuestionValidationResponseDTO.class)).build();
+    /**
+     * Get the validation response for an answer from the cache, validating it if it has not been seen before.
+     *
+     * Concurrent submissions of the same answer share a single validation.
+     *
+     * @param cacheKey - the cache key for this answer.
+     * @param validator - the validator for the question.
+     * @param question - the question being answered.
+     * @param answerFromUser - the answer to validate.
+     * @param submittedAnswer - the answer as submitted by the client.
+     * @return the validation response.
+     * @throws ValidatorUnavailableException - if the validator cannot mark the answer at the moment.
+     */
+    private QuestionValidationResponseDTO getCachedValidationResponse(final ValidationCacheKey cacheKey,
+                                                                      final IValidator validator,
+                                                                      final Question question,
+                                                                      final Choice answerFromUser,
+                                                                      final ChoiceDTO submittedAnswer)
+            throws ValidatorUnavailableException {
+        String validatorName = validator.getClass().getSimpleName();
+        boolean[] validated = {false};
+        try {
+            QuestionValidationResponse response = validationResultCache.get(cacheKey, () -> {
+                validated[0] = true;
+                return this.validateWithTiming(validator, question, answerFromUser);
+            });
+            QuestionValidationResponseDTO responseDTO =
+                    mapper.getAutoMapper().map(response, QuestionValidationResponseDTO.class);
+
+            if (validated[0]) {
+                VALIDATOR_CACHE_REQUESTS.labels(validatorName, "miss").inc();
+            } else {
+                VALIDATOR_CACHE_REQUESTS.labels(validatorName, "hit").inc();
+                // The cached response was for an earlier, equivalent, submission:
+                responseDTO.setAnswer(submittedAnswer);
+                responseDTO.setDateAttempted(new Date());
+            }
+            return responseDTO;
+        } catch (ExecutionException e) {
+            VALIDATOR_CACHE_REQUESTS.labels(validatorName, "miss").inc();
+            if (e.getCause() instanceof ValidatorUnavailableException) {
+                throw (ValidatorUnavailableException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            VALIDATOR_CACHE_REQUESTS.labels(validatorName, "miss").inc();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Work out the validation result cache key for an answer, if its validation response can be cached.
+     *
+     * @param validator - the validator for the question.
+     * @param question - the question being answered.
+     * @param answerFromUser - the answer to validate.
+     * @return the cache key, or null if the response should not be cached.
+     */
+    private ValidationCacheKey getValidationCacheKey(final IValidator validator, final Question question,
+                                                     final Choice answerFromUser) {
+        if (null == validationResultCache || !validator.isDeterministic() || null == question.getId()) {
+            return null;
+        }
+
+        String contentSha = contentManager.getCurrentContentSHA();
+        if (null == contentSha || UNKNOWN_CONTENT_SHA.equals(contentSha)) {
+            return null;
+        }
 
+        try {
+            return new ValidationCacheKey(contentSha, question.getId(), validator.getClass(),
+                    canonicalAnswerWriter.writeValueAsString(answerFromUser));
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to canonicalise answer to question " + question.getId() + ", not caching its result.");
+            return null;
+        }
     }
 
     /**
@@ -392,6 +550,34 @@ public class QuestionManager {
         }
     }
 
+    /**
+     * getLightweightQuestionAttemptsByUser. This method will return all of the question attempts for a given user as
+     * a map, without the answers given where these would need to be loaded separately.
+     *
+     * The map is in the same format as {@link #getQuestionAttemptsByUser(AbstractSegueUserDTO)}, and should be
+     * preferred to it when only the correctness and date of each attempt is required.
+     *
+     * @param user
+     *            - with the session information included.
+     * @return map of question attempts (QuestionPageId -> QuestionID -> [LightweightQuestionValidationResponse] or an
+     *         empty map.
+     * @throws SegueDatabaseException
+     *             - if there is a database error.
+     */
+    public Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+        getLightweightQuestionAttemptsByUser(final AbstractSegueUserDTO user) throws SegueDatabaseException {
+        Objects.requireNonNull(user);
+
+        if (user instanceof RegisteredUserDTO) {
+            return this.questionAttemptPersistenceManager.getLightweightQuestionAttempts(
+                    ((RegisteredUserDTO) user).getId());
+        } else {
+            // anonymous attempts are all stored together, so there is nothing to be saved by leaving out the answers
+            return this.questionAttemptPersistenceManager.getAnonymousQuestionAttempts(
+                    ((AnonymousUserDTO) user).getSessionId());
+        }
+    }
+
     /**
      * Return all the attempts of a user at a specified page ID prefix.
      *
@@ -424,6 +610,23 @@ public class QuestionManager {
         return this.questionAttemptPersistenceManager.getMatchingLightweightQuestionAttempts(userIds, questionPageIds);
     }
 
+    /**
+     * Stream whether each user has answered each question part on the given question pages correctly.
+     *
+     * @see IQuestionAttemptManager#streamQuestionPartOutcomes(List, List, QuestionPartOutcomeHandler)
+     *
+     * @param users who we are interested in.
+     * @param questionPageIds we want to look up.
+     * @param handler to receive the outcome for each question part a user has attempted.
+     * @throws SegueDatabaseException if there is a database error.
+     */
+    public void streamQuestionPartOutcomes(final List<RegisteredUserDTO> users, final List<String> questionPageIds,
+                                           final QuestionPartOutcomeHandler handler)
+            throws SegueDatabaseException {
+        List<Long> userIds = users.stream().map(RegisteredUserDTO::getId).collect(Collectors.toList());
+        this.questionAttemptPersistenceManager.streamQuestionPartOutcomes(userIds, questionPageIds, handler);
+    }
+
     /**
      *  Helper method for attempts from a single user.
      *
@@ -647,4 +850,40 @@ public class QuestionManager {
         }
         return answerFromClientDTO;
     }
+
+    /**
+     * Key for the validation result cache: an answer to a particular version of a question, marked by a validator.
+     */
+    private static final class ValidationCacheKey {
+        private final String contentSha;
+        private final String questionId;
+        private final Class<?> validatorClass;
+        private final String canonicalAnswer;
+
+        ValidationCacheKey(final String contentSha, final String questionId, final Class<?> validatorClass,
+                           final String canonicalAnswer) {
+            this.contentSha = contentSha;
+            this.questionId = questionId;
+            this.validatorClass = validatorClass;
+            this.canonicalAnswer = canonicalAnswer;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ValidationCacheKey)) {
+                return false;
+            }
+            ValidationCacheKey other = (ValidationCacheKey) o;
+            return contentSha.equals(other.contentSha) && questionId.equals(other.questionId)
+                    && validatorClass.equals(other.validatorClass) && canonicalAnswer.equals(other.canonicalAnswer);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(contentSha, questionId, validatorClass, canonicalAnswer);
+        }
+    }
 }
@@ -1187,6 +1187,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         // save the user
         RegisteredUser userToReturn = this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedUser(userToReturn.getId());
         if (null != newPassword && !newPassword.isEmpty()) {
             authenticator.setOrChangeUsersPassword(userToReturn, newPassword);
         }
@@ -1231,6 +1232,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         userToSave.setRole(requestedRole);
         this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedUser(userToSave.getId());
     }
 
     /**
@@ -1251,6 +1253,7 @@ public class UserAccountManager implements IUserAccountManager {
         userToSave.setEmailVerificationStatus(requestedEmailVerificationStatus);
         userToSave.setLastUpdated(new Date());
         this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedUser(userToSave.getId());
     }
 
     /**
@@ -1270,6 +1273,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         // delete the user.
         this.database.deleteUserAccount(userDOById);
+        this.userAuthenticationManager.invalidateCachedUser(userDOById.getId());
     }
 
     /**
@@ -1293,6 +1297,8 @@ public class UserAccountManager implements IUserAccountManager {
 
         // merge the users.
         this.database.mergeUserAccounts(targetUser, sourceUser);
+        this.userAuthenticationManager.invalidateCachedUser(targetUser.getId());
+        this.userAuthenticationManager.invalidateCachedUser(sourceUser.getId());
     }
 
     /**
@@ -1347,6 +1353,7 @@ public class UserAccountManager implements IUserAccountManager {
 
             // Save user object
             this.database.createOrUpdateUser(user);
+            this.userAuthenticationManager.invalidateCachedUser(user.getId());
 
             String emailVerificationToken = user.getEmailVerificationToken();
 
@@ -1448,6 +1455,7 @@ public class UserAccountManager implements IUserAccountManager {
             user.setTeacherAccountPending(false);
 
             RegisteredUser createOrUpdateUser = this.database.createOrUpdateUser(user);
+            this.userAuthenticationManager.invalidateCachedUser(createOrUpdateUser.getId());
             log.info(String.format("Email verification for user (%s) has completed successfully.",
                     createOrUpdateUser.getId()));
 
@@ -1988,12 +1996,14 @@ public class UserAccountManager implements IUserAccountManager {
     private void updateLastSeen(final RegisteredUser user) throws SegueDatabaseException {
         if (user.getLastSeen() == null) {
             this.database.updateUserLastSeen(user);
+            this.userAuthenticationManager.invalidateCachedUser(user.getId());
         } else {
             // work out if we should update the user record again...
             long timeDiff = Math.abs(new Date().getTime() - user.getLastSeen().getTime());
             long minutesElapsed = TimeUnit.MILLISECONDS.toMinutes(timeDiff);
             if (minutesElapsed > LAST_SEEN_UPDATE_FREQUENCY_MINUTES) {
                 this.database.updateUserLastSeen(user);
+                this.userAuthenticationManager.invalidateCachedUser(user.getId());
             }
         }
     }
@@ -2014,6 +2024,7 @@ public class UserAccountManager implements IUserAccountManager {
             throw new NoUserLoggedInException();
         }
         this.database.incrementSessionToken(user);
+        this.userAuthenticationManager.invalidateCachedUser(user.getId());
         logUserOut(request, response);
     }
 
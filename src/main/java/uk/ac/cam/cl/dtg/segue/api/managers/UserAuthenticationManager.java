@@ -18,6 +18,8 @@ package uk.ac.cam.cl.dtg.segue.api.managers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -58,6 +60,7 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.users.IDeletionTokenPersistenceManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
+import uk.ac.cam.cl.dtg.segue.database.PostgresNotificationBus;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 import uk.ac.cam.cl.dtg.util.RequestIPExtractor;
 
@@ -81,12 +84,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import static org.eclipse.jetty.http.HttpCookie.SAME_SITE_STRICT_COMMENT;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
 
 /**
  * This class handles all authentication details, including creation / destruction of sessions. It also handles adding
@@ -95,6 +101,10 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 public class UserAuthenticationManager {
     private static final Logger log = LoggerFactory.getLogger(UserAuthenticationManager.class);
     private static final String HMAC_SHA_ALGORITHM = "HmacSHA256";
+    private static final String SESSION_USER_INVALIDATION_CHANNEL = "session_user_invalidation";
+
+    public static final int DEFAULT_SESSION_USER_CACHE_SECONDS = 30;
+    public static final int DEFAULT_SESSION_USER_CACHE_MAX_ENTRIES = 10000;
 
     private final AbstractConfigLoader properties;
     private final IUserDataManager database;
@@ -105,6 +115,30 @@ public class UserAuthenticationManager {
 
     private final Map<AuthenticationProvider, IAuthenticator> registeredAuthProviders;
 
+    // Users whose sessions have recently been checked, so that each request need not load the user from the database.
+    // This is keyed by user id alone, not by session token, so that a single invalidation by id removes the user for
+    // every session; the cookie's token is then compared with the cached user's current token on each request.
+    private final Cache<Long, RegisteredUser> sessionUserCache;
+    // Incremented on every invalidation, so that a user loaded before an invalidation is not cached after it:
+    private final AtomicLong sessionUserInvalidations = new AtomicLong();
+    private final PostgresNotificationBus notificationBus;
+
+    /**
+     * Constructor without a session user cache.
+     *  @param database
+     *            - an IUserDataManager that will support persistence.
+     * @param properties
+     *            - A property loader
+     * @param providersToRegister
+     *             - A map of known authentication providers.
+     * @param emailQueue
+     */
+    public UserAuthenticationManager(final IUserDataManager database, final IDeletionTokenPersistenceManager deletionTokenPersistenceManager,
+                                     final AbstractConfigLoader properties, final Map<AuthenticationProvider, IAuthenticator> providersToRegister,
+                                     final EmailManager emailQueue) {
+        this(database, deletionTokenPersistenceManager, properties, providersToRegister, emailQueue, null, 0, 0);
+    }
+
     /**
      * Fully injectable constructor.
      *  @param database
@@ -114,11 +148,18 @@ public class UserAuthenticationManager {
      * @param providersToRegister
      *             - A map of known authentication providers.
      * @param emailQueue
+     * @param notificationBus
+     *            - to invalidate cached users on other nodes, or null if there is only one node.
+     * @param sessionUserCacheSeconds
+     *            - how long a user loaded to check a session may be reused for, or 0 to disable caching.
+     * @param sessionUserCacheMaxEntries
+     *            - the maximum number of users to cache.
      */
     @Inject
     public UserAuthenticationManager(final IUserDataManager database, final IDeletionTokenPersistenceManager deletionTokenPersistenceManager,
                                      final AbstractConfigLoader properties, final Map<AuthenticationProvider, IAuthenticator> providersToRegister,
-                                     final EmailManager emailQueue) {
+                                     final EmailManager emailQueue, @Nullable final PostgresNotificationBus notificationBus,
+                                     final int sessionUserCacheSeconds, final int sessionUserCacheMaxEntries) {
         Objects.requireNonNull(properties.getProperty(HMAC_SALT));
         Objects.requireNonNull(properties.getProperty(SESSION_EXPIRY_SECONDS_DEFAULT));
         Objects.requireNonNull(properties.getProperty(SESSION_EXPIRY_SECONDS_REMEMBERED));
@@ -134,6 +175,62 @@ public class UserAuthenticationManager {
         this.emailManager = emailQueue;
         this.serializationMapper = new ObjectMapper();
         this.checkOriginHeader = properties.getProperty(Constants.SEGUE_APP_ENVIRONMENT).equals(EnvironmentType.PROD.name());
+
+        if (sessionUserCacheSeconds > 0 && sessionUserCacheMaxEntries > 0) {
+            this.sessionUserCache = CacheBuilder.newBuilder()
+                    .expireAfterWrite(sessionUserCacheSeconds, TimeUnit.SECONDS)
+                    .maximumSize(sessionUserCacheMaxEntries)
+                    .recordStats()
+                    .build();
+            CACHE_METRICS_COLLECTOR.addCache("user_auth_manager_session_user_cache", sessionUserCache);
+        } else {
+            this.sessionUserCache = null;
+        }
+
+        this.notificationBus = notificationBus;
+        if (null != sessionUserCache && null != notificationBus) {
+            notificationBus.subscribe(SESSION_USER_INVALIDATION_CHANNEL, this::invalidateLocallyCachedUser);
+        }
+    }
+
+    /**
+     * Discard any cached copy of a user, on this node and on every other node.
+     *
+     * This must be called whenever a change to the user in the database could affect the validity of their sessions
+     * or what they are allowed to do; e.g. their session token, role or account details changing, or their deletion.
+     *
+     * @param userId - the id of the user who has changed.
+     */
+    public void invalidateCachedUser(final Long userId) {
+        if (null == sessionUserCache || null == userId) {
+            return;
+        }
+        sessionUserInvalidations.incrementAndGet();
+        sessionUserCache.invalidate(userId);
+
+        if (null != notificationBus) {
+            try {
+                notificationBus.publish(SESSION_USER_INVALIDATION_CHANNEL, userId.toString());
+            } catch (SegueDatabaseException e) {
+                // Other nodes will stop using the stale user when their cache entry expires:
+                log.error("Unable to notify other nodes of change to user " + userId, e);
+            }
+        }
+    }
+
+    /**
+     * Discard a cached user following a notification from another node.
+     *
+     * @param userIdPayload - the id of the user who has changed.
+     */
+    private void invalidateLocallyCachedUser(final String userIdPayload) {
+        try {
+            long userId = Long.parseLong(userIdPayload);
+            sessionUserInvalidations.incrementAndGet();
+            sessionUserCache.invalidate(userId);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid user cache invalidation message: " + userIdPayload);
+        }
     }
 
     /**
@@ -467,7 +564,7 @@ public class UserAuthenticationManager {
         try {
             // Get the user the cookie claims to belong to from the session information:
             long currentUserId = Long.parseLong(currentSessionInformation.get(SESSION_USER_ID));
-            RegisteredUser userToReturn =  database.getById(currentUserId);
+            RegisteredUser userToReturn = getSessionUserById(currentUserId);
 
             // Check that the user's session is indeed valid:
             if (null == userToReturn || !this.isValidUsersSession(currentSessionInformation, userToReturn)) {
@@ -485,6 +582,38 @@ public class UserAuthenticationManager {
         }
     }
     
+    /**
+     * Load the user a session claims to belong to, from the cache if they have been loaded recently.
+     *
+     * The session token is part of the cached user, so the session is still checked against the current token; the
+     * cache is invalidated whenever that changes.
+     *
+     * @param userId - the id of the user.
+     * @return a copy of the user which the caller may modify, or null if there is no such user.
+     * @throws SegueDatabaseException - if there is a problem loading the user.
+     */
+    private RegisteredUser getSessionUserById(final long userId) throws SegueDatabaseException {
+        if (null == sessionUserCache) {
+            return database.getById(userId);
+        }
+
+        RegisteredUser cachedUser = sessionUserCache.getIfPresent(userId);
+        if (null == cachedUser) {
+            long invalidationsBeforeLoad = sessionUserInvalidations.get();
+            cachedUser = database.getById(userId);
+            if (null == cachedUser) {
+                return null;
+            }
+            sessionUserCache.put(userId, cachedUser);
+            // If the user was invalidated whilst being loaded, what was loaded may be stale, so must not stay cached.
+            // Checking after the put means an invalidation either happens after it, and removes it, or is seen here:
+            if (sessionUserInvalidations.get() != invalidationsBeforeLoad) {
+                sessionUserCache.invalidate(userId);
+            }
+        }
+        return new RegisteredUser(cachedUser);
+    }
+
     /**
      * Create a signed session based on the user DO provided and the http request and response.
      * @param request - for creating the session
@@ -0,0 +1,64 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports the state of database connection pools each time metrics are scraped.
+ *
+ * Like the cache metrics collector, data sources are registered by name once they have been created.
+ */
+public class DataSourceMetricsCollector extends Collector {
+    private final Map<String, BasicDataSource> dataSources = new ConcurrentHashMap<>();
+
+    /**
+     * Start reporting on a connection pool, replacing any other pool of the same name.
+     *
+     * @param name - the label to report the pool under.
+     * @param dataSource - the pool.
+     */
+    public void addDataSource(final String name, final BasicDataSource dataSource) {
+        dataSources.put(name, dataSource);
+    }
+
+    /**
+     * Stop reporting on a connection pool, if it is still the one registered under the name.
+     *
+     * @param name - the label the pool was reported under.
+     * @param dataSource - the pool.
+     */
+    public void removeDataSource(final String name, final BasicDataSource dataSource) {
+        dataSources.remove(name, dataSource);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<String> poolLabel = Collections.singletonList("pool");
+        GaugeMetricFamily connections = new GaugeMetricFamily("segue_db_pool_connections",
+                "Database connections in the pool, by whether they are borrowed (active) or idle.",
+                Arrays.asList("pool", "state"));
+        GaugeMetricFamily waiting = new GaugeMetricFamily("segue_db_pool_waiting_threads",
+                "Threads waiting to borrow a database connection.", poolLabel);
+        GaugeMetricFamily maxTotal = new GaugeMetricFamily("segue_db_pool_max_connections",
+                "The maximum number of connections the pool will open.", poolLabel);
+
+        for (Map.Entry<String, BasicDataSource> entry : dataSources.entrySet()) {
+            String name = entry.getKey();
+            BasicDataSource dataSource = entry.getValue();
+            connections.addMetric(Arrays.asList(name, "active"), dataSource.getNumActive());
+            connections.addMetric(Arrays.asList(name, "idle"), dataSource.getNumIdle());
+            GenericObjectPool<?> pool = dataSource.getConnectionPool();
+            waiting.addMetric(Collections.singletonList(name), null != pool ? pool.getNumWaiters() : 0);
+            maxTotal.addMetric(Collections.singletonList(name), dataSource.getMaxTotal());
+        }
+        return Arrays.asList(connections, waiting, maxTotal);
+    }
+}
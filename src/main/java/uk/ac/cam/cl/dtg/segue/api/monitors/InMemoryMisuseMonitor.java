@@ -20,43 +20,50 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
-import org.apache.commons.lang3.tuple.Pair;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dto.MisuseStatisticDTO;
 import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
 
-import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
-import static com.google.common.collect.Maps.immutableEntry;
-
 /**
  * InMemoryMisuseMonitor.
+ *
+ * Events are counted over a sliding window the length of each handler's accounting interval. Each agent has a
+ * separate counter per event, so that notifying an event only ever waits for other requests by the same agent.
  */
 public class InMemoryMisuseMonitor implements IMisuseMonitor {
-    // Cache of the form agentIdentifier --> Event --> Date, number
-    private final Cache<String, Map<String, Map.Entry<Date, Integer>>> nonPersistentDatabase;
+    // Cache of the form agentIdentifier --> Event --> counter
+    private final Cache<String, ConcurrentMap<String, EventCounter>> nonPersistentDatabase;
 
     private final Map<String, IMisuseHandler> handlerMap;
-
-    private static final Logger log = LoggerFactory.getLogger(InMemoryMisuseMonitor.class);
+    private final LongSupplier clock;
 
     /**
      * Creates a misuse monitor that just uses non-persistent storage.
      */
     @Inject
     public InMemoryMisuseMonitor() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a misuse monitor that just uses non-persistent storage, with a custom clock for testing.
+     *
+     * @param clock - provides the current time in milliseconds.
+     */
+    InMemoryMisuseMonitor(final LongSupplier clock) {
         nonPersistentDatabase = CacheBuilder.newBuilder().expireAfterAccess(2, TimeUnit.DAYS)
-                .<String, Map<String, Map.Entry<Date, Integer>>> build();
+                .<String, ConcurrentMap<String, EventCounter>> build();
         handlerMap = Maps.newConcurrentMap();
+        this.clock = clock;
     }
 
     @Override
@@ -65,7 +72,7 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
     }
 
     @Override
-    public synchronized void notifyEvent(final String agentIdentifier, final String eventLabel)
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
             throws SegueResourceMisuseException {
         Validate.notBlank(agentIdentifier);
         Validate.notBlank(eventLabel);
@@ -73,161 +80,244 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
     }
 
     @Override
-    public synchronized void notifyEvent(final String agentIdentifier, final String eventLabel,
+    public void notifyEvent(final String agentIdentifier, final String eventLabel,
             final Integer adjustmentValue) throws SegueResourceMisuseException {
         Validate.notBlank(agentIdentifier);
         Validate.notBlank(eventLabel);
         Objects.requireNonNull(adjustmentValue);
         Validate.isTrue(adjustmentValue >= 0, "Expected positive integer value.");
-        
+
         IMisuseHandler handler = handlerMap.get(eventLabel);
         Objects.requireNonNull(handler, "No handler has been registered for " + eventLabel);
 
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+        EventCounter counter = nonPersistentDatabase.asMap()
+                .computeIfAbsent(agentIdentifier, k -> Maps.newConcurrentMap())
+                .computeIfAbsent(eventLabel, k -> new EventCounter());
 
-        if (null == existingHistory) {
-            existingHistory = Maps.newConcurrentMap();
-
-            existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-            nonPersistentDatabase.put(agentIdentifier, existingHistory);
-        } else {
-            Entry<Date, Integer> entry = existingHistory.get(eventLabel);
-            if (null == entry) {
-                existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-                log.debug("New Event " + existingHistory.get(eventLabel));
-            } else {
-
-                // deal with expired events
-                if (!isCountStillFresh(entry.getKey(), handler.getAccountingIntervalInSeconds())) {
-                    existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-                    log.debug("Event expired starting count over");
-                } else {
-                    // last events not expired yet so add them.
-                    existingHistory.put(eventLabel, immutableEntry(entry.getKey(), entry.getValue() + adjustmentValue));
-                    log.debug("Event NOT expired so adding one " + existingHistory.get(eventLabel));
-                }
-
-                entry = existingHistory.get(eventLabel);
-                int previousValue = entry.getValue() - adjustmentValue;
-                
-                // deal with threshold violations
-                if (handler.getSoftThreshold() != null
-                        && (previousValue < handler.getSoftThreshold() && entry.getValue() >= handler
-                                .getSoftThreshold())) {
-                    handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!",
-                            agentIdentifier));
-                }
-
-                if (handler.getHardThreshold() != null
-                        && (previousValue < handler.getHardThreshold() && entry.getValue() >= handler
-                                .getHardThreshold())) {
-                    String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
-
-                    handler.executeHardThresholdAction(errMessage);
-                }
-                
-                if (handler.getHardThreshold() != null && entry.getValue() > handler.getHardThreshold()) {
-                    throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
-                }
-            }
+        long intervalMillis = TimeUnit.SECONDS.toMillis(handler.getAccountingIntervalInSeconds());
+        ThresholdCrossings crossings = counter.add(clock.getAsLong(), intervalMillis, adjustmentValue,
+                handler.getSoftThreshold(), handler.getHardThreshold());
+
+        // Run the actions outside the counter's lock, as they may be slow (e.g. sending an email):
+        if (crossings.softThresholdCrossed) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!", agentIdentifier));
+        }
+
+        if (crossings.hardThresholdCrossed) {
+            String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
+            handler.executeHardThresholdAction(errMessage);
+        }
+
+        if (handler.getHardThreshold() != null && crossings.newCount > handler.getHardThreshold()) {
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
         }
     }
-    
+
     @Override
     public boolean hasMisused(final String agentIdentifier, final String eventToCheck) {
         return willHaveMisused(agentIdentifier, eventToCheck, 0);
     }
 
     @Override
-    public boolean willHaveMisused(String agentIdentifier, String eventToCheck, Integer adjustmentValue) {
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+    public boolean willHaveMisused(final String agentIdentifier, final String eventToCheck,
+                                   final Integer adjustmentValue) {
+        EventCounter counter = getCounter(agentIdentifier, eventToCheck);
+        IMisuseHandler handler = handlerMap.get(eventToCheck);
 
-        if (null == existingHistory || existingHistory.get(eventToCheck) == null) {
+        if (null == counter || null == handler.getHardThreshold()) {
             return false;
         }
 
-        Entry<Date, Integer> entry = existingHistory.get(eventToCheck);
-        IMisuseHandler handler = handlerMap.get(eventToCheck);
-
-        return isCountStillFresh(entry.getKey(), handler.getAccountingIntervalInSeconds())
-                && entry.getValue() + adjustmentValue >= handler.getHardThreshold();
+        return getCount(counter, handler) + adjustmentValue >= handler.getHardThreshold();
     }
 
     @Override
     public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
-        
-        if (null == existingHistory || existingHistory.get(eventLabel) == null) {
+        Map<String, EventCounter> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+
+        if (null == existingHistory) {
             return;
         }
-        
+
         existingHistory.remove(eventLabel);
     }
 
     @Override
-    public int getRemainingUses(String agentIdentifier, String eventToCheck) {
-        Map<String, Entry<Date, Integer>> agentUsage = nonPersistentDatabase.getIfPresent(agentIdentifier);
+    public int getRemainingUses(final String agentIdentifier, final String eventToCheck) {
+        EventCounter counter = getCounter(agentIdentifier, eventToCheck);
         IMisuseHandler misuseHandler = handlerMap.get(eventToCheck);
         int maxUsesInInterval = misuseHandler.getHardThreshold();
 
-        if (agentUsage == null || agentUsage.get(eventToCheck) == null) {
+        if (null == counter) {
             return maxUsesInInterval;
         }
 
-        Entry<Date, Integer> entry = agentUsage.get(eventToCheck);
-
-        if (isCountStillFresh(entry.getKey(), misuseHandler.getAccountingIntervalInSeconds())) {
-            return maxUsesInInterval - entry.getValue();
-        } else {
-            return maxUsesInInterval;
-        }
+        return maxUsesInInterval - getCount(counter, misuseHandler);
     }
 
     @Override
     public Map<String, List<MisuseStatisticDTO>> getMisuseStatistics(final long n) {
-        Map<String, Map<String, Entry<Date, Integer>>> cache = nonPersistentDatabase.asMap();
-        return handlerMap.keySet().stream()
-                .map(eventLabel -> {
-                    Integer softThreshold = handlerMap.get(eventLabel).getSoftThreshold();
-                    return Map.entry(
-                            eventLabel,
-                            cache.entrySet().stream()
-                                .map(e -> Pair.of(e.getKey(), e.getValue().get(eventLabel)))
-                                .filter(e -> null != e.getRight())
-                                .sorted(Comparator.comparingInt((Entry<String, Entry<Date, Integer>> e) -> e.getValue().getValue()).reversed())
-                                .limit(n)
-                                .map((Pair<String, Entry<Date, Integer>> e) -> {
-                                    String agentIdentifier = e.getKey();
-                                    Entry<Date, Integer> misuseEntry = e.getValue();
+        Map<String, ConcurrentMap<String, EventCounter>> cache = nonPersistentDatabase.asMap();
+        long now = clock.getAsLong();
+        return handlerMap.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, handlerEntry -> {
+                    String eventLabel = handlerEntry.getKey();
+                    IMisuseHandler handler = handlerEntry.getValue();
+                    long intervalMillis = TimeUnit.SECONDS.toMillis(handler.getAccountingIntervalInSeconds());
+
+                    return cache.entrySet().stream()
+                            .map(e -> {
+                                EventCounter counter = e.getValue().get(eventLabel);
+                                if (null == counter) {
+                                    return null;
+                                }
+                                // Take the count and timestamp together, so that they are consistent:
+                                synchronized (counter) {
+                                    int count = counter.getCount(now, intervalMillis);
+                                    if (count <= 0) {
+                                        return null;
+                                    }
                                     return new MisuseStatisticDTO(
-                                        agentIdentifier, eventLabel, hasMisused(agentIdentifier, eventLabel),
-                                        misuseEntry.getValue() >= softThreshold,
-                                        misuseEntry.getKey(), misuseEntry.getValue()
+                                            e.getKey(), eventLabel,
+                                            null != handler.getHardThreshold() && count >= handler.getHardThreshold(),
+                                            null != handler.getSoftThreshold() && count >= handler.getSoftThreshold(),
+                                            new Date(counter.lastEventMillis), count
                                     );
-                                })
-                                .collect(Collectors.toList())
-                    );
-                }).collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+                                }
+                            })
+                            .filter(Objects::nonNull)
+                            .sorted(Comparator.comparingInt(MisuseStatisticDTO::getCurrentCounter).reversed())
+                            .limit(n)
+                            .collect(Collectors.toList());
+                }));
+    }
+
+    /**
+     * @param agentIdentifier - the agent to look up.
+     * @param eventLabel - the event to look up.
+     * @return the counter for the agent and event, or null if they have not been seen.
+     */
+    private EventCounter getCounter(final String agentIdentifier, final String eventLabel) {
+        Map<String, EventCounter> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+        if (null == existingHistory) {
+            return null;
+        }
+        return existingHistory.get(eventLabel);
+    }
+
+    /**
+     * @param counter - the counter to read.
+     * @param handler - the handler for the counter's event.
+     * @return the number of events in the window ending now.
+     */
+    private int getCount(final EventCounter counter, final IMisuseHandler handler) {
+        long intervalMillis = TimeUnit.SECONDS.toMillis(handler.getAccountingIntervalInSeconds());
+        synchronized (counter) {
+            return counter.getCount(clock.getAsLong(), intervalMillis);
+        }
     }
 
     /**
-     * Helper to work out whether we can reset the counter or not.
-     * 
-     * @param mapEntryDate
-     *            - the date that the map entry for the misuse database was created.
-     * @param secondsUntilExpiry
-     *            - the number of seconds until this entry expires.
-     * @return true if we can continue counting false if we should reset the counter as the entry has expired.
+     * The result of adding to an EventCounter.
      */
-    private boolean isCountStillFresh(final Date mapEntryDate, final Integer secondsUntilExpiry) {
-        Calendar entryExpiry = Calendar.getInstance();
-        entryExpiry.setTime(mapEntryDate);
-        entryExpiry.add(Calendar.SECOND, secondsUntilExpiry);
+    private static final class ThresholdCrossings {
+        private final int newCount;
+        private final boolean softThresholdCrossed;
+        private final boolean hardThresholdCrossed;
 
-        if (new Date().after(entryExpiry.getTime())) {
-            return false;
+        /**
+         * @param newCount - the count after the events were added.
+         * @param softThresholdCrossed - whether the soft threshold action should be run.
+         * @param hardThresholdCrossed - whether the hard threshold action should be run.
+         */
+        private ThresholdCrossings(final int newCount, final boolean softThresholdCrossed,
+                                   final boolean hardThresholdCrossed) {
+            this.newCount = newCount;
+            this.softThresholdCrossed = softThresholdCrossed;
+            this.hardThresholdCrossed = hardThresholdCrossed;
         }
+    }
 
-        return true;
+    /**
+     * Counts one agent's use of one event over a sliding window.
+     *
+     * Time is divided into fixed buckets the length of the window, and the count is the number of events in the
+     * current bucket plus the events in the previous bucket weighted by how much of it still overlaps the window. This
+     * approximates a true sliding window in constant space, without allowing twice the limit in a burst either side of
+     * a bucket boundary. All fields are guarded by the counter's own lock.
+     */
+    private static final class EventCounter {
+        private long bucketStartMillis = -1;
+        private int currentBucketCount;
+        private int previousBucketCount;
+        private long lastEventMillis;
+        // The buckets in which the threshold actions last ran, so that they run at most once per bucket:
+        private long softActionBucketStartMillis = -1;
+        private long hardActionBucketStartMillis = -1;
+
+        /**
+         * Record events and work out whether they take the count over either threshold.
+         *
+         * @param now - the current time in milliseconds.
+         * @param intervalMillis - the length of the window.
+         * @param adjustmentValue - the number of events to add.
+         * @param softThreshold - the soft threshold, or null.
+         * @param hardThreshold - the hard threshold, or null.
+         * @return the new count and which threshold actions should run.
+         */
+        private synchronized ThresholdCrossings add(final long now, final long intervalMillis,
+                                                    final int adjustmentValue, final Integer softThreshold,
+                                                    final Integer hardThreshold) {
+            int previousCount = getCount(now, intervalMillis);
+            currentBucketCount += adjustmentValue;
+            lastEventMillis = now;
+            int newCount = previousCount + adjustmentValue;
+
+            boolean softThresholdCrossed = false;
+            if (null != softThreshold && previousCount < softThreshold && newCount >= softThreshold
+                    && softActionBucketStartMillis != bucketStartMillis) {
+                softActionBucketStartMillis = bucketStartMillis;
+                softThresholdCrossed = true;
+            }
+
+            boolean hardThresholdCrossed = false;
+            if (null != hardThreshold && previousCount < hardThreshold && newCount >= hardThreshold
+                    && hardActionBucketStartMillis != bucketStartMillis) {
+                hardActionBucketStartMillis = bucketStartMillis;
+                hardThresholdCrossed = true;
+            }
+
+            return new ThresholdCrossings(newCount, softThresholdCrossed, hardThresholdCrossed);
+        }
+
+        /**
+         * Must be called holding the counter's lock.
+         *
+         * @param now - the current time in milliseconds.
+         * @param intervalMillis - the length of the window.
+         * @return the estimated number of events in the window ending now.
+         */
+        private int getCount(final long now, final long intervalMillis) {
+            if (bucketStartMillis < 0) {
+                bucketStartMillis = now;
+            }
+
+            // Don't let the clock going backwards inflate the previous bucket's weight:
+            long time = Math.max(now, bucketStartMillis);
+            long bucketsElapsed = (time - bucketStartMillis) / intervalMillis;
+            if (bucketsElapsed == 1) {
+                previousBucketCount = currentBucketCount;
+                currentBucketCount = 0;
+                bucketStartMillis += intervalMillis;
+            } else if (bucketsElapsed > 1) {
+                previousBucketCount = 0;
+                currentBucketCount = 0;
+                bucketStartMillis += bucketsElapsed * intervalMillis;
+            }
+
+            double previousBucketOverlap = 1.0 - (double) (time - bucketStartMillis) / intervalMillis;
+            // Round up, so that partially expired events are not forgiven early:
+            return currentBucketCount + (int) Math.ceil(previousBucketCount * previousBucketOverlap);
+        }
     }
 }
@@ -0,0 +1,658 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.isaac.dto.MisuseStatisticDTO;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresNotificationBus;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import jakarta.annotation.Nullable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A misuse monitor which enforces limits approximately across every API node.
+ *
+ * Events are counted locally, so that notifying one never waits for the database. Periodically, the events counted
+ * since the last synchronisation are added to a shared table in a single batch, and the counts for every recently
+ * used counter are read back; each node therefore sees the events counted by the others within about one
+ * synchronisation interval. As with the in-memory monitor, events are counted over a sliding window the length of each
+ * handler's accounting interval, approximated with two buckets. Buckets are aligned to multiples of the interval so
+ * that every node agrees on them.
+ */
+public class PgMisuseMonitor implements IMisuseMonitor {
+    private static final Logger log = LoggerFactory.getLogger(PgMisuseMonitor.class);
+
+    public static final int DEFAULT_SYNCHRONISATION_INTERVAL_MILLISECONDS = 5000;
+
+    private static final String RESET_CHANNEL = "misuse_monitor_reset";
+    private static final int SYNCHRONISATION_BATCH_SIZE = 1000;
+    private static final long EXPIRED_COUNT_CLEANUP_INTERVAL_MILLISECONDS = TimeUnit.HOURS.toMillis(1);
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final PostgresSqlDb database;
+    private final PostgresNotificationBus notificationBus;
+    private final ObjectMapper objectMapper;
+    private final LongSupplier clock;
+
+    private final Map<String, IMisuseHandler> handlerMap;
+    // Cache of the form (agentIdentifier, event) --> counter
+    private final Cache<ImmutablePair<String, String>, SharedEventCounter> counters;
+
+    private final Object synchronisationLock;
+    private final ScheduledExecutorService synchroniser;
+    private long lastExpiredCountCleanup;
+
+    /**
+     * Creates a misuse monitor which shares its counts through the database.
+     *
+     * @param database - the database holding the shared counts.
+     * @param notificationBus - to tell other nodes when a count is reset, or null if there is only one node.
+     * @param synchronisationIntervalMilliseconds - how often to share counts with other nodes.
+     */
+    public PgMisuseMonitor(final PostgresSqlDb database, @Nullable final PostgresNotificationBus notificationBus,
+                           final long synchronisationIntervalMilliseconds) {
+        this(database, notificationBus, synchronisationIntervalMilliseconds, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a misuse monitor which shares its counts through the database, with a custom clock for testing.
+     *
+     * @param database - the database holding the shared counts.
+     * @param notificationBus - to tell other nodes when a count is reset, or null if there is only one node.
+     * @param synchronisationIntervalMilliseconds - how often to share counts with other nodes.
+     * @param clock - provides the current time in milliseconds.
+     */
+    PgMisuseMonitor(final PostgresSqlDb database, @Nullable final PostgresNotificationBus notificationBus,
+                    final long synchronisationIntervalMilliseconds, final LongSupplier clock) {
+        this.database = database;
+        this.notificationBus = notificationBus;
+        this.objectMapper = new ObjectMapper();
+        this.clock = clock;
+        this.handlerMap = Maps.newConcurrentMap();
+        this.counters = CacheBuilder.newBuilder().expireAfterAccess(2, TimeUnit.DAYS).build();
+        this.synchronisationLock = new Object();
+        this.lastExpiredCountCleanup = clock.getAsLong();
+
+        if (null != notificationBus) {
+            notificationBus.subscribe(RESET_CHANNEL, this::resetLocalCount);
+        }
+
+        this.synchroniser = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "misuse-monitor-synchroniser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.synchroniser.scheduleWithFixedDelay(() -> {
+            try {
+                this.synchroniseCounts();
+            } catch (RuntimeException e) {
+                log.error("Unexpected error sharing misuse counts", e);
+            }
+        }, synchronisationIntervalMilliseconds, synchronisationIntervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void registerHandler(final String eventToHandle, final IMisuseHandler handler) {
+        handlerMap.put(eventToHandle, handler);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
+            throws SegueResourceMisuseException {
+        Validate.notBlank(agentIdentifier);
+        Validate.notBlank(eventLabel);
+        this.notifyEvent(agentIdentifier, eventLabel, 1);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel,
+                            final Integer adjustmentValue) throws SegueResourceMisuseException {
+        Validate.notBlank(agentIdentifier);
+        Validate.notBlank(eventLabel);
+        Objects.requireNonNull(adjustmentValue);
+        Validate.isTrue(adjustmentValue >= 0, "Expected positive integer value.");
+
+        IMisuseHandler handler = handlerMap.get(eventLabel);
+        Objects.requireNonNull(handler, "No handler has been registered for " + eventLabel);
+
+        SharedEventCounter counter = getOrCreateCounter(agentIdentifier, eventLabel, handler);
+        int newCount;
+        boolean softThresholdCrossed = false;
+        boolean hardThresholdCrossed = false;
+        long now = clock.getAsLong();
+        synchronized (counter) {
+            int previousCount = counter.getCount(now);
+            newCount = counter.add(now, adjustmentValue);
+
+            if (handler.getSoftThreshold() != null && previousCount < handler.getSoftThreshold()
+                    && newCount >= handler.getSoftThreshold()
+                    && counter.softActionBucketStart != counter.bucketStart) {
+                counter.softActionBucketStart = counter.bucketStart;
+                softThresholdCrossed = true;
+            }
+            if (handler.getHardThreshold() != null && previousCount < handler.getHardThreshold()
+                    && newCount >= handler.getHardThreshold()
+                    && counter.hardActionBucketStart != counter.bucketStart) {
+                counter.hardActionBucketStart = counter.bucketStart;
+                hardThresholdCrossed = true;
+            }
+        }
+
+        // Run the actions outside the counter's lock, as they may be slow (e.g. sending an email):
+        if (softThresholdCrossed) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!", agentIdentifier));
+        }
+
+        if (hardThresholdCrossed) {
+            String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
+            handler.executeHardThresholdAction(errMessage);
+        }
+
+        if (handler.getHardThreshold() != null && newCount > handler.getHardThreshold()) {
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
+        }
+    }
+
+    @Override
+    public boolean hasMisused(final String agentIdentifier, final String eventToCheck) {
+        return willHaveMisused(agentIdentifier, eventToCheck, 0);
+    }
+
+    @Override
+    public boolean willHaveMisused(final String agentIdentifier, final String eventToCheck,
+                                   final Integer adjustmentValue) {
+        IMisuseHandler handler = handlerMap.get(eventToCheck);
+        if (null == handler.getHardThreshold()) {
+            return false;
+        }
+
+        return getCount(agentIdentifier, eventToCheck, handler) + adjustmentValue >= handler.getHardThreshold();
+    }
+
+    @Override
+    public int getRemainingUses(final String agentIdentifier, final String eventToCheck) {
+        IMisuseHandler misuseHandler = handlerMap.get(eventToCheck);
+        return misuseHandler.getHardThreshold() - getCount(agentIdentifier, eventToCheck, misuseHandler);
+    }
+
+    @Override
+    public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(
+                     "DELETE FROM misuse_event_counts WHERE agent_identifier = ? AND event_label = ?")
+        ) {
+            pst.setString(1, agentIdentifier);
+            pst.setString(2, eventLabel);
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            log.error(String.format("Unable to reset shared misuse count '%s' for (%s)", eventLabel, agentIdentifier),
+                    e);
+        }
+
+        counters.invalidate(ImmutablePair.of(agentIdentifier, eventLabel));
+
+        if (null != notificationBus) {
+            try {
+                notificationBus.publish(RESET_CHANNEL,
+                        objectMapper.writeValueAsString(List.of(agentIdentifier, eventLabel)));
+            } catch (JsonProcessingException | SegueDatabaseException e) {
+                log.error("Unable to notify other nodes of misuse count reset", e);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, List<MisuseStatisticDTO>> getMisuseStatistics(final long n) {
+        // Only read the shared counts, rather than synchronising on the request thread; events counted since the last
+        // synchronisation will be missing, which is fine for these statistics.
+        long now = clock.getAsLong();
+        Map<String, List<MisuseStatisticDTO>> statistics = new HashMap<>();
+        String query = "SELECT agent_identifier,"
+                + " SUM(CASE WHEN bucket_start >= ? THEN count ELSE CEIL(count * ?) END)::integer AS count,"
+                + " MAX(last_event) AS last_event"
+                + " FROM misuse_event_counts WHERE event_label = ? AND bucket_start >= ?"
+                + " GROUP BY agent_identifier ORDER BY count DESC LIMIT ?";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            for (Map.Entry<String, IMisuseHandler> handlerEntry : handlerMap.entrySet()) {
+                String eventLabel = handlerEntry.getKey();
+                IMisuseHandler handler = handlerEntry.getValue();
+                long intervalMillis = getIntervalMillis(handler);
+                long bucketStart = now - Math.floorMod(now, intervalMillis);
+
+                pst.setTimestamp(1, new Timestamp(bucketStart));
+                pst.setDouble(2, 1.0 - (double) (now - bucketStart) / intervalMillis);
+                pst.setString(3, eventLabel);
+                pst.setTimestamp(4, new Timestamp(bucketStart - intervalMillis));
+                pst.setLong(5, n);
+
+                List<MisuseStatisticDTO> eventStatistics = new ArrayList<>();
+                try (ResultSet results = pst.executeQuery()) {
+                    while (results.next()) {
+                        int count = results.getInt("count");
+                        if (count <= 0) {
+                            continue;
+                        }
+                        eventStatistics.add(new MisuseStatisticDTO(results.getString("agent_identifier"), eventLabel,
+                                null != handler.getHardThreshold() && count >= handler.getHardThreshold(),
+                                null != handler.getSoftThreshold() && count >= handler.getSoftThreshold(),
+                                new Date(results.getTimestamp("last_event").getTime()), count));
+                    }
+                }
+                statistics.put(eventLabel, eventStatistics);
+            }
+        } catch (SQLException e) {
+            log.error("Unable to read shared misuse statistics", e);
+        }
+        return statistics;
+    }
+
+    /**
+     * Share any outstanding counts and stop synchronising.
+     */
+    public void shutdown() {
+        synchroniser.shutdown();
+        try {
+            if (!synchroniser.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for the misuse monitor to finish synchronising.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.synchroniseCounts();
+    }
+
+    /**
+     * Add the events counted on this node since the last synchronisation to the shared counts, and refresh every
+     * counter used since then with the events counted on other nodes.
+     *
+     * This is called periodically by the background synchroniser.
+     */
+    void synchroniseCounts() {
+        synchronized (synchronisationLock) {
+            long now = clock.getAsLong();
+            List<PendingSynchronisation> pending = new ArrayList<>();
+            for (Map.Entry<ImmutablePair<String, String>, SharedEventCounter> entry : counters.asMap().entrySet()) {
+                SharedEventCounter counter = entry.getValue();
+                synchronized (counter) {
+                    if (counter.needsSynchronisation) {
+                        pending.add(counter.drain(entry.getKey(), now));
+                    }
+                }
+            }
+
+            for (List<PendingSynchronisation> batch : Lists.partition(pending, SYNCHRONISATION_BATCH_SIZE)) {
+                try (Connection conn = database.getDatabaseConnection()) {
+                    writeCountDeltas(conn, batch);
+                    readSharedCounts(conn, batch);
+                } catch (SQLException e) {
+                    log.error("Unable to share misuse counts with other nodes", e);
+                    // Keep the events, to try again next time:
+                    for (PendingSynchronisation item : batch) {
+                        synchronized (item.counter) {
+                            item.counter.restore(item);
+                        }
+                    }
+                }
+            }
+
+            if (now - lastExpiredCountCleanup > EXPIRED_COUNT_CLEANUP_INTERVAL_MILLISECONDS) {
+                lastExpiredCountCleanup = now;
+                deleteExpiredCounts(now);
+            }
+        }
+    }
+
+    /**
+     * @param conn - the connection to use.
+     * @param batch - the counters being synchronised.
+     * @throws SQLException - if the counts cannot be written.
+     */
+    private void writeCountDeltas(final Connection conn, final List<PendingSynchronisation> batch)
+            throws SQLException {
+        List<String> agentIdentifiers = new ArrayList<>();
+        List<String> eventLabels = new ArrayList<>();
+        // Times are passed as epoch milliseconds, since an array of Timestamps would be sent in local time with no
+        // offset, which is ambiguous around a daylight saving change:
+        List<Long> bucketStarts = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        List<Long> lastEvents = new ArrayList<>();
+        for (PendingSynchronisation item : batch) {
+            if (item.currentBucketDelta > 0) {
+                agentIdentifiers.add(item.key.getLeft());
+                eventLabels.add(item.key.getRight());
+                bucketStarts.add(item.bucketStart);
+                deltas.add(item.currentBucketDelta);
+                lastEvents.add(item.lastEvent);
+            }
+            if (item.previousBucketDelta > 0) {
+                agentIdentifiers.add(item.key.getLeft());
+                eventLabels.add(item.key.getRight());
+                bucketStarts.add(item.bucketStart - item.intervalMillis);
+                deltas.add(item.previousBucketDelta);
+                lastEvents.add(item.bucketStart - 1);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        String query = "INSERT INTO misuse_event_counts(agent_identifier, event_label, bucket_start, count, last_event)"
+                + " SELECT agent_identifier, event_label, to_timestamp(bucket_start / 1000.0), count,"
+                + " to_timestamp(last_event / 1000.0)"
+                + " FROM unnest(?::text[], ?::text[], ?::bigint[], ?::integer[], ?::bigint[])"
+                + " AS deltas(agent_identifier, event_label, bucket_start, count, last_event)"
+                + " ON CONFLICT (agent_identifier, event_label, bucket_start) DO UPDATE"
+                + " SET count = misuse_event_counts.count + EXCLUDED.count,"
+                + " last_event = GREATEST(misuse_event_counts.last_event, EXCLUDED.last_event)";
+        try (PreparedStatement pst = conn.prepareStatement(query)) {
+            pst.setArray(1, conn.createArrayOf("text", agentIdentifiers.toArray()));
+            pst.setArray(2, conn.createArrayOf("text", eventLabels.toArray()));
+            pst.setArray(3, conn.createArrayOf("bigint", bucketStarts.toArray()));
+            pst.setArray(4, conn.createArrayOf("integer", deltas.toArray()));
+            pst.setArray(5, conn.createArrayOf("bigint", lastEvents.toArray()));
+            pst.executeUpdate();
+        }
+    }
+
+    /**
+     * @param conn - the connection to use.
+     * @param batch - the counters being synchronised.
+     * @throws SQLException - if the counts cannot be read.
+     */
+    private void readSharedCounts(final Connection conn, final List<PendingSynchronisation> batch)
+            throws SQLException {
+        Map<ImmutablePair<String, String>, Map<Long, Integer>> sharedCounts = new HashMap<>();
+        String query = "SELECT counts.agent_identifier, counts.event_label,"
+                + " (EXTRACT(EPOCH FROM counts.bucket_start) * 1000)::bigint AS bucket_start_millis, counts.count"
+                + " FROM misuse_event_counts AS counts"
+                + " JOIN unnest(?::text[], ?::text[], ?::bigint[]) AS keys(agent_identifier, event_label, since)"
+                + " ON counts.agent_identifier = keys.agent_identifier AND counts.event_label = keys.event_label"
+                + " AND counts.bucket_start >= to_timestamp(keys.since / 1000.0)";
+        try (PreparedStatement pst = conn.prepareStatement(query)) {
+            pst.setArray(1, conn.createArrayOf("text",
+                    batch.stream().map(item -> item.key.getLeft()).toArray()));
+            pst.setArray(2, conn.createArrayOf("text",
+                    batch.stream().map(item -> item.key.getRight()).toArray()));
+            pst.setArray(3, conn.createArrayOf("bigint",
+                    batch.stream().map(item -> item.bucketStart - item.intervalMillis).toArray()));
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    sharedCounts.computeIfAbsent(
+                            ImmutablePair.of(results.getString("agent_identifier"), results.getString("event_label")),
+                            k -> new HashMap<>())
+                            .put(results.getLong("bucket_start_millis"), results.getInt("count"));
+                }
+            }
+        }
+
+        for (PendingSynchronisation item : batch) {
+            synchronized (item.counter) {
+                item.counter.applySharedCounts(item, sharedCounts.getOrDefault(item.key, Map.of()));
+            }
+        }
+    }
+
+    /**
+     * Remove shared counts which are too old to be in any handler's window.
+     *
+     * @param now - the current time in milliseconds.
+     */
+    private void deleteExpiredCounts(final long now) {
+        long longestIntervalMillis = handlerMap.values().stream().mapToLong(PgMisuseMonitor::getIntervalMillis)
+                .max().orElse(0);
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("DELETE FROM misuse_event_counts WHERE bucket_start < ?")
+        ) {
+            pst.setTimestamp(1, new Timestamp(now - 2 * longestIntervalMillis));
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Unable to delete expired misuse counts", e);
+        }
+    }
+
+    /**
+     * Discard this node's count following a reset on another node.
+     *
+     * @param payload - the agent identifier and event label, as a JSON list.
+     */
+    private void resetLocalCount(final String payload) {
+        try {
+            List<String> agentAndEvent = objectMapper.readValue(payload, new TypeReference<>() {});
+            counters.invalidate(ImmutablePair.of(agentAndEvent.get(0), agentAndEvent.get(1)));
+        } catch (JsonProcessingException | IndexOutOfBoundsException e) {
+            log.warn("Ignoring invalid misuse count reset message: " + payload);
+        }
+    }
+
+    /**
+     * @param agentIdentifier - the agent to look up.
+     * @param eventLabel - the event to look up.
+     * @param handler - the handler for the event.
+     * @return the current count, as far as this node knows.
+     */
+    private int getCount(final String agentIdentifier, final String eventLabel, final IMisuseHandler handler) {
+        SharedEventCounter counter = getOrCreateCounter(agentIdentifier, eventLabel, handler);
+        synchronized (counter) {
+            // Checking a counter is a sign it may be used soon, so refresh it with events from other nodes:
+            counter.needsSynchronisation = true;
+            return counter.getCount(clock.getAsLong());
+        }
+    }
+
+    /**
+     * @param agentIdentifier - the agent to look up.
+     * @param eventLabel - the event to look up.
+     * @param handler - the handler for the event.
+     * @return the counter for the agent and event, created if it has not been used on this node before.
+     */
+    private SharedEventCounter getOrCreateCounter(final String agentIdentifier, final String eventLabel,
+                                                  final IMisuseHandler handler) {
+        return counters.asMap().computeIfAbsent(ImmutablePair.of(agentIdentifier, eventLabel),
+                k -> new SharedEventCounter(getIntervalMillis(handler)));
+    }
+
+    /**
+     * @param handler - the handler to look up.
+     * @return the length of the handler's window.
+     */
+    private static long getIntervalMillis(final IMisuseHandler handler) {
+        return TimeUnit.SECONDS.toMillis(handler.getAccountingIntervalInSeconds());
+    }
+
+    /**
+     * The events a counter has recorded since it was last synchronised.
+     */
+    private static final class PendingSynchronisation {
+        private final ImmutablePair<String, String> key;
+        private final SharedEventCounter counter;
+        private final long intervalMillis;
+        private final long bucketStart;
+        private final int currentBucketDelta;
+        private final int previousBucketDelta;
+        private final long lastEvent;
+
+        /**
+         * @param key - the agent and event of the counter.
+         * @param counter - the counter.
+         * @param intervalMillis - the length of the counter's window.
+         * @param bucketStart - the start of the current bucket when the events were taken.
+         * @param currentBucketDelta - the events not yet shared in the current bucket.
+         * @param previousBucketDelta - the events not yet shared in the previous bucket.
+         * @param lastEvent - the time of the most recent event.
+         */
+        private PendingSynchronisation(final ImmutablePair<String, String> key, final SharedEventCounter counter,
+                                       final long intervalMillis, final long bucketStart,
+                                       final int currentBucketDelta, final int previousBucketDelta,
+                                       final long lastEvent) {
+            this.key = key;
+            this.counter = counter;
+            this.intervalMillis = intervalMillis;
+            this.bucketStart = bucketStart;
+            this.currentBucketDelta = currentBucketDelta;
+            this.previousBucketDelta = previousBucketDelta;
+            this.lastEvent = lastEvent;
+        }
+    }
+
+    /**
+     * Counts one agent's use of one event over a sliding window, combining the counts last read from the shared table
+     * with the events counted locally since.
+     *
+     * All fields are guarded by the counter's own lock.
+     */
+    private static final class SharedEventCounter {
+        private final long intervalMillis;
+        private long bucketStart = -1;
+        // Counts in the shared table when last read, plus any events since shared from this node:
+        private int sharedCurrentBucketCount;
+        private int sharedPreviousBucketCount;
+        // Events counted on this node and not yet shared:
+        private int pendingCurrentBucketCount;
+        private int pendingPreviousBucketCount;
+        private long lastEvent;
+        private boolean needsSynchronisation = true;
+        // The buckets in which the threshold actions last ran on this node, so they run at most once per bucket:
+        private long softActionBucketStart = -1;
+        private long hardActionBucketStart = -1;
+
+        /**
+         * @param intervalMillis - the length of the window.
+         */
+        private SharedEventCounter(final long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * @param now - the current time in milliseconds.
+         * @param adjustmentValue - the number of events to add.
+         * @return the new count.
+         */
+        private int add(final long now, final int adjustmentValue) {
+            int count = getCount(now) + adjustmentValue;
+            pendingCurrentBucketCount += adjustmentValue;
+            lastEvent = now;
+            needsSynchronisation = true;
+            return count;
+        }
+
+        /**
+         * @param now - the current time in milliseconds.
+         * @return the estimated number of events in the window ending now.
+         */
+        private int getCount(final long now) {
+            roll(now);
+            double previousBucketOverlap = 1.0 - (double) (Math.max(now, bucketStart) - bucketStart) / intervalMillis;
+            // Round up, so that partially expired events are not forgiven early:
+            return sharedCurrentBucketCount + pendingCurrentBucketCount
+                    + (int) Math.ceil((sharedPreviousBucketCount + pendingPreviousBucketCount) * previousBucketOverlap);
+        }
+
+        /**
+         * Move on to the bucket containing the current time, if necessary.
+         *
+         * @param now - the current time in milliseconds.
+         */
+        private void roll(final long now) {
+            long currentBucketStart = now - Math.floorMod(now, intervalMillis);
+            if (bucketStart < 0) {
+                bucketStart = currentBucketStart;
+            }
+            if (currentBucketStart <= bucketStart) {
+                return;
+            }
+
+            if (currentBucketStart - bucketStart == intervalMillis) {
+                sharedPreviousBucketCount = sharedCurrentBucketCount;
+                pendingPreviousBucketCount = pendingCurrentBucketCount;
+            } else {
+                sharedPreviousBucketCount = 0;
+                pendingPreviousBucketCount = 0;
+            }
+            sharedCurrentBucketCount = 0;
+            pendingCurrentBucketCount = 0;
+            bucketStart = currentBucketStart;
+        }
+
+        /**
+         * Take the events not yet shared, counting them as shared until the result of the synchronisation is known.
+         *
+         * @param key - the agent and event of this counter.
+         * @param now - the current time in milliseconds.
+         * @return the events to share.
+         */
+        private PendingSynchronisation drain(final ImmutablePair<String, String> key, final long now) {
+            roll(now);
+            PendingSynchronisation pending = new PendingSynchronisation(key, this, intervalMillis, bucketStart,
+                    pendingCurrentBucketCount, pendingPreviousBucketCount, lastEvent);
+            sharedCurrentBucketCount += pendingCurrentBucketCount;
+            sharedPreviousBucketCount += pendingPreviousBucketCount;
+            pendingCurrentBucketCount = 0;
+            pendingPreviousBucketCount = 0;
+            needsSynchronisation = false;
+            return pending;
+        }
+
+        /**
+         * Put back events which could not be shared.
+         *
+         * @param pending - the events taken by drain.
+         */
+        private void restore(final PendingSynchronisation pending) {
+            if (pending.bucketStart == bucketStart) {
+                sharedCurrentBucketCount -= pending.currentBucketDelta;
+                pendingCurrentBucketCount += pending.currentBucketDelta;
+                sharedPreviousBucketCount -= pending.previousBucketDelta;
+                pendingPreviousBucketCount += pending.previousBucketDelta;
+            } else if (pending.bucketStart + intervalMillis == bucketStart) {
+                // The current bucket has become the previous one since:
+                sharedPreviousBucketCount -= pending.currentBucketDelta;
+                pendingPreviousBucketCount += pending.currentBucketDelta;
+            }
+            needsSynchronisation = true;
+        }
+
+        /**
+         * Replace the shared counts with those just read from the table.
+         *
+         * @param pending - the synchronisation the counts were read for.
+         * @param sharedCounts - the counts in the table, by bucket start.
+         */
+        private void applySharedCounts(final PendingSynchronisation pending, final Map<Long, Integer> sharedCounts) {
+            if (pending.bucketStart != bucketStart) {
+                // The counts are for buckets which have since moved on; wait for the next synchronisation.
+                needsSynchronisation = true;
+                return;
+            }
+            sharedCurrentBucketCount = sharedCounts.getOrDefault(bucketStart, 0);
+            sharedPreviousBucketCount = sharedCounts.getOrDefault(bucketStart - intervalMillis, 0);
+        }
+    }
+}
@@ -44,10 +44,33 @@ public final class SegueMetrics {
             .name("isaac_question_validation")
             .labelNames("validator")
             .help("Validator latency in seconds.").register();
+    public static final Counter VALIDATOR_CACHE_REQUESTS = Counter.build()
+            .name("isaac_question_validation_cache_requests_total")
+            .labelNames("validator", "result")
+            .help("Question validation result cache lookups, by validator and whether they hit or missed.").register();
+
+    // Outbound HTTP Metrics
+    public static final Histogram OUTBOUND_HTTP_LATENCY_HISTOGRAM = Histogram.build()
+            .name("segue_outbound_http_request_duration_seconds")
+            .labelNames("destination", "outcome")
+            .help("Latency in seconds of requests to other services, by destination and status class.").register();
+    public static final Counter OUTBOUND_HTTP_ERRORS = Counter.build()
+            .name("segue_outbound_http_errors_total")
+            .labelNames("destination", "reason")
+            .help("Requests to other services which failed without a response, by destination and reason.").register();
 
     // Cache Metrics
     public static final CacheMetricsCollector CACHE_METRICS_COLLECTOR = new CacheMetricsCollector().register();
 
+    // Database Connection Pool Metrics
+    public static final DataSourceMetricsCollector DATABASE_POOL_METRICS_COLLECTOR =
+            new DataSourceMetricsCollector().register();
+    public static final Histogram DATABASE_CONNECTION_WAIT_HISTOGRAM = Histogram.build()
+            .name("segue_db_pool_borrow_wait_seconds")
+            .labelNames("pool")
+            .buckets(0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10)
+            .help("Time in seconds spent waiting to borrow a database connection from the pool.").register();
+
     // Websocket Metrics
     public static final Gauge CURRENT_OPEN_WEBSOCKETS = Gauge.build()
             .name("segue_websockets").help("Currently open websockets.").register();
@@ -56,6 +79,12 @@ public final class SegueMetrics {
             .help("Websockets opened successfully (i.e. not exceeding per user limit) since process start.").register();
     public static final Counter WEBSOCKETS_CLOSED = Counter.build()
             .name("segue_websocket_close_total").help("Websockets closed since process start.").register();
+    public static final Gauge WEBSOCKET_OUTBOUND_QUEUE_DEPTH = Gauge.build()
+            .name("segue_websocket_outbound_queue_depth")
+            .help("Messages waiting to be sent down open websockets.").register();
+    public static final Counter WEBSOCKET_OUTBOUND_DROPPED = Counter.build()
+            .name("segue_websocket_outbound_dropped_total").labelNames("reason")
+            .help("Websocket messages not sent since process start, by reason.").register();
 
     // User Metrics
     public static final Counter USER_REGISTRATION_ATTEMPT = Counter.build()
@@ -83,10 +112,28 @@ public final class SegueMetrics {
     // Email Metrics
     public static final Counter QUEUED_EMAIL = Counter.build()
             .name("segue_queued_email_total").help("All emails queued since process start").labelNames("type", "sender").register();
+    public static final Gauge EMAIL_OUTBOX_DEPTH = Gauge.build()
+            .name("segue_email_outbox_depth").labelNames("state")
+            .help("Emails in the outbox, by whether they are still pending or have failed.").register();
+    public static final Counter EMAIL_OUTBOX_RESULTS = Counter.build()
+            .name("segue_email_outbox_results_total").labelNames("result")
+            .help("Attempts to send emails from the outbox since process start, by result.").register();
+    public static final Histogram EMAIL_OUTBOX_SEND_LATENCY_HISTOGRAM = Histogram.build()
+            .name("segue_email_outbox_batch_send_duration")
+            .buckets(0.1, 0.5, 1, 2, 5, 10, 30, 60, 120)
+            .help("Time in seconds taken to send a batch of emails from the outbox.").register();
 
     // Log Event Metrics
     public static final Counter LOG_EVENT = Counter.build()
             .name("isaac_log_event").help("Counter for Log Events by type").labelNames("type").register();
+    public static final Gauge LOG_EVENT_QUEUE_DEPTH = Gauge.build()
+            .name("isaac_log_event_queue_depth").help("Log events waiting to be written to the database.").register();
+    public static final Histogram LOG_EVENT_FLUSH_LATENCY_HISTOGRAM = Histogram.build()
+            .name("isaac_log_event_flush")
+            .help("Latency in seconds of writing a batch of log events to the database.").register();
+    public static final Counter LOG_EVENT_DROPPED = Counter.build()
+            .name("isaac_log_event_dropped_total").labelNames("reason")
+            .help("Log events which could not be written to the database, by reason.").register();
 
     /**
      *  Private constructor as it does not make sense to instantiate this class.
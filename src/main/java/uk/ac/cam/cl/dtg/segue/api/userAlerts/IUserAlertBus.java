@@ -0,0 +1,22 @@
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import uk.ac.cam.cl.dtg.isaac.dos.IUserAlert;
+
+/**
+ * Delivers user alerts to the user's open websockets, wherever they are connected.
+ */
+public interface IUserAlertBus {
+
+    /**
+     * Send an alert to every websocket the user has open.
+     *
+     * Delivery is best-effort: an alert which must not be missed should also be persisted, so that it is sent when
+     * the user next connects.
+     *
+     * @param userId
+     *            - the user to alert.
+     * @param alert
+     *            - the alert to send.
+     */
+    void publish(long userId, IUserAlert alert);
+}
@@ -0,0 +1,202 @@
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.isaac.dos.IUserAlert;
+import uk.ac.cam.cl.dtg.isaac.dos.PgUserAlert;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresNotificationBus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers user alerts to websockets connected to any API node, by broadcasting them through Postgres LISTEN/NOTIFY.
+ *
+ * Each alert is published once as a compact envelope of the form {@code <userId>:<alert JSON>}; every node, including
+ * the publisher, receives it and delivers it only to the websockets connected locally. A node with no websockets for
+ * the user can discard the envelope without parsing the alert. Alerts for local websockets are parsed and delivered
+ * on a separate thread, so that slow clients cannot hold up the notification listener shared with other channels.
+ */
+public class PgUserAlertBus implements IUserAlertBus {
+    private static final Logger log = LoggerFactory.getLogger(PgUserAlertBus.class);
+
+    static final String CHANNEL = "user_alerts";
+    // Postgres rejects notification payloads of 8000 bytes or more; leave some headroom:
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final int MAX_PENDING_DELIVERIES = 10000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final PostgresNotificationBus notificationBus;
+    private final ExecutorService deliveryExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Create a user alert bus, and start listening for alerts published by any node.
+     *
+     * @param notificationBus
+     *            - to broadcast alerts between nodes.
+     */
+    @Inject
+    public PgUserAlertBus(final PostgresNotificationBus notificationBus) {
+        this(notificationBus, new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_PENDING_DELIVERIES), runnable -> {
+                    Thread thread = new Thread(runnable, "user-alert-delivery");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    /**
+     * Create a user alert bus which delivers received alerts using the given executor.
+     *
+     * @param notificationBus
+     *            - to broadcast alerts between nodes.
+     * @param deliveryExecutor
+     *            - to parse and deliver alerts for local websockets, off the notification listener thread.
+     */
+    PgUserAlertBus(final PostgresNotificationBus notificationBus, final ExecutorService deliveryExecutor) {
+        this.notificationBus = notificationBus;
+        this.deliveryExecutor = deliveryExecutor;
+        this.notificationBus.subscribe(CHANNEL, this::receive);
+    }
+
+    /**
+     * Stop delivering alerts, letting any already received finish being delivered.
+     */
+    public void shutdown() {
+        deliveryExecutor.shutdown();
+        try {
+            if (!deliveryExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for user alerts to be delivered.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void publish(final long userId, final IUserAlert alert) {
+        try {
+            String payload = userId + ":" + objectMapper.writeValueAsString(toEnvelope(alert));
+            if (payload.getBytes(StandardCharsets.UTF_8).length >= MAX_PAYLOAD_BYTES) {
+                log.warn(String.format("Alert for user (%s) is too large to broadcast; delivering locally only.",
+                        userId));
+                UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+                return;
+            }
+            notificationBus.publish(CHANNEL, payload);
+        } catch (JsonProcessingException | SegueDatabaseException e) {
+            log.error(String.format("Unable to broadcast alert for user (%s); delivering locally only.", userId), e);
+            UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+        }
+    }
+
+    /**
+     * Deliver an alert broadcast by any node to the matching websockets connected to this node.
+     *
+     * This is called on the notification listener thread, so only decides whether the alert is for a local websocket;
+     * parsing and sending the alert is handed off to the delivery executor.
+     *
+     * @param payload
+     *            - the envelope published by {@link #publish(long, IUserAlert)}.
+     */
+    void receive(final String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 1) {
+            log.warn("Discarding malformed user alert notification.");
+            return;
+        }
+        long userId;
+        try {
+            userId = Long.parseLong(payload.substring(0, separator));
+        } catch (NumberFormatException e) {
+            log.warn("Discarding malformed user alert notification.");
+            return;
+        }
+        if (!UserAlertsWebSocket.hasConnectedSockets(userId)) {
+            return;
+        }
+
+        try {
+            deliveryExecutor.execute(() -> this.deliver(userId, payload.substring(separator + 1)));
+        } catch (RejectedExecutionException e) {
+            log.warn(String.format("Too many user alerts waiting to be delivered; dropping alert for user (%s).",
+                    userId));
+        }
+    }
+
+    /**
+     * Parse an alert and send it to the user's websockets connected to this node.
+     *
+     * @param userId
+     *            - the user the alert is for.
+     * @param alertJson
+     *            - the alert part of the envelope.
+     */
+    private void deliver(final long userId, final String alertJson) {
+        try {
+            Map<String, Object> envelope = objectMapper.readValue(alertJson,
+                    new TypeReference<Map<String, Object>>() {});
+            UserAlertsWebSocket.notifyUserOfAlert(userId, fromEnvelope(userId, envelope));
+        } catch (JsonProcessingException e) {
+            log.warn(String.format("Discarding malformed user alert notification for user (%s).", userId), e);
+        } catch (RuntimeException e) {
+            log.error(String.format("Unable to deliver alert to user (%s).", userId), e);
+        }
+    }
+
+    /**
+     * @param alert - the alert to flatten.
+     * @return a map of the non-null alert fields, with dates as epoch milliseconds.
+     */
+    private static Map<String, Object> toEnvelope(final IUserAlert alert) {
+        Map<String, Object> envelope = new HashMap<>();
+        putIfNotNull(envelope, "id", alert.getId());
+        putIfNotNull(envelope, "message", alert.getMessage());
+        putIfNotNull(envelope, "link", alert.getLink());
+        putIfNotNull(envelope, "created", toMillis(alert.getCreated()));
+        putIfNotNull(envelope, "seen", toMillis(alert.getSeen()));
+        putIfNotNull(envelope, "clicked", toMillis(alert.getClicked()));
+        putIfNotNull(envelope, "dismissed", toMillis(alert.getDismissed()));
+        return envelope;
+    }
+
+    /**
+     * @param userId - the user the alert is for.
+     * @param envelope - the map produced by {@link #toEnvelope(IUserAlert)}.
+     * @return the alert.
+     */
+    private static IUserAlert fromEnvelope(final long userId, final Map<String, Object> envelope) {
+        Number id = (Number) envelope.get("id");
+        return new PgUserAlert(null != id ? id.longValue() : null, userId,
+                (String) envelope.get("message"), (String) envelope.get("link"),
+                toDate(envelope.get("created")), toDate(envelope.get("seen")),
+                toDate(envelope.get("clicked")), toDate(envelope.get("dismissed")));
+    }
+
+    private static void putIfNotNull(final Map<String, Object> map, final String key, final Object value) {
+        if (null != value) {
+            map.put(key, value);
+        }
+    }
+
+    private static Long toMillis(final Date date) {
+        return null != date ? date.getTime() : null;
+    }
+
+    private static Date toDate(final Object millis) {
+        return null != millis ? new Date(((Number) millis).longValue()) : null;
+    }
+}
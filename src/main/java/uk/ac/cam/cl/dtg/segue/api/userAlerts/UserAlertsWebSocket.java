@@ -1,5 +1,6 @@
 package uk.ac.cam.cl.dtg.segue.api.userAlerts;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -66,29 +67,48 @@ public class UserAlertsWebSocket implements IAlertListener {
     private final IStatisticsManager statisticsManager;
     private final AbstractConfigLoader properties;
     private Session session;
+    private WebSocketOutboundQueue outboundQueue;
     private static ObjectMapper objectMapper = new ObjectMapper();
 
     // Named unsafeConnectedSockets because, although non-aggregate operations on the concurrent hash map are fine,
     // operations on the user sets of websockets are unsafe unless used with the matching user lock.
     private static Map<Long, Set<UserAlertsWebSocket>> unsafeConnectedSockets = Maps.newConcurrentMap();
     private static final int MAX_NUMBER_OF_CONCURRENT_USER_TAB_OPERATIONS = 200;
-    // If we move to supporting connections across multiple APIs, we could use postgres for a distributed lock.
+    // Alerts for users connected to other API nodes are broadcast by IUserAlertBus, so these locks need only be local.
     private static Striped<Lock> userLocks = Striped.lazyWeakLock(MAX_NUMBER_OF_CONCURRENT_USER_TAB_OPERATIONS);
 
     private static final Logger log = LoggerFactory.getLogger(UserAlertsWebSocket.class);
 
     /**
-     * This static method obtains a user lock and sends an alert to each of that user's websockets.
+     * This static method obtains a user lock and queues an alert to be sent down each of that user's websockets.
+     *
+     * The alert is sent asynchronously, so a slow client cannot hold up the caller. Alerts which were not persisted
+     * (e.g. streak updates) are superseded by any later alert with the same link still waiting to be sent.
      * @param userId ID of the user to send the messages, we do not check its validity here.
      * @param alert the alert to send to the user.
      */
     public static void notifyUserOfAlert(final long userId, final IUserAlert alert) {
+        if (!unsafeConnectedSockets.containsKey(userId)) {
+            return;
+        }
+        String message;
+        try {
+            message = objectMapper.writeValueAsString(ImmutableMap.of(
+                    Protocol.NOTIFICATIONS, ImmutableList.of(alert),
+                    Protocol.HEARTBEAT, System.currentTimeMillis()
+            ));
+        } catch (JsonProcessingException e) {
+            log.error(String.format("Unable to serialize alert for user (%s).", userId), e);
+            return;
+        }
+        String coalescingKey = null == alert.getId() ? Protocol.NOTIFICATIONS + ":" + alert.getLink() : null;
+
         Lock userLock = userLocks.get(userId);
         userLock.lock();
         try {
             if (unsafeConnectedSockets.containsKey(userId)) {
                 for (UserAlertsWebSocket listener : unsafeConnectedSockets.get(userId)) {
-                    listener.sendAlert(alert);
+                    listener.outboundQueue.enqueue(coalescingKey, message);
                 }
             }
         } finally {
@@ -96,6 +116,16 @@ public class UserAlertsWebSocket implements IAlertListener {
         }
     }
 
+    /**
+     * Whether this node has any websockets open for a user. The answer may be stale by the time it is used, so this
+     * is only suitable for skipping work for users who are not connected here.
+     * @param userId ID of the user to check.
+     * @return true if the user had at least one websocket open on this node.
+     */
+    public static boolean hasConnectedSockets(final long userId) {
+        return unsafeConnectedSockets.containsKey(userId);
+    }
+
     /**
      * Injectable constructor
      *
@@ -140,7 +170,7 @@ public class UserAlertsWebSocket implements IAlertListener {
 
         try {
             if (message.equals(Protocol.HEARTBEAT)) {
-                session.getRemote().sendString(objectMapper.writeValueAsString(ImmutableMap.of(
+                outboundQueue.enqueue(Protocol.HEARTBEAT, objectMapper.writeValueAsString(ImmutableMap.of(
                         Protocol.HEARTBEAT, System.currentTimeMillis()
                 )));
             } else if (message.equals(Protocol.USER_SNAPSHOT_NUDGE)) {
@@ -169,6 +199,8 @@ public class UserAlertsWebSocket implements IAlertListener {
     public void onConnect(final Session session) {
         try {
             this.session = session;
+            this.outboundQueue = new WebSocketOutboundQueue(session.getRemote(),
+                    WebSocketOutboundQueue.DEFAULT_CAPACITY);
 
             RegisteredUser validUserFromSession = userAuthenticationManager.getUserFromSession(session.getUpgradeRequest());
 
@@ -274,6 +306,7 @@ public class UserAlertsWebSocket implements IAlertListener {
         } finally {
             userLock.unlock();
         }
+        outboundQueue.close();
 
         // Report on state change
         SegueMetrics.CURRENT_OPEN_WEBSOCKETS.dec();
@@ -307,32 +340,15 @@ public class UserAlertsWebSocket implements IAlertListener {
     }
 
     /**
-     * Sends a payload to the connected client notifying them of an important event
-     *
-     * @param alert
-     *          - user alert instance containg details about the event
-     */
-    private void sendAlert(final IUserAlert alert) {
-        try {
-            this.session.getRemote().sendString(objectMapper.writeValueAsString(ImmutableMap.of(
-                    Protocol.NOTIFICATIONS, ImmutableList.of(alert),
-                    Protocol.HEARTBEAT, System.currentTimeMillis()
-            )));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-
-    /**
-     * Method to send a payload to the connected user with details of their current stats snapshot
+     * Method to queue a payload to the connected user with details of their current stats snapshot, replacing any
+     * older snapshot which has not yet been sent.
      * TODO: Currently only delivers user streak information but we can generalise it later to deliver more data
      *
      * @throws IOException
-     *             - if the WebSocket is unexpectedly closed or in an invalid state
+     *             - if the snapshot cannot be serialized
      */
     private void sendUserSnapshotData() throws IOException {
-        session.getRemote().sendString(objectMapper.writeValueAsString(ImmutableMap.of(
+        outboundQueue.enqueue(Protocol.USER_SNAPSHOT, objectMapper.writeValueAsString(ImmutableMap.of(
                 Protocol.USER_SNAPSHOT, statisticsManager.getDetailedUserStatistics(connectedUser),
                 Protocol.HEARTBEAT, System.currentTimeMillis()
         )));
@@ -342,12 +358,12 @@ public class UserAlertsWebSocket implements IAlertListener {
      * Send any notifications or alerts registered in the database down this websocket
      * @param userId the Id of the user's alerts which will be sent.
      * @throws SegueDatabaseException can be thrown while getting the user's alerts from the database.
-     * @throws IOException can be thrown when sending the notifications down the connection.
+     * @throws IOException can be thrown when serializing the notifications.
      */
     private void sendInitialNotifications(final long userId) throws SegueDatabaseException, IOException {
         List<IUserAlert> persistedAlerts = userAlerts.getUserAlerts(userId);
         if (!persistedAlerts.isEmpty()) {
-            session.getRemote().sendString(objectMapper.writeValueAsString(ImmutableMap.of(
+            outboundQueue.enqueue(null, objectMapper.writeValueAsString(ImmutableMap.of(
                     Protocol.NOTIFICATIONS, persistedAlerts
             )));
         }
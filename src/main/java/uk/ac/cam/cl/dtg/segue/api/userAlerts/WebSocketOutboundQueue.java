@@ -0,0 +1,151 @@
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.WEBSOCKET_OUTBOUND_DROPPED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.WEBSOCKET_OUTBOUND_QUEUE_DEPTH;
+
+/**
+ * A small bounded queue of messages waiting to be sent down a single websocket.
+ *
+ * Messages are sent asynchronously, one at a time, so that callers never block on a slow client. If the client falls
+ * behind, the oldest queued message is dropped to make room; a message with a coalescing key replaces any queued
+ * message with the same key, since only the latest version of e.g. a snapshot is worth sending.
+ */
+class WebSocketOutboundQueue {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketOutboundQueue.class);
+
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final RemoteEndpoint remote;
+    private final int capacity;
+    private final Deque<OutboundMessage> queue;
+    private boolean sending;
+    private boolean closed;
+
+    /**
+     * @param remote - the endpoint to send messages to.
+     * @param capacity - the maximum number of messages to hold while one is being sent.
+     */
+    WebSocketOutboundQueue(final RemoteEndpoint remote, final int capacity) {
+        this.remote = remote;
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Queue a message to be sent as soon as those before it have been, without waiting for it to be sent.
+     *
+     * @param coalescingKey - messages with the same non-null key replace one another while queued.
+     * @param payload - the text to send.
+     */
+    void enqueue(final String coalescingKey, final String payload) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (null != coalescingKey && replaceQueued(coalescingKey, payload)) {
+                return;
+            }
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+                WEBSOCKET_OUTBOUND_QUEUE_DEPTH.dec();
+                WEBSOCKET_OUTBOUND_DROPPED.labels("queue_full").inc();
+            }
+            queue.addLast(new OutboundMessage(coalescingKey, payload));
+            WEBSOCKET_OUTBOUND_QUEUE_DEPTH.inc();
+        }
+        sendNext();
+    }
+
+    /**
+     * Discard any unsent messages; called when the websocket closes.
+     */
+    synchronized void close() {
+        closed = true;
+        WEBSOCKET_OUTBOUND_QUEUE_DEPTH.dec(queue.size());
+        queue.clear();
+    }
+
+    /**
+     * @return the number of messages waiting to be sent.
+     */
+    synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Start sending the next message, unless one is already being sent.
+     */
+    private void sendNext() {
+        OutboundMessage next;
+        synchronized (this) {
+            if (sending || closed || queue.isEmpty()) {
+                return;
+            }
+            next = queue.pollFirst();
+            WEBSOCKET_OUTBOUND_QUEUE_DEPTH.dec();
+            sending = true;
+        }
+
+        // Jetty may complete the write, and so call back, before sendString returns; the lock must not be held here.
+        remote.sendString(next.payload, new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                onSendComplete();
+            }
+
+            @Override
+            public void writeFailed(final Throwable x) {
+                log.debug("Failed to send websocket message: " + x.getClass().getSimpleName() + ": " + x.getMessage());
+                WEBSOCKET_OUTBOUND_DROPPED.labels("send_failed").inc();
+                onSendComplete();
+            }
+        });
+    }
+
+    private void onSendComplete() {
+        synchronized (this) {
+            sending = false;
+        }
+        sendNext();
+    }
+
+    /**
+     * @param coalescingKey - the key of the message to replace.
+     * @param payload - the replacement text.
+     * @return whether a queued message was replaced.
+     */
+    private boolean replaceQueued(final String coalescingKey, final String payload) {
+        Iterator<OutboundMessage> it = queue.iterator();
+        while (it.hasNext()) {
+            OutboundMessage queued = it.next();
+            if (coalescingKey.equals(queued.coalescingKey)) {
+                queued.payload = payload;
+                WEBSOCKET_OUTBOUND_DROPPED.labels("coalesced").inc();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A message waiting to be sent.
+     */
+    private static final class OutboundMessage {
+        private final String coalescingKey;
+        private String payload;
+
+        private OutboundMessage(final String coalescingKey, final String payload) {
+            this.coalescingKey = coalescingKey;
+            this.payload = payload;
+        }
+    }
+}
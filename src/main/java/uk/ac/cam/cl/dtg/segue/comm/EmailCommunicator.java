@@ -20,9 +20,15 @@ import com.google.inject.name.Named;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.util.Mailer;
 
+import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
 import jakarta.mail.internet.InternetAddress;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -68,6 +74,58 @@ public class EmailCommunicator implements ICommunicator<EmailCommunicationMessag
      */
 	@Override
 	public void sendMessage(final EmailCommunicationMessage email) throws CommunicationException {
+        try {
+            Transport.send(createMessage(email));
+        } catch (MessagingException e) {
+            throw new CommunicationException(e);
+        }
+    }
+
+    /**
+     * Send several emails, reusing SMTP connections between them where possible.
+     *
+     * @param emails
+     *            - messages to be sent.
+     * @return the failure for each email, in the same order, with null for those sent successfully.
+     */
+    public List<CommunicationException> sendMessages(final List<EmailCommunicationMessage> emails) {
+        List<CommunicationException> failures = new ArrayList<>(Collections.nCopies(emails.size(), null));
+        List<Message> messages = new ArrayList<>(emails.size());
+        List<Integer> messageIndexes = new ArrayList<>(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            try {
+                messages.add(createMessage(emails.get(i)));
+                messageIndexes.add(i);
+            } catch (CommunicationException e) {
+                failures.set(i, e);
+            }
+        }
+
+        List<MessagingException> sendFailures = mailer.sendBatch(messages);
+        for (int i = 0; i < sendFailures.size(); i++) {
+            if (null != sendFailures.get(i)) {
+                failures.set(messageIndexes.get(i), new CommunicationException(sendFailures.get(i)));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @param email
+     *            - message to be created. Will be plain text if no HTML is provided
+     * @return the message, ready to send.
+     * @throws CommunicationException
+     *            - if the message cannot be created, e.g. because an address is invalid.
+     */
+    private Message createMessage(final EmailCommunicationMessage email) throws CommunicationException {
+        // Reject emails which could never be sent, rather than letting the mail library fail part way through:
+        if (null == email.getRecipientAddress() || email.getRecipientAddress().isBlank()) {
+            throw new CommunicationException(new AddressException("Email has no recipient address."));
+        }
+        if (null == email.getPlainTextMessage()) {
+            throw new CommunicationException(new MessagingException("Email has no plain text content."));
+        }
+
 	    String fromEmailAddress = this.defaultFromAddress;
 	    String fromName = this.mailName;
 	    String overrideEnvelopeFrom = null;
@@ -91,10 +149,10 @@ public class EmailCommunicator implements ICommunicator<EmailCommunicationMessag
             }
 
             if (email.getHTMLMessage() == null) {
-                mailer.sendPlainTextMail(new String[] { email.getRecipientAddress() }, fromAddress,
+                return mailer.createPlainTextMail(new String[] { email.getRecipientAddress() }, fromAddress,
                         overrideEnvelopeFrom, replyTo, email.getSubject(), email.getPlainTextMessage());
             } else {
-                mailer.sendMultiPartMail(new String[] { email.getRecipientAddress() }, fromAddress,
+                return mailer.createMultiPartMail(new String[] { email.getRecipientAddress() }, fromAddress,
                         overrideEnvelopeFrom, replyTo, email.getSubject(),
                         email.getPlainTextMessage(), email.getHTMLMessage(), email.getAttachments());
             }
@@ -102,4 +160,4 @@ public class EmailCommunicator implements ICommunicator<EmailCommunicationMessag
             throw new CommunicationException(e);
         }
     }
-}
\ No newline at end of file
+}
@@ -18,7 +18,8 @@ package uk.ac.cam.cl.dtg.segue.comm;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
-import com.google.api.client.util.Sets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.EnumUtils;
@@ -43,19 +44,25 @@ import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
 import jakarta.annotation.Nullable;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
-import java.util.Set;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.QUEUED_EMAIL;
@@ -65,7 +72,9 @@ import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.QUEUED_EMAIL;
  * Responsible for orchestration of email sending in Segue.
  *
  */
-public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationMessage> {
+public class EmailManager {
+    private final IEmailOutbox emailOutbox;
+    private final IMassEmailJobPersistenceManager massEmailJobPersistenceManager;
     private final AbstractUserPreferenceManager userPreferenceManager;
     private final AbstractConfigLoader globalProperties;
     private final GitContentManager contentManager;
@@ -75,8 +84,19 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
     private final Map<String, String> globalStringTokens;
 
     private static final Logger log = LoggerFactory.getLogger(EmailManager.class);
-    private static final int MINIMUM_TAG_LENGTH = 4;
     private static final DateFormat FULL_DATE_FORMAT = new SimpleDateFormat("EEE d MMM yyyy h:mm aaa");
+    private static final int MAX_COMPILED_TEMPLATES = 200;
+    private static final Map<Class<?>, Map<String, Method>> BEAN_READ_METHODS = new ConcurrentHashMap<>();
+
+    private final Cache<String, EmailTemplate> compiledTemplates = CacheBuilder.newBuilder()
+            .maximumSize(MAX_COMPILED_TEMPLATES).build();
+
+    private static final int MASS_EMAIL_CHUNK_SIZE = 500;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private final ExecutorService massEmailExecutor;
+    // The jobs this node has started but not finished, which it must keep showing are still being worked on:
+    private final Map<String, MassEmailJob> unfinishedMassEmailJobs = new ConcurrentHashMap<>();
+    private volatile boolean isShuttingDown = false;
 
     /**
      * @param communicator
@@ -92,11 +112,60 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
      * @param globalStringTokens a map containing a token that if seen in an email template should be replaced with some
      *                           static string.
      */
-    @Inject
     public EmailManager(final EmailCommunicator communicator, final AbstractUserPreferenceManager userPreferenceManager,
                         final AbstractConfigLoader globalProperties, final GitContentManager contentManager,
                         final ILogManager logManager, final Map<String, String> globalStringTokens) {
-        super(communicator);
+        this(new InMemoryEmailOutbox(communicator), new InMemoryMassEmailJobPersistenceManager(),
+                userPreferenceManager, globalProperties, contentManager, logManager, globalStringTokens);
+    }
+
+    /**
+     * @param emailOutbox
+     *            outbox which holds emails until they have been sent.
+     * @param massEmailJobPersistenceManager
+     *            storage for the progress of mass emails.
+     * @param userPreferenceManager
+     *            user preference manager used to check if users want email.
+     * @param globalProperties
+     *            global properties used to get host name
+     * @param contentManager
+     *            content for email templates
+     * @param logManager
+     *            so we can log e-mail events.
+     * @param globalStringTokens a map containing a token that if seen in an email template should be replaced with some
+     *                           static string.
+     */
+    @Inject
+    public EmailManager(final IEmailOutbox emailOutbox,
+                        final IMassEmailJobPersistenceManager massEmailJobPersistenceManager,
+                        final AbstractUserPreferenceManager userPreferenceManager,
+                        final AbstractConfigLoader globalProperties, final GitContentManager contentManager,
+                        final ILogManager logManager, final Map<String, String> globalStringTokens) {
+        this(emailOutbox, massEmailJobPersistenceManager, userPreferenceManager, globalProperties, contentManager,
+                logManager, globalStringTokens, Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "mass-email-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    /**
+     * @param emailOutbox - outbox which holds emails until they have been sent.
+     * @param massEmailJobPersistenceManager - storage for the progress of mass emails.
+     * @param userPreferenceManager - user preference manager used to check if users want email.
+     * @param globalProperties - global properties used to get host name
+     * @param contentManager - content for email templates
+     * @param logManager - so we can log e-mail events.
+     * @param globalStringTokens - static strings to replace tokens with in email templates.
+     * @param massEmailExecutor - to add mass emails to the outbox in the background.
+     */
+    EmailManager(final IEmailOutbox emailOutbox, final IMassEmailJobPersistenceManager massEmailJobPersistenceManager,
+                 final AbstractUserPreferenceManager userPreferenceManager, final AbstractConfigLoader globalProperties,
+                 final GitContentManager contentManager, final ILogManager logManager,
+                 final Map<String, String> globalStringTokens, final ExecutorService massEmailExecutor) {
+        this.emailOutbox = emailOutbox;
+        this.massEmailJobPersistenceManager = massEmailJobPersistenceManager;
+        this.massEmailExecutor = massEmailExecutor;
         this.userPreferenceManager = userPreferenceManager;
         this.globalProperties = globalProperties;
         this.contentManager = contentManager;
@@ -106,15 +175,33 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         FULL_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone(DEFAULT_TIME_LOCALITY));
     }
 
-    @Override
+    /**
+     * Add an email to the outbox, to be sent in the background.
+     *
+     * @param email - the email to send.
+     */
     protected void addToQueue(final EmailCommunicationMessage email) {
+        recordQueuedEmail(email);
+        try {
+            emailOutbox.enqueue(email);
+        } catch (CommunicationException e) {
+            log.error(String.format("Unable to add %s email to the outbox with subject: %s",
+                    email.getEmailType().toString().toLowerCase(), email.getSubject()), e);
+        }
+    }
+
+    /**
+     * Count an email added to the queue.
+     *
+     * @param email - the email added.
+     */
+    private void recordQueuedEmail(final EmailCommunicationMessage email) {
         // Label metrics with sender address, but Prometheus label cannot be null so need the default value here too:
         String senderAddress = globalProperties.getProperty(MAIL_FROM_ADDRESS);
         if (email.getOverrideEnvelopeFrom() != null && !email.getOverrideEnvelopeFrom().isEmpty()) {
             senderAddress = email.getOverrideEnvelopeFrom();
         }
         QUEUED_EMAIL.labels(email.getEmailType().name(), senderAddress).inc();
-        super.addToQueue(email);
     }
 
     /**
@@ -171,9 +258,7 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         propertiesToReplace.putAll(this.flattenTokenMap(tokenToValueMapping, Maps.newHashMap(), ""));
 
         // Add all properties in the user DTO (preserving types) so they are available to email templates.
-        Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(userDTO);
-
-        propertiesToReplace.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
+        propertiesToReplace.putAll(this.flattenTokenMap(getBeanProperties(userDTO), Maps.newHashMap(), ""));
 
         // Sanitizes inputs from users
         sanitizeEmailParameters(propertiesToReplace);
@@ -219,6 +304,8 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
     }
     
     /**
+     * Start sending an email template to many users; the emails are added to the queue in the background.
+     *
      * @param sendingUser
      * 				- the user object for the user sending the email
      * @param contentObjectId
@@ -227,12 +314,13 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
      * 				- the users to send email to
      * @param emailType
      * 				- the type of email to send (affects who receives it)
+     * @return the job adding the emails to the queue, which can be used to follow its progress.
      * @throws SegueDatabaseException
      * 				- a segue database exception
      * @throws ContentManagerException
      * 				- a content management exception
      */
-    public void sendCustomEmail(final RegisteredUserDTO sendingUser, final String contentObjectId,
+    public MassEmailJob sendCustomEmail(final RegisteredUserDTO sendingUser, final String contentObjectId,
             final List<RegisteredUserDTO> allSelectedUsers, final EmailType emailType) throws SegueDatabaseException,
             ContentManagerException {
         Objects.requireNonNull(allSelectedUsers);
@@ -240,96 +328,271 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
 
         EmailTemplateDTO emailContent = getEmailTemplateDTO(contentObjectId);
 
-        int numberOfFilteredUsers = 0;
-        for (RegisteredUserDTO user : allSelectedUsers) {
-            Properties p = new Properties();
-            p.putAll(this.globalStringTokens);
-
-            // Add all properties in the user DTO (preserving types) so they are available to email templates.
-            Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(user);
-            p.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
-
-            sanitizeEmailParameters(p);
-
-            EmailCommunicationMessage e = constructMultiPartEmail(user.getId(), user.getEmail(), emailContent, p,
-                    emailType, null);
-
-            // add to the queue
-            boolean emailAddedToSendQueue = this.filterByPreferencesAndAddToQueue(user, e);
-            if (!emailAddedToSendQueue) {
-                numberOfFilteredUsers++;
-            }
-        }
-
-        List<Long> ids = Lists.newArrayList();
-        allSelectedUsers.stream().map(RegisteredUserDTO::getId).forEach(ids::add);
-
-        ImmutableMap<String, Object> eventDetails = new ImmutableMap.Builder<String, Object>().put(USER_ID_LIST_FKEY_FIELDNAME, ids)
-                .put("contentObjectId", contentObjectId)
-                .put(CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA())
-                .put("numberFiltered", numberOfFilteredUsers)
-                .put("type", emailType).build();
-
-        this.logManager.logInternalEvent(sendingUser, SegueServerLogType.SEND_MASS_EMAIL, eventDetails);
-        log.info(String.format("Admin user (%s) added %d emails to the queue. %d were filtered.", sendingUser.getEmail(),
-                allSelectedUsers.size() - numberOfFilteredUsers, numberOfFilteredUsers));
+        Map<String, Object> templateDetails = ImmutableMap.of("contentObjectId", contentObjectId,
+                CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA());
+        return startMassEmailJob(sendingUser, emailContent, templateDetails, allSelectedUsers, emailType,
+                SegueServerLogType.SEND_MASS_EMAIL);
     }
 
 
     /**
+     * Start sending an email to many users; the emails are added to the queue in the background.
+     *
      * @param sendingUser
      * 				- the user object for the user sending the email
      * @param emailTemplate
      *              - the subject of the email
      * @param emailType
      * 				- the type of email to send (affects who receives it)
+     * @return the job adding the emails to the queue, which can be used to follow its progress.
      * @throws SegueDatabaseException
      * 				- a segue database exception
      * @throws ContentManagerException
      * 				- a content management exception
      */
-    public void sendCustomContentEmail(final RegisteredUserDTO sendingUser, final EmailTemplateDTO emailTemplate,
-                                       final List<RegisteredUserDTO> allSelectedUsers,
-                                       final EmailType emailType) throws SegueDatabaseException, ContentManagerException {
+    public MassEmailJob sendCustomContentEmail(final RegisteredUserDTO sendingUser,
+                                               final EmailTemplateDTO emailTemplate,
+                                               final List<RegisteredUserDTO> allSelectedUsers,
+                                               final EmailType emailType)
+            throws SegueDatabaseException, ContentManagerException {
         Objects.requireNonNull(allSelectedUsers);
 
+        Map<String, Object> templateDetails = ImmutableMap.of("htmlTemplate", emailTemplate.getHtmlContent(),
+                CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA());
+        return startMassEmailJob(sendingUser, emailTemplate, templateDetails, allSelectedUsers, emailType,
+                SegueServerLogType.SEND_CUSTOM_MASS_EMAIL);
+    }
 
-        int numberOfFilteredUsers = 0;
-        for (RegisteredUserDTO user : allSelectedUsers) {
-            Properties p = new Properties();
-            p.putAll(this.globalStringTokens);
-
-            // Add all properties in the user DTO (preserving types) so they are available to email templates.
-            Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(user);
-            p.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
+    /**
+     * Get the progress of a mass email, which may be being sent by another node.
+     *
+     * @param jobId - the id of the job sending the email.
+     * @return the job, or null if it is unknown.
+     * @throws SegueDatabaseException - if the job cannot be read.
+     */
+    @Nullable
+    public MassEmailJob getMassEmailJob(final String jobId) throws SegueDatabaseException {
+        return massEmailJobPersistenceManager.getMassEmailJob(jobId);
+    }
 
-            sanitizeEmailParameters(p);
+    /**
+     * Stop adding mass emails to the queue, waiting briefly for the chunk being worked on to finish.
+     *
+     * Any job which has not finished is recorded as having failed part way through, so that the sender can see how
+     * many of its recipients were emailed.
+     */
+    public void shutdown() {
+        isShuttingDown = true;
+        massEmailExecutor.shutdown();
+        try {
+            if (!massEmailExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                massEmailExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            massEmailExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (MassEmailJob job : unfinishedMassEmailJobs.values()) {
+            recordStoppedMassEmailJob(job);
+        }
+    }
 
-            EmailCommunicationMessage e = constructMultiPartEmail(user.getId(), user.getEmail(), emailTemplate, p,
-                    emailType, null);
+    /**
+     * Start adding an email to the queue for each of many users, in the background.
+     *
+     * @param sendingUser - the user sending the email.
+     * @param emailTemplate - the email to send.
+     * @param templateDetails - details identifying the template, to log.
+     * @param allSelectedUsers - the users to send the email to.
+     * @param emailType - the type of email to send (affects who receives it).
+     * @param logType - the type of event to log once the emails have been queued.
+     * @return the job adding the emails to the queue.
+     * @throws SegueDatabaseException - if the job cannot be stored.
+     */
+    private MassEmailJob startMassEmailJob(final RegisteredUserDTO sendingUser, final EmailTemplateDTO emailTemplate,
+                                           final Map<String, Object> templateDetails,
+                                           final List<RegisteredUserDTO> allSelectedUsers, final EmailType emailType,
+                                           final SegueServerLogType logType) throws SegueDatabaseException {
+        // Copy the recipients, since the caller is free to change its list once this returns:
+        List<RegisteredUserDTO> recipients = Lists.newArrayList(allSelectedUsers);
+        MassEmailJob job = new MassEmailJob(sendingUser.getId(), emailType, recipients.size());
+        massEmailJobPersistenceManager.saveMassEmailJob(job);
+        unfinishedMassEmailJobs.put(job.getId(), job);
+        massEmailExecutor.execute(() -> runMassEmailJob(job, sendingUser, emailTemplate, templateDetails, recipients,
+                emailType, logType));
+        log.info(String.format("User (%s) started adding %d %s emails to the queue (job %s).", sendingUser.getEmail(),
+                recipients.size(), emailType, job.getId()));
+        return job;
+    }
 
-            // add to the queue
-            boolean emailAddedToSendQueue = this.filterByPreferencesAndAddToQueue(user, e);
-            if (!emailAddedToSendQueue) {
-                numberOfFilteredUsers++;
+    /**
+     * Add an email to the queue for each of many users, a chunk of users at a time, recording progress as it goes.
+     *
+     * @param job - the job to record progress against.
+     * @param sendingUser - the user sending the email.
+     * @param emailTemplate - the email to send.
+     * @param templateDetails - details identifying the template, to log.
+     * @param recipients - the users to send the email to.
+     * @param emailType - the type of email to send (affects who receives it).
+     * @param logType - the type of event to log once the emails have been queued.
+     */
+    private void runMassEmailJob(final MassEmailJob job, final RegisteredUserDTO sendingUser,
+                                 final EmailTemplateDTO emailTemplate, final Map<String, Object> templateDetails,
+                                 final List<RegisteredUserDTO> recipients, final EmailType emailType,
+                                 final SegueServerLogType logType) {
+        job.setStatus(MassEmailJob.Status.RUNNING);
+        saveMassEmailJobProgress();
+        try {
+            for (int start = 0; start < recipients.size() && !isShuttingDown; start += MASS_EMAIL_CHUNK_SIZE) {
+                List<RegisteredUserDTO> chunk = recipients.subList(start,
+                        Math.min(start + MASS_EMAIL_CHUNK_SIZE, recipients.size()));
+                int queued = this.filterByPreferencesAndAddAllToQueue(chunk, emailTemplate, emailType);
+                job.recordProgress(chunk.size(), queued);
+                saveMassEmailJobProgress();
             }
+            if (job.getProcessedRecipients() == job.getTotalRecipients()) {
+                job.setStatus(MassEmailJob.Status.COMPLETE);
+            }
+        } catch (SegueDatabaseException | ContentManagerException | CommunicationException | RuntimeException e) {
+            log.error(String.format("Mass email job (%s) failed after %d of %d users.", job.getId(),
+                    job.getProcessedRecipients(), job.getTotalRecipients()), e);
+            job.setError(e.getMessage());
+            job.setStatus(MassEmailJob.Status.FAILED);
+        }
+        if (job.isUnfinished()) {
+            recordStoppedMassEmailJob(job);
+        } else {
+            unfinishedMassEmailJobs.remove(job.getId());
+            saveMassEmailJob(job);
         }
 
+        // Chunks are processed in order, so only log the users the job got to if it stopped early:
         List<Long> ids = Lists.newArrayList();
-        allSelectedUsers.stream().map(RegisteredUserDTO::getId).forEach(ids::add);
+        recipients.subList(0, job.getProcessedRecipients()).stream().map(RegisteredUserDTO::getId).forEach(ids::add);
 
         ImmutableMap<String, Object> eventDetails = new ImmutableMap.Builder<String, Object>().put(USER_ID_LIST_FKEY_FIELDNAME, ids)
-                .put("htmlTemplate", emailTemplate.getHtmlContent())
-                .put(CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA())
-                .put("numberFiltered", numberOfFilteredUsers)
+                .putAll(templateDetails)
+                .put("numberFiltered", job.getFilteredRecipients())
+                .put("numberProcessed", job.getProcessedRecipients())
+                .put("numberRecipients", job.getTotalRecipients())
+                .put("status", job.getStatus())
                 .put("type", emailType).build();
 
-        this.logManager.logInternalEvent(sendingUser, SegueServerLogType.SEND_CUSTOM_MASS_EMAIL, eventDetails);
+        this.logManager.logInternalEvent(sendingUser, logType, eventDetails);
         log.info(String.format("User (%s) added %d emails to the queue. %d were filtered.", sendingUser.getEmail(),
-                allSelectedUsers.size() - numberOfFilteredUsers, numberOfFilteredUsers));
+                job.getQueuedEmails(), job.getFilteredRecipients()));
     }
-    
-    
+
+    /**
+     * Store the progress of every mass email job this node has not finished, so that none of them appear abandoned.
+     */
+    private void saveMassEmailJobProgress() {
+        for (MassEmailJob job : unfinishedMassEmailJobs.values()) {
+            saveMassEmailJob(job);
+        }
+    }
+
+    /**
+     * Record that a mass email job stopped part way through, because this node is shutting down.
+     *
+     * @param job - the job which stopped.
+     */
+    private void recordStoppedMassEmailJob(final MassEmailJob job) {
+        log.warn(String.format("Mass email job (%s) stopped by shutdown after %d of %d users.", job.getId(),
+                job.getProcessedRecipients(), job.getTotalRecipients()));
+        job.setError(String.format("Stopped by a server shutdown after %d of %d recipients; the rest were not sent"
+                + " the email.", job.getProcessedRecipients(), job.getTotalRecipients()));
+        job.setStatus(MassEmailJob.Status.FAILED);
+        unfinishedMassEmailJobs.remove(job.getId());
+        saveMassEmailJob(job);
+    }
+
+    /**
+     * Store the status and progress of a mass email job; the emails are queued regardless, so a failure is only logged.
+     *
+     * @param job - the job to store.
+     */
+    private void saveMassEmailJob(final MassEmailJob job) {
+        try {
+            massEmailJobPersistenceManager.updateMassEmailJob(job);
+        } catch (SegueDatabaseException e) {
+            log.error(String.format("Unable to record the progress of mass email job (%s).", job.getId()), e);
+        }
+    }
+
+    /**
+     * Add an email to the queue for each of a group of users who want to receive it, looking up their preferences
+     * and logging the emails sent in bulk rather than one user at a time.
+     *
+     * @param users - the users to send the email to.
+     * @param emailTemplate - the email to send.
+     * @param emailType - the type of email to send (affects who receives it).
+     * @return the number of emails added to the queue.
+     * @throws SegueDatabaseException - if the preferences cannot be read.
+     * @throws ContentManagerException - if the email templates cannot be read.
+     * @throws CommunicationException - if the emails cannot be added to the queue.
+     */
+    private int filterByPreferencesAndAddAllToQueue(final List<RegisteredUserDTO> users,
+                                                    final EmailTemplateDTO emailTemplate, final EmailType emailType)
+            throws SegueDatabaseException, ContentManagerException, CommunicationException {
+        // don't send an email if we know it has failed before
+        List<RegisteredUserDTO> deliverableUsers = Lists.newArrayList();
+        for (RegisteredUserDTO user : users) {
+            if (user.getEmailVerificationStatus() != EmailVerificationStatus.DELIVERY_FAILED) {
+                deliverableUsers.add(user);
+            }
+        }
+
+        Map<Long, UserPreference> preferences = Maps.newHashMap();
+        if (emailType.isValidEmailPreference()) {
+            List<Long> ids = Lists.newArrayList();
+            deliverableUsers.stream().map(RegisteredUserDTO::getId).forEach(ids::add);
+            try {
+                preferences = userPreferenceManager.getUserPreferences(SegueUserPreferences.EMAIL_PREFERENCE.name(),
+                        emailType.name(), ids);
+            } catch (SegueDatabaseException e) {
+                throw new SegueDatabaseException(String.format("Email of type %s cannot be sent - "
+                        + "error accessing preferences in database", emailType.toString()));
+            }
+        }
+
+        List<EmailCommunicationMessage> emails = Lists.newArrayList();
+        List<RegisteredUserDTO> recipients = Lists.newArrayList();
+        List<Object> sentEmailDetails = Lists.newArrayList();
+        for (RegisteredUserDTO user : deliverableUsers) {
+            // If no preference is present, do not send the email.
+            UserPreference preference = preferences.get(user.getId());
+            if (emailType.isValidEmailPreference() && (preference == null || !preference.getPreferenceValue())) {
+                continue;
+            }
+
+            Properties p = new Properties();
+            p.putAll(this.globalStringTokens);
+
+            // Add all properties in the user DTO (preserving types) so they are available to email templates.
+            p.putAll(this.flattenTokenMap(getBeanProperties(user), Maps.newHashMap(), ""));
+
+            sanitizeEmailParameters(p);
+
+            EmailCommunicationMessage email = constructMultiPartEmail(user.getId(), user.getEmail(), emailTemplate, p,
+                    emailType, null);
+            emails.add(email);
+            recipients.add(user);
+            sentEmailDetails.add(new ImmutableMap.Builder<String, Object>()
+                    .put("userId", user.getId())
+                    .put("email", email.getRecipientAddress())
+                    .put("type", email.getEmailType())
+                    .build());
+        }
+
+        if (!emails.isEmpty()) {
+            emailOutbox.enqueueAll(emails);
+            emails.forEach(this::recordQueuedEmail);
+            logManager.logInternalEvents(recipients, SegueServerLogType.SENT_EMAIL, sentEmailDetails);
+        }
+        return emails.size();
+    }
+
     /**
      * This method checks the database for the user's email preferences and either adds them to 
      * the queue, or filters them out.
@@ -427,7 +690,7 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
                 this.flattenTokenMap((Map) mapEntry.getValue(), outputMap, keyPrefix + mapEntry.getKey() + ".");
 
             } else if (mapEntry.getValue() instanceof ContentDTO) {
-                Map objectWithJavaTypes = new org.apache.commons.beanutils.BeanMap(mapEntry.getValue());
+                Map<String, Object> objectWithJavaTypes = getBeanProperties(mapEntry.getValue());
 
                 // go through and convert any known java types into our preferred string representation
                 Map<String, String> temp = this.flattenTokenMap(objectWithJavaTypes,
@@ -504,64 +767,60 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
     /**
      * Method to parse and replace template elements with the form {{TAG}}.
      *
+     * Templates are only parsed the first time they are seen, so that sending the same template to many users is
+     * cheap; a new version of the content is simply a different template.
+     *
      * @param templateProperties
      *            list of properties from which we can fill in the template
      * @return template with completed fields
      */
     private String completeTemplateWithProperties(final String content, final Properties templateProperties, final boolean html) {
-        String template = content;
-
-        Pattern p = Pattern.compile("\\{\\{[A-Za-z0-9.]+\\}\\}");
-        Matcher m = p.matcher(template);
-        int offset = 0;
-        Set<String> unknownTags = Sets.newHashSet();
-
-        while (m.find()) {
-            if (m.start() + offset >= 0 && m.end() + offset <= template.length()) {
-                String tag = template.substring(m.start() + offset, m.end() + offset);
-
-                if (tag.length() <= MINIMUM_TAG_LENGTH) {
-                    log.info("Skipped email template tag with no contents: " + tag);
-                    break;
-                }
-
-                String strippedTag = tag.substring(2, tag.length() - 2);
-
-                // Check all properties required in the page are in the properties list
-                if (html && templateProperties.containsKey(strippedTag + "_HTML")) {
-                    String start = template.substring(0, m.start() + offset);
-                    String end = template.substring(m.end() + offset, template.length());
-
-                    template = start;
-                    if (templateProperties.getProperty(strippedTag + "_HTML") != null) {
-                        template += templateProperties.getProperty(strippedTag + "_HTML");
-                    }
-                    template += end;
-
-                    offset += templateProperties.getProperty(strippedTag + "_HTML").length() - tag.length();
-                } else if (templateProperties.containsKey(strippedTag)) {
-                    String start = template.substring(0, m.start() + offset);
-                    String end = template.substring(m.end() + offset, template.length());
+        EmailTemplate template = compiledTemplates.getIfPresent(content);
+        if (null == template) {
+            template = EmailTemplate.compile(content);
+            compiledTemplates.put(content, template);
+        }
+        try {
+            return template.render(templateProperties, html);
+        } catch (IllegalArgumentException e) {
+            log.error("Email template contains tags that were not resolved! - " + e.getMessage());
+            throw e;
+        }
+    }
 
-                    template = start;
-                    if (templateProperties.getProperty(strippedTag) != null) {
-                        template += templateProperties.getProperty(strippedTag);
+    /**
+     * Get the readable properties of an object, as commons-beanutils' BeanMap would, but without inspecting the
+     * object's class again each time.
+     *
+     * @param bean - the object to read.
+     * @return a map from property name to value.
+     */
+    private static Map<String, Object> getBeanProperties(final Object bean) {
+        Map<String, Method> readMethods = BEAN_READ_METHODS.computeIfAbsent(bean.getClass(), beanClass -> {
+            Map<String, Method> methods = new LinkedHashMap<>();
+            try {
+                for (PropertyDescriptor descriptor : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+                    if (null != descriptor.getReadMethod()) {
+                        methods.put(descriptor.getName(), descriptor.getReadMethod());
                     }
-                    template += end;
-
-                    offset += templateProperties.getProperty(strippedTag).length() - tag.length();
-                } else {
-                    unknownTags.add(tag);
                 }
+            } catch (IntrospectionException e) {
+                log.error("Unable to read the properties of " + beanClass.getName(), e);
             }
+            return methods;
+        });
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (Map.Entry<String, Method> readMethod : readMethods.entrySet()) {
+            Object value;
+            try {
+                value = readMethod.getValue().invoke(bean);
+            } catch (ReflectiveOperationException | IllegalArgumentException e) {
+                value = null;
+            }
+            properties.put(readMethod.getKey(), value);
         }
-
-        if (unknownTags.size() != 0) {
-            log.error("Email template contains tags that were not resolved! - " + unknownTags);
-            throw new IllegalArgumentException("Email template contains tag that was not provided! - " + unknownTags);
-        }
-
-        return template;
+        return properties;
     }
 
     /**
@@ -0,0 +1,95 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An email template which has been parsed into literal text and {{TAG}} placeholders, so that it can be filled in
+ * for many recipients without searching the template text again for each one.
+ */
+public final class EmailTemplate {
+    private static final Pattern TAG_PATTERN = Pattern.compile("\\{\\{([A-Za-z0-9.]+)\\}\\}");
+    private static final String HTML_TAG_SUFFIX = "_HTML";
+
+    // Literal text, interleaved with tags: literals[i] comes before tags[i], and the last literal after the last tag.
+    private final String[] literals;
+    private final String[] tags;
+    private final int literalLength;
+
+    private EmailTemplate(final String[] literals, final String[] tags) {
+        this.literals = literals;
+        this.tags = tags;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parse a template.
+     *
+     * @param template - text containing tags of the form {{TAG}}.
+     * @return the parsed template.
+     */
+    public static EmailTemplate compile(final String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        Matcher m = TAG_PATTERN.matcher(template);
+        int literalStart = 0;
+        while (m.find()) {
+            literals.add(template.substring(literalStart, m.start()));
+            tags.add(m.group(1));
+            literalStart = m.end();
+        }
+        literals.add(template.substring(literalStart));
+        return new EmailTemplate(literals.toArray(new String[0]), tags.toArray(new String[0]));
+    }
+
+    /**
+     * Fill in the template.
+     *
+     * Replacement values are inserted as they are; they are not themselves searched for tags.
+     *
+     * @param properties - the value for each tag.
+     * @param html - whether to prefer a TAG_HTML value, if there is one, over the TAG value.
+     * @return the completed template.
+     * @throws IllegalArgumentException - if the template contains a tag with no value.
+     */
+    public String render(final Map<?, ?> properties, final boolean html) {
+        StringBuilder result = new StringBuilder(literalLength + tags.length * 16);
+        Set<String> unknownTags = null;
+        for (int i = 0; i < tags.length; i++) {
+            result.append(literals[i]);
+            Object value = null;
+            boolean known = false;
+            if (html && properties.containsKey(tags[i] + HTML_TAG_SUFFIX)) {
+                value = properties.get(tags[i] + HTML_TAG_SUFFIX);
+                known = true;
+            } else if (properties.containsKey(tags[i])) {
+                value = properties.get(tags[i]);
+                known = true;
+            }
+
+            if (!known) {
+                if (null == unknownTags) {
+                    unknownTags = new LinkedHashSet<>();
+                }
+                unknownTags.add("{{" + tags[i] + "}}");
+            } else if (value instanceof String) {
+                result.append((String) value);
+            }
+        }
+        result.append(literals[tags.length]);
+
+        if (null != unknownTags) {
+            throw new IllegalArgumentException("Email template contains tag that was not provided! - " + unknownTags);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import java.util.List;
+
+/**
+ * Holds emails waiting to be sent, and sends them in the background.
+ */
+public interface IEmailOutbox {
+
+    /**
+     * Add an email to the outbox; it will be sent later, in priority order.
+     *
+     * @param email
+     *            - the email to send.
+     * @throws CommunicationException
+     *             - if the email could not be added to the outbox.
+     */
+    void enqueue(EmailCommunicationMessage email) throws CommunicationException;
+
+    /**
+     * Add several emails to the outbox at once.
+     *
+     * @param emails
+     *            - the emails to send.
+     * @throws CommunicationException
+     *             - if the emails could not be added to the outbox; none of them will be sent.
+     */
+    void enqueueAll(List<EmailCommunicationMessage> emails) throws CommunicationException;
+}
@@ -0,0 +1,37 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Storage of the progress of mass emails, so that it can be followed from any API node.
+ */
+public interface IMassEmailJobPersistenceManager {
+
+    /**
+     * Store a newly started job.
+     *
+     * @param job - the job to store.
+     * @throws SegueDatabaseException on database failure.
+     */
+    void saveMassEmailJob(MassEmailJob job) throws SegueDatabaseException;
+
+    /**
+     * Store the current status and progress of a job, which also shows that it is still being worked on.
+     *
+     * @param job - the job to update.
+     * @throws SegueDatabaseException on database failure.
+     */
+    void updateMassEmailJob(MassEmailJob job) throws SegueDatabaseException;
+
+    /**
+     * Get a job, marking it as failed first if the node working on it appears to have stopped.
+     *
+     * @param jobId - the id of the job.
+     * @return the job, or null if there is no job with this id.
+     * @throws SegueDatabaseException on database failure.
+     */
+    @Nullable
+    MassEmailJob getMassEmailJob(String jobId) throws SegueDatabaseException;
+}
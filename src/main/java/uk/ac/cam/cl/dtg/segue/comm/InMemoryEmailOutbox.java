@@ -0,0 +1,30 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import java.util.List;
+
+/**
+ * An outbox which holds emails only in memory, so anything not yet sent is lost when the API stops.
+ *
+ * Suitable for development and tests, where there may be no SMTP server or outbox table.
+ */
+public class InMemoryEmailOutbox extends AbstractCommunicationQueue<EmailCommunicationMessage>
+        implements IEmailOutbox {
+
+    /**
+     * @param communicator
+     *            - to send the emails.
+     */
+    public InMemoryEmailOutbox(final EmailCommunicator communicator) {
+        super(communicator);
+    }
+
+    @Override
+    public void enqueue(final EmailCommunicationMessage email) {
+        addToQueue(email);
+    }
+
+    @Override
+    public void enqueueAll(final List<EmailCommunicationMessage> emails) {
+        emails.forEach(this::addToQueue);
+    }
+}
@@ -0,0 +1,35 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the progress of mass emails only in memory, so it can only be followed on the node sending the email.
+ *
+ * Suitable for development and tests, where there may be no mass email job table.
+ */
+public class InMemoryMassEmailJobPersistenceManager implements IMassEmailJobPersistenceManager {
+    private static final long JOB_RETENTION_HOURS = 24;
+
+    private final Cache<String, MassEmailJob> massEmailJobs = CacheBuilder.newBuilder()
+            .expireAfterWrite(JOB_RETENTION_HOURS, TimeUnit.HOURS).build();
+
+    @Override
+    public void saveMassEmailJob(final MassEmailJob job) {
+        massEmailJobs.put(job.getId(), job);
+    }
+
+    @Override
+    public void updateMassEmailJob(final MassEmailJob job) {
+        massEmailJobs.put(job.getId(), job);
+    }
+
+    @Nullable
+    @Override
+    public MassEmailJob getMassEmailJob(final String jobId) {
+        return massEmailJobs.getIfPresent(jobId);
+    }
+}
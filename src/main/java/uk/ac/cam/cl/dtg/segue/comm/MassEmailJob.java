@@ -0,0 +1,143 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Progress of a mass email, which is added to the outbox in the background after the request to send it returns.
+ *
+ * The progress is stored with an IMassEmailJobPersistenceManager, so that it can be followed from any API node and
+ * outlives the node doing the work.
+ */
+public class MassEmailJob {
+    /**
+     * The stages a mass email job goes through.
+     */
+    public enum Status {
+        PENDING, RUNNING, COMPLETE, FAILED
+    }
+
+    private final String id;
+    private final Long senderId;
+    private final EmailType emailType;
+    private final int totalRecipients;
+    private final Date created;
+    private volatile Status status;
+    private volatile int processedRecipients;
+    private volatile int queuedEmails;
+    private volatile int filteredRecipients;
+    private volatile String error;
+
+    /**
+     * @param senderId - the user sending the email.
+     * @param emailType - the type of email being sent.
+     * @param totalRecipients - the number of users the email is addressed to.
+     */
+    MassEmailJob(final Long senderId, final EmailType emailType, final int totalRecipients) {
+        this.id = UUID.randomUUID().toString();
+        this.senderId = senderId;
+        this.emailType = emailType;
+        this.totalRecipients = totalRecipients;
+        this.created = new Date();
+        this.status = Status.PENDING;
+    }
+
+    /**
+     * Recreate a job read back from storage.
+     *
+     * @param id - the id of the job.
+     * @param senderId - the user sending the email.
+     * @param emailType - the type of email being sent.
+     * @param totalRecipients - the number of users the email is addressed to.
+     * @param created - when the job was started.
+     * @param status - the stage the job has reached.
+     * @param processedRecipients - the number of recipients processed so far.
+     * @param queuedEmails - the number of those who were sent the email.
+     * @param filteredRecipients - the number of those who were not.
+     * @param error - why the job failed, if it did.
+     */
+    MassEmailJob(final String id, final Long senderId, final EmailType emailType, final int totalRecipients,
+                 final Date created, final Status status, final int processedRecipients, final int queuedEmails,
+                 final int filteredRecipients, final String error) {
+        this.id = id;
+        this.senderId = senderId;
+        this.emailType = emailType;
+        this.totalRecipients = totalRecipients;
+        this.created = created;
+        this.status = status;
+        this.processedRecipients = processedRecipients;
+        this.queuedEmails = queuedEmails;
+        this.filteredRecipients = filteredRecipients;
+        this.error = error;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getSenderId() {
+        return senderId;
+    }
+
+    public EmailType getEmailType() {
+        return emailType;
+    }
+
+    public int getTotalRecipients() {
+        return totalRecipients;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getProcessedRecipients() {
+        return processedRecipients;
+    }
+
+    public int getQueuedEmails() {
+        return queuedEmails;
+    }
+
+    public int getFilteredRecipients() {
+        return filteredRecipients;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    void setStatus(final Status status) {
+        this.status = status;
+    }
+
+    void setError(final String error) {
+        this.error = error;
+    }
+
+    /**
+     * @return whether the job has not yet finished adding emails to the queue.
+     */
+    @JsonIgnore
+    public boolean isUnfinished() {
+        return Status.PENDING == status || Status.RUNNING == status;
+    }
+
+    /**
+     * Record the outcome of processing a chunk of recipients; only called from the job's own thread.
+     *
+     * @param processed - the number of recipients processed.
+     * @param queued - the number of those who were sent the email.
+     */
+    void recordProgress(final int processed, final int queued) {
+        this.processedRecipients += processed;
+        this.queuedEmails += queued;
+        this.filteredRecipients += processed - queued;
+    }
+}
@@ -0,0 +1,454 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.RateLimiter;
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import jakarta.annotation.Nullable;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_OUTBOX_DEPTH;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_OUTBOX_RESULTS;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_OUTBOX_SEND_LATENCY_HISTOGRAM;
+
+/**
+ * An outbox which stores emails in Postgres until they have been sent, so that they survive restarts.
+ *
+ * Background workers on every API node claim batches of pending emails, highest priority first, and send each batch
+ * over as few SMTP connections as possible. A claim is a lease rather than a lock: if a node stops before sending the
+ * emails it claimed, another node picks them up once the lease expires. An email which fails to send is retried with
+ * an exponential backoff, and is marked as failed after too many attempts; failed emails are left in the table for
+ * inspection until the scheduled PII clean-up job removes them.
+ *
+ * Delivery is at-least-once: an email which was sent but could not then be removed from the outbox will be sent again.
+ */
+public class PgEmailOutbox implements IEmailOutbox {
+    private static final Logger log = LoggerFactory.getLogger(PgEmailOutbox.class);
+
+    public static final int DEFAULT_WORKER_THREADS = 2;
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    public static final int DEFAULT_MAX_MESSAGES_PER_SECOND = 20;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    private static final long POLL_INTERVAL_MILLISECONDS = 1000;
+    private static final long DEPTH_UPDATE_INTERVAL_SECONDS = 30;
+    private static final long CLAIM_LEASE_SECONDS = 600;
+    private static final long MIN_RETRY_DELAY_SECONDS = 60;
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT_TYPE = new TypeReference<>() {};
+
+    private final PostgresSqlDb database;
+    private final EmailCommunicator communicator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxAttempts;
+    @Nullable
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService workers;
+
+    /**
+     * Create an outbox, and start its background workers.
+     *
+     * @param database
+     *            - to store the emails in.
+     * @param communicator
+     *            - to send the emails.
+     * @param workerThreads
+     *            - the number of batches this node may send at once.
+     * @param batchSize
+     *            - the maximum number of emails each worker claims at a time.
+     * @param maxMessagesPerSecond
+     *            - the maximum rate at which this node sends emails, or zero for no limit.
+     * @param maxAttempts
+     *            - the number of times to try to send an email before giving up on it.
+     */
+    public PgEmailOutbox(final PostgresSqlDb database, final EmailCommunicator communicator, final int workerThreads,
+                         final int batchSize, final int maxMessagesPerSecond, final int maxAttempts) {
+        this(database, communicator, batchSize, maxMessagesPerSecond, maxAttempts, workerThreads, true);
+    }
+
+    /**
+     * Create an outbox, optionally without starting its background workers.
+     *
+     * @param database - to store the emails in.
+     * @param communicator - to send the emails.
+     * @param batchSize - the maximum number of emails each worker claims at a time.
+     * @param maxMessagesPerSecond - the maximum rate at which this node sends emails, or zero for no limit.
+     * @param maxAttempts - the number of times to try to send an email before giving up on it.
+     * @param workerThreads - the number of batches this node may send at once.
+     * @param startWorkers - whether to start sending in the background.
+     */
+    PgEmailOutbox(final PostgresSqlDb database, final EmailCommunicator communicator, final int batchSize,
+                  final int maxMessagesPerSecond, final int maxAttempts, final int workerThreads,
+                  final boolean startWorkers) {
+        this.database = database;
+        this.communicator = communicator;
+        this.objectMapper = new ObjectMapper();
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.rateLimiter = maxMessagesPerSecond > 0 ? RateLimiter.create(maxMessagesPerSecond) : null;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newScheduledThreadPool(workerThreads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (startWorkers) {
+            for (int i = 0; i < workerThreads; i++) {
+                this.workers.scheduleWithFixedDelay(this::sendPendingEmails, POLL_INTERVAL_MILLISECONDS,
+                        POLL_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+            }
+            this.workers.scheduleWithFixedDelay(this::updateDepthMetrics, 0, DEPTH_UPDATE_INTERVAL_SECONDS,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void enqueue(final EmailCommunicationMessage email) throws CommunicationException {
+        enqueueAll(List.of(email));
+    }
+
+    @Override
+    public void enqueueAll(final List<EmailCommunicationMessage> emails) throws CommunicationException {
+        if (emails.isEmpty()) {
+            return;
+        }
+        String query = "INSERT INTO email_outbox (priority, email_type, message) VALUES (?, ?, ?::text::jsonb)";
+        try (Connection conn = database.getDatabaseConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pst = conn.prepareStatement(query)) {
+                for (EmailCommunicationMessage email : emails) {
+                    pst.setInt(1, email.getPriority());
+                    pst.setString(2, email.getEmailType().name());
+                    pst.setString(3, objectMapper.writeValueAsString(toJson(email)));
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+                conn.commit();
+            } catch (SQLException | JsonProcessingException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | JsonProcessingException e) {
+            throw new CommunicationException(e);
+        }
+    }
+
+    /**
+     * Stop the background workers, waiting for any batches being sent to finish.
+     *
+     * Emails still in the outbox will be sent by another node, or by this one when it restarts.
+     */
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for the email outbox workers to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Send batches of pending emails until there are none left which are due.
+     */
+    private void sendPendingEmails() {
+        try {
+            while (!workers.isShutdown() && sendPendingBatch() == batchSize) {
+                // A full batch suggests there are more waiting; carry on without waiting for the next poll.
+            }
+        } catch (RuntimeException e) {
+            log.error("Unexpected error sending emails", e);
+        }
+    }
+
+    /**
+     * Claim a batch of pending emails, send them, and record the outcome of each.
+     *
+     * @return the number of emails claimed.
+     */
+    int sendPendingBatch() {
+        List<ClaimedEmail> batch;
+        try {
+            batch = claimBatch();
+        } catch (SQLException e) {
+            log.error("Unable to claim emails from the outbox", e);
+            return 0;
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<ClaimedEmail> sendable = new ArrayList<>(batch.size());
+        List<ClaimedEmail> unreadable = new ArrayList<>();
+        for (ClaimedEmail claimed : batch) {
+            (null != claimed.email ? sendable : unreadable).add(claimed);
+        }
+
+        List<Long> sentIds = new ArrayList<>(batch.size());
+        List<ClaimedEmail> failed = new ArrayList<>(unreadable);
+        if (!sendable.isEmpty()) {
+            if (null != rateLimiter) {
+                rateLimiter.acquire(sendable.size());
+            }
+            List<EmailCommunicationMessage> emails = new ArrayList<>(sendable.size());
+            sendable.forEach(claimed -> emails.add(claimed.email));
+
+            Histogram.Timer sendTimer = EMAIL_OUTBOX_SEND_LATENCY_HISTOGRAM.startTimer();
+            List<CommunicationException> failures;
+            try {
+                failures = communicator.sendMessages(emails);
+            } finally {
+                sendTimer.observeDuration();
+            }
+            for (int i = 0; i < sendable.size(); i++) {
+                if (null == failures.get(i)) {
+                    sentIds.add(sendable.get(i).id);
+                } else {
+                    sendable.get(i).error = failures.get(i).getMessage();
+                    failed.add(sendable.get(i));
+                }
+            }
+        }
+
+        try {
+            recordOutcomes(sentIds, failed);
+        } catch (SQLException e) {
+            // The claims will expire, so these emails will be retried (and any which were sent will be sent again):
+            log.error("Unable to record the outcome of sending emails from the outbox", e);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Claim the next batch of emails which are due to be sent and not claimed by another worker.
+     *
+     * @return the claimed emails, highest priority first.
+     * @throws SQLException - if the emails could not be claimed.
+     */
+    private List<ClaimedEmail> claimBatch() throws SQLException {
+        String query = "UPDATE email_outbox SET claimed_until = now() + ? * interval '1 second', attempts = attempts + 1"
+                + " WHERE id IN (SELECT id FROM email_outbox WHERE NOT failed AND next_attempt_at <= now()"
+                + "   AND (claimed_until IS NULL OR claimed_until < now())"
+                + "   ORDER BY priority, id LIMIT ? FOR UPDATE SKIP LOCKED)"
+                + " RETURNING id, priority, message, attempts";
+        List<ClaimedEmail> batch = new ArrayList<>();
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            pst.setLong(1, CLAIM_LEASE_SECONDS);
+            pst.setInt(2, batchSize);
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    ClaimedEmail claimed = new ClaimedEmail(results.getLong("id"), results.getInt("priority"),
+                            results.getInt("attempts"));
+                    try {
+                        claimed.email = fromJson(objectMapper.readValue(results.getString("message"),
+                                JSON_OBJECT_TYPE));
+                    } catch (JsonProcessingException | RuntimeException e) {
+                        claimed.error = "Unreadable message: " + e.getMessage();
+                        // Retrying will not help:
+                        claimed.attempts = maxAttempts;
+                    }
+                    batch.add(claimed);
+                }
+            }
+        }
+        batch.sort(Comparator.comparingInt((ClaimedEmail claimed) -> claimed.priority)
+                .thenComparingLong(claimed -> claimed.id));
+        return batch;
+    }
+
+    /**
+     * Remove sent emails from the outbox, and schedule retries of (or give up on) the others.
+     *
+     * @param sentIds - the emails which were sent.
+     * @param failed - the emails which were not sent.
+     * @throws SQLException - if the outcomes could not be recorded.
+     */
+    private void recordOutcomes(final List<Long> sentIds, final List<ClaimedEmail> failed) throws SQLException {
+        try (Connection conn = database.getDatabaseConnection()) {
+            if (!sentIds.isEmpty()) {
+                try (PreparedStatement pst = conn.prepareStatement("DELETE FROM email_outbox WHERE id = ANY(?)")) {
+                    Array ids = conn.createArrayOf("bigint", sentIds.toArray());
+                    pst.setArray(1, ids);
+                    pst.executeUpdate();
+                }
+                EMAIL_OUTBOX_RESULTS.labels("sent").inc(sentIds.size());
+            }
+
+            if (!failed.isEmpty()) {
+                String query = "UPDATE email_outbox SET claimed_until = NULL, failed = ?, last_error = ?,"
+                        + " next_attempt_at = now() + ? * interval '1 second' WHERE id = ?";
+                try (PreparedStatement pst = conn.prepareStatement(query)) {
+                    for (ClaimedEmail claimed : failed) {
+                        boolean giveUp = claimed.attempts >= maxAttempts;
+                        pst.setBoolean(1, giveUp);
+                        pst.setString(2, truncate(claimed.error));
+                        pst.setLong(3, retryDelaySeconds(claimed.attempts));
+                        pst.setLong(4, claimed.id);
+                        pst.addBatch();
+
+                        if (giveUp) {
+                            log.error(String.format("Giving up sending email (%s) after %d attempts: %s", claimed.id,
+                                    claimed.attempts, claimed.error));
+                            EMAIL_OUTBOX_RESULTS.labels("failed").inc();
+                        } else {
+                            log.warn(String.format("Failed to send email (%s), will retry: %s", claimed.id,
+                                    claimed.error));
+                            EMAIL_OUTBOX_RESULTS.labels("retried").inc();
+                        }
+                    }
+                    pst.executeBatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * Publish the number of pending and failed emails in the outbox.
+     */
+    private void updateDepthMetrics() {
+        String query = "SELECT count(*) FILTER (WHERE NOT failed) AS pending, count(*) FILTER (WHERE failed) AS failed"
+                + " FROM email_outbox";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+             ResultSet results = pst.executeQuery()
+        ) {
+            if (results.next()) {
+                EMAIL_OUTBOX_DEPTH.labels("pending").set(results.getLong("pending"));
+                EMAIL_OUTBOX_DEPTH.labels("failed").set(results.getLong("failed"));
+            }
+        } catch (SQLException e) {
+            log.warn("Unable to count emails in the outbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param attempts - the number of attempts made so far.
+     * @return how long to wait before the next attempt.
+     */
+    static long retryDelaySeconds(final int attempts) {
+        int doublings = Math.max(0, Math.min(attempts - 1, 30));
+        return Math.min(MIN_RETRY_DELAY_SECONDS << doublings, MAX_RETRY_DELAY_SECONDS);
+    }
+
+    /**
+     * @param error - an error message, possibly null.
+     * @return the message, shortened to fit comfortably in the table.
+     */
+    private static String truncate(@Nullable final String error) {
+        if (null == error || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * @param email - the email to store.
+     * @return a map of the email's fields, suitable for storing as JSON.
+     */
+    static Map<String, Object> toJson(final EmailCommunicationMessage email) {
+        Map<String, Object> json = new HashMap<>();
+        json.put("userId", email.getUserId());
+        json.put("recipientAddress", email.getRecipientAddress());
+        json.put("subject", email.getSubject());
+        json.put("plainTextMessage", email.getPlainTextMessage());
+        json.put("htmlMessage", email.getHTMLMessage());
+        json.put("emailType", email.getEmailType().name());
+        json.put("overrideFromAddress", email.getOverrideFromAddress());
+        json.put("overrideFromName", email.getOverrideFromName());
+        json.put("overrideEnvelopeFrom", email.getOverrideEnvelopeFrom());
+        json.put("replyToAddress", email.getReplyToAddress());
+        json.put("replyToName", email.getReplyToName());
+        if (null != email.getAttachments()) {
+            List<Map<String, Object>> attachments = new ArrayList<>();
+            for (EmailAttachment attachment : email.getAttachments()) {
+                if (null == attachment) {
+                    continue;
+                }
+                Map<String, Object> attachmentJson = new HashMap<>();
+                attachmentJson.put("fileName", attachment.getFileName());
+                attachmentJson.put("mimeType", attachment.getMimeType());
+                if (attachment.getAttachment() instanceof byte[]) {
+                    attachmentJson.put("base64", Base64.getEncoder().encodeToString((byte[]) attachment.getAttachment()));
+                } else {
+                    attachmentJson.put("text", String.valueOf(attachment.getAttachment()));
+                }
+                attachments.add(attachmentJson);
+            }
+            json.put("attachments", attachments);
+        }
+        return json;
+    }
+
+    /**
+     * @param json - a map produced by toJson.
+     * @return the email.
+     */
+    @SuppressWarnings("unchecked")
+    static EmailCommunicationMessage fromJson(final Map<String, Object> json) {
+        List<EmailAttachment> attachments = null;
+        if (null != json.get("attachments")) {
+            attachments = new ArrayList<>();
+            for (Map<String, Object> attachmentJson : (List<Map<String, Object>>) json.get("attachments")) {
+                Object content = null != attachmentJson.get("base64")
+                        ? Base64.getDecoder().decode((String) attachmentJson.get("base64"))
+                        : attachmentJson.get("text");
+                attachments.add(new EmailAttachment((String) attachmentJson.get("fileName"),
+                        (String) attachmentJson.get("mimeType"), content));
+            }
+        }
+        Number userId = (Number) json.get("userId");
+        return new EmailCommunicationMessage(null != userId ? userId.longValue() : null,
+                (String) json.get("recipientAddress"), (String) json.get("subject"),
+                (String) json.get("plainTextMessage"), (String) json.get("htmlMessage"),
+                EmailType.valueOf((String) json.get("emailType")),
+                (String) json.get("overrideFromAddress"), (String) json.get("overrideFromName"),
+                (String) json.get("overrideEnvelopeFrom"), (String) json.get("replyToAddress"),
+                (String) json.get("replyToName"), attachments);
+    }
+
+    /**
+     * An email claimed from the outbox by this node.
+     */
+    private static final class ClaimedEmail {
+        private final long id;
+        private final int priority;
+        private int attempts;
+        private EmailCommunicationMessage email;
+        private String error;
+
+        private ClaimedEmail(final long id, final int priority, final int attempts) {
+            this.id = id;
+            this.priority = priority;
+            this.attempts = attempts;
+        }
+    }
+}
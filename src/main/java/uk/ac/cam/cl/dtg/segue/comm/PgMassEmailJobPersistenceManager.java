@@ -0,0 +1,122 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.inject.Inject;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import jakarta.annotation.Nullable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Postgres-based storage of the progress of mass emails.
+ *
+ * A node working on a job updates it after every chunk of recipients. If an unfinished job has not been updated for a
+ * while, the node working on it must have stopped, so the job is marked as failed when it is next read; the progress
+ * it recorded shows how many of the recipients were emailed before it stopped.
+ */
+public class PgMassEmailJobPersistenceManager implements IMassEmailJobPersistenceManager {
+    private static final long ABANDONED_JOB_TIMEOUT_MINUTES = 10;
+
+    private final PostgresSqlDb database;
+
+    /**
+     * @param database - the postgres database to store the jobs in.
+     */
+    @Inject
+    public PgMassEmailJobPersistenceManager(final PostgresSqlDb database) {
+        this.database = database;
+    }
+
+    @Override
+    public void saveMassEmailJob(final MassEmailJob job) throws SegueDatabaseException {
+        String query = "INSERT INTO mass_email_jobs (id, sender_id, email_type, status, total_recipients, created)"
+                + " VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            pst.setString(1, job.getId());
+            pst.setLong(2, job.getSenderId());
+            pst.setString(3, job.getEmailType().name());
+            pst.setString(4, job.getStatus().name());
+            pst.setInt(5, job.getTotalRecipients());
+            pst.setTimestamp(6, new Timestamp(job.getCreated().getTime()));
+
+            if (pst.executeUpdate() == 0) {
+                throw new SegueDatabaseException("Unable to save mass email job!");
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
+    @Override
+    public void updateMassEmailJob(final MassEmailJob job) throws SegueDatabaseException {
+        String query = "UPDATE mass_email_jobs SET status = ?, processed_recipients = ?, queued_emails = ?,"
+                + " filtered_recipients = ?, error = ?, last_updated = now() WHERE id = ?";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            pst.setString(1, job.getStatus().name());
+            pst.setInt(2, job.getProcessedRecipients());
+            pst.setInt(3, job.getQueuedEmails());
+            pst.setInt(4, job.getFilteredRecipients());
+            pst.setString(5, job.getError());
+            pst.setString(6, job.getId());
+
+            if (pst.executeUpdate() == 0) {
+                throw new SegueDatabaseException("Unable to update mass email job " + job.getId() + "!");
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public MassEmailJob getMassEmailJob(final String jobId) throws SegueDatabaseException {
+        String abandonQuery = "UPDATE mass_email_jobs SET status = ?, last_updated = now(),"
+                + " error = format('Stopped after %s of %s recipients; the rest were not sent the email.',"
+                + " processed_recipients, total_recipients)"
+                + " WHERE id = ? AND status IN (?, ?) AND last_updated < now() - ? * INTERVAL '1 minute'";
+        String query = "SELECT * FROM mass_email_jobs WHERE id = ?";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement abandon = conn.prepareStatement(abandonQuery);
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            abandon.setString(1, MassEmailJob.Status.FAILED.name());
+            abandon.setString(2, jobId);
+            abandon.setString(3, MassEmailJob.Status.PENDING.name());
+            abandon.setString(4, MassEmailJob.Status.RUNNING.name());
+            abandon.setLong(5, ABANDONED_JOB_TIMEOUT_MINUTES);
+            abandon.executeUpdate();
+
+            pst.setString(1, jobId);
+            try (ResultSet results = pst.executeQuery()) {
+                if (!results.next()) {
+                    return null;
+                }
+                return buildMassEmailJob(results);
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
+    private MassEmailJob buildMassEmailJob(final ResultSet results) throws SQLException {
+        return new MassEmailJob(results.getString("id"),
+                results.getLong("sender_id"),
+                EmailType.valueOf(results.getString("email_type")),
+                results.getInt("total_recipients"),
+                results.getTimestamp("created"),
+                MassEmailJob.Status.valueOf(results.getString("status")),
+                results.getInt("processed_recipients"),
+                results.getInt("queued_emails"),
+                results.getInt("filtered_recipients"),
+                results.getString("error")
+        );
+    }
+}
@@ -63,6 +63,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.PgLocationHistory;
 import uk.ac.cam.cl.dtg.isaac.dos.PgUserAlerts;
 import uk.ac.cam.cl.dtg.isaac.dos.PgUserPreferenceManager;
 import uk.ac.cam.cl.dtg.isaac.dos.PgUserStreakManager;
+import uk.ac.cam.cl.dtg.isaac.quiz.ExternalValidatorClient;
 import uk.ac.cam.cl.dtg.isaac.quiz.IQuestionAttemptManager;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacLLMFreeTextValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacOldSymbolicChemistryValidator;
@@ -70,6 +71,7 @@ import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicChemistryValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicLogicValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.PgQuestionAttempts;
+import uk.ac.cam.cl.dtg.segue.api.AdminFacade;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.managers.CountryLookupManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.ExternalAccountManager;
@@ -87,6 +89,8 @@ import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAssociationManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAuthenticationManager;
 import uk.ac.cam.cl.dtg.segue.api.monitors.*;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.IUserAlertBus;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.PgUserAlertBus;
 import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
 import uk.ac.cam.cl.dtg.segue.auth.FacebookAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.GoogleAuthenticator;
@@ -103,8 +107,13 @@ import uk.ac.cam.cl.dtg.segue.auth.SegueSCryptv1;
 import uk.ac.cam.cl.dtg.segue.auth.SegueTOTPAuthenticator;
 import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicator;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
+import uk.ac.cam.cl.dtg.segue.comm.IEmailOutbox;
+import uk.ac.cam.cl.dtg.segue.comm.IMassEmailJobPersistenceManager;
+import uk.ac.cam.cl.dtg.segue.comm.InMemoryEmailOutbox;
 import uk.ac.cam.cl.dtg.segue.comm.ICommunicator;
 import uk.ac.cam.cl.dtg.segue.comm.MailGunEmailManager;
+import uk.ac.cam.cl.dtg.segue.comm.PgEmailOutbox;
+import uk.ac.cam.cl.dtg.segue.comm.PgMassEmailJobPersistenceManager;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.LocationManager;
 import uk.ac.cam.cl.dtg.segue.dao.PgLogManager;
@@ -128,6 +137,7 @@ import uk.ac.cam.cl.dtg.segue.dao.users.PgTOTPDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgUserGroupPersistenceManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgUsers;
 import uk.ac.cam.cl.dtg.segue.database.GitDb;
+import uk.ac.cam.cl.dtg.segue.database.PostgresNotificationBus;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.segue.scheduler.SegueJobService;
 import uk.ac.cam.cl.dtg.segue.scheduler.SegueScheduledDatabaseScriptJob;
@@ -142,6 +152,7 @@ import uk.ac.cam.cl.dtg.segue.scheduler.jobs.SegueScheduledSyncMailjetUsersJob;
 import uk.ac.cam.cl.dtg.segue.search.ElasticSearchProvider;
 import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+import uk.ac.cam.cl.dtg.util.OutboundHttpClient;
 import uk.ac.cam.cl.dtg.util.YamlLoader;
 import uk.ac.cam.cl.dtg.util.email.MailJetApiClientWrapper;
 import uk.ac.cam.cl.dtg.util.locations.IPLocationResolver;
@@ -187,10 +198,12 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private static UserAccountManager userManager = null;
     private static UserAuthenticationManager userAuthenticationManager = null;
     private static IQuestionAttemptManager questionPersistenceManager = null;
+    private static QuestionManager questionManager = null;
     private static SegueJobService segueJobService = null;
 
-    private static ILogManager logManager;
+    private static PgLogManager logManager;
     private static EmailManager emailCommunicationQueue = null;
+    private static IEmailOutbox emailOutbox = null;
     private static MailGunEmailManager mailGunEmailManager = null;
     private static OpenAIClient openAIClient = null;
     private static IMisuseMonitor misuseMonitor = null;
@@ -203,6 +216,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private static AssignmentManager assignmentManager = null;
     private static IGroupObserver groupObserver = null;
     private static CountryLookupManager countryLookupManager = null;
+    private static PostgresNotificationBus notificationBus = null;
+    private static PgUserAlertBus userAlertBus = null;
 
     private static Collection<Class<? extends ServletContextListener>> contextListeners;
     private static final Map<String, Reflections> reflections = com.google.common.collect.Maps.newHashMap();
@@ -287,6 +302,9 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         this.bindConstantToProperty(Constants.SCHOOL_CSV_LIST_PATH, globalProperties);
 
         this.bindConstantToProperty(CONTENT_INDEX, globalProperties);
+        bindConstant().annotatedWith(Names.named(Constants.ETL_REQUEST_TIMEOUT_MILLISECONDS)).to(
+                getIntegerProperty(globalProperties, Constants.ETL_REQUEST_TIMEOUT_MILLISECONDS,
+                        AdminFacade.DEFAULT_ETL_REQUEST_TIMEOUT_MILLISECONDS));
 
         this.bindConstantToProperty(Constants.API_METRICS_EXPORT_PORT, globalProperties);
 
@@ -432,6 +450,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         bind(ISecondFactorAuthenticator.class).to(SegueTOTPAuthenticator.class);
 
         bind(IDeletionTokenPersistenceManager.class).to(PgDeletionTokenPersistenceManager.class);
+
+        bind(IMassEmailJobPersistenceManager.class).to(PgMassEmailJobPersistenceManager.class);
     }
 
 
@@ -551,6 +571,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - boolean to determine if we should persist log messages.
      * @param lhm
      *            - location history manager
+     * @param properties
+     *            - to configure the log event write buffer
      * @return A fully configured LogManager
      */
     @Inject
@@ -558,12 +580,16 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Singleton
     private static ILogManager getLogManager(final PostgresSqlDb database,
                                              @Named(Constants.LOGGING_ENABLED) final boolean loggingEnabled,
-                                             final LocationManager lhm) {
+                                             final LocationManager lhm, final AbstractConfigLoader properties) {
 
         if (null == logManager) {
             ObjectMapper objectMapper = new ObjectMapper();
             objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-            logManager = new PgLogManager(database, objectMapper, loggingEnabled, lhm);
+            logManager = new PgLogManager(database, objectMapper, loggingEnabled, lhm,
+                    getIntegerProperty(properties, Constants.LOG_EVENT_BUFFER_SIZE, PgLogManager.DEFAULT_BUFFER_SIZE),
+                    getIntegerProperty(properties, Constants.LOG_EVENT_FLUSH_INTERVAL_MILLISECONDS,
+                            (int) PgLogManager.DEFAULT_FLUSH_INTERVAL_MILLISECONDS),
+                    Boolean.parseBoolean(properties.getProperty(Constants.LOG_EVENT_BLOCK_WHEN_BUFFER_FULL)));
 
             log.info("Creating singleton of LogManager");
             if (loggingEnabled) {
@@ -634,8 +660,10 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *
      * @param properties
      * 			- the properties so we can generate email
-     * @param emailCommunicator
-     *            the class the queue will send messages with
+     * @param emailOutbox
+     *            the outbox which holds emails until they are sent
+     * @param massEmailJobPersistenceManager
+     *            the storage for the progress of mass emails
      * @param userPreferenceManager
      * 			- the class providing email preferences
      * @param contentManager
@@ -647,7 +675,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Inject
     @Provides
     @Singleton
-    private static EmailManager getMessageCommunicationQueue(final AbstractConfigLoader properties, final EmailCommunicator emailCommunicator,
+    private static EmailManager getMessageCommunicationQueue(final AbstractConfigLoader properties, final IEmailOutbox emailOutbox,
+                                                             final IMassEmailJobPersistenceManager massEmailJobPersistenceManager,
                                                              final AbstractUserPreferenceManager userPreferenceManager,
                                                              final GitContentManager contentManager,
                                                              final ILogManager logManager) {
@@ -670,13 +699,51 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         globalTokens.put("siteBaseURL", String.format("https://%s", properties.getProperty(HOST_NAME)));
 
         if (null == emailCommunicationQueue) {
-            emailCommunicationQueue = new EmailManager(emailCommunicator, userPreferenceManager, properties,
-                    contentManager, logManager, globalTokens);
+            emailCommunicationQueue = new EmailManager(emailOutbox, massEmailJobPersistenceManager,
+                    userPreferenceManager, properties, contentManager, logManager, globalTokens);
             log.info("Creating singleton of EmailCommunicationQueue");
         }
         return emailCommunicationQueue;
     }
 
+    /**
+     * This provides a singleton of the email outbox, which holds emails until they have been sent.
+     *
+     * Note: this has to be a singleton as it owns the threads which send the emails.
+     *
+     * @param properties
+     *            - to decide which outbox to use, and how fast it may send.
+     * @param emailCommunicator
+     *            - the class the outbox will send emails with.
+     * @param database
+     *            - to store emails until they are sent, if enabled.
+     * @return the singleton instance of the outbox.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static IEmailOutbox getEmailOutbox(final AbstractConfigLoader properties,
+                                               final EmailCommunicator emailCommunicator,
+                                               final PostgresSqlDb database) {
+        if (null == emailOutbox) {
+            if (Boolean.parseBoolean(properties.getProperty(Constants.EMAIL_OUTBOX_ENABLED))) {
+                emailOutbox = new PgEmailOutbox(database, emailCommunicator,
+                        getIntegerProperty(properties, Constants.EMAIL_OUTBOX_WORKER_THREADS,
+                                PgEmailOutbox.DEFAULT_WORKER_THREADS),
+                        getIntegerProperty(properties, Constants.EMAIL_OUTBOX_BATCH_SIZE,
+                                PgEmailOutbox.DEFAULT_BATCH_SIZE),
+                        getIntegerProperty(properties, Constants.EMAIL_OUTBOX_MAX_MESSAGES_PER_SECOND,
+                                PgEmailOutbox.DEFAULT_MAX_MESSAGES_PER_SECOND),
+                        getIntegerProperty(properties, Constants.EMAIL_OUTBOX_MAX_ATTEMPTS,
+                                PgEmailOutbox.DEFAULT_MAX_ATTEMPTS));
+            } else {
+                emailOutbox = new InMemoryEmailOutbox(emailCommunicator);
+            }
+            log.info("Creating singleton of EmailOutbox");
+        }
+        return emailOutbox;
+    }
+
     /**
      * This provides a singleton of the MailGun e-mail manager class, which manages bulk sending of certain emails
      * via the MailGun RESTful API.
@@ -729,6 +796,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - list of known providers.
      * @param emailQueue
      *            - so that we can send e-mails.
+     * @param notificationBus
+     *            - so that cached users can be invalidated on every node.
      * @return Content version controller with associated dependencies.
      */
     @Inject
@@ -737,9 +806,15 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private UserAuthenticationManager getUserAuthenticationManager(final IUserDataManager database, final IDeletionTokenPersistenceManager deletionTokenPersistenceManager,
                                               final AbstractConfigLoader properties,
                                               final Map<AuthenticationProvider, IAuthenticator> providersToRegister,
-                                              final EmailManager emailQueue) {
+                                              final EmailManager emailQueue,
+                                              final PostgresNotificationBus notificationBus) {
         if (null == userAuthenticationManager) {
-            userAuthenticationManager = new UserAuthenticationManager(database, deletionTokenPersistenceManager, properties, providersToRegister, emailQueue);
+            userAuthenticationManager = new UserAuthenticationManager(database, deletionTokenPersistenceManager, properties, providersToRegister, emailQueue,
+                    notificationBus,
+                    getIntegerProperty(properties, Constants.SESSION_USER_CACHE_SECONDS,
+                            UserAuthenticationManager.DEFAULT_SESSION_USER_CACHE_SECONDS),
+                    getIntegerProperty(properties, Constants.SESSION_USER_CACHE_MAX_ENTRIES,
+                            UserAuthenticationManager.DEFAULT_SESSION_USER_CACHE_MAX_ENTRIES));
             log.info("Creating singleton of UserAuthenticationManager");
         }
 
@@ -816,6 +891,34 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         return questionPersistenceManager;
     }
 
+    /**
+     * This provides a singleton of the QuestionManager.
+     *
+     * Note: This has to be a singleton as the question manager caches validation results.
+     *
+     * @param objectMapper - mapper
+     * @param questionPersistenceManager - for question attempt persistence.
+     * @param contentManager - to find the current content version.
+     * @param properties - to configure the validation result cache.
+     * @return a singleton question manager.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static QuestionManager getQuestionValidationManager(final ContentMapper objectMapper,
+                                                                final IQuestionAttemptManager questionPersistenceManager,
+                                                                final GitContentManager contentManager,
+                                                                final AbstractConfigLoader properties) {
+        if (null == questionManager) {
+            questionManager = new QuestionManager(objectMapper, questionPersistenceManager, contentManager,
+                    getIntegerProperty(properties, Constants.VALIDATION_RESULT_CACHE_MAX_ENTRIES,
+                            QuestionManager.DEFAULT_VALIDATION_RESULT_CACHE_MAX_ENTRIES));
+            log.info("Creating singleton of QuestionManager");
+        }
+
+        return questionManager;
+    }
+
     /**
      * This provides a singleton of the GroupManager.
      *
@@ -867,14 +970,25 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - so that the monitors can send e-mails.
      * @param properties
      *            - so that the monitors can look up email settings etc.
+     * @param database
+     *            - to share misuse counts between nodes, if enabled.
+     * @param notificationBus
+     *            - to share misuse count resets between nodes, if enabled.
      * @return gets the singleton of the misuse manager.
      */
     @Inject
     @Provides
     @Singleton
-    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final AbstractConfigLoader properties) {
+    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final AbstractConfigLoader properties,
+                                            final PostgresSqlDb database, final PostgresNotificationBus notificationBus) {
         if (null == misuseMonitor) {
-            misuseMonitor = new InMemoryMisuseMonitor();
+            if (Boolean.parseBoolean(properties.getProperty(Constants.MISUSE_MONITOR_SHARED))) {
+                misuseMonitor = new PgMisuseMonitor(database, notificationBus,
+                        getIntegerProperty(properties, Constants.MISUSE_MONITOR_SYNCHRONISATION_INTERVAL_MILLISECONDS,
+                                PgMisuseMonitor.DEFAULT_SYNCHRONISATION_INTERVAL_MILLISECONDS));
+            } else {
+                misuseMonitor = new InMemoryMisuseMonitor();
+            }
             log.info("Creating singleton of MisuseMonitor");
 
             // TODO: We should automatically register all handlers that implement this interface using reflection?
@@ -997,6 +1111,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - port that the mongodb service is running on.
      * @param password
      *            - the name of the database to configure the wrapper to use.
+     * @param properties
+     *            - to configure the connection pool.
      * @return PostgresSqlDb db object preconfigured to work with the segue database.
      */
     @Provides
@@ -1004,16 +1120,72 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Inject
     private static PostgresSqlDb getPostgresDB(@Named(Constants.POSTGRES_DB_URL) final String databaseUrl,
                                                @Named(Constants.POSTGRES_DB_USER) final String username,
-                                               @Named(Constants.POSTGRES_DB_PASSWORD) final String password) {
+                                               @Named(Constants.POSTGRES_DB_PASSWORD) final String password,
+                                               final AbstractConfigLoader properties) {
 
         if (null == postgresDB) {
-            postgresDB = new PostgresSqlDb(databaseUrl, username, password);
+            postgresDB = new PostgresSqlDb(databaseUrl, username, password,
+                    getIntegerProperty(properties, Constants.POSTGRES_POOL_MAX_TOTAL_CONNECTIONS,
+                            PostgresSqlDb.DEFAULT_MAX_TOTAL_CONNECTIONS),
+                    getIntegerProperty(properties, Constants.POSTGRES_POOL_MIN_IDLE_CONNECTIONS,
+                            PostgresSqlDb.DEFAULT_MIN_IDLE_CONNECTIONS),
+                    getIntegerProperty(properties, Constants.POSTGRES_POOL_MAX_WAIT_MILLISECONDS,
+                            PostgresSqlDb.DEFAULT_MAX_WAIT_MILLISECONDS),
+                    getIntegerProperty(properties, Constants.POSTGRES_POOL_IDLE_VALIDATION_INTERVAL_SECONDS,
+                            PostgresSqlDb.DEFAULT_IDLE_VALIDATION_INTERVAL_SECONDS),
+                    getIntegerProperty(properties, Constants.POSTGRES_POOL_MIN_EVICTABLE_IDLE_SECONDS,
+                            PostgresSqlDb.DEFAULT_MIN_EVICTABLE_IDLE_SECONDS),
+                    getIntegerProperty(properties, Constants.POSTGRES_POOL_LEAK_THRESHOLD_SECONDS,
+                            PostgresSqlDb.DEFAULT_LEAK_THRESHOLD_SECONDS),
+                    Boolean.parseBoolean(properties.getProperty(Constants.POSTGRES_POOL_LEAK_TRACING)));
             log.info("Created Singleton of PostgresDb wrapper");
         }
 
         return postgresDB;
     }
 
+    /**
+     * Gets the instance of the bus used to send notifications between API nodes.
+     *
+     * Note: This needs to be a singleton as it holds a dedicated listening connection.
+     *
+     * @param database
+     *            - the database to send notifications through.
+     * @return the notification bus.
+     */
+    @Provides
+    @Singleton
+    @Inject
+    private static PostgresNotificationBus getNotificationBus(final PostgresSqlDb database) {
+        if (null == notificationBus) {
+            notificationBus = new PostgresNotificationBus(database);
+            log.info("Created Singleton of PostgresNotificationBus");
+        }
+
+        return notificationBus;
+    }
+
+    /**
+     * Gets the instance of the bus used to deliver user alerts to websockets on any API node.
+     *
+     * Note: This needs to be a singleton as it subscribes to the notification bus and delivers alerts on its own thread.
+     *
+     * @param notificationBus
+     *            - to broadcast alerts between nodes.
+     * @return the user alert bus.
+     */
+    @Provides
+    @Singleton
+    @Inject
+    private static IUserAlertBus getUserAlertBus(final PostgresNotificationBus notificationBus) {
+        if (null == userAlertBus) {
+            userAlertBus = new PgUserAlertBus(notificationBus);
+            log.info("Created Singleton of PgUserAlertBus");
+        }
+
+        return userAlertBus;
+    }
+
     /**
      * Gets the instance of the StatisticsManager. Note: this class is a hack and needs to be refactored.... It is
      * currently only a singleton as it keeps a cache.
@@ -1070,6 +1242,12 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                     "SQL scheduled job that deletes old AnonymousUsers",
                     "0 30 2 * * ?", "db_scripts/scheduled/anonymous-user-clean-up.sql");
 
+            SegueScheduledJob rebuildUserStreakRecords = new SegueScheduledDatabaseScriptJob(
+                    "rebuildUserStreakRecords",
+                    "SQLMaintenance",
+                    "SQL scheduled job that rebuilds recently changed user streak records from question attempts",
+                    "0 45 2 * * ?", "db_scripts/scheduled/user-streak-records-rebuild.sql");
+
             SegueScheduledJob cleanUpExpiredReservations = new SegueScheduledDatabaseScriptJob(
                     "cleanUpExpiredReservations",
                     "SQLMaintenence",
@@ -1139,6 +1317,7 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
             List<SegueScheduledJob> configuredScheduledJobs = new ArrayList<>(Arrays.asList(
                     PIISQLJob,
                     cleanUpOldAnonymousUsers,
+                    rebuildUserStreakRecords,
                     cleanUpExpiredReservations,
                     deleteEventAdditionalBookingInformation,
                     deleteEventAdditionalBookingInformationOneYearJob,
@@ -1276,6 +1455,62 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         return assignmentManager;
     }
 
+    /**
+     * Gets the shared HTTP client used for all requests to other services.
+     *
+     * @return OutboundHttpClient configured with the specified timeouts and concurrency limit.
+     */
+    @Provides
+    @Singleton
+    @Inject
+    private static OutboundHttpClient getOutboundHttpClient(AbstractConfigLoader properties) {
+        return new OutboundHttpClient(
+                getIntegerProperty(properties, Constants.OUTBOUND_HTTP_CONNECT_TIMEOUT_MILLISECONDS,
+                        OutboundHttpClient.DEFAULT_CONNECT_TIMEOUT_MILLISECONDS),
+                getIntegerProperty(properties, Constants.OUTBOUND_HTTP_REQUEST_TIMEOUT_MILLISECONDS,
+                        OutboundHttpClient.DEFAULT_REQUEST_TIMEOUT_MILLISECONDS),
+                getIntegerProperty(properties, Constants.OUTBOUND_HTTP_MAX_CONCURRENT_REQUESTS_PER_HOST,
+                        OutboundHttpClient.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST));
+    }
+
+    /**
+     * Gets the client used by validators which call external checkers.
+     *
+     * @return ExternalValidatorClient using the shared HTTP client, with the specified request timeout.
+     */
+    @Provides
+    @Singleton
+    @Inject
+    private static ExternalValidatorClient getExternalValidatorClient(AbstractConfigLoader properties,
+                                                                      OutboundHttpClient outboundHttpClient) {
+        return new ExternalValidatorClient(outboundHttpClient,
+                getIntegerProperty(properties, Constants.EXTERNAL_VALIDATOR_REQUEST_TIMEOUT_MILLISECONDS,
+                        ExternalValidatorClient.DEFAULT_REQUEST_TIMEOUT_MILLISECONDS));
+    }
+
+    /**
+     * Read an optional integer property, falling back to a default if it is missing or invalid.
+     *
+     * @param properties the properties to read from.
+     * @param propertyName the name of the property.
+     * @param defaultValue the value to use if the property is not usable.
+     * @return the value of the property, or the default.
+     */
+    private static int getIntegerProperty(final AbstractConfigLoader properties, final String propertyName,
+                                          final int defaultValue) {
+        String value = properties.getProperty(propertyName);
+        if (null == value || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            log.warn(String.format("Invalid value '%s' for property %s, using the default of %d.", value,
+                    propertyName, defaultValue));
+            return defaultValue;
+        }
+    }
+
     /**
      * Gets an instance of the symbolic question validator.
      *
@@ -1284,10 +1519,11 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Provides
     @Singleton
     @Inject
-    private static IsaacSymbolicValidator getSymbolicValidator(AbstractConfigLoader properties) {
+    private static IsaacSymbolicValidator getSymbolicValidator(AbstractConfigLoader properties,
+                                                               ExternalValidatorClient externalValidatorClient) {
 
         return new IsaacSymbolicValidator(properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
-                properties.getProperty(Constants.EQUALITY_CHECKER_PORT));
+                properties.getProperty(Constants.EQUALITY_CHECKER_PORT), externalValidatorClient);
     }
 
     /**
@@ -1298,10 +1534,11 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Provides
     @Singleton
     @Inject
-    private static IsaacSymbolicChemistryValidator getSymbolicChemistryValidator(AbstractConfigLoader properties) {
+    private static IsaacSymbolicChemistryValidator getSymbolicChemistryValidator(AbstractConfigLoader properties,
+            ExternalValidatorClient externalValidatorClient) {
 
         return new IsaacSymbolicChemistryValidator(properties.getProperty(Constants.CHEMISTRY_CHECKER_HOST),
-                properties.getProperty(Constants.CHEMISTRY_CHECKER_PORT));
+                properties.getProperty(Constants.CHEMISTRY_CHECKER_PORT), externalValidatorClient);
     }
 
     /**
@@ -1313,10 +1550,11 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Provides
     @Singleton
     @Inject
-    private static IsaacOldSymbolicChemistryValidator getOldSymbolicChemistryValidator(AbstractConfigLoader properties) {
+    private static IsaacOldSymbolicChemistryValidator getOldSymbolicChemistryValidator(AbstractConfigLoader properties,
+            ExternalValidatorClient externalValidatorClient) {
 
         return new IsaacOldSymbolicChemistryValidator(properties.getProperty(Constants.CHEMISTRY_CHECKER_OLD_HOST),
-                properties.getProperty(Constants.CHEMISTRY_CHECKER_OLD_PORT));
+                properties.getProperty(Constants.CHEMISTRY_CHECKER_OLD_PORT), externalValidatorClient);
     }
 
     /**
@@ -1327,10 +1565,11 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Provides
     @Singleton
     @Inject
-    private static IsaacSymbolicLogicValidator getSymbolicLogicValidator(AbstractConfigLoader properties) {
+    private static IsaacSymbolicLogicValidator getSymbolicLogicValidator(AbstractConfigLoader properties,
+            ExternalValidatorClient externalValidatorClient) {
 
         return new IsaacSymbolicLogicValidator(properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
-                properties.getProperty(Constants.EQUALITY_CHECKER_PORT));
+                properties.getProperty(Constants.EQUALITY_CHECKER_PORT), externalValidatorClient);
     }
 
     @Provides
@@ -1437,6 +1676,18 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     public void contextDestroyed(final ServletContextEvent sce) {
         // Close all resources we hold.
         log.info("Segue Config Module notified of shutdown. Releasing resources");
+        if (null != emailCommunicationQueue) {
+            // Record how far any mass email got while the log manager and database are still available:
+            emailCommunicationQueue.shutdown();
+            emailCommunicationQueue = null;
+        }
+
+        if (null != logManager) {
+            // Write any buffered log events while the database is still available:
+            logManager.shutdown();
+            logManager = null;
+        }
+
         try {
             elasticSearchClient.close();
             elasticSearchClient = null;
@@ -1444,6 +1695,28 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
             log.error("Error releasing Elasticsearch client",  e);
         }
 
+        if (misuseMonitor instanceof PgMisuseMonitor) {
+            // Share any outstanding misuse counts while the database is still available:
+            ((PgMisuseMonitor) misuseMonitor).shutdown();
+            misuseMonitor = null;
+        }
+
+        if (emailOutbox instanceof PgEmailOutbox) {
+            // Let any batch being sent finish, so that its outcome is recorded while the database is still available:
+            ((PgEmailOutbox) emailOutbox).shutdown();
+            emailOutbox = null;
+        }
+
+        if (null != userAlertBus) {
+            userAlertBus.shutdown();
+            userAlertBus = null;
+        }
+
+        if (null != notificationBus) {
+            notificationBus.close();
+            notificationBus = null;
+        }
+
         postgresDB.close();
         postgresDB = null;
     }
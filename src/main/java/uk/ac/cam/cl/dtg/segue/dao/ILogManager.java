@@ -18,6 +18,7 @@ package uk.ac.cam.cl.dtg.segue.dao;
 import uk.ac.cam.cl.dtg.isaac.dto.users.AbstractSegueUserDTO;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 
@@ -75,6 +76,21 @@ public interface ILogManager {
      */
     void logInternalEvent(AbstractSegueUserDTO user, LogType eventType, Object eventDetails);
 
+    /**
+     * Log an event for each of many users at once, e.g. when sending a mass email.
+     *
+     * Unlike logInternalEvent, the events are written to the database in bulk before this method returns, so that
+     * a large number of them cannot overflow any write buffer.
+     *
+     * @param users
+     *            - the user each event belongs to; none may be null.
+     * @param eventType
+     *            - Type of event that we are interested in.
+     * @param eventDetails
+     *            - the additional information for each event, in the same order as the users.
+     */
+    void logInternalEvents(List<? extends AbstractSegueUserDTO> users, LogType eventType, List<?> eventDetails);
+
     /**
      * This method will endeavour to find all log events for a given user and reassign ownership to a
      * registered user.
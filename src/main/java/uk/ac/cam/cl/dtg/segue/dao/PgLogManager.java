@@ -19,6 +19,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import io.prometheus.client.Histogram;
+import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.LogEvent;
@@ -34,13 +36,27 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_DROPPED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_FLUSH_LATENCY_HISTOGRAM;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_QUEUE_DEPTH;
 
 /**
  * @author sac92
@@ -49,13 +65,26 @@ import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT;
 public class PgLogManager implements ILogManager {
     private static final Logger log = LoggerFactory.getLogger(PgLogManager.class);
 
+    public static final int DEFAULT_BUFFER_SIZE = 10000;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLISECONDS = 1000;
+    // Seven parameters per row keeps a full batch well under the Postgres limit on bind parameters:
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
     private final PostgresSqlDb database;
     private final LocationManager locationManager;
     private final boolean loggingEnabled;
     private final ObjectMapper objectMapper;
 
+    private final BlockingQueue<PendingLogEvent> pendingLogEvents;
+    private final ScheduledExecutorService writer;
+    private final long flushIntervalMilliseconds;
+    private final boolean blockWhenFull;
+    private final AtomicBoolean flushScheduled;
+    private final Object flushLock;
+
     /**
-     * PgLogManager.
+     * PgLogManager, with the default write buffer configuration.
      * 
      * @param database
      *            client for postgres.
@@ -70,11 +99,58 @@ public class PgLogManager implements ILogManager {
     public PgLogManager(final PostgresSqlDb database, final ObjectMapper objectMapper,
             @Named(LOGGING_ENABLED) final boolean loggingEnabled,
             final LocationManager locationManager) {
+        this(database, objectMapper, loggingEnabled, locationManager, DEFAULT_BUFFER_SIZE,
+                DEFAULT_FLUSH_INTERVAL_MILLISECONDS, false);
+    }
+
+    /**
+     * PgLogManager.
+     *
+     * Log events are buffered in memory and written to the database in batches by a background writer, which runs
+     * every flush interval or as soon as a full batch is waiting.
+     *
+     * @param database
+     *            client for postgres.
+     * @param objectMapper
+     *            - so we can map event details to and from json
+     * @param loggingEnabled
+     *            - whether the log event should be persisted or not?
+     * @param locationManager
+     *            - Helps identify a rough location for an ip address.
+     * @param bufferSize
+     *            - the maximum number of log events waiting to be written.
+     * @param flushIntervalMilliseconds
+     *            - how often the buffer is written to the database.
+     * @param blockWhenFull
+     *            - whether to wait (for up to one flush interval) for space in a full buffer, rather than dropping
+     *            the event immediately.
+     */
+    public PgLogManager(final PostgresSqlDb database, final ObjectMapper objectMapper, final boolean loggingEnabled,
+                        final LocationManager locationManager, final int bufferSize,
+                        final long flushIntervalMilliseconds, final boolean blockWhenFull) {
 
         this.database = database;
         this.objectMapper = objectMapper;
         this.loggingEnabled = loggingEnabled;
         this.locationManager = locationManager;
+        this.pendingLogEvents = new ArrayBlockingQueue<>(bufferSize);
+        this.flushIntervalMilliseconds = flushIntervalMilliseconds;
+        this.blockWhenFull = blockWhenFull;
+        this.flushScheduled = new AtomicBoolean(false);
+        this.flushLock = new Object();
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-event-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(() -> {
+            try {
+                this.flushPendingLogEvents();
+            } catch (RuntimeException e) {
+                log.error("Unexpected error writing log events", e);
+            }
+        }, flushIntervalMilliseconds, flushIntervalMilliseconds, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -135,6 +211,46 @@ public class PgLogManager implements ILogManager {
         }
     }
 
+    @Override
+    public void logInternalEvents(final List<? extends AbstractSegueUserDTO> users, final LogType eventType,
+                                  final List<?> eventDetails) {
+        Validate.isTrue(users.size() == eventDetails.size(), "There must be one set of event details per user.");
+        if (!this.loggingEnabled || users.isEmpty()) {
+            return;
+        }
+
+        List<PendingLogEvent> batch = new ArrayList<>(Math.min(users.size(), WRITE_BATCH_SIZE));
+        for (int i = 0; i < users.size(); i++) {
+            AbstractSegueUserDTO user = Objects.requireNonNull(users.get(i));
+            try {
+                LogEvent logEvent;
+                if (user instanceof RegisteredUserDTO) {
+                    logEvent = this.buildLogEvent(((RegisteredUserDTO) user).getId().toString(), null,
+                            eventType.name(), eventDetails.get(i), null);
+                } else {
+                    logEvent = this.buildLogEvent(null, ((AnonymousUserDTO) user).getSessionId(), eventType.name(),
+                            eventDetails.get(i), null);
+                }
+                batch.add(new PendingLogEvent(logEvent, objectMapper.writeValueAsString(logEvent.getEventDetails())));
+            } catch (JsonProcessingException e) {
+                log.error("Unable to serialize eventDetails as json string", e);
+            }
+
+            if (batch.size() == WRITE_BATCH_SIZE || i == users.size() - 1) {
+                try {
+                    this.writeLogEvents(batch);
+                    if (ALL_ACCEPTED_LOG_TYPES.contains(eventType.name())) {
+                        LOG_EVENT.labels(eventType.name()).inc(batch.size());
+                    }
+                } catch (SegueDatabaseException e) {
+                    LOG_EVENT_DROPPED.labels("write_failed").inc(batch.size());
+                    log.error(String.format("Unable to save %s log events to the database", batch.size()), e);
+                }
+                batch.clear();
+            }
+        }
+    }
+
     @Override
     public void transferLogEventsToRegisteredUser(final String oldUserId, final String newUserId) {
         String query = "UPDATE logged_events SET user_id = ?, anonymous_user = TRUE WHERE user_id = ?;";
@@ -168,9 +284,56 @@ public class PgLogManager implements ILogManager {
         }
     }
 
+    /**
+     * Write any log events still waiting in the buffer to the database and stop the background writer.
+     *
+     * Events logged after this has been called are written synchronously.
+     */
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for the log event writer to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flushPendingLogEvents();
+    }
+
+    /**
+     * Write all log events currently in the buffer to the database, in batches.
+     *
+     * This is called periodically by the background writer, and whenever the buffer holds a full batch.
+     */
+    void flushPendingLogEvents() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            List<PendingLogEvent> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+            while (pendingLogEvents.drainTo(batch, WRITE_BATCH_SIZE) > 0) {
+                LOG_EVENT_QUEUE_DEPTH.set(pendingLogEvents.size());
+                Histogram.Timer flushTimer = LOG_EVENT_FLUSH_LATENCY_HISTOGRAM.startTimer();
+                try {
+                    this.writeLogEvents(batch);
+                } catch (SegueDatabaseException e) {
+                    LOG_EVENT_DROPPED.labels("write_failed").inc(batch.size());
+                    log.error(String.format("Unable to save %s log events to the database", batch.size()), e);
+                } finally {
+                    flushTimer.observeDuration();
+                }
+                this.refreshLocations(batch);
+                batch.clear();
+            }
+            LOG_EVENT_QUEUE_DEPTH.set(pendingLogEvents.size());
+        }
+    }
+
     /**
      * log an event in the database.
-     * 
+     *
+     * The event is added to the write buffer and persisted later by the background writer, unless the writer has
+     * been shut down in which case it is written immediately.
+     *
      * @param userId
      *            -
      * @param anonymousUserId
@@ -199,36 +362,160 @@ public class PgLogManager implements ILogManager {
             LOG_EVENT.labels(eventType).inc();
         }
 
-        String query = "INSERT INTO logged_events(user_id, anonymous_user, event_type, event_details_type,"
-                + " event_details, ip_address, timestamp) VALUES (?, ?, ?, ?, ?::text::jsonb, ?::inet, ?);";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-        ) {
-            pst.setString(1, logEvent.getUserId());
-            pst.setBoolean(2, logEvent.isAnonymousUser());
-            pst.setString(3, logEvent.getEventType());
-            pst.setString(4, logEvent.getEventDetailsType());
-            pst.setString(5, objectMapper.writeValueAsString(logEvent.getEventDetails()));
-            pst.setString(6, logEvent.getIpAddress());
-            pst.setTimestamp(7, new java.sql.Timestamp(new Date().getTime()));
-
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save user.");
+        // Serialise the details now, so that later changes to the details object are not recorded:
+        PendingLogEvent pendingLogEvent = new PendingLogEvent(logEvent,
+                objectMapper.writeValueAsString(logEvent.getEventDetails()));
+
+        if (writer.isShutdown()) {
+            this.writeLogEvents(Collections.singletonList(pendingLogEvent));
+            this.refreshLocations(Collections.singletonList(pendingLogEvent));
+            return;
+        }
+
+        boolean queued;
+        if (blockWhenFull) {
+            try {
+                queued = pendingLogEvents.offer(pendingLogEvent, flushIntervalMilliseconds, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
             }
+        } else {
+            queued = pendingLogEvents.offer(pendingLogEvent);
+        }
 
-            try (ResultSet generatedKeys = pst.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    generatedKeys.getLong(1);
-                } else {
-                    throw new SQLException("Creating user failed, no ID obtained.");
+        if (!queued) {
+            LOG_EVENT_DROPPED.labels("buffer_full").inc();
+            log.warn(String.format("Log event buffer full, dropping %s event.", eventType));
+            return;
+        }
+
+        int queueDepth = pendingLogEvents.size();
+        LOG_EVENT_QUEUE_DEPTH.set(queueDepth);
+        if (queueDepth >= WRITE_BATCH_SIZE && flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flushPendingLogEvents);
+            } catch (RejectedExecutionException e) {
+                // The writer is shutting down and will flush the buffer itself.
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Write a batch of log events to the database.
+     *
+     * The batch is written with a single multi-row insert. If that fails, the events are written one at a time so
+     * that an event the database rejects, e.g. for an invalid IP address, does not cause the rest of the batch to be
+     * lost. Events which still cannot be written are logged and dropped.
+     *
+     * @param logEvents the events to write.
+     * @throws SegueDatabaseException - if we cannot persist a single event in the database.
+     */
+    private void writeLogEvents(final List<PendingLogEvent> logEvents) throws SegueDatabaseException {
+        try {
+            this.insertLogEvents(logEvents);
+            return;
+        } catch (SegueDatabaseException e) {
+            if (logEvents.size() == 1) {
+                throw e;
+            }
+            log.warn(String.format("Unable to save batch of %s log events, saving them individually.",
+                    logEvents.size()), e);
+        }
+
+        for (int i = 0; i < logEvents.size(); i++) {
+            LogEvent logEvent = logEvents.get(i).logEvent;
+            try {
+                this.insertLogEvents(Collections.singletonList(logEvents.get(i)));
+            } catch (SegueDatabaseException e) {
+                if (!isRejectedRow(e)) {
+                    // The database itself is failing, so there is no point trying every remaining event:
+                    int unsavedEvents = logEvents.size() - i;
+                    LOG_EVENT_DROPPED.labels("write_failed").inc(unsavedEvents);
+                    log.error(String.format("Unable to save %s log events to the database", unsavedEvents), e);
+                    return;
                 }
+                LOG_EVENT_DROPPED.labels("write_failed").inc();
+                log.error(String.format("Unable to save %s log event (user: %s, ip address: %s) to the database,"
+                        + " dropping it.", logEvent.getEventType(), logEvent.getUserId(), logEvent.getIpAddress()), e);
+            }
+        }
+    }
+
+    /**
+     * Decide whether a failed insert was rejected because of the data in the row, rather than a database failure.
+     *
+     * @param e the exception from the insert.
+     * @return true if the SQL state is a data exception or integrity constraint violation.
+     */
+    private static boolean isRejectedRow(final SegueDatabaseException e) {
+        if (!(e.getCause() instanceof SQLException)) {
+            return false;
+        }
+        String sqlState = ((SQLException) e.getCause()).getSQLState();
+        return null != sqlState && (sqlState.startsWith("22") || sqlState.startsWith("23"));
+    }
+
+    /**
+     * Insert log events into the database with a single multi-row insert.
+     *
+     * @param logEvents the events to write.
+     * @throws SegueDatabaseException - if we cannot persist the events in the database.
+     */
+    private void insertLogEvents(final List<PendingLogEvent> logEvents) throws SegueDatabaseException {
+        StringBuilder query = new StringBuilder("INSERT INTO logged_events(user_id, anonymous_user, event_type,"
+                + " event_details_type, event_details, ip_address, timestamp) VALUES ");
+        for (int i = 0; i < logEvents.size(); i++) {
+            query.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?::text::jsonb, ?::inet, ?)");
+        }
+
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query.toString());
+        ) {
+            int index = 1;
+            for (PendingLogEvent pendingLogEvent : logEvents) {
+                LogEvent logEvent = pendingLogEvent.logEvent;
+                pst.setString(index++, logEvent.getUserId());
+                pst.setBoolean(index++, logEvent.isAnonymousUser());
+                pst.setString(index++, logEvent.getEventType());
+                pst.setString(index++, logEvent.getEventDetailsType());
+                pst.setString(index++, pendingLogEvent.eventDetailsJson);
+                pst.setString(index++, logEvent.getIpAddress());
+                pst.setTimestamp(index++, new java.sql.Timestamp(logEvent.getTimestamp().getTime()));
             }
 
+            if (pst.executeUpdate() != logEvents.size()) {
+                throw new SegueDatabaseException("Unable to save all log events.");
+            }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
         }
     }
 
+    /**
+     * Refresh the location information for each distinct IP address in a batch of log events.
+     *
+     * This can require a call to an external geocoding service, so is kept off the request thread.
+     *
+     * @param logEvents the events whose IP addresses should be located.
+     */
+    private void refreshLocations(final List<PendingLogEvent> logEvents) {
+        Set<String> ipAddresses = new LinkedHashSet<>();
+        for (PendingLogEvent pendingLogEvent : logEvents) {
+            if (pendingLogEvent.logEvent.getIpAddress() != null) {
+                ipAddresses.add(pendingLogEvent.logEvent.getIpAddress());
+            }
+        }
+        for (String ipAddress : ipAddresses) {
+            try {
+                locationManager.refreshLocation(ipAddress);
+            } catch (SegueDatabaseException | IOException | RuntimeException e) {
+                log.error("Unable to record location information for ip Address: " + ipAddress, e);
+            }
+        }
+    }
+
     /**
      * Generate a logEvent object.
      * 
@@ -268,19 +555,26 @@ public class PgLogManager implements ILogManager {
         }
 
         if (ipAddress != null) {
+            // split based on the fact that we usually get ip addresses of the form
+            // [user_ip], [balancer/gateway_ip]
             logEvent.setIpAddress(ipAddress.split(",")[0]);
-
-            try {
-                // split based on the fact that we usually get ip addresses of the form
-                // [user_ip], [balancer/gateway_ip]
-                locationManager.refreshLocation(ipAddress.split(",")[0]);
-            } catch (SegueDatabaseException | IOException e1) {
-                log.error("Unable to record location information for ip Address: " + ipAddress, e1);
-            }
         }
 
         logEvent.setTimestamp(new Date());
 
         return logEvent;
     }
+
+    /**
+     * A log event waiting to be written, with its details already serialised.
+     */
+    private static final class PendingLogEvent {
+        private final LogEvent logEvent;
+        private final String eventDetailsJson;
+
+        private PendingLogEvent(final LogEvent logEvent, final String eventDetailsJson) {
+            this.logEvent = logEvent;
+            this.eventDetailsJson = eventDetailsJson;
+        }
+    }
 }
@@ -16,7 +16,9 @@
 package uk.ac.cam.cl.dtg.segue.dao.content;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.google.api.client.util.Lists;
 import com.google.common.collect.Maps;
@@ -69,6 +71,10 @@ public class ContentMapper {
     
     private static ObjectMapper preconfiguredObjectMapper;
 
+    // Content summaries are flat, so can be read without the polymorphic content deserializers:
+    private static final ObjectReader CONTENT_SUMMARY_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).readerFor(ContentSummaryDTO.class);
+
     /**
      * Creates a new content mapper without type information.
      * 
@@ -310,6 +316,29 @@ public class ContentMapper {
         return contentList;
     }
 
+    /**
+     * Map a list of JSON content sources straight to content summaries, without building the full content objects.
+     *
+     * The sources are expected to be the content summary fields of each content object, see
+     * GitContentManager.CONTENT_SUMMARY_SOURCE_FIELDS; any other fields are ignored. Values derived from the whole
+     * content object, such as the URL and question part IDs, are not set.
+     *
+     * @param stringList - the JSON sources to map.
+     * @return the content summaries.
+     */
+    public List<ContentSummaryDTO> mapFromStringListToContentSummaryList(final List<String> stringList) {
+        List<ContentSummaryDTO> summaryList = new ArrayList<>();
+
+        for (String item : stringList) {
+            try {
+                summaryList.add(CONTENT_SUMMARY_READER.readValue(item));
+            } catch (IOException e) {
+                log.error("Error whilst mapping from string to list of content summaries", e);
+            }
+        }
+        return summaryList;
+    }
+
     /**
      * Get an instance of the automapper which has been configured to cope with recursive content objects. This
      * automapper is more efficient than the jackson one as there is no intermediate representation.
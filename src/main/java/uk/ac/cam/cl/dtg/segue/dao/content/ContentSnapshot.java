@@ -0,0 +1,179 @@
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+
+import jakarta.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, in-memory copy of every content object in a single version of the content.
+ *
+ * Content is indexed by ID (exact and prefix), type and tag so that lookups need no search provider round trip.
+ * Types and tags are matched by word and ignoring case, as the search provider matches its analysed fields.
+ * The content objects are shared between all callers and must not be modified.
+ */
+public final class ContentSnapshot {
+    private static final Pattern NON_WORD_CHARACTERS = Pattern.compile("[^\\p{L}\\p{N}_]+");
+
+    private final String contentSha;
+    private final ImmutableSortedMap<String, Content> contentById;
+    private final ImmutableMap<String, Integer> sourceLengthById;
+    private final ImmutableListMultimap<String, Content> contentByTypeWord;
+    private final ImmutableListMultimap<String, Content> contentByTagWord;
+
+    /**
+     * Build a snapshot from content objects and the lengths of the JSON they were read from.
+     *
+     * @param contentSha the version of the content.
+     * @param content the content objects, in the order they should be returned by type and tag lookups; where IDs are
+     *                duplicated, the first is kept.
+     * @param sourceLengths the length of the JSON source of each content object, in the same order.
+     */
+    public ContentSnapshot(final String contentSha, final List<Content> content, final List<Integer> sourceLengths) {
+        if (content.size() != sourceLengths.size()) {
+            throw new IllegalArgumentException("Each content object must have a source length");
+        }
+        this.contentSha = contentSha;
+
+        TreeMap<String, Content> byId = new TreeMap<>();
+        Map<String, Integer> sourceLengthsById = new HashMap<>();
+        ImmutableListMultimap.Builder<String, Content> byTypeWord = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, Content> byTagWord = ImmutableListMultimap.builder();
+
+        for (int i = 0; i < content.size(); i++) {
+            Content c = content.get(i);
+            if (null == c.getId() || byId.containsKey(c.getId())) {
+                continue;
+            }
+            byId.put(c.getId(), c);
+            sourceLengthsById.put(c.getId(), sourceLengths.get(i));
+            for (String word : words(Collections.singleton(c.getType()))) {
+                byTypeWord.put(word, c);
+            }
+            for (String word : words(c.getTags())) {
+                byTagWord.put(word, c);
+            }
+        }
+
+        this.contentById = ImmutableSortedMap.copyOfSorted(byId);
+        this.sourceLengthById = ImmutableMap.copyOf(sourceLengthsById);
+        this.contentByTypeWord = byTypeWord.build();
+        this.contentByTagWord = byTagWord.build();
+    }
+
+    /**
+     * @return the version of the content held in this snapshot.
+     */
+    public String getContentSha() {
+        return contentSha;
+    }
+
+    /**
+     * @return the number of content objects held in this snapshot.
+     */
+    public int size() {
+        return contentById.size();
+    }
+
+    /**
+     * @param id the content object ID.
+     * @return the content object with that ID, or null if there is none.
+     */
+    @Nullable
+    public Content getById(final String id) {
+        return contentById.get(id);
+    }
+
+    /**
+     * @param ids the content object IDs.
+     * @return the content objects matching any of the IDs, in the order the IDs were provided.
+     */
+    public List<Content> getByIds(final Collection<String> ids) {
+        List<Content> results = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            Content content = contentById.get(id);
+            if (null != content) {
+                results.add(content);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param idPrefix the content object ID prefix.
+     * @return the content objects whose IDs start with the prefix, in ID order.
+     */
+    public List<Content> getByIdPrefix(final String idPrefix) {
+        return new ArrayList<>(contentById.tailMap(idPrefix, true).headMap(idPrefix + Character.MAX_VALUE).values());
+    }
+
+    /**
+     * @param word a single word of a content type, in any case.
+     * @return the content objects whose type contains the word.
+     */
+    public List<Content> getByType(final String word) {
+        return contentByTypeWord.get(word.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param word a single word of a tag, in any case.
+     * @return the content objects with a tag containing the word.
+     */
+    public List<Content> getByTag(final String word) {
+        return contentByTagWord.get(word.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param value a type or tag value, as would be searched for.
+     * @return whether the value is a single word, and so can be looked up by type or tag.
+     */
+    public static boolean isSingleWord(@Nullable final String value) {
+        return null != value && !value.isEmpty() && !NON_WORD_CHARACTERS.matcher(value).find();
+    }
+
+    /**
+     * @param contents content objects from this snapshot.
+     * @return the total length of the JSON the content objects were read from.
+     */
+    public long getSourceLength(final Collection<Content> contents) {
+        long length = 0;
+        for (Content content : contents) {
+            length += sourceLengthById.getOrDefault(content.getId(), 0);
+        }
+        return length;
+    }
+
+    /**
+     * @param values type or tag values.
+     * @return the distinct lower case words of the values.
+     */
+    private static Set<String> words(@Nullable final Collection<String> values) {
+        Set<String> words = new LinkedHashSet<>();
+        if (null != values) {
+            for (String value : values) {
+                if (null == value) {
+                    continue;
+                }
+                for (String word : NON_WORD_CHARACTERS.split(value.toLowerCase(Locale.ROOT))) {
+                    if (!word.isEmpty()) {
+                        words.add(word);
+                    }
+                }
+            }
+        }
+        return words;
+    }
+}
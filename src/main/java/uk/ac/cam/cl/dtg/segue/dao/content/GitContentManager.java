@@ -15,14 +15,19 @@
  */
 package uk.ac.cam.cl.dtg.segue.dao.content;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Sets;
 import com.google.common.base.Functions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.search.SearchResponse;
@@ -32,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+import uk.ac.cam.cl.dtg.isaac.dos.content.ContentBase;
 import uk.ac.cam.cl.dtg.isaac.dto.IsaacQuickQuestionDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentBaseDTO;
@@ -55,16 +61,25 @@ import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 import jakarta.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
@@ -79,6 +94,20 @@ public class GitContentManager {
     private static final Logger log = LoggerFactory.getLogger(GitContentManager.class);
 
     private static final String CONTENT_TYPE = "content";
+    private static final String UNKNOWN_CONTENT_SHA = "unknown";
+    private static final String CURRENT_CONTENT_SHA_KEY = "currentContentSHA";
+
+    private static final long DEFAULT_CONTENT_OBJECT_CACHE_MAX_SIZE_MB = 256;
+    // Deserialised content objects take up several times more heap than the JSON they were read from:
+    private static final int ESTIMATED_HEAP_BYTES_PER_JSON_CHARACTER = 8;
+    private static final int BYTES_PER_KILOBYTE = 1024;
+
+    private static final long CONTENT_SNAPSHOT_RETRY_DELAY_MILLISECONDS = 60000;
+
+    // The fields of each search hit needed to build a ContentSummaryDTO, so that listings need not fetch whole pages:
+    private static final String[] CONTENT_SUMMARY_SOURCE_FIELDS = {ID_FIELDNAME, TITLE_FIELDNAME, SUBTITLE_FIELDNAME,
+            SUMMARY_FIELDNAME, TYPE_FIELDNAME, LEVEL_FIELDNAME, TAGS_FIELDNAME, SUPERSEDED_BY_FIELDNAME,
+            DEPRECATED_FIELDNAME, "difficulty", "audience"};
 
     private final GitDb database;
     private final ContentMapper mapper;
@@ -87,8 +116,15 @@ public class GitContentManager {
     private final boolean showOnlyPublishedContent;
     private final boolean hideRegressionTestContent;
 
-    private final Cache<Object, Object> cache;
+    private final LoadingCache<ContentCacheKey, CachedContent> cache;
     private final Cache<String, GetResponse> contentShaCache;
+    private final AtomicReference<String> cachedContentSha = new AtomicReference<>();
+
+    private final boolean useInMemoryContentStore;
+    private final ExecutorService contentSnapshotLoader;
+    private final AtomicReference<ContentSnapshot> contentSnapshot = new AtomicReference<>();
+    private final AtomicBoolean contentSnapshotLoading = new AtomicBoolean(false);
+    private volatile long lastContentSnapshotFailure = 0;
 
     private final String contentIndex;
 
@@ -125,10 +161,30 @@ public class GitContentManager {
             log.info("API Configured to hide content tagged with 'regression_test'.");
         }
 
-        this.cache = CacheBuilder.newBuilder().recordStats().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
+        long cacheMaxSizeMb = DEFAULT_CONTENT_OBJECT_CACHE_MAX_SIZE_MB;
+        String configuredCacheMaxSizeMb = globalProperties.getProperty(Constants.CONTENT_OBJECT_CACHE_MAX_SIZE_MB);
+        if (null != configuredCacheMaxSizeMb && !configuredCacheMaxSizeMb.isEmpty()) {
+            try {
+                cacheMaxSizeMb = Long.parseLong(configuredCacheMaxSizeMb);
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value for " + Constants.CONTENT_OBJECT_CACHE_MAX_SIZE_MB + ", using the default of "
+                        + DEFAULT_CONTENT_OBJECT_CACHE_MAX_SIZE_MB + "MB.");
+            }
+        }
+        this.cache = this.buildContentObjectCache(cacheMaxSizeMb);
         CACHE_METRICS_COLLECTOR.addCache("git_content_manager_cache", cache);
 
-        this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(5, TimeUnit.SECONDS).build();
+        this.contentShaCache = CacheBuilder.newBuilder().expireAfterWrite(5, TimeUnit.SECONDS).build();
+
+        this.useInMemoryContentStore = Boolean.parseBoolean(
+                globalProperties.getProperty(Constants.CONTENT_IN_MEMORY_STORE_ENABLED));
+        if (this.useInMemoryContentStore) {
+            log.info("API Configured to hold the live content in memory for lookups by ID.");
+            this.contentSnapshotLoader = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("content-snapshot-loader").setDaemon(true).build());
+        } else {
+            this.contentSnapshotLoader = null;
+        }
 
         this.contentIndex = globalProperties.getProperty(Constants.CONTENT_INDEX);
     }
@@ -151,8 +207,10 @@ public class GitContentManager {
         this.globalProperties = null;
         this.showOnlyPublishedContent = false;
         this.hideRegressionTestContent = false;
-        this.cache = CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(1, TimeUnit.MINUTES).build();
+        this.cache = this.buildContentObjectCache(DEFAULT_CONTENT_OBJECT_CACHE_MAX_SIZE_MB);
+        this.contentShaCache = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.MINUTES).build();
+        this.useInMemoryContentStore = false;
+        this.contentSnapshotLoader = null;
         this.contentIndex = null;
     }
 
@@ -219,31 +277,21 @@ public class GitContentManager {
             return null;
         }
 
-        String k = "getContentDOById~" + getCurrentContentSHA() + "~" + id;
-        if (!cache.asMap().containsKey(k)) {
-
-            List<Content> searchResults = mapper.mapFromStringListToContentList(this.searchProvider.termSearch(
-                    contentIndex,
-                    CONTENT_TYPE, id,
-                    Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX, 0, 1,
-                    this.getBaseFilters()).getResults()
-            );
-
-            if (null == searchResults || searchResults.isEmpty()) {
-                if (!failQuietly) {
-                    log.error(String.format(
-                            "Failed to locate content with ID '%s' in the cache for content SHA (%s)",
-                            id, getCurrentContentSHA()
-                    ));
-                }
-                return null;
-            }
-
-            cache.put(k, searchResults.get(0));
+        String contentSha = getCurrentContentSHA();
+        ContentSnapshot snapshot = this.getContentSnapshot(contentSha);
+        Content content;
+        if (null != snapshot) {
+            content = snapshot.getById(id);
+        } else {
+            content = (Content) this.getCachedContent(ContentCacheKey.forId(contentSha, id)).getValue();
         }
 
-        return (Content) cache.getIfPresent(k);
-
+        if (null == content && !failQuietly) {
+            log.error(String.format(
+                    "Failed to locate content with ID '%s' in the cache for content SHA (%s)", id, contentSha
+            ));
+        }
+        return content;
     }
 
     /**
@@ -262,19 +310,8 @@ public class GitContentManager {
     public ResultsWrapper<ContentDTO> getUnsafeCachedDTOsByIdPrefix(final String idPrefix, final int startIndex,
                                                                     final int limit) throws ContentManagerException {
 
-        String k = "getByIdPrefix~" + getCurrentContentSHA() + "~" + idPrefix + "~" + startIndex + "~" + limit;
-        if (!cache.asMap().containsKey(k)) {
-
-            ResultsWrapper<String> searchHits = this.searchProvider.findByPrefix(contentIndex, CONTENT_TYPE,
-                    Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
-                    idPrefix, startIndex, limit, this.getBaseFilters());
-
-            List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
-
-            cache.put(k, new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults()));
-        }
-
-        return (ResultsWrapper<ContentDTO>) cache.getIfPresent(k);
+        ContentCacheKey key = ContentCacheKey.forIdPrefix(getCurrentContentSHA(), idPrefix, startIndex, limit);
+        return (ResultsWrapper<ContentDTO>) this.getCachedContent(key).getValue();
     }
 
     /**
@@ -294,35 +331,8 @@ public class GitContentManager {
                                                                             final int startIndex, final int limit)
             throws ContentManagerException {
 
-        String k = "getContentMatchingIds~" + getCurrentContentSHA()
-                + "~" + ids.toString() + "~" + startIndex + "~" + limit;
-        if (!cache.asMap().containsKey(k)) {
-
-            Map<String, AbstractFilterInstruction> finalFilter = Maps.newHashMap();
-            finalFilter.putAll(new ImmutableMap.Builder<String, AbstractFilterInstruction>()
-                                .put(Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
-                                    new TermsFilterInstruction(ids))
-                                .build());
-
-            if (getBaseFilters() != null) {
-                finalFilter.putAll(getBaseFilters());
-            }
-
-            ResultsWrapper<String> searchHits = this.searchProvider.termSearch(
-                    contentIndex,
-                    CONTENT_TYPE,
-                    null,
-                    null,
-                    startIndex,
-                    limit,
-                    finalFilter
-            );
-
-            List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
-            cache.put(k, new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults()));
-        }
-
-        return (ResultsWrapper<ContentDTO>) cache.getIfPresent(k);
+        ContentCacheKey key = ContentCacheKey.forIds(getCurrentContentSHA(), ids, startIndex, limit);
+        return (ResultsWrapper<ContentDTO>) this.getCachedContent(key).getValue();
     }
 
     /** Search the content for specified types that match a given user provided search string from a given index.
@@ -333,10 +343,10 @@ public class GitContentManager {
      * @param startIndex Index to start searching from
      * @param limit The number of questions to match
      * @param showNoFilterContent Whether nofilter content should be displayed
-     * @return The search hits
+     * @return Summaries of the search hits, without URLs
      * @throws ContentManagerException The search may result in a content exception
      */
-    public final ResultsWrapper<ContentDTO> siteWideSearch(
+    public final ResultsWrapper<ContentSummaryDTO> siteWideSearch(
             @Nullable final String searchString,
             final Set<String> contentTypes, final Integer startIndex,
             final Integer limit, final boolean showNoFilterContent
@@ -392,12 +402,12 @@ public class GitContentManager {
                 startIndex,
                 limit,
                 searchInstructionBuilder.build(),
-                sortOrder
+                sortOrder,
+                CONTENT_SUMMARY_SOURCE_FIELDS
         );
 
-        List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
-
-        return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+        return new ResultsWrapper<>(mapper.mapFromStringListToContentSummaryList(searchHits.getResults()),
+                searchHits.getTotalResults());
     }
 
     /** Search the content for questions (and fasttrack questions) that match a given user provided search string and
@@ -418,6 +428,48 @@ public class GitContentManager {
             final boolean fasttrack, final Integer startIndex,
             final Integer limit, final boolean showNoFilterContent, final boolean showSupersededContent
     ) throws ContentManagerException {
+        ResultsWrapper<String> searchHits = this.questionSearchHits(searchString, filterFieldNamesToValues, fasttrack,
+                startIndex, limit, showNoFilterContent, showSupersededContent, null);
+
+        List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
+
+        return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+    }
+
+    /** Search the content for questions, as questionSearch does, but fetch only what is needed to summarise them.
+     *
+     * The summaries do not have URLs or question part IDs; use questionSearch if the question parts are needed.
+     *
+     * @param searchString User provided search string
+     * @param filterFieldNamesToValues Map of filters to a set of values to match
+     * @param fasttrack Whether fasttrack questions should be searched for
+     * @param startIndex Index to start searching from
+     * @param limit The number of questions to match
+     * @param showNoFilterContent Whether nofilter content should be displayed
+     * @param showSupersededContent Whether superseded questions should be displayed
+     * @return Summaries of the search hits
+     * @throws ContentManagerException The search may result in a content exception
+     */
+    public final ResultsWrapper<ContentSummaryDTO> questionSummarySearch(
+            @Nullable final String searchString,
+            final Map<String, Set<String>> filterFieldNamesToValues,
+            final boolean fasttrack, final Integer startIndex,
+            final Integer limit, final boolean showNoFilterContent, final boolean showSupersededContent
+    ) throws ContentManagerException {
+        ResultsWrapper<String> searchHits = this.questionSearchHits(searchString, filterFieldNamesToValues, fasttrack,
+                startIndex, limit, showNoFilterContent, showSupersededContent, CONTENT_SUMMARY_SOURCE_FIELDS);
+
+        return new ResultsWrapper<>(mapper.mapFromStringListToContentSummaryList(searchHits.getResults()),
+                searchHits.getTotalResults());
+    }
+
+    private ResultsWrapper<String> questionSearchHits(
+            @Nullable final String searchString,
+            final Map<String, Set<String>> filterFieldNamesToValues,
+            final boolean fasttrack, final Integer startIndex,
+            final Integer limit, final boolean showNoFilterContent, final boolean showSupersededContent,
+            @Nullable final String[] sourceFields
+    ) throws ContentManagerException {
 
         // Set question type (content type) based on fasttrack status
         Set<String> contentTypes = new HashSet<>();
@@ -495,18 +547,15 @@ public class GitContentManager {
             );
         }
 
-        ResultsWrapper<String> searchHits = searchProvider.nestedMatchSearch(
+        return searchProvider.nestedMatchSearch(
                 contentIndex,
                 CONTENT_TYPE,
                 startIndex,
                 limit,
                 searchInstructionBuilder.build(),
-                sortOrder
+                sortOrder,
+                sourceFields
         );
-
-        List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
-
-        return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
     }
 
     public final ResultsWrapper<ContentDTO> findByFieldNames(
@@ -529,6 +578,135 @@ public class GitContentManager {
     ) throws ContentManagerException {
         ResultsWrapper<ContentDTO> finalResults;
 
+        List<Content> snapshotMatches = this.findInContentSnapshot(fieldsToMatch, sortInstructions, filterInstructions);
+        if (null != snapshotMatches) {
+            return new ResultsWrapper<>(mapper.getDTOByDOList(getPage(snapshotMatches, startIndex, limit)),
+                    (long) snapshotMatches.size());
+        }
+
+        ResultsWrapper<String> searchHits = this.findHitsByFieldNames(fieldsToMatch, startIndex, limit,
+                sortInstructions, filterInstructions, null);
+
+        // setup object mapper to use pre-configured deserializer module.
+        // Required to deal with type polymorphism
+        List<Content> result = mapper.mapFromStringListToContentList(searchHits.getResults());
+
+        List<ContentDTO> contentDTOResults = mapper.getDTOByDOList(result);
+
+        finalResults = new ResultsWrapper<>(contentDTOResults, searchHits.getTotalResults());
+
+        return finalResults;
+    }
+
+    /**
+     * Find content matching the given fields, as findByFieldNames does, but fetch only what is needed to summarise it.
+     *
+     * The summaries do not have URLs or question part IDs.
+     *
+     * @param fieldsToMatch - List of Boolean search clauses that must be true for the returned content.
+     * @param startIndex - the start index for the search results.
+     * @param limit - the max number of results to return.
+     * @return Summaries of the matching content, sorted by title.
+     * @throws ContentManagerException - if the search fails.
+     */
+    public final ResultsWrapper<ContentSummaryDTO> findSummariesByFieldNames(
+            final List<BooleanSearchClause> fieldsToMatch, final Integer startIndex, final Integer limit
+    ) throws ContentManagerException {
+        List<Content> snapshotMatches = this.findInContentSnapshot(fieldsToMatch, null, null);
+        if (null != snapshotMatches) {
+            List<ContentSummaryDTO> summaries = new ArrayList<>();
+            for (ContentDTO content : mapper.getDTOByDOList(getPage(snapshotMatches, startIndex, limit))) {
+                summaries.add(mapper.getAutoMapper().map(content, ContentSummaryDTO.class));
+            }
+            return new ResultsWrapper<>(summaries, (long) snapshotMatches.size());
+        }
+
+        ResultsWrapper<String> searchHits = this.findHitsByFieldNames(fieldsToMatch, startIndex, limit, null, null,
+                CONTENT_SUMMARY_SOURCE_FIELDS);
+
+        return new ResultsWrapper<>(mapper.mapFromStringListToContentSummaryList(searchHits.getResults()),
+                searchHits.getTotalResults());
+    }
+
+    /**
+     * Find content matching search clauses in the in-memory snapshot of the live content, if there is one.
+     *
+     * Only searches which the snapshot can answer as the search provider would are handled: clauses on the type and
+     * tags fields whose values are single words, with no extra filters and the default ordering by title.
+     *
+     * @param fieldsToMatch - the clauses that must be true for the returned content.
+     * @param sortInstructions - any non-default ordering of the results.
+     * @param filterInstructions - any extra filters on the results.
+     * @return all the matching content sorted by title, or null if the search provider must be used instead.
+     */
+    @Nullable
+    private List<Content> findInContentSnapshot(
+            final List<BooleanSearchClause> fieldsToMatch,
+            @Nullable final Map<String, Constants.SortOrder> sortInstructions,
+            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions
+    ) {
+        if (!this.useInMemoryContentStore || (null != sortInstructions && !sortInstructions.isEmpty())
+                || (null != filterInstructions && !filterInstructions.isEmpty())) {
+            return null;
+        }
+        boolean anyPositiveClause = false;
+        for (BooleanSearchClause clause : fieldsToMatch) {
+            if (!(TYPE_FIELDNAME.equals(clause.getField()) || TAGS_FIELDNAME.equals(clause.getField()))
+                    || null == clause.getOperator() || null == clause.getValues() || clause.getValues().isEmpty()
+                    || !clause.getValues().stream().allMatch(ContentSnapshot::isSingleWord)) {
+                return null;
+            }
+            anyPositiveClause |= !Constants.BooleanOperator.NOT.equals(clause.getOperator());
+        }
+        if (!anyPositiveClause) {
+            return null;
+        }
+
+        ContentSnapshot snapshot = this.getContentSnapshot(getCurrentContentSHA());
+        if (null == snapshot) {
+            return null;
+        }
+
+        Set<Content> matches = null;
+        Set<Content> excluded = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BooleanSearchClause clause : fieldsToMatch) {
+            Set<Content> clauseMatches = null;
+            for (String value : clause.getValues()) {
+                List<Content> valueMatches = TYPE_FIELDNAME.equals(clause.getField()) ? snapshot.getByType(value)
+                        : snapshot.getByTag(value);
+                if (Constants.BooleanOperator.NOT.equals(clause.getOperator())) {
+                    excluded.addAll(valueMatches);
+                } else if (null == clauseMatches) {
+                    clauseMatches = Collections.newSetFromMap(new IdentityHashMap<>());
+                    clauseMatches.addAll(valueMatches);
+                } else if (Constants.BooleanOperator.AND.equals(clause.getOperator())) {
+                    clauseMatches.retainAll(valueMatches);
+                } else {
+                    clauseMatches.addAll(valueMatches);
+                }
+            }
+            if (null == clauseMatches) {
+                continue;
+            } else if (null == matches) {
+                matches = clauseMatches;
+            } else {
+                matches.retainAll(clauseMatches);
+            }
+        }
+
+        return matches.stream()
+                .filter(content -> !excluded.contains(content))
+                .sorted(Comparator.comparing(Content::getTitle, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                        .thenComparing(Content::getId))
+                .collect(Collectors.toList());
+    }
+
+    private ResultsWrapper<String> findHitsByFieldNames(
+            final List<BooleanSearchClause> fieldsToMatch, final Integer startIndex, final Integer limit,
+            @Nullable final Map<String, Constants.SortOrder> sortInstructions,
+            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+            @Nullable final String[] sourceFields
+    ) throws ContentManagerException {
         final Map<String, Constants.SortOrder> newSortInstructions;
         if (null == sortInstructions || sortInstructions.isEmpty()) {
             newSortInstructions = Maps.newHashMap();
@@ -547,18 +725,8 @@ public class GitContentManager {
             newFilterInstructions.putAll(this.getBaseFilters());
         }
 
-        ResultsWrapper<String> searchHits = searchProvider.matchSearch(contentIndex, CONTENT_TYPE, fieldsToMatch,
-                startIndex, limit, newSortInstructions, newFilterInstructions);
-
-        // setup object mapper to use pre-configured deserializer module.
-        // Required to deal with type polymorphism
-        List<Content> result = mapper.mapFromStringListToContentList(searchHits.getResults());
-
-        List<ContentDTO> contentDTOResults = mapper.getDTOByDOList(result);
-
-        finalResults = new ResultsWrapper<>(contentDTOResults, searchHits.getTotalResults());
-
-        return finalResults;
+        return searchProvider.matchSearch(contentIndex, CONTENT_TYPE, fieldsToMatch, startIndex, limit,
+                newSortInstructions, newFilterInstructions, sourceFields);
     }
 
     public final ResultsWrapper<ContentDTO> findByFieldNamesRandomOrder(
@@ -733,21 +901,249 @@ public class GitContentManager {
     }
 
     public String getCurrentContentSHA() {
-        GetResponse shaResponse = contentShaCache.getIfPresent(contentIndex);
         try {
-            if (null == shaResponse) {
-                shaResponse =
-                        searchProvider.getById(
-                                contentIndex,
-                                Constants.CONTENT_INDEX_TYPE.METADATA.toString(),
-                                "general"
-                        );
-                contentShaCache.put(contentIndex, shaResponse);
-            }
+            // Concurrent callers share a single lookup rather than all querying the search provider at once:
+            GetResponse shaResponse = contentShaCache.get(CURRENT_CONTENT_SHA_KEY, () -> searchProvider.getById(
+                    contentIndex,
+                    Constants.CONTENT_INDEX_TYPE.METADATA.toString(),
+                    "general"
+            ));
             return (String) shaResponse.getSource().get("version");
-        } catch (SegueSearchException e) {
-            log.error("Failed to retrieve current content SHA from search provider", e);
-            return "unknown";
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.error("Failed to retrieve current content SHA from search provider", e.getCause());
+            return UNKNOWN_CONTENT_SHA;
+        }
+    }
+
+    /**
+     * Build the cache of deserialised content objects.
+     *
+     * Entries are weighed by an estimate of their size on the heap rather than relying on soft references, so that
+     * the cache does not get emptied whenever the garbage collector is under pressure. Concurrent requests for the
+     * same missing entry wait for a single load rather than each querying the search provider.
+     *
+     * @param maxSizeMb the approximate maximum size of the cache, in megabytes.
+     * @return the new cache.
+     */
+    private LoadingCache<ContentCacheKey, CachedContent> buildContentObjectCache(final long maxSizeMb) {
+        return CacheBuilder.newBuilder()
+                .recordStats()
+                .maximumWeight(maxSizeMb * BYTES_PER_KILOBYTE)
+                .weigher((ContentCacheKey key, CachedContent value) -> value.estimatedSizeInKb)
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public CachedContent load(final ContentCacheKey key) throws ContentManagerException {
+                        return loadContent(key);
+                    }
+                });
+    }
+
+    /**
+     * Get the cached content for a key, loading it from the search provider if necessary.
+     *
+     * Seeing a key for a new content SHA evicts everything cached for older versions of the content. Content is loaded
+     * from the version named by the key rather than whichever version is live by then, and anything a load for an older
+     * version inserts after that eviction is removed again once it has loaded.
+     *
+     * @param key the key describing the content to retrieve.
+     * @return the cached content, whose value may be null if no content was found.
+     * @throws ContentManagerException on failure to load the content.
+     */
+    private CachedContent getCachedContent(final ContentCacheKey key) throws ContentManagerException {
+        if (UNKNOWN_CONTENT_SHA.equals(key.contentSha)) {
+            // We would have no way of knowing when this went stale, so don't cache it:
+            return loadContent(key);
+        }
+
+        String previousContentSha = cachedContentSha.get();
+        if (!key.contentSha.equals(previousContentSha)
+                && cachedContentSha.compareAndSet(previousContentSha, key.contentSha)) {
+            cache.asMap().keySet().removeIf(cachedKey -> !key.contentSha.equals(cachedKey.contentSha));
+        }
+
+        try {
+            CachedContent cachedContent = cache.get(key);
+            if (!key.contentSha.equals(cachedContentSha.get())) {
+                cache.invalidate(key);
+            }
+            return cachedContent;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ContentManagerException) {
+                throw (ContentManagerException) e.getCause();
+            }
+            throw new ContentManagerException("Unable to load content into the cache", e);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Load and deserialise the content described by a cache key from the search provider.
+     *
+     * @param key the key describing the content to retrieve.
+     * @return the content, along with an estimate of its size.
+     * @throws ContentManagerException on failure to retrieve the content.
+     */
+    private CachedContent loadContent(final ContentCacheKey key) throws ContentManagerException {
+        ContentSnapshot snapshot = this.getContentSnapshot(key.contentSha);
+        if (null != snapshot) {
+            return loadContentFromSnapshot(snapshot, key);
+        }
+
+        String idFieldName = Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX;
+        // Query the version the key was made for, in case the live version changes part way through loading it:
+        String indexBase = UNKNOWN_CONTENT_SHA.equals(key.contentSha) ? contentIndex : key.contentSha;
+
+        switch (key.type) {
+            case BY_ID: {
+                List<String> searchHits = this.searchProvider.termSearch(indexBase, CONTENT_TYPE,
+                        key.id, idFieldName, 0, 1, this.getBaseFilters()).getResults();
+                List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits);
+
+                if (null == searchResults || searchResults.isEmpty()) {
+                    return new CachedContent(null, CachedContent.totalLength(searchHits));
+                }
+                return new CachedContent(searchResults.get(0), CachedContent.totalLength(searchHits));
+            }
+            case BY_ID_PREFIX: {
+                ResultsWrapper<String> searchHits = this.searchProvider.findByPrefix(indexBase, CONTENT_TYPE,
+                        idFieldName, key.idPrefix, key.startIndex, key.limit, this.getBaseFilters());
+
+                List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
+                return new CachedContent(new ResultsWrapper<>(mapper.getDTOByDOList(searchResults),
+                        searchHits.getTotalResults()), CachedContent.totalLength(searchHits.getResults()));
+            }
+            case MATCHING_IDS: {
+                Map<String, AbstractFilterInstruction> finalFilter = Maps.newHashMap();
+                finalFilter.put(idFieldName, new TermsFilterInstruction(key.ids));
+
+                if (getBaseFilters() != null) {
+                    finalFilter.putAll(getBaseFilters());
+                }
+
+                ResultsWrapper<String> searchHits = this.searchProvider.termSearch(indexBase, CONTENT_TYPE,
+                        null, null, key.startIndex, key.limit, finalFilter);
+
+                List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
+                return new CachedContent(new ResultsWrapper<>(mapper.getDTOByDOList(searchResults),
+                        searchHits.getTotalResults()), CachedContent.totalLength(searchHits.getResults()));
+            }
+            default:
+                throw new ContentManagerException("Unknown content cache key type: " + key.type);
+        }
+    }
+
+    /**
+     * Look up the content described by a cache key in an in-memory content snapshot.
+     *
+     * @param snapshot the snapshot of the content version named by the key.
+     * @param key the key describing the content to retrieve.
+     * @return the content, along with an estimate of its size.
+     */
+    private CachedContent loadContentFromSnapshot(final ContentSnapshot snapshot, final ContentCacheKey key) {
+        List<Content> matches;
+        switch (key.type) {
+            case BY_ID:
+                Content content = snapshot.getById(key.id);
+                return new CachedContent(content, null == content ? 0 : snapshot.getSourceLength(List.of(content)));
+            case BY_ID_PREFIX:
+                matches = snapshot.getByIdPrefix(key.idPrefix);
+                break;
+            default:
+                matches = snapshot.getByIds(key.ids);
+                break;
+        }
+
+        List<Content> page = getPage(matches, key.startIndex, key.limit);
+
+        return new CachedContent(new ResultsWrapper<>(mapper.getDTOByDOList(page), (long) matches.size()),
+                snapshot.getSourceLength(page));
+    }
+
+    /**
+     * @param matches all the content matching a lookup.
+     * @param startIndex the index of the first result wanted.
+     * @param limit the maximum number of results wanted, or -1 for all of them.
+     * @return the requested page of the matching content.
+     */
+    private static List<Content> getPage(final List<Content> matches, final int startIndex, final int limit) {
+        int fromIndex = Math.min(Math.max(startIndex, 0), matches.size());
+        int toIndex = limit < 0 ? matches.size() : (int) Math.min((long) fromIndex + limit, matches.size());
+        return matches.subList(fromIndex, toIndex);
+    }
+
+    /**
+     * Get the in-memory snapshot of a version of the content, if the in-memory content store is enabled.
+     *
+     * If the snapshot for this version is not ready yet, loading it is started in the background and null is returned
+     * so that the caller can use the search provider in the meantime. The new snapshot replaces the old one atomically
+     * once it has loaded.
+     *
+     * @param contentSha the version of the content required.
+     * @return the snapshot, or null if there is no snapshot of that version available.
+     */
+    @Nullable
+    private ContentSnapshot getContentSnapshot(final String contentSha) {
+        if (!this.useInMemoryContentStore || UNKNOWN_CONTENT_SHA.equals(contentSha)) {
+            return null;
+        }
+
+        ContentSnapshot snapshot = contentSnapshot.get();
+        if (null != snapshot && snapshot.getContentSha().equals(contentSha)) {
+            return snapshot;
+        }
+
+        if (System.currentTimeMillis() - lastContentSnapshotFailure > CONTENT_SNAPSHOT_RETRY_DELAY_MILLISECONDS
+                && contentSnapshotLoading.compareAndSet(false, true)) {
+            contentSnapshotLoader.submit(() -> this.loadContentSnapshot(contentSha));
+        }
+        return null;
+    }
+
+    /**
+     * Load every content object in a version of the content into a new in-memory snapshot.
+     *
+     * @param contentSha the version of the content to load.
+     */
+    private void loadContentSnapshot(final String contentSha) {
+        try {
+            long startTime = System.currentTimeMillis();
+            ObjectMapper objectMapper = mapper.getSharedContentObjectMapper();
+            List<Content> contents = new ArrayList<>();
+            List<Integer> sourceLengths = new ArrayList<>();
+
+            // Deserialise each page of sources as it arrives, rather than holding all the JSON at once:
+            searchProvider.forEachSourceInIndex(contentSha, CONTENT_TYPE, source -> {
+                Content content;
+                try {
+                    content = (Content) objectMapper.readValue(source, ContentBase.class);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (this.showOnlyPublishedContent && !Boolean.TRUE.equals(content.getPublished())) {
+                    return;
+                }
+                if (this.hideRegressionTestContent && null != content.getTags()
+                        && content.getTags().contains(REGRESSION_TEST_TAG)) {
+                    return;
+                }
+                contents.add(content);
+                sourceLengths.add(source.length());
+            });
+
+            ContentSnapshot snapshot = new ContentSnapshot(contentSha, contents, sourceLengths);
+            contentSnapshot.set(snapshot);
+            log.info(String.format("Loaded %d content objects for content SHA (%s) into memory in %dms.",
+                    snapshot.size(), contentSha, System.currentTimeMillis() - startTime));
+        } catch (SegueSearchException | RuntimeException e) {
+            lastContentSnapshotFailure = System.currentTimeMillis();
+            log.error(String.format("Failed to load content SHA (%s) into memory", contentSha), e);
+        } finally {
+            contentSnapshotLoading.set(false);
         }
     }
 
@@ -785,6 +1181,101 @@ public class GitContentManager {
         summary.setQuestionPartIds(questionPartIds);
     }
 
+    /**
+     * The kinds of lookup whose results are held in the content object cache.
+     */
+    private enum ContentCacheKeyType { BY_ID, BY_ID_PREFIX, MATCHING_IDS }
+
+    /**
+     * Key for the content object cache, identifying a content lookup within a specific version of the content.
+     *
+     * Only the field matching the type of lookup is set; the others are null.
+     */
+    private static final class ContentCacheKey {
+        private final String contentSha;
+        private final ContentCacheKeyType type;
+        private final String id;
+        private final String idPrefix;
+        private final List<String> ids;
+        private final int startIndex;
+        private final int limit;
+
+        private ContentCacheKey(final String contentSha, final ContentCacheKeyType type, @Nullable final String id,
+                                @Nullable final String idPrefix, @Nullable final List<String> ids,
+                                final int startIndex, final int limit) {
+            this.contentSha = contentSha;
+            this.type = type;
+            this.id = id;
+            this.idPrefix = idPrefix;
+            this.ids = ids;
+            this.startIndex = startIndex;
+            this.limit = limit;
+        }
+
+        static ContentCacheKey forId(final String contentSha, final String id) {
+            return new ContentCacheKey(contentSha, ContentCacheKeyType.BY_ID, id, null, null, 0, 1);
+        }
+
+        static ContentCacheKey forIdPrefix(final String contentSha, final String idPrefix, final int startIndex,
+                                           final int limit) {
+            return new ContentCacheKey(contentSha, ContentCacheKeyType.BY_ID_PREFIX, null, idPrefix, null, startIndex,
+                    limit);
+        }
+
+        static ContentCacheKey forIds(final String contentSha, final Collection<String> ids, final int startIndex,
+                                      final int limit) {
+            return new ContentCacheKey(contentSha, ContentCacheKeyType.MATCHING_IDS, null, null,
+                    Collections.unmodifiableList(new ArrayList<>(ids)), startIndex, limit);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ContentCacheKey)) {
+                return false;
+            }
+            ContentCacheKey other = (ContentCacheKey) o;
+            return startIndex == other.startIndex && limit == other.limit && type == other.type
+                    && Objects.equals(contentSha, other.contentSha) && Objects.equals(id, other.id)
+                    && Objects.equals(idPrefix, other.idPrefix) && Objects.equals(ids, other.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(contentSha, type, id, idPrefix, ids, startIndex, limit);
+        }
+    }
+
+    /**
+     * A value in the content object cache, along with an estimate of how much memory it occupies.
+     */
+    private static final class CachedContent {
+        private final Object value;
+        private final int estimatedSizeInKb;
+
+        CachedContent(@Nullable final Object value, final long sourceJsonLength) {
+            this.value = value;
+            long estimatedSize = sourceJsonLength * ESTIMATED_HEAP_BYTES_PER_JSON_CHARACTER / BYTES_PER_KILOBYTE;
+            this.estimatedSizeInKb = (int) Math.max(1, Math.min(Integer.MAX_VALUE, estimatedSize));
+        }
+
+        static long totalLength(@Nullable final List<String> sourceJson) {
+            long jsonLength = 0;
+            if (null != sourceJson) {
+                for (String json : sourceJson) {
+                    jsonLength += json.length();
+                }
+            }
+            return jsonLength;
+        }
+
+        Object getValue() {
+            return value;
+        }
+    }
+
     /**
      * An abstract representation of a search clause that can be interpreted as desired by different search providers.
      *
@@ -22,6 +22,7 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.NoHeadException;
 import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
@@ -41,7 +42,9 @@ import org.eclipse.jgit.transport.sshd.SshdSessionFactoryBuilder;
 import org.eclipse.jgit.transport.sshd.SshdSessionFactoryBuilder.ConfigStoreFactory;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +55,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -229,6 +233,73 @@ public class GitDb {
         return null;
     }
 
+    /**
+     * This method will configure a treewalk object that only visits the listed files within the git repository.
+     *
+     * Files are visited in the same order as by an unrestricted treewalk; any listed files which do not exist in the
+     * version requested are ignored.
+     *
+     * @param sha
+     *            - the version that the treewalk should be configured to search within.
+     * @param paths
+     *            - the full paths of the files to visit.
+     * @return A preconfigured treewalk object.
+     * @throws IOException
+     *             - if we cannot access the repo location.
+     */
+    public TreeWalk getTreeWalkForPaths(final String sha, final Collection<String> paths) throws IOException {
+        Validate.notBlank(sha);
+        Validate.notEmpty(paths);
+
+        ObjectId commitId = gitHandle.getRepository().resolve(sha);
+        if (null == commitId) {
+            log.error("Failed to buildGitIndex - Unable to locate resource with sha: " + sha);
+            return null;
+        }
+
+        RevWalk revWalk = new RevWalk(gitHandle.getRepository());
+        RevCommit commit = revWalk.parseCommit(commitId);
+
+        TreeWalk treeWalk = new TreeWalk(gitHandle.getRepository());
+        treeWalk.addTree(commit.getTree());
+        treeWalk.setRecursive(true);
+        treeWalk.setFilter(PathFilterGroup.createFromStrings(paths));
+        revWalk.dispose();
+
+        return treeWalk;
+    }
+
+    /**
+     * List the files which differ between two versions of the git repository.
+     *
+     * @param fromSha
+     *            - the older version to compare against.
+     * @param toSha
+     *            - the newer version.
+     * @return the list of added, modified, deleted, renamed or copied files.
+     * @throws IOException
+     *             - if we cannot access the repo location, or either version does not exist.
+     */
+    public List<DiffEntry> listChangedFiles(final String fromSha, final String toSha) throws IOException {
+        Validate.notBlank(fromSha);
+        Validate.notBlank(toSha);
+
+        Repository repository = gitHandle.getRepository();
+        ObjectId fromCommitId = repository.resolve(fromSha);
+        ObjectId toCommitId = repository.resolve(toSha);
+        if (null == fromCommitId || null == toCommitId) {
+            throw new IOException(String.format("Unable to locate versions %s and %s to compare.", fromSha, toSha));
+        }
+
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseCommit(fromCommitId).getTree());
+            treeWalk.addTree(revWalk.parseCommit(toCommitId).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            return DiffEntry.scan(treeWalk);
+        }
+    }
+
     /**
      * Get the git handle for the database.
      * 
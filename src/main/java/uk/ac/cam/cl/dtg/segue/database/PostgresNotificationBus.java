@@ -0,0 +1,194 @@
+package uk.ac.cam.cl.dtg.segue.database;
+
+import com.google.inject.Inject;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A simple publish/subscribe bus between API nodes, built on Postgres LISTEN/NOTIFY.
+ *
+ * Messages are published on pooled connections, but a single dedicated connection is held open to LISTEN on every
+ * channel with a subscriber; a daemon thread polls it and passes each notification to the local subscribers. Delivery
+ * is best-effort: notifications sent while the listening connection is being re-established are lost, so subscribers
+ * must only use the bus to speed up something which is eventually correct without it (e.g. invalidating a short-lived
+ * cache). Every node, including the publisher, receives each message.
+ */
+public class PostgresNotificationBus implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PostgresNotificationBus.class);
+
+    private static final int POLL_TIMEOUT_MILLISECONDS = 500;
+    private static final long MIN_RECONNECT_DELAY_MILLISECONDS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLISECONDS = 30000;
+    // Channel names are used unquoted in LISTEN, so restrict them to plain lower-case identifiers:
+    private static final Pattern VALID_CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private final PostgresSqlDb database;
+    private final Map<String, List<Consumer<String>>> subscribers;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    /**
+     * Create a notification bus.
+     *
+     * The listening connection is not opened until the first subscriber is added.
+     *
+     * @param database - the database to publish and listen through.
+     */
+    @Inject
+    public PostgresNotificationBus(final PostgresSqlDb database) {
+        this.database = database;
+        this.subscribers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Send a message to the subscribers of a channel on every node.
+     *
+     * @param channel - the channel to publish on.
+     * @param payload - the message, which Postgres limits to just under 8000 bytes.
+     * @throws SegueDatabaseException - if the message could not be sent.
+     */
+    public void publish(final String channel, final String payload) throws SegueDatabaseException {
+        validateChannelName(channel);
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT pg_notify(?, ?)")
+        ) {
+            pst.setString(1, channel);
+            pst.setString(2, payload);
+            pst.execute();
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception publishing notification", e);
+        }
+    }
+
+    /**
+     * Register a handler for messages published on a channel by any node.
+     *
+     * The handler is called on the listener thread, so must be quick and must not block.
+     *
+     * @param channel - the channel to listen on.
+     * @param handler - called with the payload of each message.
+     */
+    public synchronized void subscribe(final String channel, final Consumer<String> handler) {
+        validateChannelName(channel);
+        subscribers.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(handler);
+
+        if (null == listenerThread) {
+            running = true;
+            listenerThread = new Thread(this::listen, "postgres-notification-listener");
+            listenerThread.setDaemon(true);
+            listenerThread.start();
+        }
+    }
+
+    /**
+     * Stop listening for messages and close the listening connection.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (null != listenerThread) {
+            listenerThread.interrupt();
+            try {
+                listenerThread.join(POLL_TIMEOUT_MILLISECONDS * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            listenerThread = null;
+        }
+    }
+
+    /**
+     * Hold a dedicated connection open listening on every subscribed channel, reconnecting with a backoff if it fails.
+     */
+    private void listen() {
+        long reconnectDelay = MIN_RECONNECT_DELAY_MILLISECONDS;
+        while (running) {
+            try (Connection conn = database.getDedicatedConnection()) {
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                Set<String> listeningChannels = new HashSet<>();
+                log.info("Listening for notifications from other nodes.");
+
+                while (running) {
+                    // Pick up any channels subscribed to since the last poll:
+                    for (String channel : subscribers.keySet()) {
+                        if (!listeningChannels.contains(channel)) {
+                            try (Statement st = conn.createStatement()) {
+                                st.execute("LISTEN " + channel);
+                            }
+                            listeningChannels.add(channel);
+                        }
+                    }
+                    reconnectDelay = MIN_RECONNECT_DELAY_MILLISECONDS;
+
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLISECONDS);
+                    if (null != notifications) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getName(), notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn(String.format("Lost notification listener connection, reconnecting in %d ms.", reconnectDelay),
+                        e);
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLISECONDS);
+            }
+        }
+        log.info("Stopped listening for notifications from other nodes.");
+    }
+
+    /**
+     * Pass a message to each local subscriber of its channel, isolating them from one another's failures.
+     *
+     * @param channel - the channel the message was published on.
+     * @param payload - the message.
+     */
+    private void dispatch(final String channel, final String payload) {
+        List<Consumer<String>> handlers = subscribers.get(channel);
+        if (null == handlers) {
+            return;
+        }
+        for (Consumer<String> handler : handlers) {
+            try {
+                handler.accept(payload);
+            } catch (RuntimeException e) {
+                log.error(String.format("Error handling notification on channel '%s'.", channel), e);
+            }
+        }
+    }
+
+    /**
+     * @param channel - the channel name to check.
+     */
+    private static void validateChannelName(final String channel) {
+        if (null == channel || !VALID_CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException(String.format("Invalid notification channel name '%s'.", channel));
+        }
+    }
+}
@@ -15,23 +15,44 @@
  */
 package uk.ac.cam.cl.dtg.segue.database;
 
-import com.google.inject.Inject;
+import io.prometheus.client.Histogram;
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.io.PrintWriter;
+import java.io.Writer;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
 
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.DATABASE_CONNECTION_WAIT_HISTOGRAM;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.DATABASE_POOL_METRICS_COLLECTOR;
+
 /**
  * PostgresSqlDb adapter.
  *
  */
 public class PostgresSqlDb implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PostgresSqlDb.class);
+
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 30;
+    public static final int DEFAULT_MIN_IDLE_CONNECTIONS = 10;
+    public static final int DEFAULT_MAX_WAIT_MILLISECONDS = 10000;
+    public static final int DEFAULT_IDLE_VALIDATION_INTERVAL_SECONDS = 30;
+    public static final int DEFAULT_MIN_EVICTABLE_IDLE_SECONDS = 30;
+    public static final int DEFAULT_LEAK_THRESHOLD_SECONDS = 60;
+
+    private static final String POOL_NAME = "segue";
 
     private final BasicDataSource dataSource;
+    private final String databaseUrl;
+    private final String username;
+    private final String password;
 
     /**
      * Connect to a given database.
@@ -43,25 +64,98 @@ public class PostgresSqlDb implements Closeable {
      * @param password
      *            - the password to use
      */
-    @Inject
     public PostgresSqlDb(final String databaseUrl, final String username, final String password) {
+        this(databaseUrl, username, password, DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MIN_IDLE_CONNECTIONS,
+                DEFAULT_MAX_WAIT_MILLISECONDS, DEFAULT_IDLE_VALIDATION_INTERVAL_SECONDS,
+                DEFAULT_MIN_EVICTABLE_IDLE_SECONDS, DEFAULT_LEAK_THRESHOLD_SECONDS, false);
+    }
+
+    /**
+     * Connect to a given database, with a configured connection pool.
+     *
+     * Connections are validated while idle in the pool rather than each time they are borrowed, so that a busy
+     * request does not pay for an extra round trip to the database. When the pool is close to exhausted, a connection
+     * held for longer than the leak threshold is assumed to have been leaked and is reclaimed; with leak tracing
+     * enabled, the call site which borrowed it is logged too, at the cost of capturing a stack trace on every borrow.
+     * Connections are never reclaimed by the background evictor, so that long-running work such as the scheduled
+     * database scripts is not cut off part way through.
+     *
+     * @param databaseUrl
+     *            - the location of the database
+     * @param username
+     *            - the username to connect with
+     * @param password
+     *            - the password to use
+     * @param maxTotalConnections
+     *            - the maximum number of connections open at once.
+     * @param minIdleConnections
+     *            - the number of idle connections to keep open, ready to be borrowed.
+     * @param maxWaitMilliseconds
+     *            - how long to wait for a connection when all are in use.
+     * @param idleValidationIntervalSeconds
+     *            - how often to check and evict idle connections.
+     * @param minEvictableIdleSeconds
+     *            - how long a connection must be idle before it may be evicted.
+     * @param leakThresholdSeconds
+     *            - how long a connection may be held before it is reclaimed.
+     * @param leakTracing
+     *            - whether to log where reclaimed connections were borrowed.
+     */
+    public PostgresSqlDb(final String databaseUrl, final String username, final String password,
+                         final int maxTotalConnections, final int minIdleConnections, final int maxWaitMilliseconds,
+                         final int idleValidationIntervalSeconds, final int minEvictableIdleSeconds,
+                         final int leakThresholdSeconds, final boolean leakTracing) {
+        this.databaseUrl = databaseUrl;
+        this.username = username;
+        this.password = password;
 
         dataSource = new BasicDataSource();
         dataSource.setDriverClassName("org.postgresql.Driver");
         dataSource.setUrl(databaseUrl);
         dataSource.setUsername(username);
         dataSource.setPassword(password);
-        dataSource.setTestOnBorrow(true);
-        dataSource.setValidationQuery("SELECT 1");
         dataSource.setAutoCommitOnReturn(true);
-        dataSource.setMaxWait(Duration.ofSeconds(10));
-        dataSource.setMaxTotal(30);
-        dataSource.setInitialSize(10);
-        dataSource.setMinIdle(10);
-        dataSource.setMinEvictableIdle(Duration.ofSeconds(30));
+        dataSource.setMaxWait(Duration.ofMillis(maxWaitMilliseconds));
+        dataSource.setMaxTotal(maxTotalConnections);
+        dataSource.setInitialSize(Math.min(minIdleConnections, maxTotalConnections));
+        dataSource.setMinIdle(minIdleConnections);
+
+        // With no validation query set, the driver's Connection.isValid is used, which is cheaper than "SELECT 1":
+        dataSource.setTestOnBorrow(false);
+        dataSource.setTestWhileIdle(true);
+        dataSource.setValidationQueryTimeout(Duration.ofSeconds(5));
+        dataSource.setMinEvictableIdle(Duration.ofSeconds(minEvictableIdleSeconds));
+        dataSource.setDurationBetweenEvictionRuns(Duration.ofSeconds(idleValidationIntervalSeconds));
+
         dataSource.setRemoveAbandonedOnBorrow(true);
-        dataSource.setRemoveAbandonedTimeout(Duration.ofSeconds(60));
-        dataSource.setDurationBetweenEvictionRuns(Duration.ofSeconds(30));
+        dataSource.setRemoveAbandonedTimeout(Duration.ofSeconds(leakThresholdSeconds));
+        if (leakTracing) {
+            dataSource.setLogAbandoned(true);
+            dataSource.setAbandonedLogWriter(new PrintWriter(new Writer() {
+                private final StringBuilder buffer = new StringBuilder();
+
+                @Override
+                public synchronized void write(final char[] chars, final int offset, final int length) {
+                    buffer.append(chars, offset, length);
+                }
+
+                @Override
+                public synchronized void flush() {
+                    if (buffer.length() > 0) {
+                        log.warn("Reclaimed database connection held for over " + leakThresholdSeconds
+                                + " seconds: " + buffer);
+                        buffer.setLength(0);
+                    }
+                }
+
+                @Override
+                public void close() {
+                    flush();
+                }
+            }, true));
+        }
+
+        DATABASE_POOL_METRICS_COLLECTOR.addDataSource(POOL_NAME, dataSource);
     }
 
     /**
@@ -71,12 +165,31 @@ public class PostgresSqlDb implements Closeable {
      * @throws SQLException
      */
     public Connection getDatabaseConnection() throws SQLException {
-        return dataSource.getConnection();
+        Histogram.Timer borrowTimer = DATABASE_CONNECTION_WAIT_HISTOGRAM.labels(POOL_NAME).startTimer();
+        try {
+            return dataSource.getConnection();
+        } finally {
+            borrowTimer.observeDuration();
+        }
+    }
+
+    /**
+     * Open a new connection to the database which is not managed by the connection pool.
+     *
+     * This is intended for long-lived connections (e.g. those waiting on LISTEN) which would otherwise be treated as
+     * abandoned by the pool. The caller is responsible for closing it.
+     *
+     * @return a new database connection.
+     * @throws SQLException
+     */
+    public Connection getDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(databaseUrl, username, password);
     }
 
     @Override
     public void close() {
 
+        DATABASE_POOL_METRICS_COLLECTOR.removeDataSource(POOL_NAME, dataSource);
         try {
             this.dataSource.close();
         } catch (SQLException e) {
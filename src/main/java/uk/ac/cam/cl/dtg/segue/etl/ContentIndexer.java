@@ -7,14 +7,18 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FilenameUtils;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.IsaacCard;
@@ -53,16 +57,25 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Maps.immutableEntry;
@@ -85,6 +98,16 @@ public class ContentIndexer {
     private static final int MEDIA_FILE_SIZE_LIMIT = 300 * 1024; // Bytes
     private static final int NANOSECONDS_IN_A_MILLISECOND = 1000000;
 
+    private static final int INDEXER_WORKER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_IN_FLIGHT_CONTENT_FILES = INDEXER_WORKER_THREADS * 8;
+    private static final int BULK_INDEX_BATCH_MAX_DOCUMENTS = 2000;
+    private static final int BULK_INDEX_BATCH_MAX_CHARACTERS = 20 * 1024 * 1024;
+
+    private static final int MAX_INCREMENTAL_INDEX_FILES = 500;
+    private static final int MAX_INCREMENTAL_INDEX_PATH_LENGTH = 256;
+    private static final String NO_CONTENT_ERRORS_SOURCE_FILE = "\uD83D\uDE0E";
+    private static final String DUPLICATE_ID_PROBLEM_PREFIX = "Index failure - Duplicate ID";
+
     @Inject
     public ContentIndexer(GitDb database, ElasticSearchIndexer es, ContentMapper mapper) {
         this.database = database;
@@ -94,6 +117,20 @@ public class ContentIndexer {
 
 
     void loadAndIndexContent(String version) throws Exception, VersionLockedException {
+        this.loadAndIndexContent(version, null);
+    }
+
+    /**
+     * Index a version of the content, if it has not already been indexed.
+     *
+     * If a previous version has already been indexed and only a few content files have changed since then, the new
+     * indices are built by copying the previous version's indices and patching in just the changed content. Otherwise,
+     * or if that fails, the indices are rebuilt from scratch.
+     *
+     * @param version - the content sha to index.
+     * @param previousVersion - an already indexed content sha to build on, if any.
+     */
+    void loadAndIndexContent(String version, @Nullable String previousVersion) throws Exception, VersionLockedException {
 
         // Take version lock or fail
         Boolean alreadyLocked = versionLocks.putIfAbsent(version, true);
@@ -116,6 +153,21 @@ public class ContentIndexer {
                 return;
             }
 
+            if (null != previousVersion && !previousVersion.equals(version)
+                    && allContentTypesAreIndexedForVersion(previousVersion)) {
+                long startTime = System.nanoTime();
+                try {
+                    if (buildIncrementalIndex(previousVersion, version) && allContentTypesAreIndexedForVersion(version)) {
+                        log.info("Finished incrementally indexing version " + version + " from " + previousVersion
+                                + ", took: " + ((System.nanoTime() - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
+                        return;
+                    }
+                } catch (Exception e) {
+                    log.warn("Exception during incremental indexing of version " + version
+                            + ", falling back to a full rebuild.", e);
+                }
+            }
+
             log.info(String.format(
                     "Rebuilding content index as sha (%s) does not exist in search provider.",
                     version));
@@ -136,7 +188,8 @@ public class ContentIndexer {
             log.info("Beginning to record content errors");
 
             startTime = System.nanoTime();
-            recordContentErrors(version, contentCache, indexProblemCache);
+            recordContentErrors(version, contentCache, indexProblemCache, Collections.emptyMap());
+            registerNoContentErrorsIfNoneFound(indexProblemCache);
             endTime = System.nanoTime();
 
             log.info("Finished recording content errors, took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
@@ -181,6 +234,10 @@ public class ContentIndexer {
      *
      * Currently it only looks for json files in the repository.
      *
+     * The git tree is walked on the calling thread, but parsing and augmenting each file is handed off to a pool of
+     * worker threads. At most MAX_IN_FLIGHT_CONTENT_FILES files are outstanding at once, and results are registered
+     * in the order the files were found so that duplicate ID handling is the same as for a serial walk.
+     *
      * @param sha
      *            - the version to index.
      * @return the map representing all indexed content.
@@ -194,12 +251,32 @@ public class ContentIndexer {
                                                    final Map<String, String> publishedUnits,
                                                    final Map<Content, List<String>> indexProblemCache)
             throws ContentManagerException {
+        this.buildGitContentIndex(sha, includeUnpublished, null, contentCache, tagsList, allUnits, publishedUnits,
+                indexProblemCache);
+    }
+
+    /**
+     * As above, but optionally only looking at a subset of the json files in the repository.
+     *
+     * @param onlyPaths
+     *            - the paths of the files to index, or null to index every json file.
+     */
+    private synchronized void buildGitContentIndex(final String sha,
+                                                   final boolean includeUnpublished,
+                                                   @Nullable final Collection<String> onlyPaths,
+                                                   final Map<String, Content> contentCache,
+                                                   final Set<String> tagsList,
+                                                   final Map<String, String> allUnits,
+                                                   final Map<String, String> publishedUnits,
+                                                   final Map<Content, List<String>> indexProblemCache)
+            throws ContentManagerException {
 
         if (null == sha) {
             throw new ContentManagerException("SHA is null. Cannot index.");
         }
 
         Repository repository = database.getGitRepository();
+        ExecutorService workerPool = newIndexerWorkerPool();
 
         try {
             ObjectId commitId = repository.resolve(sha);
@@ -209,139 +286,34 @@ public class ContentIndexer {
                         + sha);
             }
 
-            TreeWalk treeWalk = database.getTreeWalk(sha, ".json");
+            TreeWalk treeWalk = null == onlyPaths ? database.getTreeWalk(sha, ".json") : database.getTreeWalkForPaths(sha, onlyPaths);
             log.info("Populating git content cache based on sha " + sha + " ...");
 
+            Deque<Future<ParsedContentFile>> inFlight = new ArrayDeque<>();
+
             // Traverse the git repository looking for the .json files
             while (treeWalk.next()) {
                 ByteArrayOutputStream out = new ByteArrayOutputStream();
                 ObjectLoader loader = repository.open(treeWalk.getObjectId(0));
                 loader.copyTo(out);
 
-                // setup object mapper to use preconfigured deserializer
-                // module. Required to deal with type polymorphism
-                ObjectMapper objectMapper = mapper.getSharedContentObjectMapper();
-
-                Content content;
-                try {
-                    content = (Content) objectMapper.readValue(out.toString(), ContentBase.class);
+                final String path = treeWalk.getPathString();
+                final String json = out.toString();
+                inFlight.add(workerPool.submit(
+                        () -> this.parseContentFile(path, json, includeUnpublished, indexProblemCache)));
 
-                    // check if we only want to index published content
-                    boolean contentPublished = content.getPublished() != null && content.getPublished();
-                    if (!includeUnpublished && !contentPublished) {
-                        log.debug("Skipping unpublished content: " + content.getId());
-                        continue;
-                    }
-
-                    content = this.augmentChildContent(content, treeWalk.getPathString(), null, content.getPublished());
-
-                    if (null != content) {
-                        // Walk the content for site-wide searchable fields
-                        StringBuilder prioritisedContentCollector = new StringBuilder();
-                        StringBuilder contentCollector = new StringBuilder();
-                        this.collateSearchableContent(content, prioritisedContentCollector, contentCollector);
-                        content.setPrioritisedSearchableContent(prioritisedContentCollector.toString());
-                        content.setSearchableContent(contentCollector.toString());
-
-                        // add children (and parent) from flattened Set to
-                        // cache if they have ids
-                        for (Content flattenedContent : this.flattenContentObjects(content)) {
-                            if (flattenedContent.getId() == null) {
-                                continue;
-                            }
-
-                            // Prevents ETL indexing of quizzes that contain anything that is not an IsaacQuizSection
-                            // in the top-level children array.
-                            // NOTE: I'm not sure this is the right place for this but I couldn't find a better one.
-                            // This also seems to be the only time we can prevent a file from being indexed entirely.
-                            if (flattenedContent instanceof IsaacQuiz) {
-                                List<ContentBase> children = flattenedContent.getChildren();
-                                if (children.stream().anyMatch(c -> !(c instanceof IsaacQuizSection))) {
-                                    log.debug("IsaacQuiz (" + flattenedContent.getId()
-                                           + ") contains top-level non-quiz sections. Skipping.");
-                                    this.registerContentProblem(flattenedContent, "Index failure - Invalid "
-                                           + "content type among quiz sections. Quizzes can only contain quiz sections "
-                                           + "in the top-level children array.", indexProblemCache);
-                                    continue;
-                                }
-                            }
-
-                            if (flattenedContent.getId().length() > 512) {
-                                log.debug("Content ID too long: " + flattenedContent.getId());
-                                this.registerContentProblem(flattenedContent, "Content ID too long: " + flattenedContent.getId(), indexProblemCache);
-                                continue;
-                            }
-
-                            if (flattenedContent.getId().contains(".")) {
-                                // Otherwise, duplicate IDs with different content,
-                                // therefore log an error
-                                log.debug("Resource with invalid ID (" + content.getId()
-                                        + ") detected in cache. Skipping " + treeWalk.getPathString());
-
-                                this.registerContentProblem(flattenedContent, "Index failure - Invalid ID "
-                                        + flattenedContent.getId() + " found in file " + treeWalk.getPathString()
-                                        + ". Must not contain restricted characters.", indexProblemCache);
-                                continue;
-                            }
-
-                            // check if we have seen this key before if
-                            // we have then we don't want to add it
-                            // again
-                            if (!contentCache.containsKey(flattenedContent.getId())) {
-                                // It must be new so we can add it
-                                log.debug("Loading into cache: " + flattenedContent.getId() + "("
-                                        + flattenedContent.getType() + ")" + " from " + treeWalk.getPathString());
-                                contentCache.put(flattenedContent.getId(), flattenedContent);
-                                registerTags(flattenedContent.getTags(), tagsList);
-
-                                // If this is a numeric question, extract any
-                                // units from its answers.
-
-                                if (flattenedContent instanceof IsaacNumericQuestion) {
-                                    registerUnits((IsaacNumericQuestion) flattenedContent, allUnits, publishedUnits);
-                                }
-
-                                continue; // our work here is done
-                            }
-
-                            // shaCache contains key already, compare the
-                            // content
-                            if (contentCache.get(flattenedContent.getId()).equals(flattenedContent)) {
-                                // content is the same therefore it is just
-                                // reuse of a content object so that is
-                                // fine.
-                                log.debug("Resource (" + content.getId() + ") already seen in cache. Skipping "
-                                        + treeWalk.getPathString());
-                                continue;
-                            }
-
-                            // Otherwise, duplicate IDs with different content,
-                            // therefore log an error
-                            log.debug("Resource with duplicate ID (" + content.getId()
-                                    + ") detected in cache. Skipping " + treeWalk.getPathString());
-                            this.registerContentProblem(flattenedContent, String.format(
-                                    "Index failure - Duplicate ID (%s) found in files (%s) and (%s): only one will be available.",
-                                    content.getId(), treeWalk.getPathString(), contentCache.get(flattenedContent.getId()).getCanonicalSourceFile()),
-                                indexProblemCache);
-                        }
-                    }
-                } catch (JsonMappingException e) {
-                    log.debug(String.format("Unable to parse the json file found %s as a content object. "
-                            + "Skipping file due to error: \n %s", treeWalk.getPathString(), e.getMessage()));
-                    Content dummyContent = new Content();
-                    dummyContent.setCanonicalSourceFile(treeWalk.getPathString());
-                    this.registerContentProblem(dummyContent, "Index failure - Unable to parse json file found - "
-                            + treeWalk.getPathString() + ". The following error occurred: " + e.getMessage(), indexProblemCache);
-                } catch (IOException e) {
-                    log.error("IOException while trying to parse " + treeWalk.getPathString(), e);
-                    Content dummyContent = new Content();
-                    dummyContent.setCanonicalSourceFile(treeWalk.getPathString());
-                    this.registerContentProblem(dummyContent,
-                            "Index failure - Unable to read the json file found - " + treeWalk.getPathString()
-                                    + ". The following error occurred: " + e.getMessage(), indexProblemCache);
+                // Apply backpressure: don't read further ahead than the workers can keep up with.
+                if (inFlight.size() >= MAX_IN_FLIGHT_CONTENT_FILES) {
+                    this.registerParsedContentFile(awaitIndexerResult(inFlight.poll()), contentCache, tagsList,
+                            allUnits, publishedUnits, indexProblemCache);
                 }
             }
 
+            while (!inFlight.isEmpty()) {
+                this.registerParsedContentFile(awaitIndexerResult(inFlight.poll()), contentCache, tagsList,
+                        allUnits, publishedUnits, indexProblemCache);
+            }
+
             repository.close();
             log.debug("Tags available " + tagsList);
             log.debug("All units: " + allUnits);
@@ -350,6 +322,170 @@ public class ContentIndexer {
         } catch (IOException e) {
             log.error("IOException while trying to access git repository. ", e);
             throw new ContentManagerException("Unable to index content, due to an IOException.");
+        } finally {
+            workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parse a single json file from the content repository and augment it ready for indexing.
+     *
+     * This is run on the indexer worker pool, so must not touch any of the shared index state other than via
+     * registerContentProblem.
+     *
+     * @param path - the path of the file in the repository.
+     * @param json - the raw file contents.
+     * @param includeUnpublished - whether to keep unpublished content.
+     * @param indexProblemCache - where to record any problems parsing the file.
+     * @return the parsed file, with a null content object if it was skipped or could not be parsed.
+     */
+    private ParsedContentFile parseContentFile(final String path, final String json, final boolean includeUnpublished,
+                                               final Map<Content, List<String>> indexProblemCache) {
+        // setup object mapper to use preconfigured deserializer
+        // module. Required to deal with type polymorphism
+        ObjectMapper objectMapper = mapper.getSharedContentObjectMapper();
+
+        try {
+            Content content = (Content) objectMapper.readValue(json, ContentBase.class);
+
+            // check if we only want to index published content
+            boolean contentPublished = content.getPublished() != null && content.getPublished();
+            if (!includeUnpublished && !contentPublished) {
+                log.debug("Skipping unpublished content: " + content.getId());
+                return new ParsedContentFile(path, null, Collections.emptySet());
+            }
+
+            content = this.augmentChildContent(content, path, null, content.getPublished());
+            if (null == content) {
+                return new ParsedContentFile(path, null, Collections.emptySet());
+            }
+
+            // Walk the content for site-wide searchable fields
+            StringBuilder prioritisedContentCollector = new StringBuilder();
+            StringBuilder contentCollector = new StringBuilder();
+            this.collateSearchableContent(content, prioritisedContentCollector, contentCollector);
+            content.setPrioritisedSearchableContent(prioritisedContentCollector.toString());
+            content.setSearchableContent(contentCollector.toString());
+
+            return new ParsedContentFile(path, content, this.flattenContentObjects(content));
+
+        } catch (JsonMappingException e) {
+            log.debug(String.format("Unable to parse the json file found %s as a content object. "
+                    + "Skipping file due to error: \n %s", path, e.getMessage()));
+            Content dummyContent = new Content();
+            dummyContent.setCanonicalSourceFile(path);
+            this.registerContentProblem(dummyContent, "Index failure - Unable to parse json file found - "
+                    + path + ". The following error occurred: " + e.getMessage(), indexProblemCache);
+        } catch (IOException e) {
+            log.error("IOException while trying to parse " + path, e);
+            Content dummyContent = new Content();
+            dummyContent.setCanonicalSourceFile(path);
+            this.registerContentProblem(dummyContent,
+                    "Index failure - Unable to read the json file found - " + path
+                            + ". The following error occurred: " + e.getMessage(), indexProblemCache);
+        }
+        return new ParsedContentFile(path, null, Collections.emptySet());
+    }
+
+    /**
+     * Validate the flattened content objects of a parsed file and add them to the content cache.
+     *
+     * This must be called in the order files were found in the repository, on a single thread.
+     *
+     * @param parsedFile - the result of parsing a single file.
+     */
+    private void registerParsedContentFile(final ParsedContentFile parsedFile,
+                                           final Map<String, Content> contentCache,
+                                           final Set<String> tagsList,
+                                           final Map<String, String> allUnits,
+                                           final Map<String, String> publishedUnits,
+                                           final Map<Content, List<String>> indexProblemCache) {
+        Content content = parsedFile.content;
+        if (null == content) {
+            return;
+        }
+        String path = parsedFile.path;
+
+        // add children (and parent) from flattened Set to
+        // cache if they have ids
+        for (Content flattenedContent : parsedFile.flattenedContent) {
+            if (flattenedContent.getId() == null) {
+                continue;
+            }
+
+            // Prevents ETL indexing of quizzes that contain anything that is not an IsaacQuizSection
+            // in the top-level children array.
+            // NOTE: I'm not sure this is the right place for this but I couldn't find a better one.
+            // This also seems to be the only time we can prevent a file from being indexed entirely.
+            if (flattenedContent instanceof IsaacQuiz) {
+                List<ContentBase> children = flattenedContent.getChildren();
+                if (children.stream().anyMatch(c -> !(c instanceof IsaacQuizSection))) {
+                    log.debug("IsaacQuiz (" + flattenedContent.getId()
+                           + ") contains top-level non-quiz sections. Skipping.");
+                    this.registerContentProblem(flattenedContent, "Index failure - Invalid "
+                           + "content type among quiz sections. Quizzes can only contain quiz sections "
+                           + "in the top-level children array.", indexProblemCache);
+                    continue;
+                }
+            }
+
+            if (flattenedContent.getId().length() > 512) {
+                log.debug("Content ID too long: " + flattenedContent.getId());
+                this.registerContentProblem(flattenedContent, "Content ID too long: " + flattenedContent.getId(), indexProblemCache);
+                continue;
+            }
+
+            if (flattenedContent.getId().contains(".")) {
+                // Otherwise, duplicate IDs with different content,
+                // therefore log an error
+                log.debug("Resource with invalid ID (" + content.getId()
+                        + ") detected in cache. Skipping " + path);
+
+                this.registerContentProblem(flattenedContent, "Index failure - Invalid ID "
+                        + flattenedContent.getId() + " found in file " + path
+                        + ". Must not contain restricted characters.", indexProblemCache);
+                continue;
+            }
+
+            // check if we have seen this key before if
+            // we have then we don't want to add it
+            // again
+            if (!contentCache.containsKey(flattenedContent.getId())) {
+                // It must be new so we can add it
+                log.debug("Loading into cache: " + flattenedContent.getId() + "("
+                        + flattenedContent.getType() + ")" + " from " + path);
+                contentCache.put(flattenedContent.getId(), flattenedContent);
+                registerTags(flattenedContent.getTags(), tagsList);
+
+                // If this is a numeric question, extract any
+                // units from its answers.
+
+                if (flattenedContent instanceof IsaacNumericQuestion) {
+                    registerUnits((IsaacNumericQuestion) flattenedContent, allUnits, publishedUnits);
+                }
+
+                continue; // our work here is done
+            }
+
+            // shaCache contains key already, compare the
+            // content
+            if (contentCache.get(flattenedContent.getId()).equals(flattenedContent)) {
+                // content is the same therefore it is just
+                // reuse of a content object so that is
+                // fine.
+                log.debug("Resource (" + content.getId() + ") already seen in cache. Skipping "
+                        + path);
+                continue;
+            }
+
+            // Otherwise, duplicate IDs with different content,
+            // therefore log an error
+            log.debug("Resource with duplicate ID (" + content.getId()
+                    + ") detected in cache. Skipping " + path);
+            this.registerContentProblem(flattenedContent, String.format(
+                    DUPLICATE_ID_PROBLEM_PREFIX + " (%s) found in files (%s) and (%s): only one will be available.",
+                    content.getId(), path, contentCache.get(flattenedContent.getId()).getCanonicalSourceFile()),
+                indexProblemCache);
         }
     }
 
@@ -578,20 +714,24 @@ public class ContentIndexer {
      * @param message
      *            - Error message to associate with the problem file / content.
      */
-    private synchronized void registerContentProblem(final Content c, final String message, Map<Content, List<String>> indexProblemCache) {
+    private void registerContentProblem(final Content c, final String message, Map<Content, List<String>> indexProblemCache) {
         Objects.requireNonNull(c);
 
-        // try and make sure each dummy content object has a title
-        if (c.getTitle() == null) {
-            c.setTitle(Paths.get(c.getCanonicalSourceFile()).getFileName().toString());
-        }
+        // Lock on the problem cache rather than the indexer, as this is called from the indexer worker threads
+        // whilst the indexing thread holds the indexer lock.
+        synchronized (indexProblemCache) {
+            // try and make sure each dummy content object has a title
+            if (c.getTitle() == null) {
+                c.setTitle(Paths.get(c.getCanonicalSourceFile()).getFileName().toString());
+            }
 
-        if (!indexProblemCache.containsKey(c)) {
-            indexProblemCache.put(c, new ArrayList<>());
-        }
+            if (!indexProblemCache.containsKey(c)) {
+                indexProblemCache.put(c, new ArrayList<>());
+            }
 
-        log.debug(message);
-        indexProblemCache.get(c).add(message);//.replace("_", "\\_"));
+            log.debug(message);
+            indexProblemCache.get(c).add(message);//.replace("_", "\\_"));
+        }
     }
 
     /**
@@ -680,19 +820,40 @@ public class ContentIndexer {
 
         // setup object mapper to use pre-configured deserializer module.
         // Required to deal with type polymorphism
-        List<Map.Entry<String, String>> contentToIndex = Lists.newArrayList();
         ObjectMapper objectMapper = mapper.generateNewPreconfiguredContentMapper();
-        for (Content content : gitCache.values()) {
-            try {
-                contentToIndex.add(immutableEntry(content.getId(), objectMapper.writeValueAsString(content)));
-            } catch (JsonProcessingException e) {
-                log.error("Unable to serialize content object: " + content.getId()
-                        + " for indexing with the search provider.", e);
-                this.registerContentProblem(content, "Search Index Error: " + content.getId()
-                        + content.getCanonicalSourceFile() + " Exception: " + e.toString(), indexProblemCache);
-            }
+
+        long startTime, endTime;
+
+        // Content is indexed first, since serialisation failures are recorded as content errors.
+        try {
+            startTime = System.nanoTime();
+            this.bulkIndexContentInBatches(sha, gitCache.values(), objectMapper, indexProblemCache);
+            endTime = System.nanoTime();
+            log.info("Bulk indexing content took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
+            log.info("Search index request sent for: " + sha);
+        } catch (SegueSearchException e) {
+            log.error("Error whilst trying to perform bulk index operation.", e);
+            throw new Exception("Error whilst trying to perform bulk index operation.", e);
+        } catch (ActionRequestValidationException e) {
+            log.error("Error validating content during index", e);
+            throw new Exception("Error validating content during index", e);
         }
 
+        this.indexContentMetadata(sha, objectMapper, tagsList, allUnits, publishedUnits, indexProblemCache);
+    }
+
+    /**
+     * Send the version metadata, tags, units and content errors for a version to the search provider.
+     *
+     * @param sha - the version being indexed.
+     * @param objectMapper - the content object mapper to serialise with.
+     */
+    private void indexContentMetadata(final String sha,
+                                      final ObjectMapper objectMapper,
+                                      final Set<String> tagsList,
+                                      final Map<String, String> allUnits,
+                                      final Map<String, String> publishedUnits,
+                                      final Map<Content, List<String>> indexProblemCache) throws Exception {
         long startTime, endTime;
 
         try {
@@ -745,23 +906,334 @@ public class ContentIndexer {
             log.error("Unable to index sha, tags, units or content errors.");
             throw new Exception("Unable to index sha, tags, units or content errors.", e);
         }
+    }
 
+    /**
+     * Attempt to build the indices for a version by copying the indices of an already indexed version, leaving out
+     * the content from files which have changed, and then indexing just those files from the new version.
+     *
+     * As well as the changed files, any unchanged files whose content errors may depend on them are reprocessed: files
+     * which reference content IDs defined in the changed files, files which define the same IDs, and files which
+     * already have duplicate ID errors. Other content referenced by reprocessed files is looked up in the previous
+     * version's index.
+     *
+     * Tags and units are carried over from the previous version and added to. If the reprocessed files used to
+     * provide a tag or unit which they no longer do, it may now be unused, so a full rebuild is needed instead.
+     *
+     * @param previousVersion - the already indexed version to build on.
+     * @param sha - the version to index.
+     * @return true if the version was indexed, false if too much has changed and a full rebuild is needed instead.
+     * @throws Exception - if indexing fails part way through.
+     */
+    private synchronized boolean buildIncrementalIndex(final String previousVersion, final String sha) throws Exception {
+        Set<String> changedPaths = new HashSet<>();
+        for (DiffEntry change : database.listChangedFiles(previousVersion, sha)) {
+            for (String path : Arrays.asList(change.getOldPath(), change.getNewPath())) {
+                if (DiffEntry.DEV_NULL.equals(path)) {
+                    continue;
+                }
+                if (!path.endsWith(".json")) {
+                    // Media and other files can affect the content errors of any content referencing them.
+                    log.info("Non-content file " + path + " changed since " + previousVersion
+                            + ", incremental indexing not possible.");
+                    return false;
+                }
+                changedPaths.add(path);
+            }
+        }
+        log.info(String.format("%s content files changed between %s and %s.", changedPaths.size(), previousVersion, sha));
+
+        // Files with duplicate ID errors depend on which other files define those IDs, so are always reprocessed.
+        Set<String> pathsToReindex = new HashSet<>(changedPaths);
+        pathsToReindex.addAll(this.findSourceFiles(previousVersion, CONTENT_INDEX_TYPE.CONTENT_ERROR,
+                QueryBuilders.matchPhraseQuery("errors", DUPLICATE_ID_PROBLEM_PREFIX)));
+        Set<String> previousIds = this.findContentIds(previousVersion, QueryBuilders.termsQuery(
+                ElasticSearchIndexer.CANONICAL_SOURCE_FILE_KEYWORD_FIELD, pathsToReindex));
+
+        Map<String, Content> contentCache = new HashMap<>();
+        Set<String> tagsList = new HashSet<>();
+        Map<String, String> allUnits = new HashMap<>();
+        Map<String, String> publishedUnits = new HashMap<>();
+        Map<Content, List<String>> indexProblemCache = new HashMap<>();
+
+        // Files which reference or redefine content from the changed files must be revalidated too. Those files are
+        // themselves unchanged, so adding them cannot affect any further files.
+        for (int pass = 0; pass < 2; pass++) {
+            if (pathsToReindex.size() > MAX_INCREMENTAL_INDEX_FILES
+                    || pathsToReindex.stream().anyMatch(path -> path.length() > MAX_INCREMENTAL_INDEX_PATH_LENGTH)) {
+                log.info("Too many content files affected since " + previousVersion
+                        + ", incremental indexing not possible.");
+                return false;
+            }
+
+            contentCache.clear();
+            tagsList.clear();
+            allUnits.clear();
+            publishedUnits.clear();
+            indexProblemCache.clear();
+            if (!pathsToReindex.isEmpty()) {
+                buildGitContentIndex(sha, true, pathsToReindex, contentCache, tagsList, allUnits, publishedUnits,
+                        indexProblemCache);
+            }
+
+            Set<String> affectedIds = new HashSet<>(previousIds);
+            affectedIds.addAll(contentCache.keySet());
+            Set<String> affectedPaths = affectedIds.isEmpty() ? new HashSet<>() : this.findSourceFiles(previousVersion,
+                    CONTENT_INDEX_TYPE.CONTENT, QueryBuilders.boolQuery()
+                            .should(QueryBuilders.termsQuery("relatedContent.keyword", affectedIds))
+                            .should(QueryBuilders.idsQuery().addIds(contentCache.keySet().toArray(new String[0]))));
+            affectedPaths.removeAll(pathsToReindex);
+            if (affectedPaths.isEmpty()) {
+                break;
+            } else if (pass > 0) {
+                log.warn("Content files affected by changes since " + previousVersion
+                        + " did not converge, incremental indexing not possible.");
+                return false;
+            }
+            pathsToReindex.addAll(affectedPaths);
+        }
+
+        // Look up the publication status of any other content referenced by the files being reprocessed.
+        Set<String> referencedIds = new HashSet<>();
+        for (Content content : contentCache.values()) {
+            if (content.getRelatedContent() != null) {
+                referencedIds.addAll(content.getRelatedContent());
+            }
+        }
+        referencedIds.removeAll(contentCache.keySet());
+        Map<String, Boolean> otherContentPublished = new HashMap<>();
+        if (!referencedIds.isEmpty()) {
+            for (Map<String, Object> source : es.findSourceFields(previousVersion, CONTENT_INDEX_TYPE.CONTENT.toString(),
+                    QueryBuilders.boolQuery()
+                            .must(QueryBuilders.idsQuery().addIds(referencedIds.toArray(new String[0])))
+                            .mustNot(QueryBuilders.termsQuery(ElasticSearchIndexer.CANONICAL_SOURCE_FILE_KEYWORD_FIELD, pathsToReindex)),
+                    "id", "published")) {
+                otherContentPublished.put((String) source.get("id"), Boolean.TRUE.equals(source.get("published")));
+            }
+        }
+
+        if (!this.previousMetadataStillProvided(previousVersion, pathsToReindex, tagsList, allUnits, publishedUnits)) {
+            log.info("Tags or units removed from content files since " + previousVersion
+                    + ", incremental indexing not possible.");
+            return false;
+        }
+
+        recordContentErrors(sha, contentCache, indexProblemCache, otherContentPublished);
+
+        // Keep the tags and units of the previous version.
+        Object previousTags = es.getById(previousVersion, CONTENT_INDEX_TYPE.METADATA.toString(), "tags")
+                .getSourceAsMap().get("tags");
+        if (previousTags instanceof Collection) {
+            for (Object tag : (Collection<?>) previousTags) {
+                tagsList.add(tag.toString());
+            }
+        }
+        this.addPreviousUnits(previousVersion, CONTENT_INDEX_TYPE.UNIT, allUnits);
+        this.addPreviousUnits(previousVersion, CONTENT_INDEX_TYPE.PUBLISHED_UNIT, publishedUnits);
+
+        if (anyContentTypesAreIndexedForVersion(sha)) {
+            expungeAnyContentTypeIndicesRelatedToVersion(sha);
+        }
 
         try {
-            startTime = System.nanoTime();
-            es.bulkIndexWithIDs(sha, CONTENT_INDEX_TYPE.CONTENT.toString(), contentToIndex);
-            endTime = System.nanoTime();
-            log.info("Bulk indexing content took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
-            log.info("Search index request sent for: " + sha);
-        } catch (SegueSearchException e) {
-            log.error("Error whilst trying to perform bulk index operation.", e);
-            throw new Exception("Error whilst trying to perform bulk index operation.", e);
-        } catch (ActionRequestValidationException e) {
-            log.error("Error validating content during index", e);
-            throw new Exception("Error validating content during index", e);
+            ObjectMapper objectMapper = mapper.generateNewPreconfiguredContentMapper();
+
+            es.copyIndexExcludingSourceFiles(previousVersion, sha, CONTENT_INDEX_TYPE.CONTENT.toString(), pathsToReindex);
+            this.bulkIndexContentInBatches(sha, contentCache.values(), objectMapper, indexProblemCache);
+
+            Set<String> problemFilesToReplace = new HashSet<>(pathsToReindex);
+            problemFilesToReplace.add(NO_CONTENT_ERRORS_SOURCE_FILE);
+            long copiedProblemCount = es.copyIndexExcludingSourceFiles(previousVersion, sha,
+                    CONTENT_INDEX_TYPE.CONTENT_ERROR.toString(), problemFilesToReplace);
+            if (copiedProblemCount == 0) {
+                registerNoContentErrorsIfNoneFound(indexProblemCache);
+            }
+
+            this.indexContentMetadata(sha, objectMapper, tagsList, allUnits, publishedUnits, indexProblemCache);
+        } catch (Exception e) {
+            log.warn("Exception during incremental indexing, cleaning up partial indices!");
+            expungeAnyContentTypeIndicesRelatedToVersion(sha);
+            throw e;
         }
+
+        log.info(String.format("Incrementally indexed %s content files for %s.", pathsToReindex.size(), sha));
+        return true;
     }
 
+    /**
+     * Check whether some content files still provide every tag and unit that they provided in a previous version.
+     *
+     * If so, the tags and units of the new version are exactly those of the previous version plus those of the new
+     * content files.
+     *
+     * @param previousVersion - the version the files are being reprocessed from.
+     * @param paths - the content files being reprocessed.
+     * @param tagsList - the tags of the new version of the files.
+     * @param allUnits - the units of the new version of the files.
+     * @param publishedUnits - the published units of the new version of the files.
+     * @return true if no tag or unit has been removed from, or unpublished in, the files.
+     * @throws ContentManagerException - if the previous version of the files cannot be read.
+     */
+    private boolean previousMetadataStillProvided(final String previousVersion, final Set<String> paths,
+                                                  final Set<String> tagsList, final Map<String, String> allUnits,
+                                                  final Map<String, String> publishedUnits)
+            throws ContentManagerException {
+        if (paths.isEmpty()) {
+            return true;
+        }
+        Set<String> previousTags = new HashSet<>();
+        Map<String, String> previousAllUnits = new HashMap<>();
+        Map<String, String> previousPublishedUnits = new HashMap<>();
+        buildGitContentIndex(previousVersion, true, paths, new HashMap<>(), previousTags, previousAllUnits,
+                previousPublishedUnits, new HashMap<>());
+
+        return tagsList.containsAll(previousTags)
+                && allUnits.entrySet().containsAll(previousAllUnits.entrySet())
+                && publishedUnits.entrySet().containsAll(previousPublishedUnits.entrySet());
+    }
+
+    /**
+     * Find the content source files of all documents in an index matching a query.
+     *
+     * @param version - the version to search.
+     * @param indexType - the type of index to search.
+     * @param query - the query to match documents against.
+     * @return the set of canonicalSourceFile values of matching documents.
+     * @throws SegueSearchException - if the search fails.
+     */
+    private Set<String> findSourceFiles(final String version, final CONTENT_INDEX_TYPE indexType,
+                                        final QueryBuilder query) throws SegueSearchException {
+        return es.findSourceFields(version, indexType.toString(), query, "canonicalSourceFile").stream()
+                .map(source -> (String) source.get("canonicalSourceFile"))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Find the IDs of all content in a version matching a query.
+     *
+     * @param version - the version to search.
+     * @param query - the query to match content against.
+     * @return the set of matching content IDs.
+     * @throws SegueSearchException - if the search fails.
+     */
+    private Set<String> findContentIds(final String version, final QueryBuilder query) throws SegueSearchException {
+        return es.findSourceFields(version, CONTENT_INDEX_TYPE.CONTENT.toString(), query, "id").stream()
+                .map(source -> (String) source.get("id"))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Add the units indexed for a previous version to a map of units.
+     *
+     * @param version - the version to read units from.
+     * @param indexType - the type of units index.
+     * @param units - the map of clean keys to units to add to.
+     * @throws SegueSearchException - if the units cannot be read.
+     */
+    private void addPreviousUnits(final String version, final CONTENT_INDEX_TYPE indexType,
+                                  final Map<String, String> units) throws SegueSearchException {
+        for (Map<String, Object> source : es.findSourceFields(version, indexType.toString(),
+                QueryBuilders.matchAllQuery(), "cleanKey", "unit")) {
+            units.putIfAbsent((String) source.get("cleanKey"), (String) source.get("unit"));
+        }
+    }
+
+    /**
+     * Serialise content on the indexer worker pool and send it to the search provider in bounded batches.
+     *
+     * Only a single batch of serialised content (plus the results still in flight) is held in memory at once, rather
+     * than a serialised copy of the entire content set.
+     *
+     * @param sha - the version being indexed.
+     * @param contentToIndex - all content objects to index.
+     * @param objectMapper - the content object mapper to serialise with.
+     * @param indexProblemCache - where to record any content which could not be serialised.
+     * @throws SegueSearchException - if a bulk request fails.
+     */
+    private void bulkIndexContentInBatches(final String sha, final Collection<Content> contentToIndex,
+                                           final ObjectMapper objectMapper,
+                                           final Map<Content, List<String>> indexProblemCache)
+            throws SegueSearchException, ContentManagerException {
+        ExecutorService workerPool = newIndexerWorkerPool();
+        Map<String, String> originalIndexSettings = es.startBulkLoad(sha, CONTENT_INDEX_TYPE.CONTENT.toString());
+        try {
+            Deque<Future<Map.Entry<String, String>>> inFlight = new ArrayDeque<>();
+            List<Map.Entry<String, String>> batch = Lists.newArrayList();
+            long batchBytes = 0;
+
+            Iterator<Content> contentIterator = contentToIndex.iterator();
+            while (contentIterator.hasNext() || !inFlight.isEmpty()) {
+                // Keep the workers busy, but don't serialise further ahead than the batches being sent.
+                while (contentIterator.hasNext() && inFlight.size() < MAX_IN_FLIGHT_CONTENT_FILES) {
+                    Content content = contentIterator.next();
+                    inFlight.add(workerPool.submit(() -> {
+                        try {
+                            return immutableEntry(content.getId(), objectMapper.writeValueAsString(content));
+                        } catch (JsonProcessingException e) {
+                            log.error("Unable to serialize content object: " + content.getId()
+                                    + " for indexing with the search provider.", e);
+                            this.registerContentProblem(content, "Search Index Error: " + content.getId()
+                                    + content.getCanonicalSourceFile() + " Exception: " + e.toString(), indexProblemCache);
+                            return null;
+                        }
+                    }));
+                }
+
+                Map.Entry<String, String> serialisedContent = awaitIndexerResult(inFlight.poll());
+                if (null == serialisedContent) {
+                    continue;
+                }
+                batch.add(serialisedContent);
+                batchBytes += serialisedContent.getValue().length();
+
+                if (batch.size() >= BULK_INDEX_BATCH_MAX_DOCUMENTS || batchBytes >= BULK_INDEX_BATCH_MAX_CHARACTERS) {
+                    es.bulkIndexWithIDs(sha, CONTENT_INDEX_TYPE.CONTENT.toString(), batch);
+                    batch = Lists.newArrayList();
+                    batchBytes = 0;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                es.bulkIndexWithIDs(sha, CONTENT_INDEX_TYPE.CONTENT.toString(), batch);
+            }
+        } finally {
+            workerPool.shutdownNow();
+            es.finishBulkLoad(sha, CONTENT_INDEX_TYPE.CONTENT.toString(), originalIndexSettings);
+        }
+    }
+
+    /**
+     * Create a pool of daemon worker threads for the parse and serialise stages of indexing.
+     *
+     * @return a new fixed size executor, which the caller must shut down.
+     */
+    private static ExecutorService newIndexerWorkerPool() {
+        return Executors.newFixedThreadPool(INDEXER_WORKER_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("content-indexer-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Wait for a task on the indexer worker pool to finish, rethrowing any unchecked exception it threw.
+     *
+     * @param future - the task to wait for.
+     * @return the result of the task.
+     * @throws ContentManagerException - if interrupted whilst waiting.
+     */
+    private static <T> T awaitIndexerResult(final Future<T> future) throws ContentManagerException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContentManagerException("Interrupted whilst waiting for content indexing worker.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
     /**
      * This method will attempt to traverse the cache to ensure that all content references are valid.
@@ -770,9 +1242,12 @@ public class ContentIndexer {
      *            version to validate integrity of.
      * @param gitCache
      *            Data structure containing all content for a given sha.
+     * @param otherContentPublished
+     *            IDs of content which exists in this sha but is not in the cache, mapped to whether it is published.
      */
     private void recordContentErrors(final String sha, final Map<String, Content> gitCache,
-                                          Map<Content, List<String>> indexProblemCache) {
+                                          Map<Content, List<String>> indexProblemCache,
+                                          final Map<String, Boolean> otherContentPublished) {
 
         Set<Content> allObjectsSeen = new HashSet<>();
         Set<String> expectedIds = new HashSet<>();
@@ -814,6 +1289,7 @@ public class ContentIndexer {
         // Find all references to missing content.
         Set<String> missingContent = new HashSet<>(expectedIds);
         missingContent.removeAll(contentById.keySet());
+        missingContent.removeAll(otherContentPublished.keySet());
 
         for (String id : missingContent) {
             for (Content src : incomingReferences.get(id)) {
@@ -830,10 +1306,12 @@ public class ContentIndexer {
         // Find all references from published content to unpublished content.
         for (String refTargetId : incomingReferences.keySet()) {
             Content refTarget = contentById.get(refTargetId);
-            if (refTarget != null) {
+            if (refTarget != null || otherContentPublished.containsKey(refTargetId)) {
+                boolean targetPublished = refTarget != null
+                        ? refTarget.getPublished() != null && refTarget.getPublished()
+                        : otherContentPublished.get(refTargetId);
                 for (Content refSrc : incomingReferences.get(refTargetId)) {
                     boolean srcPublished = refSrc.getPublished() != null && refSrc.getPublished();
-                    boolean targetPublished = refTarget.getPublished() != null && refTarget.getPublished();
                     if (srcPublished && !targetPublished) {
                         this.registerContentProblem(refSrc, "Content is published, "
                                 + "but references unpublished content '" + refTargetId + "'.", indexProblemCache);
@@ -844,10 +1322,16 @@ public class ContentIndexer {
 
         log.info(String.format("Validation processing (%s) complete. There are %s files with content problems", sha,
                 indexProblemCache.size()));
+    }
 
+    /**
+     * Register a no-op style error to simplify application logic by ensuring there is always a content errors index.
+     *
+     * @param indexProblemCache - the content problems found so far.
+     */
+    private void registerNoContentErrorsIfNoneFound(final Map<Content, List<String>> indexProblemCache) {
         if (indexProblemCache.size() == 0) {
-            // Register a no-op style error to simplify application logic by ensuring there is always a content errors index
-            Content dummyContentRecord = new Content() {{setCanonicalSourceFile("\uD83D\uDE0E");}};
+            Content dummyContentRecord = new Content() {{setCanonicalSourceFile(NO_CONTENT_ERRORS_SOURCE_FILE);}};
             this.registerContentProblem(dummyContentRecord, "No content errors!", indexProblemCache);
         }
     }
@@ -1150,4 +1634,19 @@ public class ContentIndexer {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * The result of the parse stage of indexing for a single file in the content repository.
+     */
+    private static final class ParsedContentFile {
+        private final String path;
+        private final Content content;
+        private final Set<Content> flattenedContent;
+
+        private ParsedContentFile(final String path, @Nullable final Content content,
+                                  final Set<Content> flattenedContent) {
+            this.path = path;
+            this.content = content;
+            this.flattenedContent = flattenedContent;
+        }
+    }
+}
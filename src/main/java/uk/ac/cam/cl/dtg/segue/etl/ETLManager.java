@@ -76,7 +76,10 @@ public class ETLManager {
         // Adding new indices can be done in parallel; take a read lock:
         indexerLock.readLock().lock();
         try {
-            indexer.loadAndIndexContent(version);
+            // Build on the version this alias currently points to, so that small changes can be indexed incrementally.
+            String previousVersion = this.contentIndicesStore.getKeys().contains(alias)
+                    ? this.contentIndicesStore.getProperty(alias) : null;
+            indexer.loadAndIndexContent(version, previousVersion);
             log.info("Indexed version {}. Setting alias '{}'.", version, alias);
             indexer.setNamedVersion(alias, version);
 
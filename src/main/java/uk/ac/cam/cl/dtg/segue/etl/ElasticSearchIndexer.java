@@ -8,19 +8,37 @@ import org.apache.http.client.config.RequestConfig;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
 import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.CreateIndexRequest;
 import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.client.indices.GetIndexResponse;
 import org.elasticsearch.cluster.metadata.AliasMetadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.ReindexRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentFactory;
 import org.elasticsearch.xcontent.XContentType;
@@ -30,13 +48,20 @@ import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.search.ElasticSearchProvider;
 import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 
+import jakarta.annotation.Nullable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
@@ -46,6 +71,22 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
     private static final Logger log = LoggerFactory.getLogger(ElasticSearchIndexer.class);
     private final Map<String, List<String>> rawFieldsListByType = new HashMap<>();
     private final Map<String, List<String>> nestedFieldsByType = new HashMap<>();
+    private final Set<String> indicesBeingBulkLoaded = ConcurrentHashMap.newKeySet();
+    private final long bulkIndexInitialBackoffMillis;
+
+    static final String CANONICAL_SOURCE_FILE_KEYWORD_FIELD = "canonicalSourceFile.keyword";
+    private static final int MAX_FIELD_SEARCH_RESULTS = 10000;
+
+    private static final int BULK_INDEX_ACTIONS_PER_REQUEST = 500;
+    private static final long BULK_INDEX_BYTES_PER_REQUEST = 5 * 1024 * 1024;
+    private static final int BULK_INDEX_CONCURRENT_REQUESTS = 4;
+    private static final int BULK_INDEX_MAX_RETRIES = 3;
+    private static final long BULK_INDEX_INITIAL_BACKOFF_MILLIS = 1000;
+    private static final int BULK_INDEX_REQUEST_TIMEOUT_MILLIS = 360000;
+    private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    private static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+    private static final Set<RestStatus> RETRYABLE_STATUSES = EnumSet.of(
+            RestStatus.TOO_MANY_REQUESTS, RestStatus.SERVICE_UNAVAILABLE, RestStatus.GATEWAY_TIMEOUT);
 
     /**
      * Constructor for creating an instance of the ElasticSearchProvider Object.
@@ -54,7 +95,18 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
      */
     @Inject
     public ElasticSearchIndexer(RestHighLevelClient searchClient) {
+        this(searchClient, BULK_INDEX_INITIAL_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Constructor allowing the delay before retrying failed bulk index items to be chosen, for testing.
+     *
+     * @param searchClient - the client that the provider should be using.
+     * @param bulkIndexInitialBackoffMillis - the delay before the first retry, doubled for each further retry.
+     */
+    ElasticSearchIndexer(final RestHighLevelClient searchClient, final long bulkIndexInitialBackoffMillis) {
         super(searchClient);
+        this.bulkIndexInitialBackoffMillis = bulkIndexInitialBackoffMillis;
         rawFieldsListByType.put("content", Lists.newArrayList("id", "title"));
         rawFieldsListByType.put("school", Lists.newArrayList("urn"));
         nestedFieldsByType.put("content", Lists.newArrayList("audience"));
@@ -67,6 +119,12 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
     }
 
     /**
+     * Send a bulk request to the search provider.
+     *
+     * The request is split into chunks bounded by number of items and size, and several chunks are sent concurrently.
+     * Items which fail for transient reasons are retried with exponential backoff; the operation only fails if some
+     * items cannot be indexed. Unless the index is already part of a bulk load started with
+     * {@link #startBulkLoad(String, String)}, refreshing and replication of the index are disabled for this request.
      *
      * @param buildBulkRequest a function that takes an elasticsearch typed index name, and produces a (populated) BulkRequestBuilder
      * @throws SegueSearchException
@@ -85,29 +143,164 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
         // execute bulk request builder function
         BulkRequest bulkRequest = buildBulkRequest.apply(typedIndex);
 
+        // an empty bulk request is rejected, but the index should still exist afterwards
+        if (bulkRequest.numberOfActions() == 0) {
+            if (!this.hasIndex(indexBase, indexType)) {
+                this.sendMappingCorrections(typedIndex, indexType);
+            }
+            return;
+        }
+
+        boolean isPartOfLargerLoad = indicesBeingBulkLoaded.contains(typedIndex);
+        Map<String, String> originalSettings = isPartOfLargerLoad ? null : this.disableRefreshAndReplicas(typedIndex);
         try {
-            // increase default timeouts
-            RequestConfig requestConfig = RequestConfig.custom()
-                    .setConnectTimeout(360000)
-                    .setSocketTimeout(360000)
-                    .build();
-            RequestOptions options = RequestOptions.DEFAULT.toBuilder()
-                    .setRequestConfig(requestConfig)
-                    .build();
+            List<DocWriteRequest<?>> pendingRequests = bulkRequest.requests();
+            for (int attempt = 0; !pendingRequests.isEmpty(); attempt++) {
+                if (attempt > BULK_INDEX_MAX_RETRIES) {
+                    throw new SegueSearchException(String.format(
+                            "Error during bulk index operation, %s items still failing after %s retries!",
+                            pendingRequests.size(), BULK_INDEX_MAX_RETRIES));
+                }
+                if (attempt > 0) {
+                    long backoffMillis = bulkIndexInitialBackoffMillis << (attempt - 1);
+                    log.warn("Retrying {} failed bulk index items for {} in {}ms.", pendingRequests.size(), typedIndex,
+                            backoffMillis);
+                    Thread.sleep(backoffMillis);
+                }
+                pendingRequests = this.sendBulkRequestsConcurrently(typedIndex, pendingRequests);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SegueSearchException("Interrupted during bulk index operation.", e);
+        } finally {
+            if (!isPartOfLargerLoad) {
+                this.restoreRefreshAndReplicas(typedIndex, originalSettings);
+            }
+        }
+    }
+
+    /**
+     * Prepare an index for a load made up of many bulk requests, by disabling refreshing and replication once for the
+     * whole load rather than around every request. The index is created if it does not yet exist.
+     *
+     * Every call must be matched by a call to {@link #finishBulkLoad(String, String, Map)}.
+     *
+     * @param indexBase - the base name of the index.
+     * @param indexType - the type of the index.
+     * @return the original index settings, to be passed to finishBulkLoad.
+     */
+    Map<String, String> startBulkLoad(final String indexBase, final String indexType) {
+        String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
+        if (!this.hasIndex(indexBase, indexType)) {
+            this.sendMappingCorrections(typedIndex, indexType);
+        }
+        indicesBeingBulkLoaded.add(typedIndex);
+        return this.disableRefreshAndReplicas(typedIndex);
+    }
 
-            // execute bulk request
-            BulkResponse bulkResponse = client.bulk(bulkRequest.timeout("180s").setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE), options);
-            if (bulkResponse.hasFailures()) {
-                // process failures by iterating through each bulk response item
-                for (BulkItemResponse itemResponse : bulkResponse.getItems()) {
-                    if (itemResponse.isFailed()) {
-                        log.error("Unable to index the following item: {}", itemResponse.getFailureMessage());
+    /**
+     * Restore the settings of an index after a load started with {@link #startBulkLoad(String, String)}, and make the
+     * loaded documents visible.
+     *
+     * @param indexBase - the base name of the index.
+     * @param indexType - the type of the index.
+     * @param originalSettings - the settings returned by startBulkLoad.
+     */
+    void finishBulkLoad(final String indexBase, final String indexType, @Nullable final Map<String, String> originalSettings) {
+        String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
+        indicesBeingBulkLoaded.remove(typedIndex);
+        this.restoreRefreshAndReplicas(typedIndex, originalSettings);
+    }
+
+    /**
+     * Send index requests in bounded chunks, several at once, and wait for them all to complete.
+     *
+     * @param typedIndex - the index being loaded, for logging.
+     * @param requests - the requests to send.
+     * @return the requests which failed for a transient reason and may be retried.
+     * @throws SegueSearchException - if any request failed permanently, or the requests did not complete in time.
+     * @throws InterruptedException - if interrupted whilst waiting for the requests to complete.
+     */
+    private List<DocWriteRequest<?>> sendBulkRequestsConcurrently(final String typedIndex,
+                                                                 final List<DocWriteRequest<?>> requests)
+            throws SegueSearchException, InterruptedException {
+        RequestOptions options = RequestOptions.DEFAULT.toBuilder()
+                .setRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(BULK_INDEX_REQUEST_TIMEOUT_MILLIS)
+                        .setSocketTimeout(BULK_INDEX_REQUEST_TIMEOUT_MILLIS)
+                        .build())
+                .build();
+        BulkLoadListener listener = new BulkLoadListener();
+
+        // Retries are handled by our caller, so that all failed items are retried, not just rejected ones.
+        BulkProcessor processor = BulkProcessor.builder(
+                (request, bulkListener) -> client.bulkAsync(request.timeout("180s"), options, bulkListener),
+                listener, "bulk-index-" + typedIndex)
+                .setBulkActions(BULK_INDEX_ACTIONS_PER_REQUEST)
+                .setBulkSize(new ByteSizeValue(BULK_INDEX_BYTES_PER_REQUEST, ByteSizeUnit.BYTES))
+                .setConcurrentRequests(BULK_INDEX_CONCURRENT_REQUESTS)
+                .setBackoffPolicy(BackoffPolicy.noBackoff())
+                .build();
+
+        requests.forEach(processor::add);
+        if (!processor.awaitClose(BULK_INDEX_REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            throw new SegueSearchException("Timed out waiting for bulk index operation to complete.");
+        }
+
+        if (listener.permanentFailures.get() > 0) {
+            throw new SegueSearchException(String.format("Error during bulk index operation, %s items failed!",
+                    listener.permanentFailures.get()));
+        }
+        return listener.retryableRequests;
+    }
+
+    /**
+     * Turn off refreshing and replication of an index whilst it is bulk loaded.
+     *
+     * @param typedIndex - the index about to be loaded.
+     * @return the original values of the settings changed, or null if they could not be changed.
+     */
+    private Map<String, String> disableRefreshAndReplicas(final String typedIndex) {
+        try {
+            GetSettingsResponse response = client.indices().getSettings(
+                    new GetSettingsRequest().indices(typedIndex).names(REFRESH_INTERVAL_SETTING, NUMBER_OF_REPLICAS_SETTING),
+                    RequestOptions.DEFAULT);
+            Map<String, String> originalSettings = new HashMap<>();
+            originalSettings.put(REFRESH_INTERVAL_SETTING, response.getSetting(typedIndex, REFRESH_INTERVAL_SETTING));
+            originalSettings.put(NUMBER_OF_REPLICAS_SETTING, response.getSetting(typedIndex, NUMBER_OF_REPLICAS_SETTING));
+
+            client.indices().putSettings(new UpdateSettingsRequest(typedIndex).settings(Settings.builder()
+                    .put(REFRESH_INTERVAL_SETTING, "-1")
+                    .put(NUMBER_OF_REPLICAS_SETTING, 0)), RequestOptions.DEFAULT);
+            return originalSettings;
+        } catch (ElasticsearchException | IOException e) {
+            log.warn("Unable to disable refresh and replicas whilst loading index {}.", typedIndex, e);
+            return null;
+        }
+    }
+
+    /**
+     * Restore the refresh and replication settings of an index after bulk loading, and make the new documents visible.
+     *
+     * @param typedIndex - the index which has been loaded.
+     * @param originalSettings - the settings to restore, or null if they were not changed.
+     */
+    private void restoreRefreshAndReplicas(final String typedIndex, @Nullable final Map<String, String> originalSettings) {
+        try {
+            if (null != originalSettings) {
+                Settings.Builder settings = Settings.builder();
+                for (Map.Entry<String, String> setting : originalSettings.entrySet()) {
+                    if (null == setting.getValue()) {
+                        settings.putNull(setting.getKey());
+                    } else {
+                        settings.put(setting.getKey(), setting.getValue());
                     }
                 }
-                throw new SegueSearchException("Error during bulk index operation, some items failed!");
+                client.indices().putSettings(new UpdateSettingsRequest(typedIndex).settings(settings), RequestOptions.DEFAULT);
             }
+            client.indices().refresh(new RefreshRequest(typedIndex), RequestOptions.DEFAULT);
         } catch (ElasticsearchException | IOException e) {
-            throw new SegueSearchException("Error during bulk index operation.", e);
+            log.error("Unable to restore refresh and replica settings after loading index {}.", typedIndex, e);
         }
     }
 
@@ -156,6 +349,88 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
         }
     }
 
+    /**
+     * Copy the documents of one version's index into the index of the same type for another version, leaving out any
+     * documents which came from the listed content source files.
+     *
+     * The copy is performed by the search cluster itself, so the documents are never transferred to this server.
+     *
+     * @param sourceIndexBase - the version to copy from.
+     * @param targetIndexBase - the version to copy to.
+     * @param indexType - the type of index to copy.
+     * @param excludedSourceFiles - the canonicalSourceFile values of documents not to copy.
+     * @return the number of documents copied.
+     * @throws SegueSearchException - if the copy fails.
+     */
+    long copyIndexExcludingSourceFiles(final String sourceIndexBase, final String targetIndexBase,
+                                       final String indexType, final Collection<String> excludedSourceFiles)
+            throws SegueSearchException {
+        String typedSourceIndex = ElasticSearchProvider.produceTypedIndexName(sourceIndexBase, indexType);
+        String typedTargetIndex = ElasticSearchProvider.produceTypedIndexName(targetIndexBase, indexType);
+
+        if (!this.hasIndex(targetIndexBase, indexType)) {
+            this.sendMappingCorrections(typedTargetIndex, indexType);
+        }
+
+        ReindexRequest request = new ReindexRequest()
+                .setSourceIndices(typedSourceIndex)
+                .setDestIndex(typedTargetIndex)
+                .setSourceQuery(QueryBuilders.boolQuery().mustNot(
+                        QueryBuilders.termsQuery(CANONICAL_SOURCE_FILE_KEYWORD_FIELD, excludedSourceFiles)))
+                .setRefresh(true);
+
+        try {
+            RequestOptions options = RequestOptions.DEFAULT.toBuilder()
+                    .setRequestConfig(RequestConfig.custom().setSocketTimeout(360000).build())
+                    .build();
+            BulkByScrollResponse response = client.reindex(request, options);
+            if (!response.getBulkFailures().isEmpty() || !response.getSearchFailures().isEmpty()) {
+                throw new SegueSearchException(String.format("Error copying index %s to %s, some items failed!",
+                        typedSourceIndex, typedTargetIndex));
+            }
+            log.info("Copied {} documents from {} to {}.", response.getCreated(), typedSourceIndex, typedTargetIndex);
+            return response.getCreated();
+        } catch (ElasticsearchException | IOException e) {
+            throw new SegueSearchException("Error during index copy operation.", e);
+        }
+    }
+
+    /**
+     * Find all documents matching a query, returning only the requested fields of each.
+     *
+     * @param indexBase - the version to search.
+     * @param indexType - the type of index to search.
+     * @param query - the query to match documents against.
+     * @param fields - the source fields to return.
+     * @return the (partial) source of each matching document.
+     * @throws SegueSearchException - if the search fails, or matches too many documents to return at once.
+     */
+    List<Map<String, Object>> findSourceFields(final String indexBase, final String indexType,
+                                               final QueryBuilder query, final String... fields)
+            throws SegueSearchException {
+        String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(query)
+                .size(MAX_FIELD_SEARCH_RESULTS)
+                // Without this the total is capped at the result window, so too many matches could not be detected:
+                .trackTotalHits(true)
+                .fetchSource(fields, null);
+        try {
+            SearchResponse response = client.search(new SearchRequest(typedIndex).source(sourceBuilder), RequestOptions.DEFAULT);
+            if (response.getHits().getTotalHits().value > MAX_FIELD_SEARCH_RESULTS) {
+                throw new SegueSearchException(String.format("Query on index %s matched too many documents (%s).",
+                        typedIndex, response.getHits().getTotalHits().value));
+            }
+            List<Map<String, Object>> results = Lists.newArrayList();
+            for (SearchHit hit : response.getHits().getHits()) {
+                results.add(hit.getSourceAsMap());
+            }
+            return results;
+        } catch (ElasticsearchException | IOException e) {
+            throw new SegueSearchException("Error while trying to search", e);
+        }
+    }
+
     public boolean expungeEntireSearchCache() {
         return this.expungeTypedIndexFromSearchCache("_all");
     }
@@ -344,4 +619,42 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
             log.error("Error while sending mapping correction " + "instructions to the ElasticSearch Server", e);
         }
     }
+
+    /**
+     * Collects the outcome of each chunk sent by a BulkProcessor.
+     */
+    private static class BulkLoadListener implements BulkProcessor.Listener {
+        private final List<DocWriteRequest<?>> retryableRequests = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger permanentFailures = new AtomicInteger();
+
+        @Override
+        public void beforeBulk(final long executionId, final BulkRequest request) {
+            log.debug("Sending bulk request {} with {} items.", executionId, request.numberOfActions());
+        }
+
+        @Override
+        public void afterBulk(final long executionId, final BulkRequest request, final BulkResponse response) {
+            if (!response.hasFailures()) {
+                return;
+            }
+            // process failures by iterating through each bulk response item
+            for (BulkItemResponse itemResponse : response.getItems()) {
+                if (!itemResponse.isFailed()) {
+                    continue;
+                }
+                if (RETRYABLE_STATUSES.contains(itemResponse.status())) {
+                    retryableRequests.add(request.requests().get(itemResponse.getItemId()));
+                } else {
+                    log.error("Unable to index the following item: {}", itemResponse.getFailureMessage());
+                    permanentFailures.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(final long executionId, final BulkRequest request, final Throwable failure) {
+            log.warn("Bulk request {} with {} items failed.", executionId, request.numberOfActions(), failure);
+            retryableRequests.addAll(request.requests());
+        }
+    }
 }
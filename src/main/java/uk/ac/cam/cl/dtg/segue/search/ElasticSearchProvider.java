@@ -31,14 +31,17 @@ import org.apache.lucene.search.join.ScoreMode;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.Fuzziness;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.MatchQueryBuilder;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
@@ -73,6 +76,7 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 
@@ -94,6 +98,9 @@ public class ElasticSearchProvider implements ISearchProvider {
 
     private static final int DEFAULT_MAX_WINDOW_SIZE = 10000;
 
+    private static final int SCROLL_BATCH_SIZE = 1000;
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
     // used to optimise index setting retrieval as these probably don't change every request.
     private final Cache<String, String> settingsCache;
 
@@ -123,6 +130,17 @@ public class ElasticSearchProvider implements ISearchProvider {
                                               final List<GitContentManager.BooleanSearchClause> fieldsToMatch, final int startIndex,
                                               final int limit, final Map<String, Constants.SortOrder> sortInstructions,
                                               @Nullable final Map<String, AbstractFilterInstruction> filterInstructions) throws SegueSearchException {
+        return this.matchSearch(indexBase, indexType, fieldsToMatch, startIndex, limit, sortInstructions,
+                filterInstructions, null);
+    }
+
+    @Override
+    public ResultsWrapper<String> matchSearch(final String indexBase, final String indexType,
+                                              final List<GitContentManager.BooleanSearchClause> fieldsToMatch,
+                                              final int startIndex, final int limit,
+                                              final Map<String, Constants.SortOrder> sortInstructions,
+                                              @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+                                              @Nullable final String[] sourceFields) throws SegueSearchException {
         // build up the query from the fieldsToMatch map
         QueryBuilder query = generateBoolMatchQuery(fieldsToMatch);
 
@@ -130,7 +148,7 @@ public class ElasticSearchProvider implements ISearchProvider {
             query = QueryBuilders.boolQuery().must(query).filter(generateFilterQuery(filterInstructions));
         }
 
-        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, sortInstructions);
+        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, sortInstructions, sourceFields);
     }
 
     @Override
@@ -164,6 +182,15 @@ public class ElasticSearchProvider implements ISearchProvider {
     public ResultsWrapper<String> nestedMatchSearch(
             final String indexBase, final String indexType, final Integer startIndex, final Integer limit,
             @NotNull final BooleanInstruction matchInstruction, @Nullable final Map<String, Constants.SortOrder> sortOrder
+    ) throws SegueSearchException {
+        return this.nestedMatchSearch(indexBase, indexType, startIndex, limit, matchInstruction, sortOrder, null);
+    }
+
+    @Override
+    public ResultsWrapper<String> nestedMatchSearch(
+            final String indexBase, final String indexType, final Integer startIndex, final Integer limit,
+            @NotNull final BooleanInstruction matchInstruction, @Nullable final Map<String, Constants.SortOrder> sortOrder,
+            @Nullable final String[] sourceFields
     ) throws SegueSearchException {
         if (null == indexBase || null == indexType) {
             log.warn("A required field is missing. Unable to execute search.");
@@ -171,7 +198,7 @@ public class ElasticSearchProvider implements ISearchProvider {
         }
 
         BoolQueryBuilder query = (BoolQueryBuilder) this.processMatchInstructions(matchInstruction);
-        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, sortOrder);
+        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, sortOrder, sourceFields);
     }
 
     @Override
@@ -526,7 +553,7 @@ public class ElasticSearchProvider implements ISearchProvider {
     private ResultsWrapper<String> executeBasicQuery(final String indexBase, final String indexType,
                                                      final QueryBuilder query, final int startIndex, final int limit)
             throws SegueSearchException {
-        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, null);
+        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, null, null);
     }
 
     /**
@@ -545,11 +572,16 @@ public class ElasticSearchProvider implements ISearchProvider {
      *            - start index for results
      * @param limit
      *            - the maximum number of results to return -1 will attempt to return all results.
+     * @param sortInstructions
+     *            - the map of how to sort each field of interest, or null.
+     * @param sourceFields
+     *            - the fields to return from each result, or null to return the whole of each result.
      * @return list of the search results
      */
     private ResultsWrapper<String> executeBasicQuery(final String indexBase, final String indexType,
                                                      final QueryBuilder query, final int startIndex, final int limit,
-                                                     @Nullable final Map<String, Constants.SortOrder> sortInstructions) throws SegueSearchException {
+                                                     @Nullable final Map<String, Constants.SortOrder> sortInstructions,
+                                                     @Nullable final String[] sourceFields) throws SegueSearchException {
         int newLimit = limit;
         String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
         boolean isUnlimitedSearch = limit == -1;
@@ -564,6 +596,10 @@ public class ElasticSearchProvider implements ISearchProvider {
             this.addSortInstructions(sourceBuilder, sortInstructions);
         }
 
+        if (sourceFields != null) {
+            sourceBuilder.fetchSource(sourceFields, null);
+        }
+
         log.debug("Building Query: " + sourceBuilder);
         ResultsWrapper<String> results = executeQuery(typedIndex, sourceBuilder);
 
@@ -577,6 +613,9 @@ public class ElasticSearchProvider implements ISearchProvider {
             }
 
             sourceBuilder = new SearchSourceBuilder().query(query).size(results.getTotalResults().intValue()).from(startIndex);
+            if (sourceFields != null) {
+                sourceBuilder.fetchSource(sourceFields, null);
+            }
             results = executeQuery(typedIndex, sourceBuilder);
 
             log.debug("Unlimited Search - had to make a second round trip to elasticsearch.");
@@ -734,6 +773,41 @@ public class ElasticSearchProvider implements ISearchProvider {
         }
     }
 
+    @Override
+    public void forEachSourceInIndex(final String indexBase, final String indexType,
+                                     final Consumer<String> sourceConsumer) throws SegueSearchException {
+        String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().query(QueryBuilders.matchAllQuery())
+                .size(SCROLL_BATCH_SIZE).fetchSource(true);
+        String scrollId = null;
+        try {
+            SearchResponse response = client.search(
+                    new SearchRequest(typedIndex).source(sourceBuilder).scroll(SCROLL_KEEP_ALIVE), RequestOptions.DEFAULT);
+            scrollId = response.getScrollId();
+
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits().getHits()) {
+                    sourceConsumer.accept(hit.getSourceAsString());
+                }
+                response = client.scroll(new SearchScrollRequest(scrollId).scroll(SCROLL_KEEP_ALIVE),
+                        RequestOptions.DEFAULT);
+                scrollId = response.getScrollId();
+            }
+        } catch (IOException | ElasticsearchException e) {
+            throw new SegueSearchException(String.format("Failed to retrieve all documents from index %s", typedIndex), e);
+        } finally {
+            if (null != scrollId) {
+                ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.addScrollId(scrollId);
+                try {
+                    client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+                } catch (IOException | ElasticsearchException e) {
+                    log.warn("Failed to clear scroll context for index " + typedIndex, e);
+                }
+            }
+        }
+    }
+
     /**
      * This method returns the maximum window size. i.e. the number of results that can be returned in a single result
      * set without having to do a special scroll query.
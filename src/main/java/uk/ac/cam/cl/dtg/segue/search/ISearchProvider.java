@@ -26,6 +26,7 @@ import jakarta.validation.constraints.NotNull;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Interface describing behaviour of search providers.
@@ -76,6 +77,35 @@ public interface ISearchProvider {
             @Nullable final Map<String, AbstractFilterInstruction> filterInstructions
     ) throws SegueSearchException;
 
+    /**
+     * Paginated Match search for one field, returning only some fields of each result.
+     *
+     * @param indexBase
+     *            - ElasticSearch index base string
+     * @param indexType
+     *            - Index type
+     * @param fieldsToMatch
+     *            - the field name to use - and the field name search term
+     * @param startIndex
+     *            - e.g. 0 for the first set of results
+     * @param limit
+     *            - e.g. 10 for 10 results per page
+     * @param sortInstructions
+     *            - the map of how to sort each field of interest.
+     * @param filterInstructions
+     *            - the map of how to sort each field of interest.
+     * @param sourceFields
+     *            - the fields to return from each result, or null to return the whole of each result.
+     * @return Results
+     */
+    ResultsWrapper<String> matchSearch(
+            final String indexBase, final String indexType,
+            final List<GitContentManager.BooleanSearchClause> fieldsToMatch, final int startIndex, final int limit,
+            final Map<String, Constants.SortOrder> sortInstructions,
+            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+            @Nullable final String[] sourceFields
+    ) throws SegueSearchException;
+
     /**
      * Executes a fuzzy search on an array of fields and will consider the fieldsThatMustMatchMap.
      * 
@@ -113,6 +143,31 @@ public interface ISearchProvider {
             @NotNull final BooleanInstruction matchInstruction, @Nullable final Map<String, Constants.SortOrder> sortOrder
     ) throws SegueSearchException;
 
+    /**
+     * Executes a search built from match instructions, returning only some fields of each result.
+     *
+     * @param indexBase
+     *            - the base string for the name of the index
+     * @param indexType
+     *            - the name of the type of document being searched for
+     * @param startIndex
+     *            - e.g. 0 for the first set of results
+     * @param limit
+     *            - the maximum number of results to return -1 will attempt to return all results.
+     * @param matchInstruction
+     *            - the instructions describing the query.
+     * @param sortOrder
+     *            - the map of how to sort each field of interest.
+     * @param sourceFields
+     *            - the fields to return from each result, or null to return the whole of each result.
+     * @return results
+     */
+    ResultsWrapper<String> nestedMatchSearch(
+            final String indexBase, final String indexType, final Integer startIndex, final Integer limit,
+            @NotNull final BooleanInstruction matchInstruction, @Nullable final Map<String, Constants.SortOrder> sortOrder,
+            @Nullable final String[] sourceFields
+    ) throws SegueSearchException;
+
     /**
      * Executes a terms search using an array of terms on a single field.
      *
@@ -244,4 +299,22 @@ public interface ISearchProvider {
     GetResponse getById(String indexBase, String indexType, String id) throws SegueSearchException;
 
     SearchResponse getAllFromIndex(String indexBase, String indexType) throws SegueSearchException;
+
+    /**
+     * Pass the source of every document in an index, however many there are, to a consumer.
+     *
+     * Unlike getAllFromIndex this is not limited by the maximum result window size of the index. Documents are fetched
+     * a page at a time, so only one page of sources need be held in memory at once.
+     *
+     * @param indexBase
+     *            - the base string for the name of the index
+     * @param indexType
+     *            - the name of the type of document being retrieved
+     * @param sourceConsumer
+     *            - called with the JSON source of each document in the index in turn.
+     * @throws SegueSearchException
+     *             - if there is a problem retrieving the documents.
+     */
+    void forEachSourceInIndex(String indexBase, String indexType, Consumer<String> sourceConsumer)
+            throws SegueSearchException;
 }
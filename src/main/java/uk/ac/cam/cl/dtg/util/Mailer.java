@@ -33,7 +33,11 @@ import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.internet.MimeMultipart;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
@@ -81,11 +85,32 @@ public class Mailer {
                                   @Nullable final String overrideEnvelopeFrom, @Nullable final InternetAddress replyTo,
                                   final String subject, final String contents)
             throws MessagingException {
+        Transport.send(this.createPlainTextMail(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject,
+                contents));
+    }
+
+    /**
+     * Create a plain text e-mail, ready to be sent with sendBatch.
+     *
+     * @param recipient            - string array of recipients that the message should be sent to
+     * @param fromAddress          - the e-mail address that should be used as the sending address
+     * @param overrideEnvelopeFrom - (nullable) e-mail address to use as envelope from address, useful for routing
+     * @param replyTo              - (nullable) the e-mail address to use as reply-to address
+     * @param subject              - The message subject
+     * @param contents             - The message body
+     * @return the message.
+     * @throws MessagingException - if the message cannot be created, e.g. because an address is not valid.
+     */
+    public Message createPlainTextMail(final String[] recipient, final InternetAddress fromAddress,
+                                       @Nullable final String overrideEnvelopeFrom,
+                                       @Nullable final InternetAddress replyTo, final String subject,
+                                       final String contents)
+            throws MessagingException {
         Message msg = this.setupMessage(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject);
 
         msg.setText(contents);
 
-        Transport.send(msg);
+        return msg;
     }
 
     /**
@@ -107,6 +132,30 @@ public class Mailer {
                                   final String subject, final String plainText, final String html,
                                   final List<EmailAttachment> attachments)
             throws MessagingException, AddressException {
+        Transport.send(this.createMultiPartMail(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject,
+                plainText, html, attachments));
+    }
+
+    /**
+     * Create a multipart e-mail using HTML and plain text, ready to be sent with sendBatch.
+     *
+     * @param recipient            - string array of recipients that the message should be sent to
+     * @param fromAddress          - the e-mail address that should be used as the sending address
+     * @param overrideEnvelopeFrom - (nullable) the e-mail address to use as envelope from address, useful for routing
+     * @param replyTo              - (nullable) the e-mail address to use as reply-to address
+     * @param subject              - The message subject
+     * @param plainText            - The message body
+     * @param html                 - The message body in html
+     * @param attachments          - list of attachment objects
+     * @return the message.
+     * @throws MessagingException - if the message cannot be created, e.g. because an address is not valid.
+     */
+    public Message createMultiPartMail(final String[] recipient, final InternetAddress fromAddress,
+                                       @Nullable final String overrideEnvelopeFrom,
+                                       @Nullable final InternetAddress replyTo, final String subject,
+                                       final String plainText, final String html,
+                                       @Nullable final List<EmailAttachment> attachments)
+            throws MessagingException {
 
         Message msg = this.setupMessage(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject);
 
@@ -137,7 +186,72 @@ public class Mailer {
 
         msg.setContent(multiPart);
 
-        Transport.send(msg);
+        return msg;
+    }
+
+    /**
+     * Send several messages, reusing one SMTP connection for all the messages which share a mail Session (i.e. the
+     * same server and envelope-from address), rather than connecting once per message as Transport.send does.
+     *
+     * A failure to send one message does not stop the others being sent; if the connection itself is lost, it is
+     * re-opened for the remaining messages.
+     *
+     * @param messages - the messages to send, created by this Mailer.
+     * @return the failure for each message, in the same order, with null for those sent successfully.
+     */
+    public List<MessagingException> sendBatch(final List<Message> messages) {
+        List<MessagingException> failures = new ArrayList<>(Collections.nCopies(messages.size(), null));
+
+        Map<Session, List<Integer>> messagesBySession = new LinkedHashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            messagesBySession.computeIfAbsent(messages.get(i).getSession(), k -> new ArrayList<>()).add(i);
+        }
+
+        for (Map.Entry<Session, List<Integer>> sessionMessages : messagesBySession.entrySet()) {
+            Transport transport = null;
+            try {
+                for (int i : sessionMessages.getValue()) {
+                    Message msg = messages.get(i);
+                    if (null == transport || !transport.isConnected()) {
+                        closeQuietly(transport);
+                        try {
+                            transport = sessionMessages.getKey().getTransport("smtp");
+                            transport.connect();
+                        } catch (MessagingException e) {
+                            // There is no point trying the rest of these messages if the server can't be reached:
+                            for (int j : sessionMessages.getValue()) {
+                                if (j >= i) {
+                                    failures.set(j, e);
+                                }
+                            }
+                            break;
+                        }
+                    }
+                    try {
+                        msg.saveChanges();
+                        transport.sendMessage(msg, msg.getAllRecipients());
+                    } catch (MessagingException e) {
+                        failures.set(i, e);
+                    }
+                }
+            } finally {
+                closeQuietly(transport);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @param transport - a transport to close, if it is open.
+     */
+    private static void closeQuietly(@Nullable final Transport transport) {
+        if (null != transport && transport.isConnected()) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.warn("Error closing SMTP connection: " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -0,0 +1,174 @@
+package uk.ac.cam.cl.dtg.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.OUTBOUND_HTTP_ERRORS;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.OUTBOUND_HTTP_LATENCY_HISTOGRAM;
+
+/**
+ * Shared HTTP client for requests from the API to other services.
+ *
+ * Each destination gets its own underlying HttpClient, reused for all requests to it, so that its connection pool
+ * keeps connections to that service alive between calls and a slow service cannot exhaust the connections used for
+ * the others. Every request has a timeout, the number of requests in flight to any one host is limited so that a
+ * slow service cannot tie up every thread, and the latency and outcome of each request is recorded against the
+ * caller's name for the destination.
+ */
+public class OutboundHttpClient {
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLISECONDS = 2000;
+    public static final int DEFAULT_REQUEST_TIMEOUT_MILLISECONDS = 10000;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 32;
+    // Only wait long enough to smooth over bursts; a saturated host should fail fast rather than tie up the caller:
+    private static final long PERMIT_ACQUIRE_TIMEOUT_MILLISECONDS = 100;
+
+    private final Duration connectTimeout;
+    private final Map<String, HttpClient> destinationClients;
+    private final Duration defaultRequestTimeout;
+    private final int maxConcurrentRequestsPerHost;
+    private final Map<String, Semaphore> hostPermits;
+
+    /**
+     * Create a client for outbound requests.
+     *
+     * @param connectTimeoutMilliseconds - how long to wait when opening a connection.
+     * @param defaultRequestTimeoutMilliseconds - how long to wait for a response, unless the request sets a timeout.
+     * @param maxConcurrentRequestsPerHost - the maximum number of requests in flight to any one host and port.
+     */
+    public OutboundHttpClient(final int connectTimeoutMilliseconds, final int defaultRequestTimeoutMilliseconds,
+                              final int maxConcurrentRequestsPerHost) {
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMilliseconds);
+        this.destinationClients = new ConcurrentHashMap<>();
+        this.defaultRequestTimeout = Duration.ofMillis(defaultRequestTimeoutMilliseconds);
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        this.hostPermits = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Start building a request, with the default request timeout already set.
+     *
+     * @param uri - the URI to request.
+     * @return a request builder.
+     */
+    public HttpRequest.Builder newRequest(final URI uri) {
+        return HttpRequest.newBuilder().uri(uri).timeout(defaultRequestTimeout);
+    }
+
+    /**
+     * Send a request and wait for the response body as a string.
+     *
+     * @param destination - a short, fixed name for the service being called, used to label metrics.
+     * @param request - the request to send.
+     * @return the response.
+     * @throws IOException - on failure to communicate with the service, or if too many requests are already in flight.
+     */
+    public HttpResponse<String> send(final String destination, final HttpRequest request) throws IOException {
+        return await(sendAsync(destination, request));
+    }
+
+    /**
+     * Start sending a request, without waiting for the response.
+     *
+     * If the maximum number of requests are already in flight to the host, this waits only briefly for one of them
+     * to finish before rejecting the request.
+     *
+     * @param destination - a short, fixed name for the service being called, used to choose its connection pool and
+     *                    to label metrics.
+     * @param request - the request to send.
+     * @return a future for the response.
+     * @throws IOException - if the request could not be started.
+     */
+    public CompletableFuture<HttpResponse<String>> sendAsync(final String destination, final HttpRequest request)
+            throws IOException {
+        Semaphore permits = hostPermits.computeIfAbsent(request.uri().getAuthority(),
+                k -> new Semaphore(maxConcurrentRequestsPerHost));
+        try {
+            if (!permits.tryAcquire(PERMIT_ACQUIRE_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                OUTBOUND_HTTP_ERRORS.labels(destination, "too_many_requests").inc();
+                throw new IOException(String.format("Too many concurrent requests to '%s'.", destination));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            // Return the client's own future rather than a dependent one, so that cancelling it abandons the request:
+            HttpClient httpClient = destinationClients.computeIfAbsent(destination,
+                    k -> HttpClient.newBuilder().connectTimeout(connectTimeout).build());
+            CompletableFuture<HttpResponse<String>> pendingResponse =
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            pendingResponse.whenComplete((response, error) -> {
+                permits.release();
+                String outcome;
+                if (pendingResponse.isCancelled()) {
+                    // The caller no longer needed the response, which is not a failure of the service:
+                    outcome = "cancelled";
+                } else if (null != error) {
+                    outcome = "error";
+                    OUTBOUND_HTTP_ERRORS.labels(destination, describeError(error)).inc();
+                } else {
+                    outcome = (response.statusCode() / 100) + "xx";
+                }
+                OUTBOUND_HTTP_LATENCY_HISTOGRAM.labels(destination, outcome)
+                        .observe((System.nanoTime() - startTime) / 1e9);
+            });
+            return pendingResponse;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for the result of an asynchronous request, unwrapping any failure.
+     *
+     * @param pending - the future for the result.
+     * @param <T> - the type of the result.
+     * @return the result.
+     * @throws IOException - on failure to communicate with the service.
+     */
+    public static <T> T await(final CompletableFuture<T> pending) throws IOException {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (RuntimeException e) {
+            // e.g. the request was cancelled.
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @param error - the failure of a request.
+     * @return a label for the kind of failure.
+     */
+    private static String describeError(final Throwable error) {
+        Throwable cause = error instanceof CompletionException && null != error.getCause() ? error.getCause() : error;
+        if (cause instanceof HttpConnectTimeoutException || cause instanceof ConnectException) {
+            return "connect";
+        } else if (cause instanceof HttpTimeoutException) {
+            return "timeout";
+        } else if (cause instanceof IOException) {
+            return "io";
+        }
+        return "other";
+    }
+}
@@ -25,12 +25,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.LocationHistory;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.util.OutboundHttpClient;
 
 import jakarta.ws.rs.core.Response;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
@@ -51,18 +51,23 @@ public class PostCodeIOLocationResolver implements PostCodeLocationResolver {
     private final String postCodeUrl = "https://api.postcodes.io/postcodes"; // For complete postcodes
     private final String outCodeUrl = "https://api.postcodes.io/outcodes"; // For partial postcodes (e.g. CB3)
     private final int POSTCODEIO_MAX_REQUESTS = 100;
+    private static final String POSTCODES_IO_DESTINATION = "postcodes_io";
     
     private final LocationHistory locationHistory;
+    private final OutboundHttpClient httpClient;
 
     /**
      * PostCode resolver that uses queries postcodes from the local database and external postcodes.io database.
-     * 
+     *
      * @param locationHistory
      *            - the location history so we can access the database of existing post codes
+     * @param httpClient
+     *            - the shared client for requests to postcodes.io
      */
     @Inject
-    public PostCodeIOLocationResolver(final LocationHistory locationHistory) {
+    public PostCodeIOLocationResolver(final LocationHistory locationHistory, final OutboundHttpClient httpClient) {
         this.locationHistory = locationHistory;
+        this.httpClient = httpClient;
     }
 
     /*
@@ -222,18 +227,16 @@ public class PostCodeIOLocationResolver implements PostCodeLocationResolver {
         HashMap<String, Object> outCodeResponse = new HashMap<>();
 
         try {
-            java.net.http.HttpClient httpClient = HttpClient.newHttpClient();
             HttpRequest httpRequest;
-            java.net.http.HttpResponse<String> httpResponse;
+            HttpResponse<String> httpResponse;
             ObjectMapper objectMapper = new ObjectMapper();
 
             // Complete postcodes can be requested in bulk
-            httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(postCodeUrl))
+            httpRequest = httpClient.newRequest(URI.create(postCodeUrl))
                     .header("Content-Type", "application/json")
                     .POST(HttpRequest.BodyPublishers.ofString(requestJson))
                     .build();
-            httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            httpResponse = httpClient.send(POSTCODES_IO_DESTINATION, httpRequest);
             postCodeResponse = objectMapper.readValue(httpResponse.body(), HashMap.class);
 
             // Outcodes can only be requested one at a time
@@ -241,11 +244,10 @@ public class PostCodeIOLocationResolver implements PostCodeLocationResolver {
                 String url;
                 for (String outCode : outCodes) {
                     url = outCodeUrl + "/" + outCode;
-                    httpRequest = HttpRequest.newBuilder()
-                            .uri(URI.create(url))
+                    httpRequest = httpClient.newRequest(URI.create(url))
                             .GET()
                             .build();
-                    httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+                    httpResponse = httpClient.send(POSTCODES_IO_DESTINATION, httpRequest);
                     outCodeResponse.putAll(objectMapper.readValue(httpResponse.body(), HashMap.class));
                 }
             }
@@ -254,7 +256,7 @@ public class PostCodeIOLocationResolver implements PostCodeLocationResolver {
             String error = "Unable to parse postcode location response " + e.getMessage();
             log.error(error);
             throw new LocationServerException(error);
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             String error = "Unable to read postcode location response " + e.getMessage();
             log.error(error);
             throw new LocationServerException(error);
@@ -65,6 +65,8 @@ CREATE TABLE anonymous.user_credentials AS
 
 -- temporary_user_store ignored
 
+-- anonymous_question_attempts ignored
+
 -- ip_location_history ignored
 
 CREATE TABLE anonymous.uk_post_codes AS SELECT * FROM public.uk_post_codes;
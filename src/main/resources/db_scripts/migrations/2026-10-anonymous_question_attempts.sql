@@ -0,0 +1,12 @@
+CREATE TABLE anonymous_question_attempts (
+    id BIGSERIAL
+        CONSTRAINT anonymous_question_attempts_pk PRIMARY KEY,
+    anonymous_user_id CHARACTER VARYING NOT NULL
+        CONSTRAINT anonymous_question_attempts_fk REFERENCES temporary_user_store ON DELETE CASCADE,
+    page_id TEXT NOT NULL,
+    question_id TEXT NOT NULL,
+    question_attempt JSONB NOT NULL,
+    "timestamp" TIMESTAMP WITHOUT TIME ZONE
+);
+
+CREATE INDEX anonymous_question_attempts_by_anonymous_user ON anonymous_question_attempts (anonymous_user_id, id);
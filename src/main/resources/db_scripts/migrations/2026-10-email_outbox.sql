@@ -0,0 +1,17 @@
+CREATE TABLE email_outbox (
+    id BIGSERIAL NOT NULL,
+    priority INTEGER NOT NULL,
+    email_type TEXT NOT NULL,
+    message JSONB NOT NULL,
+    created TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    next_attempt_at TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    claimed_until TIMESTAMP WITH TIME ZONE,
+    failed BOOLEAN DEFAULT false NOT NULL,
+    last_error TEXT,
+    CONSTRAINT email_outbox_pkey PRIMARY KEY (id)
+);
+
+ALTER TABLE email_outbox OWNER TO rutherford;
+
+CREATE INDEX email_outbox_pending ON email_outbox USING btree (priority, id) WHERE NOT failed;
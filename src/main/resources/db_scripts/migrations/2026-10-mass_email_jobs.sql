@@ -0,0 +1,16 @@
+CREATE TABLE mass_email_jobs (
+    id TEXT NOT NULL,
+    sender_id BIGINT NOT NULL,
+    email_type TEXT NOT NULL,
+    status TEXT NOT NULL,
+    total_recipients INTEGER NOT NULL,
+    processed_recipients INTEGER DEFAULT 0 NOT NULL,
+    queued_emails INTEGER DEFAULT 0 NOT NULL,
+    filtered_recipients INTEGER DEFAULT 0 NOT NULL,
+    error TEXT,
+    created TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    last_updated TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    CONSTRAINT mass_email_jobs_pkey PRIMARY KEY (id)
+);
+
+ALTER TABLE mass_email_jobs OWNER TO rutherford;
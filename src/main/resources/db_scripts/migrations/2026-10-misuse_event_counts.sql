@@ -0,0 +1,10 @@
+CREATE TABLE misuse_event_counts (
+    agent_identifier TEXT NOT NULL,
+    event_label TEXT NOT NULL,
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    count INTEGER DEFAULT 0 NOT NULL,
+    last_event TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT misuse_event_counts_pkey PRIMARY KEY (agent_identifier, event_label, bucket_start)
+);
+
+ALTER TABLE misuse_event_counts OWNER TO rutherford;
@@ -0,0 +1,32 @@
+-- Requires the user_streak_record* functions from postgres-rutherford-functions.sql to have been loaded first.
+
+CREATE TABLE user_streak_records (
+    user_id INTEGER NOT NULL
+        CONSTRAINT user_streak_records_pkey PRIMARY KEY
+        CONSTRAINT user_streak_records_user_id_fkey REFERENCES users ON DELETE CASCADE,
+    daily_activity_date DATE,
+    daily_activity_count INTEGER DEFAULT 0 NOT NULL,
+    daily_streak_start DATE,
+    daily_streak_end DATE,
+    daily_streak_length INTEGER DEFAULT 0 NOT NULL,
+    daily_longest_streak INTEGER DEFAULT 0 NOT NULL,
+    weekly_activity_week DATE,
+    weekly_activity_count INTEGER DEFAULT 0 NOT NULL,
+    weekly_streak_start DATE,
+    weekly_streak_end DATE,
+    weekly_streak_length INTEGER DEFAULT 0 NOT NULL,
+    weekly_longest_streak INTEGER DEFAULT 0 NOT NULL,
+    last_updated TIMESTAMP WITHOUT TIME ZONE DEFAULT now() NOT NULL
+);
+
+-- Each user's questions which have already been counted towards their streak record:
+CREATE TABLE user_streak_counted_questions (
+    user_id INTEGER NOT NULL
+        CONSTRAINT user_streak_counted_questions_user_id_fkey REFERENCES users ON DELETE CASCADE,
+    question_id TEXT NOT NULL,
+    CONSTRAINT user_streak_counted_questions_pkey PRIMARY KEY (user_id, question_id)
+);
+
+-- Backfill the records of everyone who has ever answered a question correctly, in a single pass over the attempt
+-- history. Records for anyone missed here are built the first time they are read.
+SELECT user_streak_records_rebuild(NULL::BIGINT[]);
@@ -33,6 +33,43 @@ SET default_tablespace = '';
 
 SET default_table_access_method = heap;
 
+--
+-- Name: anonymous_question_attempts; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.anonymous_question_attempts (
+    id bigint NOT NULL,
+    anonymous_user_id character varying NOT NULL,
+    page_id text NOT NULL,
+    question_id text NOT NULL,
+    question_attempt jsonb NOT NULL,
+    "timestamp" timestamp without time zone
+);
+
+
+ALTER TABLE public.anonymous_question_attempts OWNER TO rutherford;
+
+--
+-- Name: anonymous_question_attempts_id_seq; Type: SEQUENCE; Schema: public; Owner: rutherford
+--
+
+CREATE SEQUENCE public.anonymous_question_attempts_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+ALTER SEQUENCE public.anonymous_question_attempts_id_seq OWNER TO rutherford;
+
+--
+-- Name: anonymous_question_attempts_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: rutherford
+--
+
+ALTER SEQUENCE public.anonymous_question_attempts_id_seq OWNED BY public.anonymous_question_attempts.id;
+
+
 --
 -- Name: archived_users; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -90,6 +127,47 @@ ALTER SEQUENCE public.assignments_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.assignments_id_seq OWNED BY public.assignments.id;
 
 
+--
+-- Name: email_outbox; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.email_outbox (
+    id bigint NOT NULL,
+    priority integer NOT NULL,
+    email_type text NOT NULL,
+    message jsonb NOT NULL,
+    created timestamp with time zone DEFAULT now() NOT NULL,
+    attempts integer DEFAULT 0 NOT NULL,
+    next_attempt_at timestamp with time zone DEFAULT now() NOT NULL,
+    claimed_until timestamp with time zone,
+    failed boolean DEFAULT false NOT NULL,
+    last_error text
+);
+
+
+ALTER TABLE public.email_outbox OWNER TO rutherford;
+
+--
+-- Name: email_outbox_id_seq; Type: SEQUENCE; Schema: public; Owner: rutherford
+--
+
+CREATE SEQUENCE public.email_outbox_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+ALTER SEQUENCE public.email_outbox_id_seq OWNER TO rutherford;
+
+--
+-- Name: email_outbox_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: rutherford
+--
+
+ALTER SEQUENCE public.email_outbox_id_seq OWNED BY public.email_outbox.id;
+
+
 --
 -- Name: event_bookings; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -335,6 +413,43 @@ ALTER SEQUENCE public.logged_events_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.logged_events_id_seq OWNED BY public.logged_events.id;
 
 
+--
+-- Name: mass_email_jobs; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.mass_email_jobs (
+    id text NOT NULL,
+    sender_id bigint NOT NULL,
+    email_type text NOT NULL,
+    status text NOT NULL,
+    total_recipients integer NOT NULL,
+    processed_recipients integer DEFAULT 0 NOT NULL,
+    queued_emails integer DEFAULT 0 NOT NULL,
+    filtered_recipients integer DEFAULT 0 NOT NULL,
+    error text,
+    created timestamp with time zone DEFAULT now() NOT NULL,
+    last_updated timestamp with time zone DEFAULT now() NOT NULL
+);
+
+
+ALTER TABLE public.mass_email_jobs OWNER TO rutherford;
+
+--
+-- Name: misuse_event_counts; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.misuse_event_counts (
+    agent_identifier text NOT NULL,
+    event_label text NOT NULL,
+    bucket_start timestamp with time zone NOT NULL,
+    count integer DEFAULT 0 NOT NULL,
+    last_event timestamp with time zone NOT NULL
+);
+
+
+ALTER TABLE public.misuse_event_counts OWNER TO rutherford;
+
+
 --
 -- Name: question_attempts; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -661,6 +776,18 @@ CREATE TABLE public.user_preferences (
 
 ALTER TABLE public.user_preferences OWNER TO rutherford;
 
+--
+-- Name: user_streak_counted_questions; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.user_streak_counted_questions (
+    user_id integer NOT NULL,
+    question_id text NOT NULL
+);
+
+
+ALTER TABLE public.user_streak_counted_questions OWNER TO rutherford;
+
 --
 -- Name: user_streak_freezes; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -675,6 +802,30 @@ CREATE TABLE public.user_streak_freezes (
 
 ALTER TABLE public.user_streak_freezes OWNER TO rutherford;
 
+--
+-- Name: user_streak_records; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.user_streak_records (
+    user_id integer NOT NULL,
+    daily_activity_date date,
+    daily_activity_count integer DEFAULT 0 NOT NULL,
+    daily_streak_start date,
+    daily_streak_end date,
+    daily_streak_length integer DEFAULT 0 NOT NULL,
+    daily_longest_streak integer DEFAULT 0 NOT NULL,
+    weekly_activity_week date,
+    weekly_activity_count integer DEFAULT 0 NOT NULL,
+    weekly_streak_start date,
+    weekly_streak_end date,
+    weekly_streak_length integer DEFAULT 0 NOT NULL,
+    weekly_longest_streak integer DEFAULT 0 NOT NULL,
+    last_updated timestamp without time zone DEFAULT now() NOT NULL
+);
+
+
+ALTER TABLE public.user_streak_records OWNER TO rutherford;
+
 --
 -- Name: user_streak_targets; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -757,6 +908,13 @@ ALTER SEQUENCE public.users_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.users_id_seq OWNED BY public.users.id;
 
 
+--
+-- Name: anonymous_question_attempts id; Type: DEFAULT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.anonymous_question_attempts ALTER COLUMN id SET DEFAULT nextval('public.anonymous_question_attempts_id_seq'::regclass);
+
+
 --
 -- Name: assignments id; Type: DEFAULT; Schema: public; Owner: rutherford
 --
@@ -764,6 +922,13 @@ ALTER SEQUENCE public.users_id_seq OWNED BY public.users.id;
 ALTER TABLE ONLY public.assignments ALTER COLUMN id SET DEFAULT nextval('public.assignments_id_seq'::regclass);
 
 
+--
+-- Name: email_outbox id; Type: DEFAULT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.email_outbox ALTER COLUMN id SET DEFAULT nextval('public.email_outbox_id_seq'::regclass);
+
+
 --
 -- Name: event_bookings id; Type: DEFAULT; Schema: public; Owner: rutherford
 --
@@ -835,6 +1000,14 @@ ALTER TABLE ONLY public.users
     ADD CONSTRAINT "User Id" PRIMARY KEY (id);
 
 
+--
+-- Name: anonymous_question_attempts anonymous_question_attempts_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.anonymous_question_attempts
+    ADD CONSTRAINT anonymous_question_attempts_pk PRIMARY KEY (id);
+
+
 --
 -- Name: archived_users archived_users_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -867,6 +1040,14 @@ ALTER TABLE ONLY public.linked_accounts
     ADD CONSTRAINT "compound key" PRIMARY KEY (user_id, provider);
 
 
+--
+-- Name: email_outbox email_outbox_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.email_outbox
+    ADD CONSTRAINT email_outbox_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: event_bookings eventbooking id pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -915,6 +1096,22 @@ ALTER TABLE ONLY public.logged_events
     ADD CONSTRAINT "id pkey" PRIMARY KEY (id);
 
 
+--
+-- Name: mass_email_jobs mass_email_jobs_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.mass_email_jobs
+    ADD CONSTRAINT mass_email_jobs_pkey PRIMARY KEY (id);
+
+
+--
+-- Name: misuse_event_counts misuse_event_counts_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.misuse_event_counts
+    ADD CONSTRAINT misuse_event_counts_pkey PRIMARY KEY (agent_identifier, event_label, bucket_start);
+
+
 --
 -- Name: ip_location_history id pky; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1075,6 +1272,14 @@ ALTER TABLE ONLY public.user_preferences
     ADD CONSTRAINT user_id_preference_type_name_pk PRIMARY KEY (user_id, preference_type, preference_name);
 
 
+--
+-- Name: user_streak_counted_questions user_streak_counted_questions_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_streak_counted_questions
+    ADD CONSTRAINT user_streak_counted_questions_pkey PRIMARY KEY (user_id, question_id);
+
+
 --
 -- Name: user_streak_freezes user_streak_freeze_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1083,6 +1288,14 @@ ALTER TABLE ONLY public.user_streak_freezes
     ADD CONSTRAINT user_streak_freeze_pkey PRIMARY KEY (user_id, start_date);
 
 
+--
+-- Name: user_streak_records user_streak_records_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_streak_records
+    ADD CONSTRAINT user_streak_records_pkey PRIMARY KEY (user_id);
+
+
 --
 -- Name: user_streak_targets user_streak_targets_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1091,6 +1304,13 @@ ALTER TABLE ONLY public.user_streak_targets
     ADD CONSTRAINT user_streak_targets_pkey PRIMARY KEY (user_id, start_date);
 
 
+--
+-- Name: anonymous_question_attempts_by_anonymous_user; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX anonymous_question_attempts_by_anonymous_user ON public.anonymous_question_attempts USING btree (anonymous_user_id, id);
+
+
 --
 -- Name: assignments_by_id; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1105,6 +1325,13 @@ CREATE INDEX assignments_by_id ON public.assignments USING btree (id);
 CREATE INDEX assignments_group_id ON public.assignments USING btree (group_id DESC);
 
 
+--
+-- Name: email_outbox_pending; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX email_outbox_pending ON public.email_outbox USING btree (priority, id) WHERE (NOT failed);
+
+
 --
 -- Name: event_booking_user_event_id_index; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1273,6 +1500,14 @@ CREATE INDEX user_streak_targets_by_user_id ON public.user_streak_targets USING
 CREATE INDEX users_id_role ON public.users USING btree (id, role);
 
 
+--
+-- Name: anonymous_question_attempts anonymous_question_attempts_fk; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.anonymous_question_attempts
+    ADD CONSTRAINT anonymous_question_attempts_fk FOREIGN KEY (anonymous_user_id) REFERENCES public.temporary_user_store(id) ON DELETE CASCADE;
+
+
 --
 -- Name: archived_users archived_users_fk; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1497,6 +1732,14 @@ ALTER TABLE ONLY public.user_associations
     ADD CONSTRAINT user_receiving_permissions_key FOREIGN KEY (user_id_receiving_permission) REFERENCES public.users(id) ON DELETE CASCADE;
 
 
+--
+-- Name: user_streak_counted_questions user_streak_counted_questions_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_streak_counted_questions
+    ADD CONSTRAINT user_streak_counted_questions_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+
 --
 -- Name: user_streak_freezes user_streak_freezes_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1505,6 +1748,14 @@ ALTER TABLE ONLY public.user_streak_freezes
     ADD CONSTRAINT user_streak_freezes_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
 
 
+--
+-- Name: user_streak_records user_streak_records_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_streak_records
+    ADD CONSTRAINT user_streak_records_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+
 --
 -- Name: user_streak_targets user_streak_targets_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -2,7 +2,7 @@
 -- Merge and Delete Users
 --
 -- Authors: Stephen Cummins, James Sharkey
--- Last Modified: 2023-11-01
+-- Last Modified: 2026-10-17
 --
 
 CREATE OR REPLACE FUNCTION mergeuser(targetuseridtokeep bigint, targetuseridtodelete bigint) RETURNS boolean
@@ -133,6 +133,17 @@ BEGIN
     ON CONFLICT DO NOTHING;
   END;
 
+  BEGIN
+    INSERT INTO user_streak_counted_questions (user_id, question_id)
+    SELECT targetUserIdToKeep, question_id
+    FROM user_streak_counted_questions WHERE user_id=targetUserIdToDelete
+    ON CONFLICT DO NOTHING;
+  END;
+
+  -- The merged streak record will be rebuilt from the merged question attempts when next read:
+  DELETE FROM user_streak_records
+  WHERE user_id IN (targetUserIdToKeep, targetUserIdToDelete);
+
   BEGIN
     INSERT INTO user_streak_targets (user_id, target_count, start_date, end_date, comment)
     SELECT user_id, target_count, start_date, end_date, comment
@@ -499,3 +510,414 @@ END
 $$;
 
 ALTER FUNCTION user_streaks_weekly_current_progress(BIGINT, INTEGER) OWNER TO rutherford;
+
+
+--
+-- Check Whether A Gap In A User Streak Is Covered By Streak Freezes
+--
+-- Last Modified: 2026-10-17
+--
+
+CREATE OR REPLACE FUNCTION user_streak_gap_frozen(useridofinterest BIGINT, gapstart DATE, gapend DATE, streakunit TEXT)
+    RETURNS BOOLEAN
+    LANGUAGE sql
+AS
+$$
+    -- An empty gap (i.e. gapstart after gapend) is trivially covered.
+    SELECT NOT EXISTS (
+        SELECT 1
+        FROM generate_series(gapstart, gapend, ('1 ' || streakunit)::INTERVAL) AS gap(date)
+        WHERE NOT EXISTS (
+            SELECT 1
+            FROM user_streak_freezes
+            WHERE user_id=useridofinterest
+              AND date_trunc(streakunit, start_date) <= gap.date
+              AND date_trunc(streakunit, COALESCE(end_date, CURRENT_DATE)) >= gap.date
+        )
+    );
+$$;
+
+ALTER FUNCTION user_streak_gap_frozen(BIGINT, DATE, DATE, TEXT) OWNER TO rutherford;
+
+
+--
+-- Rebuild Stored User Streak Records From The Full Question Attempt History
+--
+-- Last Modified: 2026-10-17
+--
+
+CREATE OR REPLACE FUNCTION user_streak_records_rebuild(useridsofinterest BIGINT[], defaultquestionsperday INTEGER DEFAULT 3,
+                                                       defaultquestionsperweek INTEGER DEFAULT 10)
+    RETURNS VOID
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    -- Rebuilds every user in one pass over the attempt history; a NULL list means every user with a correct attempt.
+    WITH
+
+        -- Filter only users first correct attempts at questions:
+        first_correct_attempts AS (
+            SELECT
+                user_id,
+                question_id,
+                MIN(timestamp) AS timestamp
+            FROM question_attempts
+            WHERE correct AND (useridsofinterest IS NULL OR user_id = ANY(useridsofinterest))
+            GROUP BY user_id, question_id
+        ),
+
+        -- Record these questions as counted, so that user_streak_record_correct_attempt never counts them again:
+        counted_questions AS (
+            INSERT INTO user_streak_counted_questions (user_id, question_id)
+            SELECT first_correct_attempts.user_id, question_id
+            FROM first_correct_attempts JOIN users ON first_correct_attempts.user_id=users.id
+            ON CONFLICT DO NOTHING
+        ),
+
+        -- Users asked for get a record even if they have never answered a question correctly:
+        users_to_rebuild AS (
+            SELECT id AS user_id
+            FROM users
+            WHERE id IN (SELECT user_id FROM first_correct_attempts) OR id = ANY(useridsofinterest)
+        ),
+
+        -- Count how many of these first correct attempts per day:
+        daily_counts AS (
+            SELECT
+                user_id,
+                timestamp::DATE AS date,
+                COUNT(*) AS count
+            FROM first_correct_attempts
+            GROUP BY user_id, date
+        ),
+
+        -- Create the list of targets and dates, allowing NULL end dates to mean "to present":
+        daily_targets AS (
+            SELECT
+                user_id,
+                series.date::DATE AS date,
+                MIN(target_count) AS target_count
+            FROM user_streak_targets,
+                generate_series(start_date, COALESCE(end_date, CURRENT_DATE), INTERVAL '1 DAY') AS series(date)
+            WHERE user_id IN (SELECT user_id FROM users_to_rebuild)
+            GROUP BY user_id, series.date
+        ),
+
+        -- Filter the list of dates by the minimum number of parts required.
+        -- If no user-specific target, use global default:
+        daily_active_dates AS (
+            SELECT
+                daily_counts.user_id,
+                daily_counts.date
+            FROM daily_counts LEFT OUTER JOIN daily_targets
+                ON daily_counts.user_id=daily_targets.user_id AND daily_counts.date=daily_targets.date
+            WHERE count >= COALESCE(target_count, defaultquestionsperday)
+        ),
+
+        -- Create a list of dates streaks were frozen on, allowing NULL end dates to mean "to present":
+        daily_frozen_dates AS (
+            SELECT DISTINCT
+                user_id,
+                series.date::DATE AS date
+            FROM user_streak_freezes,
+                generate_series(start_date, COALESCE(end_date, CURRENT_DATE), INTERVAL '1 DAY') AS series(date)
+            WHERE user_id IN (SELECT user_id FROM users_to_rebuild)
+        ),
+
+        -- Merge in streak freeze dates if there was no activity on that date, and group consecutive dates:
+        daily_groups AS (
+            SELECT
+                user_id,
+                date - (ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY date) * INTERVAL '1 day') AS grp,
+                date,
+                activity
+            FROM (
+                SELECT user_id, date, 1 AS activity FROM daily_active_dates
+                UNION ALL
+                SELECT user_id, date, 0 AS activity FROM daily_frozen_dates
+                WHERE NOT EXISTS (SELECT 1 FROM daily_active_dates
+                                  WHERE daily_active_dates.user_id=daily_frozen_dates.user_id
+                                    AND daily_active_dates.date=daily_frozen_dates.date)
+            ) AS date_list
+        ),
+
+        -- The length of a streak is the sum of active days:
+        daily_streaks AS (
+            SELECT
+                user_id,
+                SUM(activity) AS streak_length,
+                MIN(date) AS start_date,
+                MAX(date) AS end_date
+            FROM daily_groups
+            GROUP BY user_id, grp
+        ),
+
+        -- Likewise for weeks:
+        weekly_counts AS (
+            SELECT
+                user_id,
+                date_trunc('WEEK', timestamp)::DATE AS date,
+                COUNT(*) AS count
+            FROM first_correct_attempts
+            GROUP BY user_id, date
+        ),
+
+        weekly_targets AS (
+            SELECT
+                user_id,
+                series.date::DATE AS date,
+                MIN(target_count) AS target_count
+            FROM user_streak_targets,
+                generate_series(date_trunc('WEEK', start_date), date_trunc('WEEK', COALESCE(end_date, CURRENT_DATE)),
+                                INTERVAL '7 DAY') AS series(date)
+            WHERE user_id IN (SELECT user_id FROM users_to_rebuild)
+            GROUP BY user_id, series.date
+        ),
+
+        weekly_active_dates AS (
+            SELECT
+                weekly_counts.user_id,
+                weekly_counts.date
+            FROM weekly_counts LEFT OUTER JOIN weekly_targets
+                ON weekly_counts.user_id=weekly_targets.user_id AND weekly_counts.date=weekly_targets.date
+            WHERE count >= COALESCE(target_count, defaultquestionsperweek)
+        ),
+
+        weekly_frozen_dates AS (
+            SELECT DISTINCT
+                user_id,
+                series.date::DATE AS date
+            FROM user_streak_freezes,
+                generate_series(date_trunc('WEEK', start_date), date_trunc('WEEK', COALESCE(end_date, CURRENT_DATE)),
+                                INTERVAL '7 DAY') AS series(date)
+            WHERE user_id IN (SELECT user_id FROM users_to_rebuild)
+        ),
+
+        weekly_groups AS (
+            SELECT
+                user_id,
+                date - (ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY date) * INTERVAL '7 day') AS grp,
+                date,
+                activity
+            FROM (
+                SELECT user_id, date, 1 AS activity FROM weekly_active_dates
+                UNION ALL
+                SELECT user_id, date, 0 AS activity FROM weekly_frozen_dates
+                WHERE NOT EXISTS (SELECT 1 FROM weekly_active_dates
+                                  WHERE weekly_active_dates.user_id=weekly_frozen_dates.user_id
+                                    AND weekly_active_dates.date=weekly_frozen_dates.date)
+            ) AS date_list
+        ),
+
+        weekly_streaks AS (
+            SELECT
+                user_id,
+                SUM(activity) AS streak_length,
+                MIN(date) AS start_date,
+                MAX(date) AS end_date
+            FROM weekly_groups
+            GROUP BY user_id, grp
+        )
+
+    INSERT INTO user_streak_records (user_id, daily_activity_date, daily_activity_count, daily_streak_start,
+                                     daily_streak_end, daily_streak_length, daily_longest_streak, weekly_activity_week,
+                                     weekly_activity_count, weekly_streak_start, weekly_streak_end,
+                                     weekly_streak_length, weekly_longest_streak, last_updated)
+    SELECT
+        users_to_rebuild.user_id,
+        CURRENT_DATE,
+        COALESCE(todays_count.count, 0),
+        latest_daily.start_date,
+        latest_daily.end_date,
+        COALESCE(latest_daily.streak_length, 0),
+        COALESCE(longest_daily.streak_length, 0),
+        date_trunc('WEEK', CURRENT_DATE)::DATE,
+        COALESCE(this_weeks_count.count, 0),
+        latest_weekly.start_date,
+        latest_weekly.end_date,
+        COALESCE(latest_weekly.streak_length, 0),
+        COALESCE(longest_weekly.streak_length, 0),
+        now()
+    FROM users_to_rebuild
+        LEFT OUTER JOIN daily_counts AS todays_count
+            ON todays_count.user_id=users_to_rebuild.user_id AND todays_count.date=CURRENT_DATE
+        LEFT OUTER JOIN (SELECT DISTINCT ON (user_id) * FROM daily_streaks ORDER BY user_id, end_date DESC)
+            AS latest_daily ON latest_daily.user_id=users_to_rebuild.user_id
+        LEFT OUTER JOIN (SELECT user_id, MAX(streak_length) AS streak_length FROM daily_streaks GROUP BY user_id)
+            AS longest_daily ON longest_daily.user_id=users_to_rebuild.user_id
+        LEFT OUTER JOIN weekly_counts AS this_weeks_count
+            ON this_weeks_count.user_id=users_to_rebuild.user_id
+           AND this_weeks_count.date=date_trunc('WEEK', CURRENT_DATE)::DATE
+        LEFT OUTER JOIN (SELECT DISTINCT ON (user_id) * FROM weekly_streaks ORDER BY user_id, end_date DESC)
+            AS latest_weekly ON latest_weekly.user_id=users_to_rebuild.user_id
+        LEFT OUTER JOIN (SELECT user_id, MAX(streak_length) AS streak_length FROM weekly_streaks GROUP BY user_id)
+            AS longest_weekly ON longest_weekly.user_id=users_to_rebuild.user_id
+    ON CONFLICT (user_id) DO UPDATE SET
+        daily_activity_date=EXCLUDED.daily_activity_date, daily_activity_count=EXCLUDED.daily_activity_count,
+        daily_streak_start=EXCLUDED.daily_streak_start, daily_streak_end=EXCLUDED.daily_streak_end,
+        daily_streak_length=EXCLUDED.daily_streak_length, daily_longest_streak=EXCLUDED.daily_longest_streak,
+        weekly_activity_week=EXCLUDED.weekly_activity_week, weekly_activity_count=EXCLUDED.weekly_activity_count,
+        weekly_streak_start=EXCLUDED.weekly_streak_start, weekly_streak_end=EXCLUDED.weekly_streak_end,
+        weekly_streak_length=EXCLUDED.weekly_streak_length, weekly_longest_streak=EXCLUDED.weekly_longest_streak,
+        last_updated=EXCLUDED.last_updated;
+END
+$$;
+
+ALTER FUNCTION user_streak_records_rebuild(BIGINT[], INTEGER, INTEGER) OWNER TO rutherford;
+
+
+--
+-- Rebuild A Stored User Streak Record From The Full Question Attempt History
+--
+-- Last Modified: 2026-10-17
+--
+
+CREATE OR REPLACE FUNCTION user_streak_record_rebuild(useridofinterest BIGINT, defaultquestionsperday INTEGER DEFAULT 3,
+                                                      defaultquestionsperweek INTEGER DEFAULT 10)
+    RETURNS VOID
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM user_streak_records_rebuild(ARRAY[useridofinterest], defaultquestionsperday, defaultquestionsperweek);
+END
+$$;
+
+ALTER FUNCTION user_streak_record_rebuild(BIGINT, INTEGER, INTEGER) OWNER TO rutherford;
+
+
+--
+-- Update A Stored User Streak Record After A Correct Question Attempt
+--
+-- Last Modified: 2026-10-17
+--
+
+CREATE OR REPLACE FUNCTION user_streak_record_correct_attempt(useridofinterest BIGINT, questionidofinterest TEXT,
+                                                              defaultquestionsperday INTEGER DEFAULT 3,
+                                                              defaultquestionsperweek INTEGER DEFAULT 10)
+    RETURNS VOID
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    streak_record user_streak_records%ROWTYPE;
+    today DATE := CURRENT_DATE;
+    this_week DATE := date_trunc('WEEK', CURRENT_DATE)::DATE;
+    daily_target INTEGER;
+    weekly_target INTEGER;
+BEGIN
+    -- Only the first correct attempt at a question counts towards a streak. Claiming the question with a unique insert,
+    -- rather than counting correct attempts, means concurrent first correct attempts are counted exactly once:
+    INSERT INTO user_streak_counted_questions (user_id, question_id)
+    VALUES (useridofinterest, questionidofinterest)
+    ON CONFLICT DO NOTHING;
+    IF NOT FOUND THEN
+        RETURN;
+    END IF;
+
+    SELECT * INTO streak_record FROM user_streak_records WHERE user_id=useridofinterest FOR UPDATE;
+    IF NOT FOUND THEN
+        -- The rebuilt record will already include this attempt:
+        PERFORM user_streak_record_rebuild(useridofinterest, defaultquestionsperday, defaultquestionsperweek);
+        RETURN;
+    END IF;
+
+    SELECT COALESCE(MIN(target_count), defaultquestionsperday) INTO daily_target
+    FROM user_streak_targets
+    WHERE user_id=useridofinterest AND start_date <= today AND COALESCE(end_date, today) >= today;
+
+    SELECT COALESCE(MIN(target_count), defaultquestionsperweek) INTO weekly_target
+    FROM user_streak_targets
+    WHERE user_id=useridofinterest AND date_trunc('WEEK', start_date) <= this_week
+      AND date_trunc('WEEK', COALESCE(end_date, today)) >= this_week;
+
+    -- Daily progress, extending or restarting the streak the moment today's target is reached:
+    IF streak_record.daily_activity_date IS DISTINCT FROM today THEN
+        streak_record.daily_activity_date := today;
+        streak_record.daily_activity_count := 0;
+    END IF;
+    streak_record.daily_activity_count := streak_record.daily_activity_count + 1;
+    IF streak_record.daily_activity_count >= daily_target AND streak_record.daily_activity_count - 1 < daily_target THEN
+        IF streak_record.daily_streak_end IS NOT NULL
+                AND user_streak_gap_frozen(useridofinterest, streak_record.daily_streak_end + 1, today - 1, 'DAY') THEN
+            streak_record.daily_streak_length := streak_record.daily_streak_length + 1;
+        ELSE
+            streak_record.daily_streak_start := today;
+            streak_record.daily_streak_length := 1;
+        END IF;
+        streak_record.daily_streak_end := GREATEST(streak_record.daily_streak_end, today);
+        streak_record.daily_longest_streak := GREATEST(streak_record.daily_longest_streak, streak_record.daily_streak_length);
+    END IF;
+
+    -- Weekly progress, likewise:
+    IF streak_record.weekly_activity_week IS DISTINCT FROM this_week THEN
+        streak_record.weekly_activity_week := this_week;
+        streak_record.weekly_activity_count := 0;
+    END IF;
+    streak_record.weekly_activity_count := streak_record.weekly_activity_count + 1;
+    IF streak_record.weekly_activity_count >= weekly_target AND streak_record.weekly_activity_count - 1 < weekly_target THEN
+        IF streak_record.weekly_streak_end IS NOT NULL
+                AND user_streak_gap_frozen(useridofinterest, streak_record.weekly_streak_end + 7, this_week - 7, 'WEEK') THEN
+            streak_record.weekly_streak_length := streak_record.weekly_streak_length + 1;
+        ELSE
+            streak_record.weekly_streak_start := this_week;
+            streak_record.weekly_streak_length := 1;
+        END IF;
+        streak_record.weekly_streak_end := GREATEST(streak_record.weekly_streak_end, this_week);
+        streak_record.weekly_longest_streak := GREATEST(streak_record.weekly_longest_streak, streak_record.weekly_streak_length);
+    END IF;
+
+    UPDATE user_streak_records SET
+        daily_activity_date=streak_record.daily_activity_date, daily_activity_count=streak_record.daily_activity_count,
+        daily_streak_start=streak_record.daily_streak_start, daily_streak_end=streak_record.daily_streak_end,
+        daily_streak_length=streak_record.daily_streak_length, daily_longest_streak=streak_record.daily_longest_streak,
+        weekly_activity_week=streak_record.weekly_activity_week, weekly_activity_count=streak_record.weekly_activity_count,
+        weekly_streak_start=streak_record.weekly_streak_start, weekly_streak_end=streak_record.weekly_streak_end,
+        weekly_streak_length=streak_record.weekly_streak_length, weekly_longest_streak=streak_record.weekly_longest_streak,
+        last_updated=now()
+    WHERE user_id=useridofinterest;
+END
+$$;
+
+ALTER FUNCTION user_streak_record_correct_attempt(BIGINT, TEXT, INTEGER, INTEGER) OWNER TO rutherford;
+
+
+--
+-- Read A Stored User Streak Record, As Of Today
+--
+-- Last Modified: 2026-10-17
+--
+
+CREATE OR REPLACE FUNCTION user_streak_record(useridofinterest BIGINT)
+    RETURNS TABLE(currentprogress BIGINT, currentstreak BIGINT, longeststreak BIGINT, currentweeklyprogress BIGINT,
+                  currentweeklystreak BIGINT, longestweeklystreak BIGINT)
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM user_streak_records WHERE user_id=useridofinterest) THEN
+        PERFORM user_streak_record_rebuild(useridofinterest);
+    END IF;
+
+    RETURN QUERY
+    -- A streak is current if it ended yesterday or later, or if every day (week) since it ended was frozen:
+    SELECT
+        (CASE WHEN daily_activity_date = CURRENT_DATE THEN daily_activity_count ELSE 0 END)::BIGINT,
+        (CASE WHEN daily_streak_end IS NOT NULL
+                  AND user_streak_gap_frozen(useridofinterest, daily_streak_end + 1, CURRENT_DATE - 1, 'DAY')
+              THEN daily_streak_length ELSE 0 END)::BIGINT,
+        daily_longest_streak::BIGINT,
+        (CASE WHEN weekly_activity_week = date_trunc('WEEK', CURRENT_DATE)::DATE
+              THEN weekly_activity_count ELSE 0 END)::BIGINT,
+        (CASE WHEN weekly_streak_end IS NOT NULL
+                  AND user_streak_gap_frozen(useridofinterest, weekly_streak_end + 7,
+                                             date_trunc('WEEK', CURRENT_DATE)::DATE - 7, 'WEEK')
+              THEN weekly_streak_length ELSE 0 END)::BIGINT,
+        weekly_longest_streak::BIGINT
+    FROM user_streak_records
+    WHERE user_id=useridofinterest;
+END
+$$;
+
+ALTER FUNCTION user_streak_record(BIGINT) OWNER TO rutherford;
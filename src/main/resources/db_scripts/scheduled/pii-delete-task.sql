@@ -17,3 +17,8 @@ UPDATE logged_events
 SET event_details = event_details - 'emailVerificationToken' WHERE event_type IN ('EMAIL_VERIFICATION_REQUEST_RECEIVED')
 AND event_details ? 'emailVerificationToken'
 AND timestamp < NOW() - INTERVAL '1 year';
+
+/* Remove emails which could not be sent from the outbox, as their bodies may contain addresses and tokens - outbox retention policy*/
+DELETE FROM email_outbox
+WHERE failed
+AND created < NOW() - INTERVAL '30 days';
@@ -0,0 +1,12 @@
+/* rebuild streak records which may have drifted from the question_attempts history */
+
+-- Records are updated incrementally as questions are answered, so only rebuild those which could be wrong: users who
+-- answered questions recently (in case their record was first built from a snapshot missing a concurrent attempt) and
+-- users with recent streak targets or freezes (which may have been added retrospectively).
+SELECT user_streak_records_rebuild(ARRAY(
+    SELECT DISTINCT user_id FROM question_attempts WHERE "timestamp" > NOW() - INTERVAL '2 days'
+    UNION
+    SELECT user_id FROM user_streak_targets WHERE COALESCE(end_date, CURRENT_DATE) >= CURRENT_DATE - 14
+    UNION
+    SELECT user_id FROM user_streak_freezes WHERE COALESCE(end_date, CURRENT_DATE) >= CURRENT_DATE - 14
+)::BIGINT[]);
@@ -34,6 +34,8 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
@@ -577,7 +579,7 @@ public class AssignmentFacadeIT extends IsaacIntegrationTest {
         Response downloadAssignmentResponse =
                 assignmentFacade.getAssignmentProgressDownloadCSV(downloadAssignmentRequest,
                         ITConstants.ASSIGNMENTS_TEST_EXISTING_HARRY_AB_ASSIGNMENT_ID, "excel");
-        String downloadAssignmentContents = downloadAssignmentResponse.getEntity().toString();
+        String downloadAssignmentContents = readStreamedEntity(downloadAssignmentResponse);
 
         // Assert
         String expectedContents;
@@ -619,7 +621,7 @@ public class AssignmentFacadeIT extends IsaacIntegrationTest {
         Response downloadAssignmentResponse =
                 assignmentFacade.getGroupAssignmentsProgressDownloadCSV(downloadAssignmentRequest,
                        ITConstants.HARRY_TEACHERS_AB_GROUP_ID, "excel");
-        String downloadAssignmentContents = downloadAssignmentResponse.getEntity().toString();
+        String downloadAssignmentContents = readStreamedEntity(downloadAssignmentResponse);
 
         // Assert
         String expectedContents;
@@ -647,4 +649,10 @@ public class AssignmentFacadeIT extends IsaacIntegrationTest {
         // Assert
         assertEquals(Response.Status.FORBIDDEN.getStatusCode(), downloadAssignmentResponse.getStatus());
     }
+
+    private static String readStreamedEntity(final Response response) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
 }
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.ac.cam.cl.dtg.segue.api.InfoFacade;
 import uk.ac.cam.cl.dtg.segue.scheduler.SegueJobService;
+import uk.ac.cam.cl.dtg.util.OutboundHttpClient;
 
 import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
@@ -22,7 +23,10 @@ public class InfoFacadeIT extends IsaacIntegrationTest {
     @BeforeEach
     public void setUp() throws RuntimeException, IOException {
         SegueJobService segueJobService = createNiceMock(SegueJobService.class); // new SegueJobService(new ArrayList<>(), postgresSqlDb);
-        infoFacade = new InfoFacade(properties, contentManager, segueJobService, logManager);
+        infoFacade = new InfoFacade(properties, contentManager, segueJobService, logManager,
+                new OutboundHttpClient(OutboundHttpClient.DEFAULT_CONNECT_TIMEOUT_MILLISECONDS,
+                        OutboundHttpClient.DEFAULT_REQUEST_TIMEOUT_MILLISECONDS,
+                        OutboundHttpClient.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST));
     }
 
     @Test
@@ -278,7 +278,6 @@ public abstract class IsaacIntegrationTest {
 
         ContentMapper contentMapper = new ContentMapper(new Reflections("uk.ac.cam.cl.dtg"));
         PgQuestionAttempts pgQuestionAttempts = new PgQuestionAttempts(postgresSqlDb, contentMapper);
-        questionManager = new QuestionManager(contentMapper, pgQuestionAttempts);
 
         mapperFacade = contentMapper.getAutoMapper();
 
@@ -301,6 +300,8 @@ public abstract class IsaacIntegrationTest {
         Git git = createNiceMock(Git.class);
         GitDb gitDb = new GitDb(git);
         contentManager = new GitContentManager(gitDb, elasticSearchProvider, contentMapper, properties);
+        questionManager = new QuestionManager(contentMapper, pgQuestionAttempts, contentManager,
+                QuestionManager.DEFAULT_VALIDATION_RESULT_CACHE_MAX_ENTRIES);
         logManager = createNiceMock(ILogManager.class);
         IDeletionTokenPersistenceManager deletionTokenPersistenceManager = new PgDeletionTokenPersistenceManager(postgresSqlDb);
 
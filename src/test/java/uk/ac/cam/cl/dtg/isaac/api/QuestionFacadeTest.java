@@ -23,6 +23,8 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import uk.ac.cam.cl.dtg.isaac.dos.AbstractUserPreferenceManager;
 import uk.ac.cam.cl.dtg.isaac.dos.IUserStreaksManager;
+import uk.ac.cam.cl.dtg.isaac.dto.QuestionValidationResponseDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.content.ChoiceDTO;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.QuestionFacade;
 import uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager;
@@ -36,16 +38,20 @@ import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
 import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.powermock.api.easymock.PowerMock.createMock;
 import static org.powermock.api.easymock.PowerMock.createNiceMock;
+import static org.powermock.api.easymock.PowerMock.createStrictMock;
 import static org.powermock.api.easymock.PowerMock.replayAll;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(GitContentManager.class)
+@PrepareForTest({GitContentManager.class, QuestionManager.class})
 @PowerMockIgnore("javax.management.*")
 public class QuestionFacadeTest extends AbstractFacadeTest {
 
@@ -55,6 +61,10 @@ public class QuestionFacadeTest extends AbstractFacadeTest {
 
     private QuestionManager questionManager;
 
+    private IMisuseMonitor misuseMonitor;
+
+    private IUserStreaksManager userStreaksManager;
+
     @Before
     public void setUp() throws ContentManagerException {
         requestForCaching = createMock(Request.class);
@@ -68,8 +78,8 @@ public class QuestionFacadeTest extends AbstractFacadeTest {
         ContentMapper contentMapper = createMock(ContentMapper.class);
 
         String contentIndex = "4b825dc642cb6eb9a060e54bf8d69288fbee4904";
-        IMisuseMonitor misuseMonitor = createMock(IMisuseMonitor.class);
-        IUserStreaksManager userStreaksManager = createMock(IUserStreaksManager.class);
+        misuseMonitor = createMock(IMisuseMonitor.class);
+        userStreaksManager = createStrictMock(IUserStreaksManager.class);
         UserAssociationManager userAssociationManager = createMock(UserAssociationManager.class);
         AbstractUserPreferenceManager userPreferencesManager = createMock(AbstractUserPreferenceManager.class);
         questionManager = createMock(QuestionManager.class);
@@ -81,6 +91,7 @@ public class QuestionFacadeTest extends AbstractFacadeTest {
         expect(contentManager.getContentDOById(questionDO.getId())).andStubReturn(questionDO);
         expect(contentManager.getContentDOById(studentQuizDO.getId())).andStubReturn(studentQuizDO);
         expect(contentManager.getContentDOById(questionPageQuestionDO.getId())).andStubReturn(questionPageQuestionDO);
+        expect(contentManager.getContentDOById("questionPage")).andStubReturn(null);
 
         replayAll();
     }
@@ -96,4 +107,57 @@ public class QuestionFacadeTest extends AbstractFacadeTest {
             )
         );
     }
+
+    @Test
+    public void answerQuestion_correctAnswer_checkRecordedTowardsStreakBeforeNotifying() {
+        String jsonAnswer = "jsonAnswer";
+        ChoiceDTO choice = new ChoiceDTO();
+        QuestionValidationResponseDTO validationResponse = new QuestionValidationResponseDTO();
+        validationResponse.setQuestionId(questionPageQuestion.getId());
+        validationResponse.setCorrect(true);
+
+        forEndpoint(() -> questionFacade.answerQuestion(httpServletRequest, questionPageQuestion.getId(), jsonAnswer),
+            as(student,
+                prepare(questionManager, m -> {
+                    expect(m.convertJsonAnswerToChoice(jsonAnswer)).andReturn(choice);
+                    expect(m.validateAnswer(questionPageQuestionDO, choice)).andReturn(Response.ok(validationResponse).build());
+                    m.recordQuestionAttempt(student, validationResponse);
+                }),
+                prepare(misuseMonitor, m -> {
+                    m.notifyEvent(anyString(), anyString());
+                    expectLastCall().anyTimes();
+                }),
+                prepare(userStreaksManager, m -> {
+                    m.recordCorrectQuestionAttempt(student, questionPageQuestion.getId());
+                    m.notifyUserOfStreakChange(student);
+                }),
+                succeeds()
+            )
+        );
+    }
+
+    @Test
+    public void answerQuestion_incorrectAnswer_checkOnlyNotifiesOfStreak() {
+        String jsonAnswer = "jsonAnswer";
+        ChoiceDTO choice = new ChoiceDTO();
+        QuestionValidationResponseDTO validationResponse = new QuestionValidationResponseDTO();
+        validationResponse.setQuestionId(questionPageQuestion.getId());
+        validationResponse.setCorrect(false);
+
+        forEndpoint(() -> questionFacade.answerQuestion(httpServletRequest, questionPageQuestion.getId(), jsonAnswer),
+            as(student,
+                prepare(questionManager, m -> {
+                    expect(m.convertJsonAnswerToChoice(jsonAnswer)).andReturn(choice);
+                    expect(m.validateAnswer(questionPageQuestionDO, choice)).andReturn(Response.ok(validationResponse).build());
+                    m.recordQuestionAttempt(student, validationResponse);
+                }),
+                prepare(misuseMonitor, m -> {
+                    m.notifyEvent(anyString(), anyString());
+                    expectLastCall().anyTimes();
+                }),
+                prepare(userStreaksManager, m -> m.notifyUserOfStreakChange(student)),
+                succeeds()
+            )
+        );
+    }
 }
@@ -0,0 +1,188 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import com.google.common.io.Resources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.PgUserStreakManager;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.IUserAlertBus;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.ac.cam.cl.dtg.isaac.api.ITConstants.ERIKA_STUDENT_ID;
+
+/**
+ * Tests of the user_streak_record* database functions, and the nightly rebuild of them, against a real database.
+ */
+public class UserStreakRecordsIT extends IsaacIntegrationTest {
+    private static final String TEST_PAGE_ID = "_streak_test_";
+
+    private PgUserStreakManager userStreakManager;
+    private RegisteredUserDTO erika;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        IUserAlertBus alertBus = createNiceMock(IUserAlertBus.class);
+        replay(alertBus);
+        userStreakManager = new PgUserStreakManager(postgresSqlDb, alertBus);
+        erika = new RegisteredUserDTO();
+        erika.setId(ERIKA_STUDENT_ID);
+
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("DELETE FROM question_attempts WHERE user_id = " + ERIKA_STUDENT_ID);
+            st.execute("DELETE FROM user_streak_counted_questions WHERE user_id = " + ERIKA_STUDENT_ID);
+            st.execute("DELETE FROM user_streak_records WHERE user_id = " + ERIKA_STUDENT_ID);
+        }
+    }
+
+    @Test
+    public void getCurrentStreakRecord_noStoredRecord_checkBuiltFromAttemptHistory() throws Exception {
+        LocalDate today = LocalDate.now();
+        for (int daysAgo = 2; daysAgo >= 0; daysAgo--) {
+            for (int question = 0; question < 3; question++) {
+                insertCorrectAttempt("q" + daysAgo + "_" + question, today.minusDays(daysAgo).atTime(12, 0));
+            }
+        }
+
+        Map<String, Object> streakRecord = userStreakManager.getCurrentStreakRecord(erika);
+
+        assertEquals(3, streakRecord.get("currentActivity"));
+        assertEquals(3, streakRecord.get("currentStreak"));
+        assertEquals(3, userStreakManager.getLongestStreak(erika));
+        assertEquals(9, countCountedQuestions());
+    }
+
+    @Test
+    public void recordCorrectQuestionAttempt_dailyTargetReached_checkStoredRecordMatchesRebuild() throws Exception {
+        userStreakManager.getCurrentStreakRecord(erika);  // Build an empty record to update incrementally.
+
+        for (int question = 0; question < 3; question++) {
+            insertCorrectAttempt("q" + question, LocalDateTime.now());
+            userStreakManager.recordCorrectQuestionAttempt(erika, TEST_PAGE_ID + "|q" + question);
+        }
+        Map<String, Object> incrementalRecord = userStreakManager.getCurrentStreakRecord(erika);
+        int incrementalLongestWeekly = userStreakManager.getLongestWeeklyStreak(erika);
+
+        runQuery("SELECT user_streak_record_rebuild(" + ERIKA_STUDENT_ID + ")");
+
+        assertEquals(3, incrementalRecord.get("currentActivity"));
+        assertEquals(1, incrementalRecord.get("currentStreak"));
+        assertEquals(incrementalRecord, userStreakManager.getCurrentStreakRecord(erika));
+        assertEquals(3, userStreakManager.getCurrentWeeklyStreakRecord(erika).get("currentActivity"));
+        assertEquals(incrementalLongestWeekly, userStreakManager.getLongestWeeklyStreak(erika));
+    }
+
+    @Test
+    public void recordCorrectQuestionAttempt_sameQuestionTwice_checkCountedOnce() throws Exception {
+        userStreakManager.getCurrentStreakRecord(erika);
+
+        insertCorrectAttempt("q0", LocalDateTime.now());
+        userStreakManager.recordCorrectQuestionAttempt(erika, TEST_PAGE_ID + "|q0");
+        insertCorrectAttempt("q0", LocalDateTime.now());
+        userStreakManager.recordCorrectQuestionAttempt(erika, TEST_PAGE_ID + "|q0");
+
+        assertEquals(1, userStreakManager.getCurrentStreakRecord(erika).get("currentActivity"));
+    }
+
+    @Test
+    public void recordCorrectQuestionAttempt_concurrentFirstCorrectAttempts_checkCountedOnce() throws Exception {
+        userStreakManager.getCurrentStreakRecord(erika);
+        int concurrentAttempts = 8;
+        for (int i = 0; i < concurrentAttempts; i++) {
+            insertCorrectAttempt("q0", LocalDateTime.now());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentAttempts);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> attempts = new ArrayList<>();
+            for (int i = 0; i < concurrentAttempts; i++) {
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    userStreakManager.recordCorrectQuestionAttempt(erika, TEST_PAGE_ID + "|q0");
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, userStreakManager.getCurrentStreakRecord(erika).get("currentActivity"));
+        assertEquals(1, countCountedQuestions());
+    }
+
+    @Test
+    public void nightlyRebuild_retrospectiveStreakFreeze_checkStoredRecordRepaired() throws Exception {
+        LocalDate today = LocalDate.now();
+        for (int question = 0; question < 3; question++) {
+            insertCorrectAttempt("old" + question, today.minusDays(2).atTime(12, 0));
+            insertCorrectAttempt("new" + question, today.atTime(0, 1));
+        }
+        assertEquals(1, userStreakManager.getCurrentStreakRecord(erika).get("currentStreak"));
+
+        // Freezing yesterday joins the two active days into one streak, but only once the record is rebuilt:
+        runQuery("INSERT INTO user_streak_freezes (user_id, start_date, end_date) VALUES (" + ERIKA_STUDENT_ID
+                + ", CURRENT_DATE - 1, CURRENT_DATE - 1)");
+        runQuery(Resources.toString(Resources.getResource("db_scripts/scheduled/user-streak-records-rebuild.sql"),
+                StandardCharsets.UTF_8));
+
+        assertEquals(2, userStreakManager.getCurrentStreakRecord(erika).get("currentStreak"));
+        assertEquals(6, countCountedQuestions());
+    }
+
+    /**
+     * Insert a correct attempt by Erika at a question on the streak test page.
+     */
+    private void insertCorrectAttempt(final String questionPart, final LocalDateTime timestamp) throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("INSERT INTO question_attempts"
+                     + " (user_id, page_id, question_id, question_attempt, correct, \"timestamp\")"
+                     + " VALUES (?, ?, ?, '{}'::jsonb, true, ?)")) {
+            pst.setLong(1, ERIKA_STUDENT_ID);
+            pst.setString(2, TEST_PAGE_ID);
+            pst.setString(3, TEST_PAGE_ID + "|" + questionPart);
+            pst.setTimestamp(4, Timestamp.valueOf(timestamp));
+            pst.executeUpdate();
+        }
+    }
+
+    private int countCountedQuestions() throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             Statement st = conn.createStatement();
+             ResultSet results = st.executeQuery("SELECT COUNT(*) FROM user_streak_counted_questions WHERE user_id = "
+                     + ERIKA_STUDENT_ID)) {
+            results.next();
+            return results.getInt(1);
+        }
+    }
+
+    private void runQuery(final String query) throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             Statement st = conn.createStatement()) {
+            st.execute(query);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package uk.ac.cam.cl.dtg.isaac.api.managers;
 
 import ma.glasnost.orika.MapperFacade;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.Before;
@@ -27,17 +28,28 @@ import org.powermock.api.easymock.PowerMock;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import uk.ac.cam.cl.dtg.isaac.api.Constants.GameboardItemState;
 import uk.ac.cam.cl.dtg.isaac.dao.GameboardPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacQuestionPage;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 import uk.ac.cam.cl.dtg.isaac.dto.GameFilter;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardItem;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager.BooleanSearchClause;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -99,4 +111,73 @@ public class GameManagerTest {
         assertEquals(deprecatedFilter.getOperator(), Constants.BooleanOperator.NOT);
         assertEquals(deprecatedFilter.getValues(), Collections.singletonList("true"));
     }
+
+    @Test
+    public void gatherGameProgressData_severalGameboards_checkAttemptsLoadedOnceAndEachPageLookedUpOnce() throws
+            Exception {
+
+        // Arrange
+        GameManager gameManager = new GameManager(
+                this.dummyContentManager,
+                this.dummyGameboardPersistenceManager,
+                this.dummyMapper,
+                this.dummyQuestionManager
+        );
+
+        GameboardDTO firstGameboard = createGameboard("board_1", "page_a", "page_b");
+        GameboardDTO secondGameboard = createGameboard("board_2", "page_b");
+        List<RegisteredUserDTO> users = Arrays.asList(createUser(1L), createUser(2L));
+
+        LightweightQuestionValidationResponse correctAttempt = new LightweightQuestionValidationResponse();
+        correctAttempt.setCorrect(true);
+        Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> attempts = new HashMap<>();
+        attempts.put(1L, Collections.singletonMap("page_b",
+                Collections.singletonMap("page_b|part", Collections.singletonList(correctAttempt))));
+
+        EasyMock.expect(dummyQuestionManager.getMatchingLightweightQuestionAttempts(users,
+                Arrays.asList("page_a", "page_b"))).andReturn(attempts).once();
+        EasyMock.expect(dummyContentManager.getContentDOById("page_a")).andReturn(createQuestionPage("page_a")).once();
+        EasyMock.expect(dummyContentManager.getContentDOById("page_b")).andReturn(createQuestionPage("page_b")).once();
+        replay(dummyContentManager, dummyQuestionManager);
+
+        // Act
+        Map<String, List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>>> progress =
+                gameManager.gatherGameProgressData(users, Arrays.asList(firstGameboard, secondGameboard));
+
+        // Assert
+        PowerMock.verify(dummyContentManager, dummyQuestionManager);
+        assertEquals(2, progress.get("board_1").size());
+        List<GameboardItem> firstUserSecondBoard = progress.get("board_2").get(0).getRight();
+        assertEquals(GameboardItemState.PERFECT, firstUserSecondBoard.get(0).getState());
+        List<GameboardItem> secondUserSecondBoard = progress.get("board_2").get(1).getRight();
+        assertEquals(GameboardItemState.NOT_ATTEMPTED, secondUserSecondBoard.get(0).getState());
+    }
+
+    private static GameboardDTO createGameboard(final String gameboardId, final String... questionPageIds) {
+        GameboardDTO gameboard = new GameboardDTO();
+        gameboard.setId(gameboardId);
+        List<GameboardItem> contents = new ArrayList<>();
+        for (String questionPageId : questionPageIds) {
+            GameboardItem item = new GameboardItem();
+            item.setId(questionPageId);
+            contents.add(item);
+        }
+        gameboard.setContents(contents);
+        return gameboard;
+    }
+
+    private static IsaacQuestionPage createQuestionPage(final String questionPageId) {
+        Question questionPart = new Question();
+        questionPart.setId(questionPageId + "|part");
+        IsaacQuestionPage questionPage = new IsaacQuestionPage();
+        questionPage.setId(questionPageId);
+        questionPage.setChildren(Collections.singletonList(questionPart));
+        return questionPage;
+    }
+
+    private static RegisteredUserDTO createUser(final Long userId) {
+        RegisteredUserDTO user = new RegisteredUserDTO();
+        user.setId(userId);
+        return user;
+    }
 }
@@ -0,0 +1,143 @@
+package uk.ac.cam.cl.dtg.isaac.dos;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.IUserAlertBus;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PgUserStreakManager class.
+ */
+public class PgUserStreakManagerTest {
+    private static final long USER_ID = 7L;
+
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private IUserAlertBus dummyAlertBus;
+    private PgUserStreakManager userStreakManager;
+    private RegisteredUserDTO user;
+
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.dummyAlertBus = createMock(IUserAlertBus.class);
+        this.userStreakManager = new PgUserStreakManager(dummyPostgresSqlDb, dummyAlertBus);
+        this.user = new RegisteredUserDTO();
+        this.user.setId(USER_ID);
+    }
+
+    @Test
+    public void recordCorrectQuestionAttempt_correctAttempt_checkStoredRecordUpdatedForQuestion() throws Exception {
+        PreparedStatement dummyUpdate = createMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement("SELECT user_streak_record_correct_attempt(?, ?)"))
+                .andReturn(dummyUpdate).once();
+        dummyUpdate.setLong(1, USER_ID);
+        dummyUpdate.setString(2, "page|question");
+        expect(dummyUpdate.executeQuery()).andReturn(dummyResultSet).once();
+        dummyUpdate.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyUpdate, dummyResultSet, dummyAlertBus);
+
+        userStreakManager.recordCorrectQuestionAttempt(user, "page|question");
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyUpdate, dummyAlertBus);
+    }
+
+    @Test
+    public void recordCorrectQuestionAttempt_databaseUnavailable_checkErrorNotPropagated() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andThrow(new SQLException("unavailable")).once();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyAlertBus);
+
+        userStreakManager.recordCorrectQuestionAttempt(user, "page|question");
+
+        verify(dummyPostgresSqlDb, dummyAlertBus);
+    }
+
+    @Test
+    public void getStreakRecords_storedRecord_checkDailyAndWeeklyValuesRead() throws Exception {
+        PreparedStatement dummyRead = createNiceMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createStoredRecord(2, 5, 9, 4, 3, 6);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(4);
+        expect(dummyConnection.prepareStatement("SELECT * FROM user_streak_record(?)")).andReturn(dummyRead).times(4);
+        expect(dummyRead.executeQuery()).andReturn(dummyResultSet).times(4);
+        replay(dummyPostgresSqlDb, dummyConnection, dummyRead, dummyAlertBus);
+
+        Map<String, Object> daily = userStreakManager.getCurrentStreakRecord(user);
+        Map<String, Object> weekly = userStreakManager.getCurrentWeeklyStreakRecord(user);
+
+        assertEquals(2, daily.get("currentActivity"));
+        assertEquals(5, daily.get("currentStreak"));
+        assertEquals(9, userStreakManager.getLongestStreak(user));
+        assertEquals(4, weekly.get("currentActivity"));
+        assertEquals(3, weekly.get("currentStreak"));
+        assertEquals(6, userStreakManager.getLongestWeeklyStreak(user));
+        verify(dummyPostgresSqlDb, dummyConnection, dummyRead, dummyAlertBus);
+    }
+
+    @Test
+    public void getLongestStreak_databaseUnavailable_checkEmptyRecord() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andThrow(new SQLException("unavailable")).once();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyAlertBus);
+
+        assertEquals(0, userStreakManager.getLongestStreak(user));
+        verify(dummyPostgresSqlDb, dummyAlertBus);
+    }
+
+    @Test
+    public void notifyUserOfStreakChange_storedRecord_checkProgressAlertPublished() throws Exception {
+        PreparedStatement dummyRead = createNiceMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createStoredRecord(2, 5, 9, 4, 3, 6);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement("SELECT * FROM user_streak_record(?)")).andReturn(dummyRead).once();
+        expect(dummyRead.executeQuery()).andReturn(dummyResultSet).once();
+        Capture<IUserAlert> publishedAlert = Capture.newInstance();
+        dummyAlertBus.publish(eq(USER_ID), capture(publishedAlert));
+        replay(dummyPostgresSqlDb, dummyConnection, dummyRead, dummyAlertBus);
+
+        userStreakManager.notifyUserOfStreakChange(user);
+
+        verify(dummyPostgresSqlDb, dummyAlertBus);
+        String message = publishedAlert.getValue().getMessage();
+        assertTrue(message.contains("\"dailyStreakRecord\""));
+        assertTrue(message.contains("\"currentStreak\":5"));
+        assertTrue(message.contains("\"currentActivity\":4"));
+    }
+
+    /**
+     * @return a result set containing a single row of the user_streak_record function, as stubs.
+     */
+    private ResultSet createStoredRecord(final int currentProgress, final int currentStreak, final int longestStreak,
+                                         final int currentWeeklyProgress, final int currentWeeklyStreak,
+                                         final int longestWeeklyStreak) throws SQLException {
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        expect(dummyResultSet.next()).andStubReturn(true);
+        expect(dummyResultSet.getInt("currentprogress")).andStubReturn(currentProgress);
+        expect(dummyResultSet.getInt("currentstreak")).andStubReturn(currentStreak);
+        expect(dummyResultSet.getInt("longeststreak")).andStubReturn(longestStreak);
+        expect(dummyResultSet.getInt("currentweeklyprogress")).andStubReturn(currentWeeklyProgress);
+        expect(dummyResultSet.getInt("currentweeklystreak")).andStubReturn(currentWeeklyStreak);
+        expect(dummyResultSet.getInt("longestweeklystreak")).andStubReturn(longestWeeklyStreak);
+        replay(dummyResultSet);
+        return dummyResultSet;
+    }
+}
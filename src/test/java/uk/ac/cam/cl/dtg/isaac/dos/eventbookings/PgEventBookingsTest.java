@@ -6,19 +6,26 @@ import org.junit.Test;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.anyString;
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class PgEventBookingsTest {
     private PgEventBookings buildPgEventBookings() {
@@ -90,4 +97,57 @@ public class PgEventBookingsTest {
         assertEquals("Every row should be represented in the result", expectedStatusCounts, actualStatusCounts);
         verify(mockedObjects);
     }
+
+    @Test
+    public void getEventBookingStatusCounts_severalEvents_checkCountsGroupedByEventInOneQuery() throws Exception {
+        // Mock setup
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyConnection.createArrayOf(eq("text"), anyObject())).andReturn(createNiceMock(Array.class)).times(2);
+        dummyPreparedStatement.setArray(anyInt(), anyObject());
+        dummyPreparedStatement.setArray(anyInt(), anyObject());
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet);
+        dummyPreparedStatement.close();
+
+        // Mock db result
+        expect(dummyResultSet.next()).andReturn(true).once();
+        expect(dummyResultSet.getString("event_id")).andReturn("event1").once();
+        expect(dummyResultSet.getString("status")).andReturn("CONFIRMED").once();
+        expect(dummyResultSet.getString("role")).andReturn("STUDENT").once();
+        expect(dummyResultSet.getLong("count")).andReturn(20L).once();
+
+        expect(dummyResultSet.next()).andReturn(true).once();
+        expect(dummyResultSet.getString("event_id")).andReturn("event2").once();
+        expect(dummyResultSet.getString("status")).andReturn("CONFIRMED").once();
+        expect(dummyResultSet.getString("role")).andReturn("TEACHER").once();
+        expect(dummyResultSet.getLong("count")).andReturn(4L).once();
+
+        expect(dummyResultSet.next()).andReturn(false).once();
+        dummyResultSet.close();
+        dummyConnection.close();
+
+        // Create expected status counts; event3 has no bookings so should not appear
+        Map<String, Map<BookingStatus, Map<Role, Long>>> expectedStatusCounts = new HashMap<>() {{
+            put("event1", Collections.singletonMap(BookingStatus.CONFIRMED, Collections.singletonMap(Role.STUDENT, 20L)));
+            put("event2", Collections.singletonMap(BookingStatus.CONFIRMED, Collections.singletonMap(Role.TEACHER, 4L)));
+        }};
+
+        // Run test
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+        PgEventBookings pgEventBookings = this.buildPgEventBookings();
+        Map<String, Map<BookingStatus, Map<Role, Long>>> actualStatusCounts = pgEventBookings
+                .getEventBookingStatusCounts(Arrays.asList("event1", "event2", "event3"), Collections.singleton("event1"));
+        assertEquals("Every row should be represented under its event", expectedStatusCounts, actualStatusCounts);
+        verify(mockedObjects);
+    }
+
+    @Test
+    public void findBookingStatusesByUserAndEvents_noEvents_checkDatabaseNotQueried() throws Exception {
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+        PgEventBookings pgEventBookings = this.buildPgEventBookings();
+        assertTrue(pgEventBookings.findBookingStatusesByUserAndEvents(1L, Collections.emptyList()).isEmpty());
+        verify(mockedObjects);
+    }
 }
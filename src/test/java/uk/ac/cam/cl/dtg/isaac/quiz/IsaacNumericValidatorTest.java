@@ -195,6 +195,40 @@ public class IsaacNumericValidatorTest {
         assertTrue(responseTooMany.getCorrectUnits());
     }
 
+    /*
+        Test that marking, including significant figure and unit feedback, depends only on the answer given, so that
+        the validator may declare itself deterministic and have its responses cached.
+     */
+    @Test
+    public final void isaacNumericValidator_SameAnswerValidatedAgain_SameFeedbackShouldHappen() {
+        assertTrue(validator.isDeterministic());
+        List<Quantity> answers = Arrays.asList(new Quantity("4", correctUnits), new Quantity("42.000", correctUnits),
+                new Quantity(correctIntegerAnswer, "m\\,h^{-1}"), new Quantity("43", correctUnits),
+                new Quantity(correctIntegerAnswer, correctUnits));
+
+        List<QuantityValidationResponse> firstResponses = new LinkedList<>();
+        for (Quantity answer : answers) {
+            firstResponses.add((QuantityValidationResponse) validator.validateQuestionResponse(numericQuestionWithUnits,
+                    answer));
+        }
+        // Mark the answers again in the opposite order, with a new validator, to show nothing carries between calls:
+        IsaacNumericValidator otherValidator = new IsaacNumericValidator();
+        for (int i = answers.size() - 1; i >= 0; i--) {
+            QuantityValidationResponse first = firstResponses.get(i);
+            QuantityValidationResponse second = (QuantityValidationResponse) otherValidator.validateQuestionResponse(
+                    numericQuestionWithUnits, answers.get(i));
+
+            assertEquals(first.isCorrect(), second.isCorrect());
+            assertEquals(first.getCorrectValue(), second.getCorrectValue());
+            assertEquals(first.getCorrectUnits(), second.getCorrectUnits());
+            assertEquals(null == first.getExplanation(), null == second.getExplanation());
+            if (null != first.getExplanation()) {
+                assertEquals(first.getExplanation().getValue(), second.getExplanation().getValue());
+                assertEquals(first.getExplanation().getTags(), second.getExplanation().getTags());
+            }
+        }
+    }
+
     /*
         Test a correct integer answer with incorrect units gets recognised as incorrect, but with correct value.
      */
@@ -0,0 +1,237 @@
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacSymbolicQuestion;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Formula;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the Symbolic Validator class, using a stub symbolic checker.
+ */
+@PowerMockIgnore({"jakarta.ws.*"})
+public class IsaacSymbolicValidatorTest {
+    private HttpServer stubChecker;
+    private AtomicInteger checkerRequests;
+    private AtomicInteger checkerRequestsInFlight;
+    private AtomicInteger maxCheckerRequestsInFlight;
+    private List<String> checkedTargets;
+    private volatile long checkerDelayMilliseconds;
+    private IsaacSymbolicValidator validator;
+
+    /**
+     * Start a stub checker which treats "x + x" as symbolically equal to "2*x" and everything else as different.
+     *
+     * @throws Exception - test exception
+     */
+    @Before
+    public final void setUp() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        checkerRequests = new AtomicInteger();
+        checkerRequestsInFlight = new AtomicInteger();
+        maxCheckerRequestsInFlight = new AtomicInteger();
+        checkedTargets = Collections.synchronizedList(new ArrayList<>());
+
+        stubChecker = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubChecker.createContext("/check", exchange -> {
+            checkerRequests.incrementAndGet();
+            maxCheckerRequestsInFlight.accumulateAndGet(checkerRequestsInFlight.incrementAndGet(), Math::max);
+            @SuppressWarnings("unchecked")
+            Map<String, String> request = mapper.readValue(exchange.getRequestBody(), HashMap.class);
+            checkedTargets.add(request.get("target"));
+            try {
+                Thread.sleep(checkerDelayMilliseconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            checkerRequestsInFlight.decrementAndGet();
+
+            Map<String, String> response = new HashMap<>();
+            if ("2*x".equals(request.get("target")) && "x + x".equals(request.get("test"))) {
+                response.put("equal", "true");
+                response.put("equality_type", "symbolic");
+            } else {
+                response.put("equal", "false");
+            }
+
+            byte[] body = mapper.writeValueAsString(response).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        stubChecker.start();
+
+        validator = new IsaacSymbolicValidator("localhost", String.valueOf(stubChecker.getAddress().getPort()),
+                new ExternalValidatorClient(1000, 5000, 2));
+    }
+
+    @After
+    public final void tearDown() {
+        stubChecker.stop(0);
+    }
+
+    /*
+        Test that every choice is checked, and that the symbolic match is chosen over the other choices.
+     */
+    @Test
+    public final void isaacSymbolicValidator_SymbolicMatchToCorrectChoice_CorrectResponseReturned() throws Exception {
+        IsaacSymbolicQuestion question = createQuestion("y", "2*x", "3*x");
+
+        QuestionValidationResponse response = validator.validateQuestionResponse(question, createFormula("x + x", false));
+
+        assertTrue(response.isCorrect());
+        assertEquals("2*x", response.getExplanation().getValue());
+        assertEquals(3, checkerRequests.get());
+    }
+
+    /*
+        Test that every choice is still checked when a slow checker will not accept them all at once.
+     */
+    @Test
+    public final void isaacSymbolicValidator_MoreChoicesThanCheckerPermits_AllChoicesChecked() throws Exception {
+        checkerDelayMilliseconds = 300;
+        IsaacSymbolicValidator limitedValidator = new IsaacSymbolicValidator("localhost",
+                String.valueOf(stubChecker.getAddress().getPort()), new ExternalValidatorClient(1000, 5000, 1));
+        IsaacSymbolicQuestion question = createQuestion("y", "3*x", "2*x");
+
+        QuestionValidationResponse response = limitedValidator.validateQuestionResponse(question,
+                createFormula("x + x", false));
+
+        assertTrue(response.isCorrect());
+        assertEquals("2*x", response.getExplanation().getValue());
+        assertEquals(3, checkerRequests.get());
+    }
+
+    /*
+        Test that the choices are sent to a checker which accepts one request at a time in the order they are listed.
+     */
+    @Test
+    public final void isaacSymbolicValidator_OneCheckerPermit_ChoicesCheckedInOrder() throws Exception {
+        // Slow enough that the first request still holds the only permit when the second is tried:
+        checkerDelayMilliseconds = 200;
+        IsaacSymbolicValidator limitedValidator = new IsaacSymbolicValidator("localhost",
+                String.valueOf(stubChecker.getAddress().getPort()), new ExternalValidatorClient(1000, 5000, 1));
+        IsaacSymbolicQuestion question = createQuestion("a", "b", "c", "d", "e", "f");
+
+        QuestionValidationResponse response = limitedValidator.validateQuestionResponse(question,
+                createFormula("x + x", false));
+
+        assertFalse(response.isCorrect());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), checkedTargets);
+    }
+
+    /*
+        Test that one validation never has more than the per-validation limit of requests in flight, even when the
+        checker would accept more.
+     */
+    @Test
+    public final void isaacSymbolicValidator_ManyChoices_RequestsInFlightLimitedPerValidation() throws Exception {
+        checkerDelayMilliseconds = 100;
+        IsaacSymbolicValidator generousValidator = new IsaacSymbolicValidator("localhost",
+                String.valueOf(stubChecker.getAddress().getPort()), new ExternalValidatorClient(1000, 5000, 20));
+        IsaacSymbolicQuestion question = createQuestion("a", "b", "c", "d", "e", "f", "g", "h", "i", "2*x");
+
+        QuestionValidationResponse response = generousValidator.validateQuestionResponse(question,
+                createFormula("x + x", false));
+
+        assertTrue(response.isCorrect());
+        assertEquals(10, checkerRequests.get());
+        assertTrue(maxCheckerRequestsInFlight.get() <= IValidator.MAX_EXTERNAL_VALIDATOR_REQUESTS_PER_VALIDATION);
+    }
+
+    /*
+        Test that requests still pending are cancelled if marking fails with an unexpected exception.
+     */
+    @Test
+    public final void isaacSymbolicValidator_UnexpectedFailureWhileMarking_PendingRequestsCancelled() throws Exception {
+        checkerDelayMilliseconds = 300;
+        List<CompletableFuture<HashMap<String, Object>>> startedResponses = new ArrayList<>();
+        IsaacSymbolicValidator failingValidator = new IsaacSymbolicValidator("localhost",
+                String.valueOf(stubChecker.getAddress().getPort()), new ExternalValidatorClient(1000, 5000, 2)) {
+            @Override
+            public List<CompletableFuture<HashMap<String, Object>>> getResponsesFromExternalValidator(
+                    final String externalValidatorUrl, final List<Map.Entry<Choice, Map<String, String>>> requestBodies)
+                    throws IOException {
+                List<CompletableFuture<HashMap<String, Object>>> pendingResponses =
+                        super.getResponsesFromExternalValidator(externalValidatorUrl, requestBodies);
+                startedResponses.addAll(pendingResponses);
+                return pendingResponses;
+            }
+
+            @Override
+            public HashMap<String, Object> awaitResponseFromExternalValidator(
+                    final CompletableFuture<HashMap<String, Object>> pendingResponse) {
+                throw new IllegalStateException("Unexpected failure");
+            }
+        };
+        IsaacSymbolicQuestion question = createQuestion("a", "b", "c");
+
+        try {
+            failingValidator.validateQuestionResponse(question, createFormula("x + x", false));
+            fail("Expected the unexpected failure to propagate");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        assertEquals(3, startedResponses.size());
+        for (CompletableFuture<HashMap<String, Object>> startedResponse : startedResponses) {
+            assertTrue(startedResponse.isCancelled());
+        }
+    }
+
+    /*
+        Test that an answer matching no choice is marked incorrect.
+     */
+    @Test
+    public final void isaacSymbolicValidator_NoMatchingChoice_IncorrectResponseReturned() throws Exception {
+        IsaacSymbolicQuestion question = createQuestion("y", "2*x", "3*x");
+
+        QuestionValidationResponse response = validator.validateQuestionResponse(question, createFormula("4*x", false));
+
+        assertFalse(response.isCorrect());
+    }
+
+    private static IsaacSymbolicQuestion createQuestion(final String... correctExpressions) {
+        IsaacSymbolicQuestion question = new IsaacSymbolicQuestion();
+        question.setId("symbolic_question");
+        List<Choice> choices = new ArrayList<>();
+        for (String expression : correctExpressions) {
+            choices.add(createFormula(expression, true));
+        }
+        question.setChoices(choices);
+        return question;
+    }
+
+    private static Formula createFormula(final String pythonExpression, final boolean correct) {
+        Formula formula = new Formula();
+        formula.setPythonExpression(pythonExpression);
+        formula.setCorrect(correct);
+        formula.setExplanation(new Content(pythonExpression));
+        return formula;
+    }
+}
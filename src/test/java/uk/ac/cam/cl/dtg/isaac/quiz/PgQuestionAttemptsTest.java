@@ -0,0 +1,239 @@
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PgQuestionAttempts class.
+ */
+public class PgQuestionAttemptsTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+    private PgQuestionAttempts questionAttempts;
+
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+        ContentMapper dummyContentMapper = createMock(ContentMapper.class);
+        expect(dummyContentMapper.getSharedContentObjectMapper()).andReturn(new ObjectMapper()).anyTimes();
+        replay(dummyContentMapper);
+        this.questionAttempts = new PgQuestionAttempts(dummyPostgresSqlDb, dummyContentMapper);
+    }
+
+    @Test
+    public void registerQuestionAttempts_severalAttempts_checkWrittenAsOneBatchInOneTransaction() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        dummyConnection.setAutoCommit(false);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        dummyPreparedStatement.addBatch();
+        expectLastCall().times(3);
+        expect(dummyPreparedStatement.executeBatch()).andReturn(new int[] {1, 1, 1}).once();
+        dummyConnection.commit();
+        dummyConnection.setAutoCommit(true);
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+
+        Map<String, List<QuestionValidationResponse>> attemptsForPage = new HashMap<>();
+        attemptsForPage.put("page|part_1", Arrays.asList(createAttempt("page|part_1", false),
+                createAttempt("page|part_1", true)));
+        attemptsForPage.put("page|part_2", Collections.singletonList(createAttempt("page|part_2", true)));
+
+        questionAttempts.registerQuestionAttempts(1L, Collections.singletonMap("page", attemptsForPage));
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+    }
+
+    @Test
+    public void registerQuestionAttempt_singleAttempt_checkWrittenWithoutBatchOrTransaction() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).once();
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+
+        questionAttempts.registerQuestionAttempt(1L, "page", "page|part_1", createAttempt("page|part_1", true));
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+    }
+
+    @Test
+    public void registerQuestionAttempt_concurrentAttempts_checkWrittenTogetherAsOneBatch() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        dummyConnection.setAutoCommit(false);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        dummyPreparedStatement.addBatch();
+        expectLastCall().times(3);
+        expect(dummyPreparedStatement.executeBatch()).andReturn(new int[] {1, 1, 1}).once();
+        dummyConnection.commit();
+        dummyConnection.setAutoCommit(true);
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+
+        // Hold every writer's permit, as if earlier batches were still being written, whilst three users answer:
+        Semaphore writers = Whitebox.getInternalState(questionAttempts, "questionAttemptWriters");
+        Collection<?> pendingAttempts = Whitebox.getInternalState(questionAttempts, "pendingQuestionAttempts");
+        int writerPermits = writers.drainPermits();
+        ExecutorService answeringUsers = Executors.newFixedThreadPool(3);
+        List<Future<?>> answers = new ArrayList<>();
+        for (long userId = 1; userId <= 3; userId++) {
+            final long answeringUserId = userId;
+            answers.add(answeringUsers.submit(() -> {
+                questionAttempts.registerQuestionAttempt(answeringUserId, "page", "page|part_1",
+                        createAttempt("page|part_1", true));
+                return null;
+            }));
+        }
+        while (pendingAttempts.size() < 3) {
+            Thread.sleep(10);
+        }
+        writers.release(writerPermits);
+        for (Future<?> answer : answers) {
+            answer.get(5, TimeUnit.SECONDS);
+        }
+        answeringUsers.shutdown();
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+    }
+
+    @Test
+    public void registerQuestionAttempt_concurrentAttemptsWhilstOneInsertIsSlow_checkOthersNotHeldUp()
+            throws Exception {
+        Connection slowConnection = createMock(Connection.class);
+        PreparedStatement slowPreparedStatement = createNiceMock(PreparedStatement.class);
+        CountDownLatch slowInsertStarted = new CountDownLatch(1);
+        CountDownLatch slowInsertReleased = new CountDownLatch(1);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(slowConnection).once();
+        expect(slowConnection.prepareStatement(anyString())).andReturn(slowPreparedStatement).once();
+        expect(slowPreparedStatement.executeUpdate()).andAnswer(() -> {
+            slowInsertStarted.countDown();
+            slowInsertReleased.await();
+            return 1;
+        }).once();
+        slowConnection.close();
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(2);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(2);
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).times(2);
+        dummyConnection.close();
+        expectLastCall().times(2);
+        replay(dummyPostgresSqlDb, slowConnection, slowPreparedStatement, dummyConnection, dummyPreparedStatement);
+
+        ExecutorService answeringUsers = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> slowAnswer = answeringUsers.submit(() -> {
+                questionAttempts.registerQuestionAttempt(1L, "page", "page|part_1", createAttempt("page|part_1", true));
+                return null;
+            });
+            assertTrue(slowInsertStarted.await(5, TimeUnit.SECONDS));
+
+            // Whilst the first insert is stuck, other users' answers must still be saved:
+            for (long userId = 2; userId <= 3; userId++) {
+                final long answeringUserId = userId;
+                answeringUsers.submit(() -> {
+                    questionAttempts.registerQuestionAttempt(answeringUserId, "page", "page|part_1",
+                            createAttempt("page|part_1", true));
+                    return null;
+                }).get(5, TimeUnit.SECONDS);
+            }
+            assertFalse(slowAnswer.isDone());
+
+            slowInsertReleased.countDown();
+            slowAnswer.get(5, TimeUnit.SECONDS);
+        } finally {
+            slowInsertReleased.countDown();
+            answeringUsers.shutdownNow();
+        }
+
+        verify(dummyPostgresSqlDb, slowConnection, dummyConnection);
+    }
+
+    @Test
+    public void registerAnonymousQuestionAttempt_singleAttempt_checkAppendedWithoutLockOrRead() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).once();
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+
+        questionAttempts.registerAnonymousQuestionAttempt("anonymous-session", "page", "page|part_1",
+                createAttempt("page|part_1", true));
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+    }
+
+    @Test
+    public void streamQuestionPartOutcomes_severalOutcomes_checkEachPassedToHandlerThroughCursor() throws Exception {
+        ResultSet dummyResultSet = createMock(ResultSet.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        dummyConnection.setAutoCommit(false);
+        expect(dummyConnection.createArrayOf(anyString(), anyObject())).andReturn(createNiceMock(Array.class)).times(2);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        dummyPreparedStatement.setFetchSize(anyInt());
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).times(2).andReturn(false).once();
+        expect(dummyResultSet.getLong("user_id")).andReturn(1L).andReturn(2L);
+        expect(dummyResultSet.getString("question_id")).andReturn("page|part_1").andReturn("page|part_2");
+        expect(dummyResultSet.getBoolean("correct")).andReturn(true).andReturn(false);
+        dummyResultSet.close();
+        dummyConnection.commit();
+        dummyConnection.setAutoCommit(true);
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet);
+
+        Map<String, Boolean> outcomes = new HashMap<>();
+        questionAttempts.streamQuestionPartOutcomes(Arrays.asList(1L, 2L), Collections.singletonList("page"),
+                (userId, questionId, correct) -> outcomes.put(userId + ":" + questionId, correct));
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyResultSet);
+        assertEquals(2, outcomes.size());
+        assertTrue(outcomes.get("1:page|part_1"));
+        assertFalse(outcomes.get("2:page|part_2"));
+    }
+
+    private static QuestionValidationResponse createAttempt(final String questionId, final boolean correct) {
+        QuestionValidationResponse attempt = new QuestionValidationResponse();
+        attempt.setQuestionId(questionId);
+        attempt.setCorrect(correct);
+        attempt.setDateAttempted(new Date());
+        return attempt;
+    }
+}
@@ -0,0 +1,180 @@
+package uk.ac.cam.cl.dtg.segue.api.managers;
+
+import jakarta.ws.rs.core.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.reflections.Reflections;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacNumericQuestion;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
+import uk.ac.cam.cl.dtg.isaac.dto.QuestionValidationResponseDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.content.ChoiceDTO;
+import uk.ac.cam.cl.dtg.isaac.quiz.IQuestionAttemptManager;
+import uk.ac.cam.cl.dtg.isaac.quiz.IValidator;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the validation result cache of the QuestionManager class.
+ */
+public class QuestionManagerTest {
+    private static final String CONTENT_SHA = "abc123";
+    private static final Date EARLIER_ATTEMPT_DATE = new Date(0);
+
+    private ContentMapper contentMapper;
+    private GitContentManager dummyContentManager;
+    private QuestionManager questionManager;
+    private Question question;
+    private AtomicInteger validations;
+
+    @Before
+    public final void setUp() {
+        this.contentMapper = new ContentMapper(new Reflections("uk.ac.cam.cl.dtg.isaac"));
+        this.dummyContentManager = createMock(GitContentManager.class);
+        this.questionManager = new QuestionManager(contentMapper, createNiceMock(IQuestionAttemptManager.class),
+                dummyContentManager, 100);
+        this.question = new IsaacNumericQuestion();
+        this.question.setId("page|question");
+        this.validations = new AtomicInteger();
+    }
+
+    @Test
+    public void validateAnswer_sameAnswerTwice_checkValidatedOnce() {
+        expect(dummyContentManager.getCurrentContentSHA()).andStubReturn(CONTENT_SHA);
+        replay(dummyContentManager);
+        IValidator validator = new CountingValidator(true);
+
+        QuestionValidationResponseDTO first = validate(validator, "42");
+        QuestionValidationResponseDTO second = validate(validator, "42");
+
+        assertEquals(1, validations.get());
+        assertEquals(first.isCorrect(), second.isCorrect());
+        assertEquals(first.getExplanation().getValue(), second.getExplanation().getValue());
+    }
+
+    @Test
+    public void validateAnswer_differentAnswers_checkEachValidated() {
+        expect(dummyContentManager.getCurrentContentSHA()).andStubReturn(CONTENT_SHA);
+        replay(dummyContentManager);
+        IValidator validator = new CountingValidator(true);
+
+        QuestionValidationResponseDTO first = validate(validator, "42");
+        QuestionValidationResponseDTO second = validate(validator, "43");
+
+        assertEquals(2, validations.get());
+        assertTrue(first.isCorrect());
+        assertEquals(Boolean.FALSE, second.isCorrect());
+    }
+
+    @Test
+    public void validateAnswer_nonDeterministicValidator_checkCacheBypassed() {
+        expect(dummyContentManager.getCurrentContentSHA()).andStubReturn(CONTENT_SHA);
+        replay(dummyContentManager);
+        IValidator validator = new CountingValidator(false);
+
+        validate(validator, "42");
+        validate(validator, "42");
+
+        assertEquals(2, validations.get());
+    }
+
+    @Test
+    public void validateAnswer_unknownContentSha_checkCacheBypassed() {
+        expect(dummyContentManager.getCurrentContentSHA()).andStubReturn("unknown");
+        replay(dummyContentManager);
+        IValidator validator = new CountingValidator(true);
+
+        validate(validator, "42");
+        validate(validator, "42");
+
+        assertEquals(2, validations.get());
+    }
+
+    @Test
+    public void validateAnswer_contentVersionChanges_checkValidatedAgain() {
+        expect(dummyContentManager.getCurrentContentSHA()).andReturn(CONTENT_SHA).once();
+        expect(dummyContentManager.getCurrentContentSHA()).andReturn("def456").once();
+        replay(dummyContentManager);
+        IValidator validator = new CountingValidator(true);
+
+        validate(validator, "42");
+        validate(validator, "42");
+
+        assertEquals(2, validations.get());
+    }
+
+    @Test
+    public void validateAnswer_cachedResponse_checkAnswerAndDateBelongToLaterSubmission() {
+        expect(dummyContentManager.getCurrentContentSHA()).andStubReturn(CONTENT_SHA);
+        replay(dummyContentManager);
+        IValidator validator = new CountingValidator(true);
+        ChoiceDTO firstAnswer = createAnswer("42");
+        ChoiceDTO secondAnswer = createAnswer("42");
+
+        QuestionValidationResponseDTO first = getResponse(questionManager.validateAnswer(validator, question,
+                firstAnswer));
+        QuestionValidationResponseDTO second = getResponse(questionManager.validateAnswer(validator, question,
+                secondAnswer));
+
+        assertEquals(1, validations.get());
+        assertEquals(EARLIER_ATTEMPT_DATE, first.getDateAttempted());
+        assertSame(secondAnswer, second.getAnswer());
+        assertNotEquals(EARLIER_ATTEMPT_DATE, second.getDateAttempted());
+        // Changing the later response must not affect what is cached for the next submission:
+        second.setCorrect(false);
+        assertTrue(validate(validator, "42").isCorrect());
+    }
+
+    private QuestionValidationResponseDTO validate(final IValidator validator, final String answerValue) {
+        return getResponse(questionManager.validateAnswer(validator, question, createAnswer(answerValue)));
+    }
+
+    private static QuestionValidationResponseDTO getResponse(final Response response) {
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        return (QuestionValidationResponseDTO) response.getEntity();
+    }
+
+    private static ChoiceDTO createAnswer(final String value) {
+        ChoiceDTO answer = new ChoiceDTO();
+        answer.setValue(value);
+        return answer;
+    }
+
+    /**
+     * A validator which marks "42" as correct, and counts how many times it is asked to mark an answer.
+     */
+    private class CountingValidator implements IValidator {
+        private final boolean deterministic;
+
+        CountingValidator(final boolean deterministic) {
+            this.deterministic = deterministic;
+        }
+
+        @Override
+        public QuestionValidationResponse validateQuestionResponse(final Question question, final Choice answer) {
+            validations.incrementAndGet();
+            boolean correct = "42".equals(answer.getValue());
+            return new QuestionValidationResponse(question.getId(), answer, correct,
+                    new Content(correct ? "Correct!" : "Check your working."), EARLIER_ATTEMPT_DATE);
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return deterministic;
+        }
+    }
+}
@@ -73,7 +73,9 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -223,6 +225,94 @@ public class UserManagerTest {
         verify(dummyQuestionDatabase, request, dummyMapper);
     }
 
+    /**
+     * Test that a user whose session has recently been checked is reused from the cache, until it is invalidated.
+     *
+     * @throws Exception
+     */
+    @Test
+    public final void getUserFromSession_sessionUserCached_userLoadedOnceUntilInvalidated() throws Exception {
+        UserAuthenticationManager authManager = new UserAuthenticationManager(dummyDatabase, dummyDeletionTokenManager,
+                dummyPropertiesLoader, dummyProvidersMap, dummyQueue, null, 60, 10);
+        HttpServletRequest request = createMock(HttpServletRequest.class);
+
+        Long validUserId = 533L;
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, 500);
+        String validDateString = sdf.format(calendar.getTime());
+
+        RegisteredUser returnUser = new RegisteredUser(validUserId, "TestFirstName", "TestLastName", "", Role.STUDENT,
+                new Date(), Gender.MALE, null, new Date(), null, null, null, null, false);
+        returnUser.setSessionToken(0);
+        RegisteredUser loggedOutEverywhereUser = new RegisteredUser(returnUser);
+        loggedOutEverywhereUser.setSessionToken(1);
+
+        Map<String, String> sessionInformation = getSessionInformationAsAMap(authManager, validUserId.toString(), validDateString, returnUser.getSessionToken());
+        expect(request.getCookies()).andReturn(getCookieArray(sessionInformation)).anyTimes();
+        replay(request);
+
+        expect(dummyDatabase.getById(validUserId)).andReturn(returnUser).once();
+        expect(dummyDatabase.getById(validUserId)).andReturn(loggedOutEverywhereUser).once();
+        replay(dummyDatabase);
+
+        // Act
+        RegisteredUser firstUser = authManager.getUserFromSession(request);
+        firstUser.setRole(Role.ADMIN);
+        RegisteredUser secondUser = authManager.getUserFromSession(request);
+        authManager.invalidateCachedUser(validUserId);
+        RegisteredUser userAfterInvalidation = authManager.getUserFromSession(request);
+
+        // Assert
+        assertEquals(validUserId, secondUser.getId());
+        assertEquals(Role.STUDENT, secondUser.getRole());
+        assertNull(userAfterInvalidation);
+        verify(dummyDatabase, request);
+    }
+
+    /**
+     * Test that a user invalidated whilst being loaded from the database is not left in the cache.
+     *
+     * @throws Exception
+     */
+    @Test
+    public final void getUserFromSession_invalidatedWhilstLoading_staleUserNotCached() throws Exception {
+        UserAuthenticationManager authManager = new UserAuthenticationManager(dummyDatabase, dummyDeletionTokenManager,
+                dummyPropertiesLoader, dummyProvidersMap, dummyQueue, null, 60, 10);
+        HttpServletRequest request = createMock(HttpServletRequest.class);
+
+        Long validUserId = 533L;
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, 500);
+        String validDateString = sdf.format(calendar.getTime());
+
+        RegisteredUser returnUser = new RegisteredUser(validUserId, "TestFirstName", "TestLastName", "", Role.STUDENT,
+                new Date(), Gender.MALE, null, new Date(), null, null, null, null, false);
+        returnUser.setSessionToken(0);
+        RegisteredUser loggedOutEverywhereUser = new RegisteredUser(returnUser);
+        loggedOutEverywhereUser.setSessionToken(1);
+
+        Map<String, String> sessionInformation = getSessionInformationAsAMap(authManager, validUserId.toString(), validDateString, returnUser.getSessionToken());
+        expect(request.getCookies()).andReturn(getCookieArray(sessionInformation)).anyTimes();
+        replay(request);
+
+        // Simulate the user logging out everywhere on another thread, after their old details have been read:
+        expect(dummyDatabase.getById(validUserId)).andAnswer(() -> {
+            authManager.invalidateCachedUser(validUserId);
+            return returnUser;
+        }).once();
+        expect(dummyDatabase.getById(validUserId)).andReturn(loggedOutEverywhereUser).once();
+        replay(dummyDatabase);
+
+        // Act
+        RegisteredUser userReadBeforeInvalidation = authManager.getUserFromSession(request);
+        RegisteredUser userAfterInvalidation = authManager.getUserFromSession(request);
+
+        // Assert
+        assertEquals(validUserId, userReadBeforeInvalidation.getId());
+        assertNull(userAfterInvalidation);
+        verify(dummyDatabase, request);
+    }
+
     /**
      * Test that requesting authentication with a bad provider behaves as expected.
      * 
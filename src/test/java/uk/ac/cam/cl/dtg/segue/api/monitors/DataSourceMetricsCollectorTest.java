@@ -0,0 +1,55 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import io.prometheus.client.CollectorRegistry;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for the DataSourceMetricsCollector class.
+ */
+public class DataSourceMetricsCollectorTest {
+    private CollectorRegistry registry;
+    private DataSourceMetricsCollector collector;
+
+    @Before
+    public final void setUp() {
+        this.registry = new CollectorRegistry();
+        this.collector = new DataSourceMetricsCollector().register(registry);
+    }
+
+    @Test
+    public void collect_poolNotYetStarted_checkEmptyPoolReported() {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setMaxTotal(12);
+        collector.addDataSource("test", dataSource);
+
+        assertEquals(0.0, sample("segue_db_pool_connections", new String[]{"pool", "state"},
+                new String[]{"test", "active"}), 0);
+        assertEquals(0.0, sample("segue_db_pool_waiting_threads", new String[]{"pool"}, new String[]{"test"}), 0);
+        assertEquals(12.0, sample("segue_db_pool_max_connections", new String[]{"pool"}, new String[]{"test"}), 0);
+    }
+
+    @Test
+    public void removeDataSource_replacedByNewerPool_checkNewerPoolStillReported() {
+        BasicDataSource oldDataSource = new BasicDataSource();
+        BasicDataSource newDataSource = new BasicDataSource();
+        newDataSource.setMaxTotal(5);
+        collector.addDataSource("test", oldDataSource);
+        collector.addDataSource("test", newDataSource);
+
+        // Closing the old pool should not stop the new one being reported:
+        collector.removeDataSource("test", oldDataSource);
+        assertEquals(5.0, sample("segue_db_pool_max_connections", new String[]{"pool"}, new String[]{"test"}), 0);
+
+        collector.removeDataSource("test", newDataSource);
+        assertNull(sample("segue_db_pool_max_connections", new String[]{"pool"}, new String[]{"test"}));
+    }
+
+    private Double sample(final String name, final String[] labelNames, final String[] labelValues) {
+        return registry.getSampleValue(name, labelNames, labelValues);
+    }
+}
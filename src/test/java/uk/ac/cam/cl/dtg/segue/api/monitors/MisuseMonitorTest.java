@@ -27,7 +27,12 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.EmailVerificationStatus;
 import uk.ac.cam.cl.dtg.isaac.dos.users.RegisteredUser;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -263,4 +268,41 @@ public class MisuseMonitorTest {
             System.out.println("SegueResourceMisuseException");
         }
     }
+
+    /**
+     * Verifies that events are counted over a sliding window, so a burst either side of a window boundary is still
+     * limited, and that old events stop counting once they have slid out of the window.
+     */
+    @Test
+    public final void notifyEvent_burstAcrossWindowBoundary_countedOverSlidingWindow() throws Exception {
+        String agent = "1234";
+        String event = UserSearchMisuseHandler.class.getSimpleName();
+        long intervalMillis = UserSearchMisuseHandler.ACCOUNTING_INTERVAL * 1000L;
+        AtomicLong now = new AtomicLong(1000000L);
+
+        IMisuseMonitor misuseMonitor = new InMemoryMisuseMonitor(now::get);
+        misuseMonitor.registerHandler(event, new UserSearchMisuseHandler());
+
+        // Start the first window, then use the rest of the allowance at the very end of it:
+        misuseMonitor.notifyEvent(agent, event);
+        now.addAndGet(intervalMillis - 1);
+        for (int i = 1; i < UserSearchMisuseHandler.HARD_THRESHOLD; i++) {
+            misuseMonitor.notifyEvent(agent, event);
+        }
+
+        // Just after the boundary, almost all of those events are still in the window:
+        now.addAndGet(2);
+        assertTrue(misuseMonitor.hasMisused(agent, event));
+        try {
+            misuseMonitor.notifyEvent(agent, event);
+            fail("Exception should be thrown when the limit is exceeded across a window boundary");
+        } catch (SegueResourceMisuseException e) {
+            // fine
+        }
+
+        // Once everything is more than a window in the past, none of it counts:
+        now.addAndGet(2 * intervalMillis);
+        assertFalse(misuseMonitor.hasMisused(agent, event));
+        assertEquals(UserSearchMisuseHandler.HARD_THRESHOLD.intValue(), misuseMonitor.getRemainingUses(agent, event));
+    }
 }
@@ -0,0 +1,153 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.not;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.startsWith;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PgMisuseMonitor class.
+ */
+public class PgMisuseMonitorTest {
+    private static final String AGENT = "1234";
+    private static final String EVENT = "TestMisuseHandler";
+    private static final long INTERVAL_MILLISECONDS = TimeUnit.HOURS.toMillis(1);
+    // At the start of a bucket, so that the bucket boundary is known:
+    private static final long NOW = 100 * INTERVAL_MILLISECONDS;
+
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PgMisuseMonitor misuseMonitor;
+
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createMock(Connection.class);
+        // Use a long synchronisation interval, so that only the explicit synchronisations in the tests do anything:
+        this.misuseMonitor = new PgMisuseMonitor(dummyPostgresSqlDb, null, 3600000, () -> NOW);
+        this.misuseMonitor.registerHandler(EVENT, new TestMisuseHandler());
+    }
+
+    @Test
+    public void notifyEvent_severalEvents_checkCountedWithoutTouchingDatabase() throws Exception {
+        replay(dummyPostgresSqlDb, dummyConnection);
+
+        for (int i = 0; i < 3; i++) {
+            misuseMonitor.notifyEvent(AGENT, EVENT);
+        }
+
+        // Nothing should have touched the database yet:
+        verify(dummyPostgresSqlDb, dummyConnection);
+        assertEquals(7, misuseMonitor.getRemainingUses(AGENT, EVENT));
+    }
+
+    @Test
+    public void synchroniseCounts_otherNodesHaveCounted_checkDeltasWrittenAndSharedCountsUsed() throws Exception {
+        Capture<String> upsertQuery = Capture.newInstance();
+        PreparedStatement dummyUpsert = createNiceMock(PreparedStatement.class);
+        PreparedStatement dummySelect = createNiceMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createMock(ResultSet.class);
+
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        Capture<Object[]> bucketStarts = Capture.newInstance(CaptureType.ALL);
+        expect(dummyConnection.createArrayOf(eq("bigint"), capture(bucketStarts)))
+                .andReturn(createNiceMock(Array.class)).anyTimes();
+        expect(dummyConnection.createArrayOf(not(eq("bigint")), anyObject())).andReturn(createNiceMock(Array.class))
+                .anyTimes();
+        expect(dummyConnection.prepareStatement(capture(upsertQuery))).andReturn(dummyUpsert).once();
+        expect(dummyUpsert.executeUpdate()).andReturn(1).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummySelect).once();
+        expect(dummySelect.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).once().andReturn(false).once();
+        expect(dummyResultSet.getString("agent_identifier")).andReturn(AGENT);
+        expect(dummyResultSet.getString("event_label")).andReturn(EVENT);
+        expect(dummyResultSet.getLong("bucket_start_millis")).andReturn(NOW);
+        // This node's 3 events, plus 9 from other nodes:
+        expect(dummyResultSet.getInt("count")).andReturn(12);
+        dummyResultSet.close();
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyUpsert, dummySelect, dummyResultSet);
+
+        for (int i = 0; i < 3; i++) {
+            misuseMonitor.notifyEvent(AGENT, EVENT);
+        }
+        assertFalse(misuseMonitor.hasMisused(AGENT, EVENT));
+
+        misuseMonitor.synchroniseCounts();
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyUpsert, dummySelect, dummyResultSet);
+        assertTrue(upsertQuery.getValue().contains("ON CONFLICT"));
+        // Bucket starts are sent as epoch milliseconds, so that they do not depend on the node's time zone:
+        assertArrayEquals(new Object[] {NOW}, bucketStarts.getValues().get(0));
+        assertTrue(misuseMonitor.hasMisused(AGENT, EVENT));
+        assertEquals(-2, misuseMonitor.getRemainingUses(AGENT, EVENT));
+    }
+
+    @Test
+    public void getMisuseStatistics_eventsNotYetShared_checkOnlyReadsSharedCounts() throws Exception {
+        PreparedStatement dummySelect = createNiceMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(startsWith("SELECT"))).andReturn(dummySelect).once();
+        expect(dummySelect.executeQuery()).andReturn(dummyResultSet).once();
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummySelect, dummyResultSet);
+
+        misuseMonitor.notifyEvent(AGENT, EVENT);
+        misuseMonitor.getMisuseStatistics(10);
+
+        // The statistics must not write this node's counts on the request thread:
+        verify(dummyPostgresSqlDb, dummyConnection, dummySelect);
+    }
+
+    /**
+     * A misuse handler with small thresholds and no actions.
+     */
+    private static class TestMisuseHandler implements IMisuseHandler {
+        @Override
+        public Integer getSoftThreshold() {
+            return 5;
+        }
+
+        @Override
+        public Integer getHardThreshold() {
+            return 10;
+        }
+
+        @Override
+        public Integer getAccountingIntervalInSeconds() {
+            return (int) TimeUnit.MILLISECONDS.toSeconds(INTERVAL_MILLISECONDS);
+        }
+
+        @Override
+        public void executeSoftThresholdAction(final String message) {
+        }
+
+        @Override
+        public void executeHardThresholdAction(final String message) {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.IUserAlert;
+import uk.ac.cam.cl.dtg.isaac.dos.PgUserAlert;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresNotificationBus;
+
+import java.util.Date;
+import java.util.function.Consumer;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PgUserAlertBus class.
+ */
+public class PgUserAlertBusTest {
+    private PostgresNotificationBus dummyNotificationBus;
+    private Capture<Consumer<String>> subscriber;
+
+    @Before
+    public final void setUp() {
+        this.dummyNotificationBus = createMock(PostgresNotificationBus.class);
+        this.subscriber = Capture.newInstance();
+        dummyNotificationBus.subscribe(eq(PgUserAlertBus.CHANNEL), capture(subscriber));
+        expectLastCall().once();
+    }
+
+    @Test
+    public void publish_alert_checkBroadcastAsCompactEnvelopeWithUserIdPrefix() throws Exception {
+        Capture<String> payload = Capture.newInstance();
+        dummyNotificationBus.publish(eq(PgUserAlertBus.CHANNEL), capture(payload));
+        expectLastCall().once();
+        replay(dummyNotificationBus);
+
+        PgUserAlertBus alertBus = new PgUserAlertBus(dummyNotificationBus, MoreExecutors.newDirectExecutorService());
+        IUserAlert alert = new PgUserAlert(7L, 42L, "{\"streak\":3}", "progress", new Date(1000), null, null, null);
+        alertBus.publish(42L, alert);
+
+        verify(dummyNotificationBus);
+        assertTrue(subscriber.hasCaptured());
+        assertTrue(payload.getValue().startsWith("42:{"));
+        assertTrue(payload.getValue().contains("\"created\":1000"));
+        assertTrue(payload.getValue().contains("\"link\":\"progress\""));
+        // Null fields are left out of the envelope entirely:
+        assertFalse(payload.getValue().contains("seen"));
+
+        // Delivering it on a node where the user has no websockets should quietly do nothing:
+        subscriber.getValue().accept(payload.getValue());
+    }
+
+    @Test
+    public void publish_broadcastFails_checkNoExceptionAndMalformedNotificationsIgnored() throws Exception {
+        dummyNotificationBus.publish(anyString(), anyString());
+        expectLastCall().andThrow(new SegueDatabaseException("Test exception")).once();
+        replay(dummyNotificationBus);
+
+        PgUserAlertBus alertBus = new PgUserAlertBus(dummyNotificationBus, MoreExecutors.newDirectExecutorService());
+        alertBus.publish(42L, new PgUserAlert(null, 42L, "message", "link", new Date(), null, null, null));
+        subscriber.getValue().accept("not-an-envelope");
+        subscriber.getValue().accept(":{}");
+
+        verify(dummyNotificationBus);
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the WebSocketOutboundQueue class.
+ */
+public class WebSocketOutboundQueueTest {
+    private RemoteEndpoint dummyRemote;
+    private Capture<String> sent;
+    private Capture<WriteCallback> callbacks;
+
+    @Before
+    public final void setUp() {
+        this.dummyRemote = createMock(RemoteEndpoint.class);
+        this.sent = Capture.newInstance(CaptureType.ALL);
+        this.callbacks = Capture.newInstance(CaptureType.ALL);
+        dummyRemote.sendString(capture(sent), capture(callbacks));
+        expectLastCall().anyTimes();
+        replay(dummyRemote);
+    }
+
+    @Test
+    public void enqueue_slowClient_checkOneSendInFlightAndOldestDropped() {
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(dummyRemote, 2);
+
+        queue.enqueue(null, "first");
+        queue.enqueue(null, "second");
+        queue.enqueue(null, "third");
+        // The queue is full, so this should push out "second":
+        queue.enqueue(null, "fourth");
+
+        // Only the first message has been handed to Jetty, since it has not finished sending:
+        assertEquals(Arrays.asList("first"), sent.getValues());
+        assertEquals(2, queue.size());
+
+        callbacks.getValues().get(0).writeSuccess();
+        callbacks.getValues().get(1).writeSuccess();
+        callbacks.getValues().get(2).writeSuccess();
+
+        verify(dummyRemote);
+        assertEquals(Arrays.asList("first", "third", "fourth"), sent.getValues());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void enqueue_sameCoalescingKey_checkOnlyLatestQueuedMessageSent() {
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(dummyRemote, 4);
+
+        queue.enqueue(null, "alert");
+        queue.enqueue("userSnapshot", "snapshot-1");
+        queue.enqueue("userSnapshot", "snapshot-2");
+        queue.enqueue(null, "other");
+
+        callbacks.getValues().get(0).writeSuccess();
+        // A failed write should not stop the rest of the queue being sent:
+        callbacks.getValues().get(1).writeFailed(new RuntimeException("Test exception"));
+        callbacks.getValues().get(2).writeSuccess();
+
+        assertEquals(Arrays.asList("alert", "snapshot-2", "other"), sent.getValues());
+    }
+
+    @Test
+    public void close_messagesQueued_checkDiscardedAndNoMoreSent() {
+        WebSocketOutboundQueue queue = new WebSocketOutboundQueue(dummyRemote, 4);
+
+        queue.enqueue(null, "first");
+        queue.enqueue(null, "second");
+        queue.close();
+        queue.enqueue(null, "third");
+        callbacks.getValues().get(0).writeFailed(new RuntimeException("Test exception"));
+
+        assertEquals(Arrays.asList("first"), sent.getValues());
+        assertEquals(0, queue.size());
+    }
+}
@@ -19,11 +19,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
@@ -41,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
 
+import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.Constants.SegueUserPreferences;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
 import uk.ac.cam.cl.dtg.segue.auth.SegueLocalAuthenticator;
@@ -177,6 +180,18 @@ public class EmailManagerTest {
         EasyMock.replay(mockAuthenticator);
     }
 
+    /**
+     * Create an email manager which adds mass emails to the outbox before returning, so tests need not wait for them.
+     *
+     * @param emailOutbox - the outbox to add the emails to.
+     * @return the email manager.
+     */
+    private EmailManager createMassEmailManager(final IEmailOutbox emailOutbox) {
+        return new EmailManager(emailOutbox, new InMemoryMassEmailJobPersistenceManager(), userPreferenceManager,
+                mockPropertiesLoader, mockContentManager, logManager, generateGlobalTokenMap(),
+                MoreExecutors.newDirectExecutorService());
+    }
+
     /**
      * @param template
      *            - id of the template
@@ -607,8 +622,7 @@ public class EmailManagerTest {
     @Test
     public void sendCustomEmail_checkNullProperties_replacedWithEmptyString() {
 
-        EmailManager manager = new EmailManager(emailCommunicator, userPreferenceManager, mockPropertiesLoader,
-                mockContentManager, logManager, generateGlobalTokenMap());
+        EmailManager manager = createMassEmailManager(new InMemoryEmailOutbox(emailCommunicator));
 
         List<RegisteredUserDTO> allSelectedUsers = Lists.newArrayList();
         allSelectedUsers.add(userDTOWithNulls);
@@ -616,8 +630,9 @@ public class EmailManagerTest {
 
         UserPreference userPreference = new UserPreference(userDTOWithNulls.getId(), SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", false);
         try {
-            EasyMock.expect(userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", userDTOWithNulls.getId())).andReturn(userPreference);
-            EasyMock.expect(userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", userDTOWithNulls.getId())).andReturn(userPreference);
+            EasyMock.expect(userPreferenceManager.getUserPreferences(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS",
+                    Arrays.asList(userDTOWithNulls.getId(), userDTOWithNulls.getId())))
+                    .andReturn(ImmutableMap.of(userDTOWithNulls.getId(), userPreference));
         } catch (SegueDatabaseException e1) {
             e1.printStackTrace();
             Assert.fail();
@@ -648,7 +663,9 @@ public class EmailManagerTest {
         }
 
         try {
-            manager.sendCustomEmail(userDTOWithNulls, contentObjectId, allSelectedUsers, EmailType.ASSIGNMENTS);
+            MassEmailJob job = manager.sendCustomEmail(userDTOWithNulls, contentObjectId, allSelectedUsers, EmailType.ASSIGNMENTS);
+            assertEquals(MassEmailJob.Status.COMPLETE, job.getStatus());
+            assertEquals(2, job.getFilteredRecipients());
         } catch (SegueDatabaseException e) {
             Assert.fail();
         } catch (ContentManagerException e) {
@@ -663,8 +680,7 @@ public class EmailManagerTest {
     @Test
     public void sendCustomContentEmail_checkNullProperties_replacedWithEmptyString() {
 
-        EmailManager manager = new EmailManager(emailCommunicator, userPreferenceManager, mockPropertiesLoader,
-                mockContentManager, logManager, generateGlobalTokenMap());
+        EmailManager manager = createMassEmailManager(new InMemoryEmailOutbox(emailCommunicator));
 
         List<RegisteredUserDTO> allSelectedUsers = Lists.newArrayList();
         allSelectedUsers.add(userDTOWithNulls);
@@ -672,8 +688,9 @@ public class EmailManagerTest {
 
         UserPreference userPreference = new UserPreference(userDTOWithNulls.getId(), SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", false);
         try {
-            EasyMock.expect(userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", userDTOWithNulls.getId())).andReturn(userPreference);
-            EasyMock.expect(userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", userDTOWithNulls.getId())).andReturn(userPreference);
+            EasyMock.expect(userPreferenceManager.getUserPreferences(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS",
+                    Arrays.asList(userDTOWithNulls.getId(), userDTOWithNulls.getId())))
+                    .andReturn(ImmutableMap.of(userDTOWithNulls.getId(), userPreference));
         } catch (SegueDatabaseException e1) {
             e1.printStackTrace();
             Assert.fail();
@@ -707,7 +724,9 @@ public class EmailManagerTest {
         }
 
         try {
-            manager.sendCustomContentEmail(userDTOWithNulls, emailTemplate, allSelectedUsers, EmailType.ASSIGNMENTS);
+            MassEmailJob job = manager.sendCustomContentEmail(userDTOWithNulls, emailTemplate, allSelectedUsers, EmailType.ASSIGNMENTS);
+            assertEquals(MassEmailJob.Status.COMPLETE, job.getStatus());
+            assertEquals(2, job.getFilteredRecipients());
         } catch (SegueDatabaseException e) {
             Assert.fail();
         } catch (ContentManagerException e) {
@@ -716,6 +735,96 @@ public class EmailManagerTest {
 
     }
 
+    /**
+     * Check mass emails look up preferences for all recipients at once, and only email those who opted in.
+     */
+    @Test
+    public void sendCustomContentEmail_oneUserOptedIn_checkOnlyThatUserEmailed() throws Exception {
+        IEmailOutbox emailOutbox = EasyMock.createMock(IEmailOutbox.class);
+        Capture<List<EmailCommunicationMessage>> queuedEmails = Capture.newInstance();
+        emailOutbox.enqueueAll(EasyMock.capture(queuedEmails));
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(emailOutbox);
+        EmailManager manager = createMassEmailManager(emailOutbox);
+
+        RegisteredUserDTO optedOutUser = new RegisteredUserDTO();
+        optedOutUser.setId(2L);
+        optedOutUser.setEmail("opted-out@test.com");
+        List<RegisteredUserDTO> allSelectedUsers = Arrays.asList(userDTO, optedOutUser);
+
+        EasyMock.expect(userPreferenceManager.getUserPreferences(SegueUserPreferences.EMAIL_PREFERENCE.name(),
+                "ASSIGNMENTS", Arrays.asList(1L, 2L))).andReturn(ImmutableMap.of(
+                        1L, new UserPreference(1L, SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", true),
+                        2L, new UserPreference(2L, SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", false)))
+                .once();
+        EasyMock.replay(userPreferenceManager);
+
+        ContentDTO htmlTemplate = createDummyContentTemplate("{{content}}");
+        EasyMock.expect(mockContentManager.getContentById("email-template-html")).andReturn(htmlTemplate).once();
+        EasyMock.expect(mockContentManager.getContentById("email-template-ascii")).andReturn(htmlTemplate).once();
+        EasyMock.expect(mockContentManager.getCurrentContentSHA()).andReturn(CONTENT_VERSION).atLeastOnce();
+        EasyMock.replay(mockContentManager);
+
+        EmailTemplateDTO emailTemplate = new EmailTemplateDTO();
+        emailTemplate.setHtmlContent("hi {{givenName}}");
+        emailTemplate.setPlainTextContent("hi {{givenName}}");
+        emailTemplate.setSubject("Test email");
+
+        MassEmailJob job = manager.sendCustomContentEmail(userDTO, emailTemplate, allSelectedUsers,
+                EmailType.ASSIGNMENTS);
+
+        MassEmailJob storedJob = manager.getMassEmailJob(job.getId());
+        assertNotNull(storedJob);
+        assertEquals(MassEmailJob.Status.COMPLETE, storedJob.getStatus());
+        assertEquals(2, storedJob.getProcessedRecipients());
+        assertEquals(1, storedJob.getQueuedEmails());
+        assertEquals(1, storedJob.getFilteredRecipients());
+        EasyMock.verify(userPreferenceManager, emailOutbox);
+
+        assertEquals(1, queuedEmails.getValue().size());
+        assertEquals("test@test.com", queuedEmails.getValue().get(0).getRecipientAddress());
+        assertEquals("hi tester", queuedEmails.getValue().get(0).getHTMLMessage());
+    }
+
+    /**
+     * Check a mass email which fails part way through does not log that it was sent to users it never reached.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sendCustomContentEmail_preferencesUnavailable_checkNoRecipientsLoggedAsEmailed() throws Exception {
+        ILogManager capturingLogManager = EasyMock.createMock(ILogManager.class);
+        Capture<Object> loggedDetails = Capture.newInstance();
+        capturingLogManager.logInternalEvent(EasyMock.eq(userDTO), EasyMock.eq(Constants.SegueServerLogType.SEND_CUSTOM_MASS_EMAIL),
+                EasyMock.capture(loggedDetails));
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(capturingLogManager);
+        EmailManager manager = new EmailManager(new InMemoryEmailOutbox(emailCommunicator),
+                new InMemoryMassEmailJobPersistenceManager(), userPreferenceManager, mockPropertiesLoader,
+                mockContentManager, capturingLogManager, generateGlobalTokenMap(),
+                MoreExecutors.newDirectExecutorService());
+
+        EasyMock.expect(userPreferenceManager.getUserPreferences(SegueUserPreferences.EMAIL_PREFERENCE.name(),
+                "ASSIGNMENTS", Arrays.asList(1L))).andThrow(new SegueDatabaseException("Database unavailable"));
+        EasyMock.replay(userPreferenceManager);
+        EasyMock.expect(mockContentManager.getCurrentContentSHA()).andReturn(CONTENT_VERSION).atLeastOnce();
+        EasyMock.replay(mockContentManager);
+
+        EmailTemplateDTO emailTemplate = new EmailTemplateDTO();
+        emailTemplate.setHtmlContent("hi {{givenName}}");
+        emailTemplate.setPlainTextContent("hi {{givenName}}");
+        emailTemplate.setSubject("Test email");
+
+        MassEmailJob job = manager.sendCustomContentEmail(userDTO, emailTemplate, Arrays.asList(userDTO),
+                EmailType.ASSIGNMENTS);
+
+        assertEquals(MassEmailJob.Status.FAILED, job.getStatus());
+        EasyMock.verify(capturingLogManager);
+        Map<String, Object> details = (Map<String, Object>) loggedDetails.getValue();
+        assertEquals(Lists.newArrayList(), details.get(Constants.USER_ID_LIST_FKEY_FIELDNAME));
+        assertEquals(0, details.get("numberProcessed"));
+        assertEquals(MassEmailJob.Status.FAILED, details.get("status"));
+    }
+
     /**
      * Make sure that when the templates are published:false, that the method reacts appropriately.
      */
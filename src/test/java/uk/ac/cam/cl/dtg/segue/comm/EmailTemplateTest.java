@@ -0,0 +1,46 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the EmailTemplate class.
+ */
+public class EmailTemplateTest {
+
+    @Test
+    public void render_htmlAndPlainText_checkHtmlValuesPreferredOnlyForHtml() {
+        EmailTemplate template = EmailTemplate.compile("Dear {{givenName}}, see {{link}}.");
+        Map<String, String> properties = ImmutableMap.of("givenName", "Ada", "link", "example.com",
+                "link_HTML", "<a href='https://example.com'>here</a>");
+
+        assertEquals("Dear Ada, see example.com.", template.render(properties, false));
+        assertEquals("Dear Ada, see <a href='https://example.com'>here</a>.", template.render(properties, true));
+    }
+
+    @Test
+    public void render_valueContainsTag_checkValueNotReplaced() {
+        EmailTemplate template = EmailTemplate.compile("{{a}}{{b}}");
+
+        assertEquals("{{b}}x", template.render(ImmutableMap.of("a", "{{b}}", "b", "x"), false));
+    }
+
+    @Test
+    public void render_missingTags_checkAllReportedInException() {
+        EmailTemplate template = EmailTemplate.compile("{{known}} {{missing1}} {{missing2}}");
+
+        try {
+            template.render(ImmutableMap.of("known", "value"), false);
+            fail("Expected an IllegalArgumentException for the missing tags.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("{{missing1}}"));
+            assertTrue(e.getMessage().contains("{{missing2}}"));
+        }
+    }
+}
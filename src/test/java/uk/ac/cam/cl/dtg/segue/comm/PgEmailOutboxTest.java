@@ -0,0 +1,134 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.net.ConnectException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PgEmailOutbox class.
+ */
+public class PgEmailOutboxTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private EmailCommunicator dummyCommunicator;
+    private PgEmailOutbox emailOutbox;
+
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createMock(Connection.class);
+        this.dummyCommunicator = createMock(EmailCommunicator.class);
+        this.emailOutbox = new PgEmailOutbox(dummyPostgresSqlDb, dummyCommunicator, 10, 0, 3, 1, false);
+    }
+
+    @Test
+    public void enqueueAll_severalEmails_checkInsertedInOneTransaction() throws Exception {
+        PreparedStatement dummyInsert = createMock(PreparedStatement.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        dummyConnection.setAutoCommit(false);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyInsert).once();
+        dummyInsert.setInt(eq(1), eq(EmailType.SYSTEM.getPriority()));
+        expectLastCall().times(2);
+        dummyInsert.setString(2, EmailType.SYSTEM.name());
+        expectLastCall().times(2);
+        dummyInsert.setString(eq(3), anyString());
+        expectLastCall().times(2);
+        dummyInsert.addBatch();
+        expectLastCall().times(2);
+        expect(dummyInsert.executeBatch()).andReturn(new int[] {1, 1}).once();
+        dummyInsert.close();
+        dummyConnection.commit();
+        dummyConnection.setAutoCommit(true);
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyInsert, dummyCommunicator);
+
+        emailOutbox.enqueueAll(Arrays.asList(createEmail("a@example.com"), createEmail("b@example.com")));
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyInsert, dummyCommunicator);
+    }
+
+    @Test
+    public void sendPendingBatch_oneEmailFails_checkSentEmailDeletedAndFailedEmailRescheduled() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        PreparedStatement dummyClaim = createNiceMock(PreparedStatement.class);
+        PreparedStatement dummyDelete = createNiceMock(PreparedStatement.class);
+        PreparedStatement dummyReschedule = createMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        Capture<String> queries = Capture.newInstance(CaptureType.ALL);
+
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(2);
+        expect(dummyConnection.prepareStatement(capture(queries))).andReturn(dummyClaim).once()
+                .andReturn(dummyDelete).once().andReturn(dummyReschedule).once();
+        expect(dummyConnection.createArrayOf(eq("bigint"), anyObject())).andReturn(createNiceMock(Array.class));
+        dummyConnection.close();
+        expectLastCall().times(2);
+        expect(dummyClaim.executeQuery()).andReturn(dummyResultSet);
+        expect(dummyResultSet.next()).andReturn(true).times(2).andReturn(false);
+        // Returned out of order, to check that the batch is sent in priority order:
+        expect(dummyResultSet.getLong("id")).andReturn(2L).andReturn(1L);
+        expect(dummyResultSet.getInt("priority")).andReturn(1).times(2);
+        expect(dummyResultSet.getInt("attempts")).andReturn(1).times(2);
+        expect(dummyResultSet.getString("message"))
+                .andReturn(objectMapper.writeValueAsString(PgEmailOutbox.toJson(createEmail("two@example.com"))))
+                .andReturn(objectMapper.writeValueAsString(PgEmailOutbox.toJson(createEmail("one@example.com"))));
+
+        Capture<List<EmailCommunicationMessage>> sentEmails = Capture.newInstance();
+        CommunicationException sendFailure = new CommunicationException(new ConnectException("Connection refused"));
+        expect(dummyCommunicator.sendMessages(capture(sentEmails))).andReturn(Arrays.asList(null, sendFailure));
+
+        dummyReschedule.setBoolean(1, false);
+        dummyReschedule.setString(2, "java.net.ConnectException: Connection refused");
+        dummyReschedule.setLong(3, PgEmailOutbox.retryDelaySeconds(1));
+        dummyReschedule.setLong(4, 2L);
+        dummyReschedule.addBatch();
+        expect(dummyReschedule.executeBatch()).andReturn(new int[] {1});
+        dummyReschedule.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyClaim, dummyDelete, dummyReschedule, dummyResultSet,
+                dummyCommunicator);
+
+        assertEquals(2, emailOutbox.sendPendingBatch());
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyReschedule, dummyCommunicator);
+        assertEquals("one@example.com", sentEmails.getValue().get(0).getRecipientAddress());
+        assertEquals("two@example.com", sentEmails.getValue().get(1).getRecipientAddress());
+        assertTrue(queries.getValues().get(0).contains("FOR UPDATE SKIP LOCKED"));
+        assertTrue(queries.getValues().get(1).startsWith("DELETE"));
+    }
+
+    @Test
+    public void retryDelaySeconds_manyAttempts_checkBackoffIsCapped() {
+        assertEquals(60, PgEmailOutbox.retryDelaySeconds(1));
+        assertEquals(120, PgEmailOutbox.retryDelaySeconds(2));
+        assertEquals(3600, PgEmailOutbox.retryDelaySeconds(40));
+    }
+
+    private static EmailCommunicationMessage createEmail(final String recipientAddress) {
+        return new EmailCommunicationMessage(1L, recipientAddress, "Subject", "Plain text", "<p>HTML</p>",
+                EmailType.SYSTEM, null, null, null, null, null,
+                List.of(new EmailAttachment("event.ics", "text/calendar", "BEGIN:VCALENDAR")));
+    }
+}
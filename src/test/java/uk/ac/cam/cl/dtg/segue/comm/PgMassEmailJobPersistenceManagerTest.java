@@ -0,0 +1,87 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.startsWith;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for the PgMassEmailJobPersistenceManager class.
+ */
+public class PgMassEmailJobPersistenceManagerTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PgMassEmailJobPersistenceManager jobPersistenceManager;
+
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.jobPersistenceManager = new PgMassEmailJobPersistenceManager(dummyPostgresSqlDb);
+    }
+
+    @Test
+    public void getMassEmailJob_jobStored_checkAbandonedJobsMarkedFailedBeforeReading() throws Exception {
+        PreparedStatement dummyAbandon = createMock(PreparedStatement.class);
+        PreparedStatement dummySelect = createNiceMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(startsWith("UPDATE"))).andReturn(dummyAbandon).once();
+        expect(dummyConnection.prepareStatement(startsWith("SELECT"))).andReturn(dummySelect).once();
+        dummyAbandon.setString(1, MassEmailJob.Status.FAILED.name());
+        dummyAbandon.setString(2, "job-id");
+        dummyAbandon.setString(3, MassEmailJob.Status.PENDING.name());
+        dummyAbandon.setString(4, MassEmailJob.Status.RUNNING.name());
+        dummyAbandon.setLong(5, 10L);
+        expect(dummyAbandon.executeUpdate()).andReturn(1).once();
+        dummyAbandon.close();
+        expect(dummySelect.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).once();
+        expect(dummyResultSet.getString("id")).andReturn("job-id");
+        expect(dummyResultSet.getLong("sender_id")).andReturn(1L);
+        expect(dummyResultSet.getString("email_type")).andReturn(EmailType.ASSIGNMENTS.name());
+        expect(dummyResultSet.getInt("total_recipients")).andReturn(1000);
+        expect(dummyResultSet.getTimestamp("created")).andReturn(new Timestamp(0));
+        expect(dummyResultSet.getString("status")).andReturn(MassEmailJob.Status.FAILED.name());
+        expect(dummyResultSet.getInt("processed_recipients")).andReturn(500);
+        expect(dummyResultSet.getInt("queued_emails")).andReturn(400);
+        expect(dummyResultSet.getInt("filtered_recipients")).andReturn(100);
+        expect(dummyResultSet.getString("error")).andReturn("Stopped after 500 of 1000 recipients");
+        replay(dummyPostgresSqlDb, dummyConnection, dummyAbandon, dummySelect, dummyResultSet);
+
+        MassEmailJob job = jobPersistenceManager.getMassEmailJob("job-id");
+
+        verify(dummyPostgresSqlDb, dummyAbandon);
+        assertEquals(MassEmailJob.Status.FAILED, job.getStatus());
+        assertEquals(500, job.getProcessedRecipients());
+        assertEquals(400, job.getQueuedEmails());
+        assertEquals(EmailType.ASSIGNMENTS, job.getEmailType());
+    }
+
+    @Test
+    public void getMassEmailJob_noSuchJob_checkNullReturned() throws Exception {
+        PreparedStatement dummyStatement = createNiceMock(PreparedStatement.class);
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(startsWith("UPDATE"))).andReturn(dummyStatement).once();
+        expect(dummyConnection.prepareStatement(startsWith("SELECT"))).andReturn(dummyStatement).once();
+        expect(dummyStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(false).once();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyStatement, dummyResultSet);
+
+        assertNull(jobPersistenceManager.getMassEmailJob("job-id"));
+    }
+}
@@ -3,11 +3,19 @@ package uk.ac.cam.cl.dtg.segue.dao;
 import org.junit.Before;
 import org.junit.Test;
 import org.reflections.Reflections;
+import uk.ac.cam.cl.dtg.isaac.dos.AudienceContext;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacQuestionPage;
+import uk.ac.cam.cl.dtg.isaac.dos.Stage;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
 import uk.ac.cam.cl.dtg.isaac.dos.content.CodeSnippet;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.content.ContentSummaryDTO;
 
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ContentMapperTest {
@@ -46,4 +54,43 @@ public class ContentMapperTest {
         // Assert
         assertTrue(contentDTO.getExpandable());
     }
+
+    @Test
+    public void mapFromStringListToContentSummaryList_questionPageSource_MatchesSummaryOfDTO() throws Exception {
+        // Arrange
+        AudienceContext audience = new AudienceContext();
+        audience.setStage(List.of(Stage.a_level));
+        IsaacQuestionPage questionPage = new IsaacQuestionPage();
+        questionPage.setId("a_question");
+        questionPage.setType("isaacQuestionPage");
+        questionPage.setTitle("A Question");
+        questionPage.setSubtitle("A subtitle");
+        questionPage.setSummary("A summary");
+        questionPage.setLevel(2);
+        questionPage.setTags(Set.of("physics"));
+        questionPage.setDifficulty(3);
+        questionPage.setDeprecated(true);
+        questionPage.setSupersededBy("another_question");
+        questionPage.setAudience(List.of(audience));
+        questionPage.setPublished(true);
+        String source = contentMapper.getSharedContentObjectMapper().writeValueAsString(questionPage);
+
+        // Act
+        ContentSummaryDTO expected = contentMapper.getAutoMapper()
+                .map(contentMapper.getDTOByDO(questionPage), ContentSummaryDTO.class);
+        ContentSummaryDTO actual = contentMapper.mapFromStringListToContentSummaryList(List.of(source)).get(0);
+
+        // Assert
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getSubtitle(), actual.getSubtitle());
+        assertEquals(expected.getSummary(), actual.getSummary());
+        assertEquals(expected.getLevel(), actual.getLevel());
+        assertEquals(expected.getTags(), actual.getTags());
+        assertEquals(expected.getDifficulty(), actual.getDifficulty());
+        assertEquals(expected.getDeprecated(), actual.getDeprecated());
+        assertEquals(expected.getSupersededBy(), actual.getSupersededBy());
+        assertEquals(expected.getAudience().get(0).getStage(), actual.getAudience().get(0).getStage());
+    }
 }
@@ -0,0 +1,93 @@
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentSnapshot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the ContentSnapshot class.
+ */
+public class ContentSnapshotTest {
+    private Content questionOne;
+    private Content questionTwo;
+    private Content concept;
+    private ContentSnapshot snapshot;
+
+    @Before
+    public final void setUp() {
+        questionOne = createContent("phys_question_1", "isaacQuestionPage", "mechanics");
+        questionTwo = createContent("phys_question_2", "isaacQuestionPage", "waves");
+        concept = createContent("phys_concept", "isaacConceptPage", "mechanics");
+        snapshot = new ContentSnapshot("sha", Arrays.asList(questionTwo, concept, questionOne), Arrays.asList(10, 20, 30));
+    }
+
+    @Test
+    public void getById_knownAndUnknownIds_checkCorrectContentReturned() {
+        assertSame(questionOne, snapshot.getById("phys_question_1"));
+        assertNull(snapshot.getById("phys_question_3"));
+    }
+
+    @Test
+    public void getByIds_idsInRequestedOrder_checkOrderPreservedAndMissingIdsSkipped() {
+        assertEquals(Arrays.asList(concept, questionOne),
+                snapshot.getByIds(Arrays.asList("phys_concept", "missing", "phys_question_1", "phys_concept")));
+    }
+
+    @Test
+    public void getByIdPrefix_sharedPrefix_checkOnlyMatchingContentReturnedInIdOrder() {
+        assertEquals(Arrays.asList(questionOne, questionTwo), snapshot.getByIdPrefix("phys_question"));
+        assertEquals(Collections.emptyList(), snapshot.getByIdPrefix("chem"));
+    }
+
+    @Test
+    public void getByTypeAndTag_indexedContent_checkCorrectContentReturnedInSnapshotOrder() {
+        assertEquals(Arrays.asList(questionTwo, questionOne), snapshot.getByType("isaacQuestionPage"));
+        assertEquals(Arrays.asList(concept, questionOne), snapshot.getByTag("mechanics"));
+        assertEquals(Collections.emptyList(), snapshot.getByTag("optics"));
+    }
+
+    @Test
+    public void getByTypeAndTag_differentCaseAndSingleWordOfTag_checkMatchedAsSearchProviderWould() {
+        Content multiWordTag = createContent("phys_topic", "page", "Further-Mechanics");
+        ContentSnapshot taggedSnapshot = new ContentSnapshot("sha", Arrays.asList(multiWordTag, questionOne),
+                Arrays.asList(10, 20));
+
+        assertEquals(Arrays.asList(questionOne), taggedSnapshot.getByType("ISAACQUESTIONPAGE"));
+        assertEquals(Arrays.asList(multiWordTag, questionOne), taggedSnapshot.getByTag("Mechanics"));
+        assertEquals(Arrays.asList(multiWordTag), taggedSnapshot.getByTag("further"));
+    }
+
+    @Test
+    public void isSingleWord_typeAndTagValues_checkOnlySingleWordsAccepted() {
+        assertTrue(ContentSnapshot.isSingleWord("isaacQuestionPage"));
+        assertTrue(ContentSnapshot.isSingleWord("phys_book_gcse"));
+        assertFalse(ContentSnapshot.isSingleWord("further-mechanics"));
+        assertFalse(ContentSnapshot.isSingleWord("two words"));
+        assertFalse(ContentSnapshot.isSingleWord(""));
+    }
+
+    @Test
+    public void getSourceLength_someContent_checkLengthsSummed() {
+        assertEquals(40, snapshot.getSourceLength(Arrays.asList(questionOne, questionTwo)));
+    }
+
+    private static Content createContent(final String id, final String type, final String... tags) {
+        Set<String> tagSet = Arrays.stream(tags).collect(Collectors.toSet());
+        List<String> noRelatedContent = Collections.emptyList();
+        return new Content(id, "", "", type, "", "", "", "", Collections.emptyList(), "", "", noRelatedContent, true,
+                tagSet, 1);
+    }
+}
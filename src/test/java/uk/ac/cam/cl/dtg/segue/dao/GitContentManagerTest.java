@@ -15,22 +15,39 @@
  */
 package uk.ac.cam.cl.dtg.segue.dao;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.LoadingCache;
+import org.elasticsearch.action.get.GetResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.reflect.Whitebox;
+import org.reflections.Reflections;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
+import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentSnapshot;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.database.GitDb;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dos.content.ContentBase;
+import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
+import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
 import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
+import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static uk.ac.cam.cl.dtg.segue.api.Constants.ID_FIELDNAME;
+import static uk.ac.cam.cl.dtg.segue.api.Constants.TAGS_FIELDNAME;
+import static uk.ac.cam.cl.dtg.segue.api.Constants.TYPE_FIELDNAME;
 
 /**
  * Test class for the GitContentManager class.
@@ -73,6 +90,199 @@ public class GitContentManagerTest {
 		}
 	}
 
+	/**
+	 * Test that repeated lookups of the same content within one content version only query the search provider and
+	 * deserialise the content once.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void getContentDOById_repeatedLookups_checkSearchProviderQueriedOnce() throws Exception {
+		String id = "example_id";
+		List<String> json = Collections.singletonList("{\"id\": \"example_id\"}");
+		Content content = createEmptyContentElement(new ArrayList<>(), id);
+
+		GetResponse versionResponse = createMock(GetResponse.class);
+		expect(versionResponse.getSource()).andStubReturn(Collections.singletonMap("version", INITIAL_VERSION));
+
+		expect(searchProvider.getById(isNull(), anyString(), eq("general"))).andReturn(versionResponse).once();
+		expect(searchProvider.termSearch(eq(INITIAL_VERSION), anyString(), eq(id), anyString(), eq(0), eq(1), isNull()))
+				.andReturn(new ResultsWrapper<>(json, 1L)).once();
+		expect(contentMapper.mapFromStringListToContentList(json)).andReturn(Collections.singletonList(content)).once();
+		replay(versionResponse, searchProvider, contentMapper);
+
+		assertSame(content, defaultGCM.getContentDOById(id));
+		assertSame(content, defaultGCM.getContentDOById(id));
+
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Test that content loaded for a content version which stops being live part way through the load is not left in
+	 * the cache after everything cached for that version has been evicted.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void getContentDOById_liveVersionChangesDuringLoad_checkStaleContentNotCached() throws Exception {
+		String newVersion = "1c83a95d6f0f5e64715f0b2d835e4e498a8aa0ca";
+		List<String> oldJson = Collections.singletonList("{\"id\": \"old_id\"}");
+		List<String> newJson = Collections.singletonList("{\"id\": \"new_id\"}");
+		Content oldContent = createEmptyContentElement(new ArrayList<>(), "old_id");
+		Content newContent = createEmptyContentElement(new ArrayList<>(), "new_id");
+
+		GetResponse oldVersionResponse = createMock(GetResponse.class);
+		expect(oldVersionResponse.getSource()).andStubReturn(Collections.singletonMap("version", INITIAL_VERSION));
+		GetResponse newVersionResponse = createMock(GetResponse.class);
+		expect(newVersionResponse.getSource()).andStubReturn(Collections.singletonMap("version", newVersion));
+
+		expect(searchProvider.getById(isNull(), anyString(), eq("general"))).andReturn(oldVersionResponse).once();
+		expect(searchProvider.getById(isNull(), anyString(), eq("general"))).andReturn(newVersionResponse).once();
+		// Whilst the old version is loading, the live version changes and some content of the new version is cached:
+		expect(searchProvider.termSearch(eq(INITIAL_VERSION), anyString(), eq("old_id"), anyString(), eq(0), eq(1),
+				isNull())).andAnswer(() -> {
+					Whitebox.<Cache<?, ?>>getInternalState(defaultGCM, "contentShaCache").invalidateAll();
+					assertSame(newContent, defaultGCM.getContentDOById("new_id"));
+					return new ResultsWrapper<>(oldJson, 1L);
+				}).once();
+		expect(searchProvider.termSearch(eq(newVersion), anyString(), eq("new_id"), anyString(), eq(0), eq(1),
+				isNull())).andReturn(new ResultsWrapper<>(newJson, 1L)).once();
+		expect(contentMapper.mapFromStringListToContentList(oldJson)).andReturn(Collections.singletonList(oldContent));
+		expect(contentMapper.mapFromStringListToContentList(newJson)).andReturn(Collections.singletonList(newContent));
+		replay(oldVersionResponse, newVersionResponse, searchProvider, contentMapper);
+
+		assertSame(oldContent, defaultGCM.getContentDOById("old_id"));
+
+		LoadingCache<?, ?> cache = Whitebox.getInternalState(defaultGCM, "cache");
+		assertEquals(1, cache.size());
+		assertSame(newContent, defaultGCM.getContentDOById("new_id"));
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Test that a search by type and tag is answered from the in-memory snapshot of the live content, in title order,
+	 * without querying the search provider.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void findByFieldNames_typeAndTagClausesWithSnapshot_checkSnapshotUsed() throws Exception {
+		Content questionB = createContent("q_b", "B question", "isaacQuestionPage", "mechanics");
+		Content questionA = createContent("q_a", "A question", "isaacQuestionPage", "mechanics", "waves");
+		Content wavesQuestion = createContent("q_c", "C question", "isaacQuestionPage", "waves");
+		Content opticsQuestion = createContent("q_d", "A2 question", "isaacQuestionPage", "optics");
+		Content concept = createContent("c_a", "A concept", "isaacConceptPage", "mechanics");
+		GitContentManager inMemoryGCM = createInMemoryContentManager(new ContentSnapshot(INITIAL_VERSION,
+				Arrays.asList(questionB, concept, wavesQuestion, questionA, opticsQuestion),
+				Arrays.asList(1, 1, 1, 1, 1)));
+
+		List<ContentDTO> dtos = Arrays.asList(new ContentDTO(), new ContentDTO());
+		expect(contentMapper.getDTOByDOList(Arrays.asList(opticsQuestion, questionB))).andReturn(dtos).once();
+		replay(searchProvider, contentMapper);
+
+		ResultsWrapper<ContentDTO> results = inMemoryGCM.findByFieldNames(Arrays.asList(
+				new GitContentManager.BooleanSearchClause(TYPE_FIELDNAME, Constants.BooleanOperator.AND,
+						Collections.singletonList("isaacQuestionPage")),
+				new GitContentManager.BooleanSearchClause(TAGS_FIELDNAME, Constants.BooleanOperator.OR,
+						Arrays.asList("Mechanics", "optics")),
+				new GitContentManager.BooleanSearchClause(TAGS_FIELDNAME, Constants.BooleanOperator.NOT,
+						Collections.singletonList("waves"))), 0, 10);
+
+		assertSame(dtos, results.getResults());
+		assertEquals(Long.valueOf(2), results.getTotalResults());
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Test that a search the snapshot cannot answer exactly is still sent to the search provider.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void findByFieldNames_nonDefaultSortWithSnapshot_checkSearchProviderUsed() throws Exception {
+		GitContentManager inMemoryGCM = createInMemoryContentManager(new ContentSnapshot(INITIAL_VERSION,
+				Collections.emptyList(), Collections.emptyList()));
+		List<GitContentManager.BooleanSearchClause> fieldsToMatch = Collections.singletonList(
+				new GitContentManager.BooleanSearchClause(TYPE_FIELDNAME, Constants.BooleanOperator.AND,
+						Collections.singletonList("isaacQuestionPage")));
+		Map<String, Constants.SortOrder> sortById = Collections.singletonMap(ID_FIELDNAME, Constants.SortOrder.ASC);
+
+		expect(searchProvider.matchSearch(eq("live"), anyString(), eq(fieldsToMatch), eq(0), eq(10), eq(sortById),
+				isNull(), isNull())).andReturn(new ResultsWrapper<>(Collections.emptyList(), 0L)).once();
+		expect(contentMapper.mapFromStringListToContentList(Collections.emptyList()))
+				.andReturn(Collections.emptyList());
+		expect(contentMapper.getDTOByDOList(Collections.emptyList())).andReturn(Collections.emptyList());
+		replay(searchProvider, contentMapper);
+
+		inMemoryGCM.findByFieldNames(fieldsToMatch, 0, 10, sortById);
+
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Test that every document the search provider passes to the snapshot loader ends up in the snapshot.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void loadContentSnapshot_sourcesStreamedFromSearchProvider_checkSnapshotBuilt() throws Exception {
+		GitContentManager inMemoryGCM = createInMemoryContentManager(null);
+		ContentMapper realContentMapper = new ContentMapper(new Reflections("uk.ac.cam.cl.dtg.isaac"));
+
+		searchProvider.forEachSourceInIndex(eq(INITIAL_VERSION), anyString(), anyObject());
+		expectLastCall().andAnswer(() -> {
+			Consumer<String> sourceConsumer = (Consumer<String>) getCurrentArguments()[2];
+			sourceConsumer.accept("{\"id\": \"page_a\", \"type\": \"page\", \"tags\": [\"physics\"]}");
+			sourceConsumer.accept("{\"id\": \"page_b\", \"type\": \"page\"}");
+			return null;
+		}).once();
+		expect(contentMapper.getSharedContentObjectMapper())
+				.andReturn(realContentMapper.getSharedContentObjectMapper());
+		replay(searchProvider, contentMapper);
+
+		Whitebox.invokeMethod(inMemoryGCM, "loadContentSnapshot", INITIAL_VERSION);
+
+		ContentSnapshot snapshot = Whitebox.<AtomicReference<ContentSnapshot>>getInternalState(inMemoryGCM,
+				"contentSnapshot").get();
+		assertEquals(2, snapshot.size());
+		assertEquals("page_b", snapshot.getById("page_b").getId());
+		assertEquals(1, snapshot.getByTag("physics").size());
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Create a content manager using the in-memory content store, whose live content is the initial version.
+	 *
+	 * @param snapshot
+	 *            - the snapshot of the live content already loaded, if any.
+	 * @return the content manager.
+	 */
+	private GitContentManager createInMemoryContentManager(final ContentSnapshot snapshot) throws Exception {
+		AbstractConfigLoader properties = createNiceMock(AbstractConfigLoader.class);
+		expect(properties.getProperty(Constants.CONTENT_IN_MEMORY_STORE_ENABLED)).andStubReturn("true");
+		expect(properties.getProperty(Constants.CONTENT_INDEX)).andStubReturn("live");
+		replay(properties);
+
+		GetResponse versionResponse = createMock(GetResponse.class);
+		expect(versionResponse.getSource()).andStubReturn(Collections.singletonMap("version", INITIAL_VERSION));
+		replay(versionResponse);
+		expect(searchProvider.getById(eq("live"), anyString(), eq("general"))).andStubReturn(versionResponse);
+
+		GitContentManager contentManager = new GitContentManager(database, searchProvider, contentMapper, properties);
+		Whitebox.<AtomicReference<ContentSnapshot>>getInternalState(contentManager, "contentSnapshot").set(snapshot);
+		return contentManager;
+	}
+
+	private Content createContent(final String id, final String title, final String type, final String... tags) {
+		return new Content(id, title, "", type, "", "", "", "", new ArrayList<>(), "", "", new LinkedList<>(), true,
+				new HashSet<>(Arrays.asList(tags)), 1);
+	}
+
 	/**
 	 * Helper method for the
 	 * flattenContentObjects_flattenMultiTierObject_checkCorrectObjectReturned
@@ -0,0 +1,126 @@
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.easymock.Capture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.users.AnonymousUserDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static uk.ac.cam.cl.dtg.segue.api.Constants.SegueServerLogType.ADMIN_CHANGE_USER_SCHOOL;
+
+/**
+ * Test class for the PgLogManager class.
+ */
+public class PgLogManagerTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+    private LocationManager dummyLocationManager;
+    private PgLogManager logManager;
+
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+        this.dummyLocationManager = createNiceMock(LocationManager.class);
+        // Use a long flush interval, so that only the explicit flushes in the tests write anything:
+        this.logManager = new PgLogManager(dummyPostgresSqlDb, new ObjectMapper(), true, dummyLocationManager,
+                10, 3600000, false);
+    }
+
+    @After
+    public final void tearDown() {
+        logManager.shutdown();
+    }
+
+    @Test
+    public void flushPendingLogEvents_severalEventsLogged_checkWrittenWithOneMultiRowInsert() throws Exception {
+        Capture<String> query = Capture.newInstance();
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(capture(query))).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(3).once();
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyLocationManager);
+
+        RegisteredUserDTO user = new RegisteredUserDTO();
+        user.setId(1L);
+        AnonymousUserDTO anonymousUser = new AnonymousUserDTO("anonymous-session");
+        logManager.logInternalEvent(user, ADMIN_CHANGE_USER_SCHOOL, Collections.singletonMap("schoolId", "1"));
+        logManager.logInternalEvent(user, ADMIN_CHANGE_USER_SCHOOL, null);
+        logManager.logInternalEvent(anonymousUser, ADMIN_CHANGE_USER_SCHOOL, null);
+
+        logManager.flushPendingLogEvents();
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+        assertEquals(3, query.getValue().split("::inet").length - 1);
+    }
+
+    @Test
+    public void logInternalEvent_bufferFull_checkEventDroppedWithoutBlocking() throws Exception {
+        Capture<String> query = Capture.newInstance();
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(capture(query))).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(10).once();
+        dummyConnection.close();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyLocationManager);
+
+        RegisteredUserDTO user = new RegisteredUserDTO();
+        user.setId(1L);
+        for (int i = 0; i < 15; i++) {
+            logManager.logInternalEvent(user, ADMIN_CHANGE_USER_SCHOOL, null);
+        }
+
+        logManager.flushPendingLogEvents();
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement);
+        assertEquals(10, query.getValue().split("::inet").length - 1);
+    }
+
+    @Test
+    public void flushPendingLogEvents_oneEventRejected_checkRemainingEventsWrittenIndividually() throws Exception {
+        SQLException invalidIpAddress = new SQLException("invalid input syntax for type inet", "22P02");
+        PreparedStatement batchStatement = createNiceMock(PreparedStatement.class);
+        expect(batchStatement.executeUpdate()).andThrow(invalidIpAddress).once();
+        PreparedStatement rejectedRowStatement = createNiceMock(PreparedStatement.class);
+        expect(rejectedRowStatement.executeUpdate()).andThrow(invalidIpAddress).once();
+
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(4);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(batchStatement).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(rejectedRowStatement).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).times(2);
+        dummyConnection.close();
+        expectLastCall().times(4);
+        replay(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, batchStatement, rejectedRowStatement,
+                dummyLocationManager);
+
+        RegisteredUserDTO user = new RegisteredUserDTO();
+        user.setId(1L);
+        for (int i = 0; i < 3; i++) {
+            logManager.logInternalEvent(user, ADMIN_CHANGE_USER_SCHOOL, null);
+        }
+
+        logManager.flushPendingLogEvents();
+
+        verify(dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, batchStatement, rejectedRowStatement);
+    }
+}
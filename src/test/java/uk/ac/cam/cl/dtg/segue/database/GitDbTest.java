@@ -17,10 +17,17 @@ package uk.ac.cam.cl.dtg.segue.database;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
 
 import org.easymock.EasyMock;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.lib.Repository;
 import org.junit.Test;
 
@@ -98,4 +105,37 @@ public class GitDbTest {
 
 		assertNull(db.getTreeWalk("sha", "")); // Blank path is explicitly allowed. This should not throw an exception. But in this case we've passed an invalid sha, so we should get null back.
 	}
+
+	@Test
+	public void listChangedFiles_commitsChangingFiles_onlyChangedFilesListed() throws Exception {
+		File repoLocation = Files.createTempDirectory("gitDbTest").toFile();
+		try (Git git = Git.init().setDirectory(repoLocation).call()) {
+			Files.writeString(new File(repoLocation, "unchanged.json").toPath(), "{}");
+			Files.writeString(new File(repoLocation, "modified.json").toPath(), "{}");
+			Files.writeString(new File(repoLocation, "deleted.json").toPath(), "{}");
+			git.add().addFilepattern(".").call();
+			String firstSha = git.commit().setMessage("first").setSign(false).call().getName();
+
+			Files.writeString(new File(repoLocation, "modified.json").toPath(), "{\"id\": \"changed\"}");
+			Files.writeString(new File(repoLocation, "added.json").toPath(), "{}");
+			Files.delete(new File(repoLocation, "deleted.json").toPath());
+			git.add().addFilepattern(".").call();
+			git.rm().addFilepattern("deleted.json").call();
+			String secondSha = git.commit().setMessage("second").setSign(false).call().getName();
+
+			GitDb db = new GitDb(git);
+			Map<String, DiffEntry.ChangeType> changes = new HashMap<>();
+			for (DiffEntry change : db.listChangedFiles(firstSha, secondSha)) {
+				changes.put(change.getChangeType() == DiffEntry.ChangeType.DELETE ? change.getOldPath() : change.getNewPath(),
+						change.getChangeType());
+			}
+
+			assertEquals(3, changes.size());
+			assertEquals(DiffEntry.ChangeType.MODIFY, changes.get("modified.json"));
+			assertEquals(DiffEntry.ChangeType.ADD, changes.get("added.json"));
+			assertEquals(DiffEntry.ChangeType.DELETE, changes.get("deleted.json"));
+		} finally {
+			FileUtils.deleteDirectory(repoLocation);
+		}
+	}
 }
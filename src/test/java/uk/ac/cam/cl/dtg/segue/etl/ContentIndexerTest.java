@@ -24,21 +24,36 @@ import com.google.api.client.util.Maps;
 import com.google.api.client.util.Sets;
 import com.google.common.collect.ImmutableMap;
 import org.apache.logging.log4j.core.pattern.AbstractStyleNameConverter;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.eclipse.jgit.api.Git;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.reflect.Whitebox;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reflections.Reflections;
 
 import uk.ac.cam.cl.dtg.isaac.dos.IsaacNumericQuestion;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.database.GitDb;
+import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dos.content.ContentBase;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 /**
  * Test class for the GitContentManager class.
  *
@@ -53,6 +68,18 @@ public class ContentIndexerTest {
 
     private static final String INITIAL_VERSION = "0b72984c5eff4f53604fe9f1c724d3f387799db9";
 
+    private static final String CONTENT = Constants.CONTENT_INDEX_TYPE.CONTENT.toString();
+    private static final String METADATA = Constants.CONTENT_INDEX_TYPE.METADATA.toString();
+
+    @Rule
+    public TemporaryFolder contentRepository = new TemporaryFolder();
+
+    private Git git;
+    private boolean newVersionIndexed;
+    private Capture<Set<String>> copiedExcludingFiles;
+    private Capture<List<Map.Entry<String, String>>> indexedContent;
+    private Capture<String> indexedTags;
+
     /**
      * Initial configuration of tests.
      *
@@ -147,7 +174,11 @@ public class ContentIndexerTest {
         searchProvider.bulkIndex(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT_ERROR.toString()), anyObject());
         expectLastCall().once();
 
-        // Ensure at least one bulk index for general content is requested
+        // Ensure at least one bulk index for general content is requested, as part of a single bulk load
+        expect(searchProvider.startBulkLoad(INITIAL_VERSION, Constants.CONTENT_INDEX_TYPE.CONTENT.toString()))
+                .andReturn(null).once();
+        searchProvider.finishBulkLoad(INITIAL_VERSION, Constants.CONTENT_INDEX_TYPE.CONTENT.toString(), null);
+        expectLastCall().once();
         searchProvider.bulkIndexWithIDs(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT.toString()), anyObject());
 		expectLastCall().once();
 
@@ -164,6 +195,85 @@ public class ContentIndexerTest {
 		verify(searchProvider, contentMapper, objectMapper);
 	}
 
+    /**
+     * Test that content is sent to the search provider in several bounded bulk requests, rather than all at once.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkIndexContentInBatches_moreContentThanOneBatch_checkSentInMultipleBulkRequests()
+            throws Exception {
+        reset(database, searchProvider);
+        final int numberOfContentObjects = 4500;
+
+        List<Content> contents = new ArrayList<>();
+        for (int i = 0; i < numberOfContentObjects; i++) {
+            contents.add(createEmptyContentElement(new LinkedList<>(), String.format("content_%d", i)));
+        }
+
+        Map<String, String> originalIndexSettings = new HashMap<>();
+        expect(searchProvider.startBulkLoad(INITIAL_VERSION, Constants.CONTENT_INDEX_TYPE.CONTENT.toString()))
+                .andReturn(originalIndexSettings).once();
+        searchProvider.finishBulkLoad(INITIAL_VERSION, Constants.CONTENT_INDEX_TYPE.CONTENT.toString(),
+                originalIndexSettings);
+        expectLastCall().once();
+
+        Capture<List<Map.Entry<String, String>>> batches = newCapture(CaptureType.ALL);
+        searchProvider.bulkIndexWithIDs(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT.toString()),
+                capture(batches));
+        expectLastCall().times(3);
+        replay(searchProvider);
+
+        // Method under test
+        Whitebox.invokeMethod(defaultContentIndexer, "bulkIndexContentInBatches",
+                INITIAL_VERSION, contents, new ObjectMapper(), new HashMap<Content, List<String>>());
+
+        verify(searchProvider);
+        Set<String> indexedIds = new HashSet<>();
+        for (List<Map.Entry<String, String>> batch : batches.getValues()) {
+            batch.forEach(entry -> indexedIds.add(entry.getKey()));
+        }
+        assertEquals(numberOfContentObjects, indexedIds.size());
+    }
+
+    /**
+     * Test that the index settings changed for a content load are restored even if a batch fails part way through.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkIndexContentInBatches_batchFails_checkBulkLoadStillFinished()
+            throws Exception {
+        reset(database, searchProvider);
+        final int numberOfContentObjects = 4500;
+
+        List<Content> contents = new ArrayList<>();
+        for (int i = 0; i < numberOfContentObjects; i++) {
+            contents.add(createEmptyContentElement(new LinkedList<>(), String.format("content_%d", i)));
+        }
+
+        Map<String, String> originalIndexSettings = new HashMap<>();
+        expect(searchProvider.startBulkLoad(INITIAL_VERSION, Constants.CONTENT_INDEX_TYPE.CONTENT.toString()))
+                .andReturn(originalIndexSettings).once();
+        searchProvider.bulkIndexWithIDs(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT.toString()),
+                anyObject());
+        expectLastCall().andThrow(new SegueSearchException("Error during bulk index operation!")).once();
+        searchProvider.finishBulkLoad(INITIAL_VERSION, Constants.CONTENT_INDEX_TYPE.CONTENT.toString(),
+                originalIndexSettings);
+        expectLastCall().once();
+        replay(searchProvider);
+
+        try {
+            Whitebox.invokeMethod(defaultContentIndexer, "bulkIndexContentInBatches",
+                    INITIAL_VERSION, contents, new ObjectMapper(), new HashMap<Content, List<String>>());
+            fail("Expected the failed batch to fail the content load.");
+        } catch (SegueSearchException e) {
+            // Expected.
+        }
+
+        verify(searchProvider);
+    }
+
     /**
      * Test the flattenContentObjects method and ensure the expected output is
      * generated.
@@ -478,4 +588,159 @@ public class ContentIndexerTest {
 
         return new GitContentManager(database, searchProvider, contentMapper);
     }
+
+    @Test
+    public void loadAndIndexContent_contentFileChanged_checkOnlyChangedFileReindexed() throws Exception {
+        writeContentFile("a.json", "page_a", "physics");
+        writeContentFile("b.json", "page_b");
+        String previousVersion = commitContent();
+        writeContentFile("a.json", "page_a", "physics", "maths");
+        String version = commitContent();
+
+        createIncrementalContentIndexer(previousVersion, "physics").loadAndIndexContent(version, previousVersion);
+
+        assertEquals(Collections.singleton("a.json"), copiedExcludingFiles.getValue());
+        assertEquals(Collections.singleton("page_a"), getIndexedContentIds());
+        assertTrue(indexedTags.getValue().contains("physics"));
+        assertTrue(indexedTags.getValue().contains("maths"));
+    }
+
+    @Test
+    public void loadAndIndexContent_contentFileAdded_checkOnlyNewFileIndexed() throws Exception {
+        writeContentFile("a.json", "page_a", "physics");
+        String previousVersion = commitContent();
+        writeContentFile("c.json", "page_c", "chemistry");
+        String version = commitContent();
+
+        createIncrementalContentIndexer(previousVersion, "physics").loadAndIndexContent(version, previousVersion);
+
+        assertEquals(Collections.singleton("c.json"), copiedExcludingFiles.getValue());
+        assertEquals(Collections.singleton("page_c"), getIndexedContentIds());
+        assertTrue(indexedTags.getValue().contains("physics"));
+        assertTrue(indexedTags.getValue().contains("chemistry"));
+    }
+
+    @Test
+    public void loadAndIndexContent_untaggedContentFileDeleted_checkFileExcludedFromCopy() throws Exception {
+        writeContentFile("a.json", "page_a", "physics");
+        writeContentFile("b.json", "page_b");
+        String previousVersion = commitContent();
+        git.rm().addFilepattern("b.json").call();
+        String version = commitContent();
+
+        createIncrementalContentIndexer(previousVersion, "physics").loadAndIndexContent(version, previousVersion);
+
+        assertEquals(Collections.singleton("b.json"), copiedExcludingFiles.getValue());
+        assertFalse(indexedContent.hasCaptured());
+    }
+
+    @Test
+    public void loadAndIndexContent_tagRemovedFromContentFile_checkFullRebuild() throws Exception {
+        writeContentFile("a.json", "page_a", "physics");
+        writeContentFile("b.json", "page_b", "maths");
+        String previousVersion = commitContent();
+        writeContentFile("b.json", "page_b");
+        String version = commitContent();
+
+        createIncrementalContentIndexer(previousVersion, "physics", "maths")
+                .loadAndIndexContent(version, previousVersion);
+
+        assertFalse(copiedExcludingFiles.hasCaptured());
+        assertEquals(new HashSet<>(Arrays.asList("page_a", "page_b")), getIndexedContentIds());
+        assertFalse(indexedTags.getValue().contains("maths"));
+    }
+
+    @Test
+    public void loadAndIndexContent_nonContentFileChanged_checkFullRebuild() throws Exception {
+        writeContentFile("a.json", "page_a", "physics");
+        writeContentFile("b.json", "page_b");
+        String previousVersion = commitContent();
+        Files.write(new File(contentRepository.getRoot(), "figure.svg").toPath(),
+                "<svg/>".getBytes(StandardCharsets.UTF_8));
+        String version = commitContent();
+
+        createIncrementalContentIndexer(previousVersion, "physics").loadAndIndexContent(version, previousVersion);
+
+        assertFalse(copiedExcludingFiles.hasCaptured());
+        assertEquals(new HashSet<>(Arrays.asList("page_a", "page_b")), getIndexedContentIds());
+    }
+
+    /**
+     * Set up an indexer reading a real git repository, with a search provider in which the previous version is
+     * already indexed with the given tags and no units, and the new version is indexed once any content is sent to it.
+     *
+     * @param previousVersion - the already indexed version.
+     * @param previousTags - the tags indexed for the previous version.
+     * @return a content indexer using the test repository and search provider.
+     */
+    private ContentIndexer createIncrementalContentIndexer(final String previousVersion, final String... previousTags)
+            throws Exception {
+        GitDb gitDb = createMockBuilder(GitDb.class).withConstructor(Git.class).withArgs(git)
+                .addMockedMethod("fetchLatestFromRemote").createNiceMock();
+        replay(gitDb);
+
+        ElasticSearchIndexer es = createNiceMock(ElasticSearchIndexer.class);
+        copiedExcludingFiles = Capture.newInstance();
+        indexedContent = Capture.newInstance(CaptureType.ALL);
+        indexedTags = Capture.newInstance();
+        newVersionIndexed = false;
+
+        expect(es.hasIndex(eq(previousVersion), anyString())).andStubReturn(true);
+        expect(es.hasIndex(not(eq(previousVersion)), anyString())).andStubAnswer(() -> newVersionIndexed);
+        expect(es.findSourceFields(anyString(), anyString(), anyObject(QueryBuilder.class), anyString()))
+                .andStubReturn(Collections.emptyList());
+        expect(es.findSourceFields(anyString(), anyString(), anyObject(QueryBuilder.class), anyString(), anyString()))
+                .andStubReturn(Collections.emptyList());
+        String tagsJson = new ObjectMapper().writeValueAsString(ImmutableMap.of("tags", Arrays.asList(previousTags)));
+        expect(es.getById(previousVersion, METADATA, "tags")).andStubReturn(new GetResponse(new GetResult(
+                previousVersion + "_" + METADATA, "_doc", "tags", 0, 1, 1, true, new BytesArray(tagsJson), null, null)));
+        expect(es.copyIndexExcludingSourceFiles(eq(previousVersion), anyString(), eq(CONTENT),
+                capture(copiedExcludingFiles))).andAnswer(() -> {
+                    newVersionIndexed = true;
+                    return 0L;
+                }).anyTimes();
+        es.bulkIndexWithIDs(anyString(), eq(CONTENT), capture(indexedContent));
+        expectLastCall().andAnswer(() -> {
+            newVersionIndexed = true;
+            return null;
+        }).anyTimes();
+        es.indexObject(anyString(), eq(METADATA), capture(indexedTags), eq("tags"));
+        expectLastCall().anyTimes();
+        replay(es);
+
+        return new ContentIndexer(gitDb, es, new ContentMapper(new Reflections("uk.ac.cam.cl.dtg.isaac")));
+    }
+
+    /**
+     * Write a content page to the test repository, creating the repository if needed.
+     */
+    private void writeContentFile(final String path, final String id, final String... tags) throws Exception {
+        if (null == git) {
+            git = Git.init().setDirectory(contentRepository.getRoot()).call();
+        }
+        String json = new ObjectMapper().writeValueAsString(ImmutableMap.of("id", id, "type", "page",
+                "title", id, "published", true, "tags", Arrays.asList(tags)));
+        Files.write(new File(contentRepository.getRoot(), path).toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Commit every change in the test repository.
+     *
+     * @return the sha of the new commit.
+     */
+    private String commitContent() throws Exception {
+        git.add().addFilepattern(".").call();
+        return git.commit().setMessage("Update content").setAuthor("test", "test@example.com")
+                .setCommitter("test", "test@example.com").call().getName();
+    }
+
+    private Set<String> getIndexedContentIds() {
+        Set<String> ids = new HashSet<>();
+        for (List<Map.Entry<String, String>> batch : indexedContent.getValues()) {
+            for (Map.Entry<String, String> entry : batch) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
 }
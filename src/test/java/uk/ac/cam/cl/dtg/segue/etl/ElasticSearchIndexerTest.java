@@ -0,0 +1,275 @@
+package uk.ac.cam.cl.dtg.segue.etl;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import uk.ac.cam.cl.dtg.segue.search.ElasticSearchProvider;
+import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.powermock.api.easymock.PowerMock.createMock;
+import static org.powermock.api.easymock.PowerMock.replay;
+import static org.powermock.api.easymock.PowerMock.verify;
+
+/**
+ * Test class for the bulk loading behaviour of the ElasticSearchIndexer class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({RestHighLevelClient.class, IndicesClient.class})
+@PowerMockIgnore({"javax.management.*", "jakarta.ws.*"})
+public class ElasticSearchIndexerTest {
+    private static final String INDEX_BASE = "0b72984c5eff4f53604fe9f1c724d3f387799db9";
+    private static final String INDEX_TYPE = "content";
+    private static final String TYPED_INDEX = ElasticSearchProvider.produceTypedIndexName(INDEX_BASE, INDEX_TYPE);
+    private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    private static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+
+    private RestHighLevelClient client;
+    private IndicesClient indicesClient;
+    private ElasticSearchIndexer indexer;
+
+    private List<List<String>> sentChunks;
+    private Capture<UpdateSettingsRequest> settingsUpdates;
+
+    /**
+     * Set up an index which exists, with non-default refresh and replica settings, and which accepts settings changes.
+     */
+    @Before
+    public final void setUp() throws Exception {
+        client = createMock(RestHighLevelClient.class);
+        indicesClient = createMock(IndicesClient.class);
+        indexer = new ElasticSearchIndexer(client, 1);
+        sentChunks = Collections.synchronizedList(new ArrayList<>());
+        settingsUpdates = Capture.newInstance(CaptureType.ALL);
+
+        expect(client.indices()).andStubReturn(indicesClient);
+        expect(indicesClient.exists(anyObject(GetIndexRequest.class), anyObject(RequestOptions.class))).andStubReturn(true);
+        expect(indicesClient.getSettings(anyObject(GetSettingsRequest.class), anyObject(RequestOptions.class)))
+                .andStubReturn(new GetSettingsResponse(ImmutableOpenMap.<String, Settings>builder()
+                        .fPut(TYPED_INDEX, Settings.builder()
+                                .put(REFRESH_INTERVAL_SETTING, "30s")
+                                .put(NUMBER_OF_REPLICAS_SETTING, "2")
+                                .build())
+                        .build(), ImmutableOpenMap.of()));
+        expect(indicesClient.putSettings(capture(settingsUpdates), anyObject(RequestOptions.class)))
+                .andReturn(AcknowledgedResponse.TRUE).anyTimes();
+    }
+
+    @Test
+    public void bulkIndexWithIDs_moreItemsThanOneChunk_checkSentInBoundedChunks() throws Exception {
+        expectBulkRequests(this::respondAllSucceeded);
+        expectRefreshOnce();
+        replay(client, indicesClient);
+
+        indexer.bulkIndexWithIDs(INDEX_BASE, INDEX_TYPE, createItems(1200));
+
+        verify(client, indicesClient);
+        List<Integer> chunkSizes = sentChunks.stream().map(List::size).sorted().collect(Collectors.toList());
+        assertEquals(List.of(200, 500, 500), chunkSizes);
+        assertEquals(1200, sentChunks.stream().flatMap(List::stream).distinct().count());
+        assertSettingsDisabledThenRestored();
+    }
+
+    @Test
+    public void bulkIndexWithIDs_transientItemFailure_checkOnlyFailedItemRetried() throws Exception {
+        expectBulkRequests(request -> sentChunks.size() == 1
+                ? respondFailedItems(request, Set.of("item_7"), RestStatus.TOO_MANY_REQUESTS)
+                : respondAllSucceeded(request));
+        expectRefreshOnce();
+        replay(client, indicesClient);
+
+        indexer.bulkIndexWithIDs(INDEX_BASE, INDEX_TYPE, createItems(10));
+
+        verify(client, indicesClient);
+        assertEquals(2, sentChunks.size());
+        assertEquals(List.of("item_7"), sentChunks.get(1));
+        assertSettingsDisabledThenRestored();
+    }
+
+    @Test
+    public void bulkIndexWithIDs_chunkFailsToSend_checkWholeChunkRetried() throws Exception {
+        expectBulkRequests(request -> {
+            if (sentChunks.size() == 1) {
+                throw new IOException("Connection reset");
+            }
+            return respondAllSucceeded(request);
+        });
+        expectRefreshOnce();
+        replay(client, indicesClient);
+
+        indexer.bulkIndexWithIDs(INDEX_BASE, INDEX_TYPE, createItems(10));
+
+        verify(client, indicesClient);
+        assertEquals(2, sentChunks.size());
+        assertEquals(sentChunks.get(0), sentChunks.get(1));
+        assertSettingsDisabledThenRestored();
+    }
+
+    @Test
+    public void bulkIndexWithIDs_transientFailuresExhaustRetries_checkFailsAndSettingsRestored() throws Exception {
+        expectBulkRequests(request -> respondFailedItems(request, Set.of("item_3"), RestStatus.SERVICE_UNAVAILABLE));
+        expectRefreshOnce();
+        replay(client, indicesClient);
+
+        try {
+            indexer.bulkIndexWithIDs(INDEX_BASE, INDEX_TYPE, createItems(10));
+            fail("Expected the bulk index operation to fail.");
+        } catch (SegueSearchException e) {
+            // Expected.
+        }
+
+        verify(client, indicesClient);
+        // The first attempt and three retries:
+        assertEquals(4, sentChunks.size());
+        assertSettingsDisabledThenRestored();
+    }
+
+    @Test
+    public void bulkIndexWithIDs_permanentItemFailure_checkFailsWithoutRetryAndSettingsRestored() throws Exception {
+        expectBulkRequests(request -> respondFailedItems(request, Set.of("item_3"), RestStatus.BAD_REQUEST));
+        expectRefreshOnce();
+        replay(client, indicesClient);
+
+        try {
+            indexer.bulkIndexWithIDs(INDEX_BASE, INDEX_TYPE, createItems(10));
+            fail("Expected the bulk index operation to fail.");
+        } catch (SegueSearchException e) {
+            // Expected.
+        }
+
+        verify(client, indicesClient);
+        assertEquals(1, sentChunks.size());
+        assertSettingsDisabledThenRestored();
+    }
+
+    @Test
+    public void bulkLoad_batchFailsPartWayThrough_checkSettingsLeftForFinishBulkLoadToRestore() throws Exception {
+        expectBulkRequests(request -> sentChunks.size() == 1
+                ? respondAllSucceeded(request)
+                : respondFailedItems(request, Set.of("item_3"), RestStatus.BAD_REQUEST));
+        expectRefreshOnce();
+        replay(client, indicesClient);
+
+        Map<String, String> originalSettings = indexer.startBulkLoad(INDEX_BASE, INDEX_TYPE);
+        try {
+            indexer.bulkIndexWithIDs(INDEX_BASE, INDEX_TYPE, createItems(10));
+            // A failed batch must not restore the settings whilst the rest of the load is still in progress:
+            indexer.bulkIndexWithIDs(INDEX_BASE, INDEX_TYPE, createItems(10));
+            fail("Expected the second batch to fail.");
+        } catch (SegueSearchException e) {
+            assertEquals(1, settingsUpdates.getValues().size());
+        } finally {
+            indexer.finishBulkLoad(INDEX_BASE, INDEX_TYPE, originalSettings);
+        }
+
+        verify(client, indicesClient);
+        assertSettingsDisabledThenRestored();
+    }
+
+    /**
+     * Respond to every bulk request sent with the given function, recording the ids of the items in each request.
+     */
+    private void expectBulkRequests(final BulkResponder responder) {
+        expect(client.bulkAsync(anyObject(BulkRequest.class), anyObject(RequestOptions.class), anyObject()))
+                .andAnswer(() -> {
+                    BulkRequest request = (BulkRequest) getCurrentArguments()[0];
+                    @SuppressWarnings("unchecked")
+                    ActionListener<BulkResponse> listener = (ActionListener<BulkResponse>) getCurrentArguments()[2];
+                    sentChunks.add(request.requests().stream().map(DocWriteRequest::id).collect(Collectors.toList()));
+                    try {
+                        listener.onResponse(responder.respond(request));
+                    } catch (IOException e) {
+                        listener.onFailure(e);
+                    }
+                    return null;
+                }).anyTimes();
+    }
+
+    private void expectRefreshOnce() throws IOException {
+        expect(indicesClient.refresh(anyObject(RefreshRequest.class), anyObject(RequestOptions.class)))
+                .andReturn(null).once();
+    }
+
+    private void assertSettingsDisabledThenRestored() {
+        List<UpdateSettingsRequest> updates = settingsUpdates.getValues();
+        assertEquals(2, updates.size());
+        assertEquals("-1", updates.get(0).settings().get(REFRESH_INTERVAL_SETTING));
+        assertEquals("0", updates.get(0).settings().get(NUMBER_OF_REPLICAS_SETTING));
+        assertEquals("30s", updates.get(1).settings().get(REFRESH_INTERVAL_SETTING));
+        assertEquals("2", updates.get(1).settings().get(NUMBER_OF_REPLICAS_SETTING));
+    }
+
+    private BulkResponse respondAllSucceeded(final BulkRequest request) {
+        return respondFailedItems(request, Collections.emptySet(), RestStatus.OK);
+    }
+
+    private BulkResponse respondFailedItems(final BulkRequest request, final Set<String> failedIds,
+                                            final RestStatus failureStatus) {
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            String id = request.requests().get(i).id();
+            if (failedIds.contains(id)) {
+                items[i] = BulkItemResponse.failure(i, DocWriteRequest.OpType.INDEX, new BulkItemResponse.Failure(
+                        TYPED_INDEX, "_doc", id, new Exception("Failed to index " + id), failureStatus));
+            } else {
+                items[i] = BulkItemResponse.success(i, DocWriteRequest.OpType.INDEX,
+                        new IndexResponse(new ShardId(TYPED_INDEX, "_na_", 0), "_doc", id, 1, 1, 1, true));
+            }
+        }
+        return new BulkResponse(items, 1);
+    }
+
+    private static List<Map.Entry<String, String>> createItems(final int numberOfItems) {
+        List<Map.Entry<String, String>> items = new ArrayList<>();
+        for (int i = 0; i < numberOfItems; i++) {
+            items.add(new AbstractMap.SimpleEntry<>("item_" + i, "{\"id\": \"item_" + i + "\"}"));
+        }
+        return items;
+    }
+
+    /**
+     * Produces the response of the search cluster to a bulk request, or throws to simulate it not being sent.
+     */
+    @FunctionalInterface
+    private interface BulkResponder {
+        BulkResponse respond(BulkRequest request) throws IOException;
+    }
+}
@@ -35,6 +35,7 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.isaac.dos.LocationHistory;
 import uk.ac.cam.cl.dtg.isaac.dos.PgLocationHistory;
+import uk.ac.cam.cl.dtg.util.OutboundHttpClient;
 import uk.ac.cam.cl.dtg.util.locations.LocationServerException;
 import uk.ac.cam.cl.dtg.util.locations.PostCodeIOLocationResolver;
 import uk.ac.cam.cl.dtg.util.locations.PostCodeRadius;
@@ -55,7 +56,10 @@ public class PostCodeLocationResolverTest {
     public final void setUp() throws Exception {
         mockDatabase = EasyMock.createMock(PostgresSqlDb.class);
         locationHistory = new PgLocationHistory(mockDatabase);
-        resolver = new PostCodeIOLocationResolver(locationHistory);
+        resolver = new PostCodeIOLocationResolver(locationHistory,
+                new OutboundHttpClient(OutboundHttpClient.DEFAULT_CONNECT_TIMEOUT_MILLISECONDS,
+                        OutboundHttpClient.DEFAULT_REQUEST_TIMEOUT_MILLISECONDS,
+                        OutboundHttpClient.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST));
 
         ResultSet mockResultSet = EasyMock.createMock(ResultSet.class);
         EasyMock.expect(mockResultSet.next()).andReturn(false).anyTimes();
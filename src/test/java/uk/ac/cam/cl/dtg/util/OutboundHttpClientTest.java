@@ -0,0 +1,130 @@
+package uk.ac.cam.cl.dtg.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the OutboundHttpClient class, using a stub service.
+ */
+public class OutboundHttpClientTest {
+    private HttpServer stubService;
+    private CountDownLatch releaseSlowRequests;
+    private URI baseUri;
+
+    /**
+     * Start a stub service which responds immediately on /fast, and only once released on /slow.
+     *
+     * @throws Exception - test exception
+     */
+    @Before
+    public final void setUp() throws Exception {
+        releaseSlowRequests = new CountDownLatch(1);
+        stubService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubService.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/slow")) {
+                try {
+                    releaseSlowRequests.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        stubService.setExecutor(Executors.newCachedThreadPool());
+        stubService.start();
+        baseUri = URI.create("http://localhost:" + stubService.getAddress().getPort());
+    }
+
+    @After
+    public final void tearDown() {
+        releaseSlowRequests.countDown();
+        stubService.stop(0);
+    }
+
+    @Test
+    public void send_serviceResponds_checkResponseReturned() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 2);
+
+        HttpResponse<String> response = client.send("test", client.newRequest(baseUri.resolve("/fast")).GET().build());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("ok", response.body());
+    }
+
+    @Test
+    public void sendAsync_tooManyRequestsInFlight_checkFurtherRequestsRejectedUntilOneFinishes() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 1);
+
+        CompletableFuture<HttpResponse<String>> slowResponse =
+                client.sendAsync("test", client.newRequest(baseUri.resolve("/slow")).GET().build());
+
+        // The only permit for this host is held by the slow request, so this should be rejected without waiting for it:
+        HttpRequest fastRequest = client.newRequest(baseUri.resolve("/fast")).GET().build();
+        long startTime = System.nanoTime();
+        try {
+            client.send("test", fastRequest);
+            fail("Expected the request to be rejected while the slow request was in flight.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Too many concurrent requests"));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 1000);
+        }
+
+        releaseSlowRequests.countDown();
+        assertEquals("ok", OutboundHttpClient.await(slowResponse).body());
+        assertEquals("ok", client.send("test", fastRequest).body());
+    }
+
+    @Test
+    public void sendAsync_requestCancelled_checkPermitReleasedWithoutWaitingForResponse() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 1);
+
+        CompletableFuture<HttpResponse<String>> slowResponse =
+                client.sendAsync("test", client.newRequest(baseUri.resolve("/slow")).GET().build());
+        slowResponse.cancel(true);
+
+        // The slow request has not been released, so this can only succeed if cancelling abandoned it:
+        HttpRequest fastRequest = client.newRequest(baseUri.resolve("/fast")).timeout(Duration.ofMillis(2000))
+                .GET().build();
+        assertEquals("ok", client.send("test", fastRequest).body());
+    }
+
+    @Test
+    public void send_twoDestinations_checkEachHasItsOwnConnectionPool() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 2);
+
+        client.send("first", client.newRequest(baseUri.resolve("/fast")).GET().build());
+        client.send("second", client.newRequest(baseUri.resolve("/fast")).GET().build());
+        client.send("first", client.newRequest(baseUri.resolve("/fast")).GET().build());
+
+        Map<String, HttpClient> destinationClients = Whitebox.getInternalState(client, "destinationClients");
+        assertEquals(2, destinationClients.size());
+        assertNotSame(destinationClients.get("first"), destinationClients.get("second"));
+    }
+}